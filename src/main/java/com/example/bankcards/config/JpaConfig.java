@@ -4,6 +4,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
 import org.hibernate.boot.model.naming.ImplicitNamingStrategyLegacyJpaImpl;
 import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
@@ -16,8 +18,14 @@ import java.util.Map;
 @Configuration
 @Slf4j
 public class JpaConfig {
+    public static final String ID_ALLOCATION_SIZE = "bank.id.allocation-size";
+    public static final int DEFAULT_ID_ALLOCATION_SIZE = 50;
+
     @Bean
-    public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+    public LocalContainerEntityManagerFactoryBean entityManagerFactory(
+            DataSource dataSource,
+            @Value("${persistence.id-allocation-size:" + DEFAULT_ID_ALLOCATION_SIZE + "}") int idAllocationSize,
+            @Value("${persistence.jdbc-batch-size:100}") int jdbcBatchSize) {
         LocalContainerEntityManagerFactoryBean em = new LocalContainerEntityManagerFactoryBean();
         em.setDataSource(dataSource);
         em.setPackagesToScan("com.example.bankcards.entity");
@@ -27,8 +35,17 @@ public class JpaConfig {
                 new CamelCaseToUnderscoresNamingStrategy());
         jpaProperties.put(AvailableSettings.IMPLICIT_NAMING_STRATEGY,
                 new ImplicitNamingStrategyLegacyJpaImpl());
+        jpaProperties.put(AvailableSettings.ORDER_UPDATES, true);
+        // ID из последовательностей выдаются блоками, поэтому INSERT не требуют RETURNING на каждую строку
+        // и группируются в JDBC-пакеты; order_inserts собирает вставки одной таблицы подряд
+        jpaProperties.put(ID_ALLOCATION_SIZE, idAllocationSize);
+        jpaProperties.put(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+        jpaProperties.put(AvailableSettings.STATEMENT_BATCH_SIZE, jdbcBatchSize);
+        jpaProperties.put(AvailableSettings.ORDER_INSERTS, true);
+        jpaProperties.put(AvailableSettings.BATCH_VERSIONED_DATA, true);
         em.setJpaPropertyMap(jpaProperties);
-        log.info("EntityManagerFactory настроен с CamelCaseToUnderscoresNamingStrategy");
+        log.info("EntityManagerFactory настроен с CamelCaseToUnderscoresNamingStrategy, блок ID: {}, пакет JDBC: {}",
+                idAllocationSize, jdbcBatchSize);
         return em;
     }
 }
\ No newline at end of file
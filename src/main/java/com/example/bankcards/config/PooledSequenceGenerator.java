@@ -0,0 +1,27 @@
+package com.example.bankcards.config;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.OptimizableGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+// Генератор ID из последовательности PostgreSQL с оптимизатором pooled-lo: значение nextval — нижняя граница
+// блока из allocation-size идентификаторов, поэтому Hibernate обращается к последовательности раз на блок
+// и может отправлять INSERT пакетами. Размер блока берётся из настроек, а не из аннотации, и должен
+// совпадать с INCREMENT BY последовательности (его выставляет миграция 009)
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        ConfigurationService configurationService = serviceRegistry.getService(ConfigurationService.class);
+        int allocationSize = configurationService.getSetting(JpaConfig.ID_ALLOCATION_SIZE,
+                value -> Integer.parseInt(value.toString()), JpaConfig.DEFAULT_ID_ALLOCATION_SIZE);
+        params.putIfAbsent(OptimizableGenerator.INCREMENT_PARAM, String.valueOf(allocationSize));
+        params.putIfAbsent(OptimizableGenerator.OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+        super.configure(type, params, serviceRegistry);
+    }
+}
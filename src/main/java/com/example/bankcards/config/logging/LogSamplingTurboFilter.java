@@ -0,0 +1,68 @@
+package com.example.bankcards.config.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import lombok.Setter;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Ограничивает поток WARN/ERROR от одного логгера: в каждом окне intervalMs проходят первые
+// maxPerInterval событий, дальше — только каждое sampleRate-е. Лавина одинаковых ошибок со стеками
+// не забивает очередь асинхронного аппендера. Число отброшенных событий логгер сообщает первым
+// событием следующего окна
+@Setter
+public class LogSamplingTurboFilter extends TurboFilter {
+    private static final Marker SUMMARY = MarkerFactory.getMarker("LOG_SAMPLING_SUMMARY");
+    private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<>();
+    private int maxPerInterval = 20;
+    private long intervalMs = 10000;
+    private int sampleRate = 100;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // Проверки isXxxEnabled() приходят без format и событиями не считаются
+        if (!isStarted() || format == null || level == null || !level.isGreaterOrEqual(Level.WARN) || marker == SUMMARY) {
+            return FilterReply.NEUTRAL;
+        }
+        Window window = windows.computeIfAbsent(logger.getName(), name -> new Window(System.currentTimeMillis()));
+        long now = System.currentTimeMillis();
+        long start = window.start.get();
+        if (now - start >= intervalMs && window.start.compareAndSet(start, now)) {
+            window.count.set(0);
+            long suppressed = window.suppressed.getAndSet(0);
+            if (suppressed > 0) {
+                logger.warn(SUMMARY, "Подавлено сообщений WARN/ERROR логгера {}: {} за {} мс",
+                        logger.getName(), suppressed, now - start);
+            }
+        }
+        int count = window.count.incrementAndGet();
+        if (count <= maxPerInterval || (count - maxPerInterval) % Math.max(1, sampleRate) == 0) {
+            return FilterReply.NEUTRAL;
+        }
+        window.suppressed.incrementAndGet();
+        return FilterReply.DENY;
+    }
+
+    @Override
+    public void stop() {
+        windows.clear();
+        super.stop();
+    }
+
+    private static final class Window {
+        private final AtomicLong start;
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicLong suppressed = new AtomicLong();
+
+        private Window(long start) {
+            this.start = new AtomicLong(start);
+        }
+    }
+}
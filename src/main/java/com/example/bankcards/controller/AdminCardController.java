@@ -1,9 +1,13 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.card.CardIssuanceJobResponse;
 import com.example.bankcards.dto.card.CardRequest;
 import com.example.bankcards.dto.card.CardResponse;
 import com.example.bankcards.dto.card.CardUpdateRequest;
+import com.example.bankcards.dto.transaction.TransactionHistoryResponse;
+import com.example.bankcards.service.CardIssuanceService;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.TransactionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -17,10 +21,12 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
 import java.util.List;
 
 import static io.swagger.v3.oas.annotations.enums.SecuritySchemeType.HTTP;
@@ -40,6 +46,8 @@ import static io.swagger.v3.oas.annotations.enums.SecuritySchemeType.HTTP;
 @Slf4j
 public class AdminCardController {
     private final CardService cardService;
+    private final TransactionService transactionService;
+    private final CardIssuanceService cardIssuanceService;
 
     @PostMapping("/cards")
     @PreAuthorize("hasRole('ADMIN')")
@@ -69,6 +77,67 @@ public class AdminCardController {
         return ResponseEntity.status(HttpStatus.CREATED).body(createdCard);
     }
 
+    @PostMapping(value = "/cards/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Массовый выпуск карт (Админ)",
+            description = "Выпускает карты по списку заявок. Небольшое задание выполняется сразу, крупное — в фоне; " +
+                    "ход выпуска доступен по ID задания",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Задание выполнено",
+                            content = @Content(schema = @Schema(implementation = CardIssuanceJobResponse.class))),
+                    @ApiResponse(responseCode = "202", description = "Задание принято и выполняется в фоне",
+                            content = @Content(schema = @Schema(implementation = CardIssuanceJobResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Неверные данные карт"),
+                    @ApiResponse(responseCode = "404", description = "Пользователь не найден"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен")
+            }
+    )
+    public ResponseEntity<CardIssuanceJobResponse> issueCards(@RequestBody List<CardRequest> cardRequests) {
+        log.info("POST /api/admin/cards/bulk - Массовый выпуск {} карт администратором", cardRequests.size());
+        return jobResponse(cardIssuanceService.issue(cardRequests));
+    }
+
+    @PostMapping(value = "/cards/bulk", consumes = "text/csv")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Массовый выпуск карт из CSV (Админ)",
+            description = "Тело — CSV в UTF-8 со столбцами userId,ownerName,expirationDate,balance; " +
+                    "строка заголовка необязательна",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Задание выполнено",
+                            content = @Content(schema = @Schema(implementation = CardIssuanceJobResponse.class))),
+                    @ApiResponse(responseCode = "202", description = "Задание принято и выполняется в фоне",
+                            content = @Content(schema = @Schema(implementation = CardIssuanceJobResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Неверная строка CSV"),
+                    @ApiResponse(responseCode = "404", description = "Пользователь не найден"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен")
+            }
+    )
+    public ResponseEntity<CardIssuanceJobResponse> issueCardsCsv(InputStream csv) {
+        log.info("POST /api/admin/cards/bulk - Массовый выпуск карт из CSV администратором");
+        return jobResponse(cardIssuanceService.issueCsv(csv));
+    }
+
+    @GetMapping("/cards/bulk/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Состояние массового выпуска карт (Админ)",
+            description = "Возвращает статус задания и количество уже выпущенных карт",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Состояние получено",
+                            content = @Content(schema = @Schema(implementation = CardIssuanceJobResponse.class))),
+                    @ApiResponse(responseCode = "404", description = "Задание не найдено"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен")
+            }
+    )
+    public ResponseEntity<CardIssuanceJobResponse> getIssuanceJob(
+            @Parameter(description = "ID задания выпуска", example = "1", required = true)
+            @PathVariable Long id) {
+        log.info("GET /api/admin/cards/bulk/{} - Запрос состояния массового выпуска", id);
+        return ResponseEntity.ok(cardIssuanceService.getJob(id));
+    }
+
     @GetMapping("/cards")
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(
@@ -177,4 +246,76 @@ public class AdminCardController {
         CardResponse activatedCard = cardService.activateCard(id);
         return ResponseEntity.ok(activatedCard);
     }
-}
\ No newline at end of file
+
+    @PostMapping("/cards/{id}/buckets")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Разбить баланс горячей карты на корзины (Админ)",
+            description = "Раскладывает баланс карты по нескольким строкам-корзинам: зачисления на карту блокируют " +
+                    "случайную корзину, а не строку карты. Повторный вызов меняет число корзин",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Баланс карты разбит на корзины",
+                            content = @Content(schema = @Schema(implementation = CardResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Недопустимое число корзин"),
+                    @ApiResponse(responseCode = "404", description = "Карта не найдена"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен")
+            }
+    )
+    public ResponseEntity<CardResponse> splitCardBalance(
+            @Parameter(description = "ID карты", example = "1", required = true)
+            @PathVariable Long id,
+            @Parameter(description = "Число корзин баланса", example = "8", required = true)
+            @RequestParam int count) {
+        log.info("POST /api/admin/cards/{}/buckets - Разбиение баланса карты на {} корзин", id, count);
+        return ResponseEntity.ok(cardService.splitCardBalance(id, count));
+    }
+
+    @DeleteMapping("/cards/{id}/buckets")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Слить корзины баланса карты (Админ)",
+            description = "Возвращает баланс из корзин в строку карты, после чего карта снова обычная",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Корзины слиты",
+                            content = @Content(schema = @Schema(implementation = CardResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Баланс карты не разбит на корзины"),
+                    @ApiResponse(responseCode = "404", description = "Карта не найдена"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен")
+            }
+    )
+    public ResponseEntity<CardResponse> mergeCardBalance(
+            @Parameter(description = "ID карты", example = "1", required = true)
+            @PathVariable Long id) {
+        log.info("DELETE /api/admin/cards/{}/buckets - Слияние корзин баланса карты", id);
+        return ResponseEntity.ok(cardService.mergeCardBalance(id));
+    }
+
+    @GetMapping("/cards/{id}/transactions")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "История операций карты (Админ)",
+            description = "Возвращает входящие и исходящие операции любой карты от новых к старым с курсорной пагинацией",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Страница истории получена",
+                            content = @Content(schema = @Schema(implementation = TransactionHistoryResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Некорректный курсор"),
+                    @ApiResponse(responseCode = "404", description = "Карта не найдена"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен")
+            }
+    )
+    public ResponseEntity<TransactionHistoryResponse> getCardTransactions(
+            @Parameter(description = "ID карты", example = "1", required = true)
+            @PathVariable Long id,
+            @Parameter(description = "Курсор следующей страницы (nextCursor). Пустое значение - первая страница")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Сколько операций поместить на странице (не более 500)", example = "50")
+            @RequestParam(defaultValue = "50") int limit) {
+        log.info("GET /api/admin/cards/{}/transactions - Запрос истории операций администратором, limit: {}", id, limit);
+        return ResponseEntity.ok(transactionService.getCardHistoryForAdmin(id, cursor, limit));
+    }
+
+    private static ResponseEntity<CardIssuanceJobResponse> jobResponse(CardIssuanceJobResponse job) {
+        HttpStatus status = job.getStatus() == CardIssuanceJobResponse.Status.RUNNING ? HttpStatus.ACCEPTED : HttpStatus.OK;
+        return ResponseEntity.status(status).body(job);
+    }
+}
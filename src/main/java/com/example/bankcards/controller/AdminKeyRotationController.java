@@ -0,0 +1,68 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.dto.card.KeyRotationResponse;
+import com.example.bankcards.service.KeyRotationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/key-rotations")
+@Tag(name = "Ротация ключа шифрования (Админ)", description = "Для аутентифицированного пользователя с ролью ADMIN")
+@SecurityRequirement(name = "bearerAuth")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminKeyRotationController {
+    private final KeyRotationService keyRotationService;
+
+    @PostMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Запустить ротацию ключа шифрования (Админ)",
+            description = "Запускает в фоне перешифрование номеров карт текущим ключом. " +
+                    "Ход ротации доступен по ID запуска",
+            responses = {
+                    @ApiResponse(responseCode = "202", description = "Ротация запущена",
+                            content = @Content(schema = @Schema(implementation = KeyRotationResponse.class))),
+                    @ApiResponse(responseCode = "409", description = "Ротация уже выполняется"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен")
+            }
+    )
+    public ResponseEntity<KeyRotationResponse> startRotation() {
+        log.info("POST /api/admin/key-rotations - Запуск ротации ключа шифрования администратором");
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(keyRotationService.startRotation());
+    }
+
+    @GetMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Состояние ротации ключа шифрования (Админ)",
+            description = "Возвращает ход ротации и число номеров, оставшихся неперешифрованными",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Состояние получено",
+                            content = @Content(schema = @Schema(implementation = KeyRotationResponse.class))),
+                    @ApiResponse(responseCode = "404", description = "Ротация не найдена"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен")
+            }
+    )
+    public ResponseEntity<KeyRotationResponse> getRotation(
+            @Parameter(description = "ID ротации", example = "1", required = true)
+            @PathVariable Long id) {
+        log.info("GET /api/admin/key-rotations/{} - Запрос состояния ротации ключа", id);
+        return ResponseEntity.ok(keyRotationService.getRotation(id));
+    }
+}
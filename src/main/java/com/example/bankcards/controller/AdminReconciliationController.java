@@ -0,0 +1,71 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.dto.reconciliation.ReconciliationRunResponse;
+import com.example.bankcards.service.ReconciliationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/reconciliations")
+@Tag(name = "Сверка балансов (Админ)", description = "Для аутентифицированного пользователя с ролью ADMIN")
+@SecurityRequirement(name = "bearerAuth")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminReconciliationController {
+    private final ReconciliationService reconciliationService;
+
+    @PostMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Запустить сверку балансов (Админ)",
+            description = "Запускает в фоне сверку баланса каждой карты с начальным балансом и суммой успешных переводов. " +
+                    "Ход и результат сверки доступны по ID запуска",
+            responses = {
+                    @ApiResponse(responseCode = "202", description = "Сверка запущена",
+                            content = @Content(schema = @Schema(implementation = ReconciliationRunResponse.class))),
+                    @ApiResponse(responseCode = "409", description = "Сверка уже выполняется или недоступна в текущем режиме"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен")
+            }
+    )
+    public ResponseEntity<ReconciliationRunResponse> startRun() {
+        log.info("POST /api/admin/reconciliations - Запуск сверки балансов администратором");
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(reconciliationService.startRun());
+    }
+
+    @GetMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Отчёт сверки балансов (Админ)",
+            description = "Возвращает состояние сверки и первые расхождения по возрастанию ID карты",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Отчёт получен",
+                            content = @Content(schema = @Schema(implementation = ReconciliationRunResponse.class))),
+                    @ApiResponse(responseCode = "404", description = "Сверка не найдена"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен")
+            }
+    )
+    public ResponseEntity<ReconciliationRunResponse> getRun(
+            @Parameter(description = "ID запуска сверки", example = "1", required = true)
+            @PathVariable Long id,
+            @Parameter(description = "Сколько расхождений вернуть (не более 1000)", example = "100")
+            @RequestParam(defaultValue = "100") int limit) {
+        log.info("GET /api/admin/reconciliations/{} - Запрос отчёта сверки", id);
+        return ResponseEntity.ok(reconciliationService.getRun(id, limit));
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.dto.auth.TokenRevocationRequest;
+import com.example.bankcards.exception.InvalidTokenException;
+import com.example.bankcards.security.JwtVerifier;
+import com.example.bankcards.security.VerifiedToken;
+import com.example.bankcards.service.auth.TokenRevocationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/tokens")
+@Tag(name = "Управление токенами (Админ)", description = "Для аутентифицированного пользователя с ролью ADMIN")
+@SecurityRequirement(name = "bearerAuth")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminTokenController {
+    private final JwtVerifier jwtVerifier;
+    private final TokenRevocationService tokenRevocationService;
+
+    @PostMapping("/revocations")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Отозвать токен пользователя (Админ)",
+            description = "Отзывает действующий JWT токен до истечения его срока, например при утечке",
+            responses = {
+                    @ApiResponse(responseCode = "204", description = "Токен отозван"),
+                    @ApiResponse(responseCode = "401", description = "Токен недействителен, истёк или выпущен без идентификатора"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен")
+            }
+    )
+    public ResponseEntity<Void> revoke(@Valid @RequestBody TokenRevocationRequest request) {
+        VerifiedToken token = jwtVerifier.verify(request.getToken())
+                .orElseThrow(() -> new InvalidTokenException("Токен недействителен или уже истёк"));
+        log.info("POST /api/admin/tokens/revocations - Отзыв токена пользователя {}", token.username());
+        tokenRevocationService.revoke(token);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.config.WebMvcConfig;
+import com.example.bankcards.dto.transaction.TransactionExportFormat;
+import com.example.bankcards.exception.InvalidExportRequestException;
+import com.example.bankcards.service.TransactionExportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.security.SecurityScheme;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
+import java.util.zip.GZIPOutputStream;
+
+import static io.swagger.v3.oas.annotations.enums.SecuritySchemeType.HTTP;
+
+@SecurityScheme(
+        name = "bearerAuth",
+        type = HTTP,
+        scheme = "bearer",
+        bearerFormat = "JWT",
+        description = "JWT токен для авторизации. Вставьте: Bearer <токен>"
+)
+@RestController
+@RequestMapping("/api/admin/transactions")
+@Tag(name = "Операции с транзакциями (Админ)", description = "Для аутентифицированного пользователя с ролью ADMIN")
+@SecurityRequirement(name = "bearerAuth")
+@Slf4j
+public class AdminTransactionController {
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    private final TransactionExportService transactionExportService;
+    private final long exportTimeoutMs;
+
+    public AdminTransactionController(TransactionExportService transactionExportService,
+                                      @Value("${export.timeout-ms:3600000}") long exportTimeoutMs) {
+        this.transactionExportService = transactionExportService;
+        this.exportTimeoutMs = exportTimeoutMs;
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Выгрузить транзакции (Админ)",
+            description = "Потоково выгружает транзакции за период [from, to) в формате CSV или NDJSON, " +
+                    "упорядоченные по времени. При gzip=true ответ сжимается на лету",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Выгрузка сформирована"),
+                    @ApiResponse(responseCode = "400", description = "Неверный формат или период"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен")
+            }
+    )
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @Parameter(description = "Начало периода включительно (ISO), пустое значение - с первой транзакции",
+                    example = "2025-01-01T00:00:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "Конец периода не включительно (ISO), пустое значение - до последней транзакции",
+                    example = "2025-02-01T00:00:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @Parameter(description = "Формат выгрузки: csv или ndjson", example = "csv")
+            @RequestParam(defaultValue = "csv") String format,
+            @Parameter(description = "Сжать выгрузку gzip")
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletRequest request) {
+        TransactionExportFormat exportFormat = TransactionExportFormat.from(format);
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new InvalidExportRequestException("Начало периода должно быть раньше конца");
+        }
+        log.info("GET /api/admin/transactions/export - Выгрузка транзакций с {} по {}, формат: {}, gzip: {}",
+                from, to, exportFormat, gzip);
+        request.setAttribute(WebMvcConfig.ASYNC_TIMEOUT_ATTRIBUTE, exportTimeoutMs);
+        String filename = "transactions." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+                transactionExportService.export(from, to, exportFormat, compressed);
+                compressed.finish();
+            } else {
+                transactionExportService.export(from, to, exportFormat, out);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip")
+                        : MediaType.parseMediaType(exportFormat.getContentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+}
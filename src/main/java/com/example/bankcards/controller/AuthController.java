@@ -3,21 +3,30 @@ package com.example.bankcards.controller;
 import com.example.bankcards.dto.auth.AuthRequest;
 import com.example.bankcards.dto.auth.AuthResponse;
 import com.example.bankcards.exception.AuthenticationException;
+import com.example.bankcards.exception.InvalidTokenException;
+import com.example.bankcards.exception.PasswordHashingBusyException;
+import com.example.bankcards.security.JwtVerifier;
+import com.example.bankcards.security.LoginRateLimiter;
+import com.example.bankcards.security.VerifiedToken;
 import com.example.bankcards.service.auth.AuthService;
+import com.example.bankcards.service.auth.TokenRevocationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -30,6 +39,9 @@ import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 @Slf4j
 public class AuthController {
     private final AuthService authService;
+    private final LoginRateLimiter loginRateLimiter;
+    private final JwtVerifier jwtVerifier;
+    private final TokenRevocationService tokenRevocationService;
 
     @PostMapping(value = "/login", consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
     @Operation(
@@ -42,12 +54,19 @@ public class AuthController {
             @ApiResponse(responseCode = "401", description = "Неверные учетные данные",
                     content = @Content(mediaType = APPLICATION_JSON_VALUE)),
             @ApiResponse(responseCode = "400", description = "Некорректные данные запроса",
+                    content = @Content(mediaType = APPLICATION_JSON_VALUE)),
+            @ApiResponse(responseCode = "429", description = "Слишком много попыток входа",
+                    content = @Content(mediaType = APPLICATION_JSON_VALUE)),
+            @ApiResponse(responseCode = "503", description = "Проверка паролей перегружена, повторите попытку позже",
                     content = @Content(mediaType = APPLICATION_JSON_VALUE))
     })
-    public ResponseEntity<AuthResponse> login(@Valid @RequestBody AuthRequest authRequest) {
+    public ResponseEntity<AuthResponse> login(@Valid @RequestBody AuthRequest authRequest,
+                                              HttpServletRequest request) {
         log.info("Получен запрос на аутентификацию для пользователя: {}", authRequest.getUsername());
+        loginRateLimiter.acquire(authRequest.getUsername(), request.getRemoteAddr());
         try {
             AuthResponse response = authService.authenticate(authRequest);
+            loginRateLimiter.onSuccess(authRequest.getUsername());
             log.info("Аутентификация успешна для пользователя: {}", authRequest.getUsername());
             return ResponseEntity.ok(response);
         } catch (BadCredentialsException e) {
@@ -56,10 +75,34 @@ public class AuthController {
         } catch (AuthenticationException e) {
             log.error("Ошибка аутентификации для пользователя {}: {}", authRequest.getUsername(), e.getMessage());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        } catch (PasswordHashingBusyException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Неожиданная ошибка при аутентификации пользователя {}: {}",
                     authRequest.getUsername(), e.getMessage(), e);
             throw new AuthenticationException("Ошибка сервера при аутентификации");
         }
     }
-}
\ No newline at end of file
+
+    // /auth/** не проходит через JWT-фильтр, поэтому токен проверяется здесь
+    @PostMapping("/logout")
+    @Operation(
+            summary = "Выход из системы",
+            description = "Отзывает предъявленный JWT токен: после выхода он не принимается до истечения срока"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Токен отозван"),
+            @ApiResponse(responseCode = "401", description = "Токен отсутствует, недействителен или выпущен без идентификатора",
+                    content = @Content(mediaType = APPLICATION_JSON_VALUE))
+    })
+    public ResponseEntity<Void> logout(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            throw new InvalidTokenException("Токен не передан");
+        }
+        VerifiedToken token = jwtVerifier.verify(authorization.substring(7))
+                .orElseThrow(() -> new InvalidTokenException("Токен недействителен или уже истёк"));
+        tokenRevocationService.revoke(token);
+        log.info("Пользователь {} вышел из системы", token.username());
+        return ResponseEntity.noContent().build();
+    }
+}
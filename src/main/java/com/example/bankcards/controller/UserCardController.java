@@ -1,14 +1,14 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.card.CardResponse;
+import com.example.bankcards.dto.transaction.BatchTransferRequest;
+import com.example.bankcards.dto.transaction.TransactionHistoryResponse;
 import com.example.bankcards.dto.transaction.TransactionRequest;
 import com.example.bankcards.dto.transaction.TransactionResponse;
-import com.example.bankcards.entity.User;
-import com.example.bankcards.exception.AuthenticationException;
-import com.example.bankcards.exception.UserNotFoundException;
-import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.service.CardService;
 import com.example.bankcards.service.TransactionService;
+import com.example.bankcards.service.auth.CurrentUserService;
+import com.example.bankcards.util.Money;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -25,15 +25,17 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static io.swagger.v3.oas.annotations.enums.SecuritySchemeType.HTTP;
 
@@ -52,7 +54,7 @@ import static io.swagger.v3.oas.annotations.enums.SecuritySchemeType.HTTP;
 @Slf4j
 public class UserCardController {
     private final CardService cardService;
-    private final UserRepository userRepository;
+    private final CurrentUserService currentUserService;
     private final TransactionService transactionService;
 
     @GetMapping("/cards")
@@ -76,7 +78,7 @@ public class UserCardController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(required = false) String sort) {
-        Long currentUserId = getCurrentUserId();
+        Long currentUserId = currentUserService.getCurrentUserId();
         log.info("GET /api/user/cards - Запрос карт текущего пользователя ID: {}, page: {}, size: {}", currentUserId, page, size);
         Pageable pageable;
         if (sort != null && !sort.isEmpty()) {
@@ -110,7 +112,7 @@ public class UserCardController {
     public ResponseEntity<String> blockUserCard(
             @Parameter(description = "ID карты для блокировки", example = "1", required = true)
             @PathVariable Long id) {
-        Long currentUserId = getCurrentUserId();
+        Long currentUserId = currentUserService.getCurrentUserId();
         log.info("POST /api/user/cards/{}/block - Запрос блокировки карты пользователем ID: {}", id, currentUserId);
         CardResponse card = cardService.getCardById(id);
         String responseMessage = String.format(
@@ -123,7 +125,8 @@ public class UserCardController {
     @PreAuthorize("hasRole('USER')")
     @Operation(
             summary = "Просмотреть баланс своей карты (только юзер)",
-            description = "Возвращает баланс указанной карты, принадлежащей текущему аутентифицированному пользователю",
+            description = "Возвращает баланс указанной карты, принадлежащей текущему аутентифицированному пользователю. " +
+                    "С параметром asOf возвращает баланс на указанный момент (требует ведения журнала проводок)",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Баланс карты успешно получен",
                             content = @Content(
@@ -138,16 +141,47 @@ public class UserCardController {
                     @ApiResponse(responseCode = "401", description = "Пользователь не аутентифицирован")
             }
     )
-    public ResponseEntity<Map<String, Double>> getCardBalance(
+    public ResponseEntity<Map<String, Money>> getCardBalance(
             @Parameter(description = "ID карты для просмотра баланса", example = "1", required = true)
-            @PathVariable Long id) {
-        Long currentUserId = getCurrentUserId();
-        log.info("GET /api/user/cards/{}/balance - Запрос баланса карты пользователем ID: {}", id, currentUserId);
+            @PathVariable Long id,
+            @Parameter(description = "Момент, на который нужен баланс (ISO). Пустое значение - текущий баланс",
+                    example = "2025-01-01T00:00:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf) {
+        Long currentUserId = currentUserService.getCurrentUserId();
+        log.info("GET /api/user/cards/{}/balance - Запрос баланса карты пользователем ID: {}, asOf: {}", id, currentUserId, asOf);
+        if (asOf != null) {
+            return ResponseEntity.ok(Map.of("balance", cardService.getCardBalanceAsOf(id, asOf)));
+        }
         CardResponse card = cardService.getCardById(id);
-        Map<String, Double> response = Map.of("balance", card.getBalance());
+        Map<String, Money> response = Map.of("balance", card.getBalance());
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/cards/{id}/transactions")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(
+            summary = "История операций своей карты (только юзер)",
+            description = "Возвращает входящие и исходящие операции карты от новых к старым. Для следующей страницы " +
+                    "передайте nextCursor из предыдущего ответа в параметре cursor",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Страница истории получена",
+                            content = @Content(schema = @Schema(implementation = TransactionHistoryResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Некорректный курсор"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен или карта не принадлежит пользователю"),
+                    @ApiResponse(responseCode = "404", description = "Карта не найдена")
+            }
+    )
+    public ResponseEntity<TransactionHistoryResponse> getCardTransactions(
+            @Parameter(description = "ID карты", example = "1", required = true)
+            @PathVariable Long id,
+            @Parameter(description = "Курсор следующей страницы (nextCursor). Пустое значение - первая страница")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Сколько операций поместить на странице (не более 500)", example = "50")
+            @RequestParam(defaultValue = "50") int limit) {
+        log.info("GET /api/user/cards/{}/transactions - Запрос истории операций, limit: {}", id, limit);
+        return ResponseEntity.ok(transactionService.getCardHistory(id, cursor, limit));
+    }
+
     @PostMapping("/transactions/transfer")
     @PreAuthorize("hasRole('USER')")
     @Operation(
@@ -156,27 +190,97 @@ public class UserCardController {
             responses = {
                     @ApiResponse(responseCode = "201", description = "Перевод выполнен",
                             content = @Content(schema = @Schema(implementation = TransactionResponse.class))),
+                    @ApiResponse(responseCode = "202", description = "Перевод принят, но не подтверждён за время ожидания: " +
+                            "повторять его не нужно, итог виден в истории операций"),
                     @ApiResponse(responseCode = "400", description = "Неверные данные"),
                     @ApiResponse(responseCode = "403", description = "Доступ запрещен"),
-                    @ApiResponse(responseCode = "404", description = "Карта не найдена")
+                    @ApiResponse(responseCode = "404", description = "Карта не найдена"),
+                    @ApiResponse(responseCode = "409", description = "Idempotency-Key уже использован для другого запроса или запрос ещё обрабатывается")
             }
     )
     public ResponseEntity<TransactionResponse> transfer(
+            @Parameter(description = "Ключ идемпотентности: повтор запроса с тем же ключом вернёт исходный результат без повторного перевода")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @Valid @RequestBody TransactionRequest request) {
         log.info("POST /api/user/transactions/transfer - Запрос на перевод");
-        TransactionResponse response = transactionService.transfer(request);
+        TransactionResponse response = transactionService.transfer(request, idempotencyKey);
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
-    private Long getCurrentUserId() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !authentication.isAuthenticated()) {
-            log.error("Попытка доступа без аутентификации");
-            throw new AuthenticationException("Пользователь не аутентифицирован");
-        }
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        User user = userRepository.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new UserNotFoundException("Пользователь не найден"));
-        return user.getId();
+    @PostMapping("/transactions/transfer/batch")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(
+            summary = "Выполнить пакет переводов между своими картами (только юзер)",
+            description = "Выполняет все переводы пакета в одной транзакции. В режиме ATOMIC ошибка любого перевода " +
+                    "отменяет весь пакет, в режиме BEST_EFFORT по каждому переводу возвращается свой статус",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    required = true,
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = BatchTransferRequest.class),
+                            examples = @ExampleObject(
+                                    value = "{\"mode\": \"BEST_EFFORT\", \"transfers\": [" +
+                                            "{\"fromCardId\": 1, \"toCardId\": 2, \"amount\": 100.0}, " +
+                                            "{\"fromCardId\": 2, \"toCardId\": 3, \"amount\": 50.0}]}"
+                            )
+                    )
+            ),
+            responses = {
+                    @ApiResponse(responseCode = "201", description = "Пакет обработан",
+                            content = @Content(schema = @Schema(implementation = TransactionResponse[].class))),
+                    @ApiResponse(responseCode = "400", description = "Неверные данные"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен"),
+                    @ApiResponse(responseCode = "404", description = "Карта не найдена")
+            }
+    )
+    public ResponseEntity<List<TransactionResponse>> transferBatch(
+            @Valid @RequestBody BatchTransferRequest request) {
+        log.info("POST /api/user/transactions/transfer/batch - Запрос на пакетный перевод");
+        List<TransactionResponse> responses = transactionService.transferBatch(request);
+        return ResponseEntity.status(HttpStatus.CREATED).body(responses);
+    }
+
+    @PostMapping("/transactions/transfer/async")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(
+            summary = "Поставить перевод между своими картами в очередь (только юзер)",
+            description = "Проверяет карты и сохраняет перевод в статусе PENDING, не дожидаясь списания. " +
+                    "Итоговый статус можно получить через GET /api/user/transactions/{id}",
+            responses = {
+                    @ApiResponse(responseCode = "202", description = "Перевод принят в обработку",
+                            content = @Content(schema = @Schema(implementation = TransactionResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Неверные данные"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен"),
+                    @ApiResponse(responseCode = "404", description = "Карта не найдена")
+            }
+    )
+    public ResponseEntity<TransactionResponse> submitTransfer(@Valid @RequestBody TransactionRequest request) {
+        log.info("POST /api/user/transactions/transfer/async - Запрос на асинхронный перевод");
+        TransactionResponse response = transactionService.submitTransfer(request);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/user/transactions/" + response.getId()))
+                .body(response);
+    }
+
+    @GetMapping("/transactions/{id}")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(
+            summary = "Получить статус своей транзакции (только юзер)",
+            description = "Возвращает транзакцию по ID. Если указан waitMs и транзакция ещё в статусе PENDING, " +
+                    "ответ задерживается до завершения обработки или истечения времени ожидания",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Транзакция найдена",
+                            content = @Content(schema = @Schema(implementation = TransactionResponse.class))),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен"),
+                    @ApiResponse(responseCode = "404", description = "Транзакция не найдена")
+            }
+    )
+    public CompletableFuture<ResponseEntity<TransactionResponse>> getTransaction(
+            @Parameter(description = "ID транзакции", example = "1", required = true)
+            @PathVariable Long id,
+            @Parameter(description = "Сколько миллисекунд ждать завершения перевода (0 - не ждать)", example = "5000")
+            @RequestParam(defaultValue = "0") long waitMs) {
+        log.info("GET /api/user/transactions/{} - Запрос статуса транзакции, waitMs: {}", id, waitMs);
+        return transactionService.getTransaction(id, waitMs).thenApply(ResponseEntity::ok);
     }
 }
\ No newline at end of file
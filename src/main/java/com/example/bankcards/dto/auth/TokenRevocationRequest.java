@@ -0,0 +1,14 @@
+package com.example.bankcards.dto.auth;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenRevocationRequest {
+    @NotBlank(message = "Токен не может быть пустым")
+    private String token;
+}
@@ -0,0 +1,30 @@
+package com.example.bankcards.dto.card;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Schema(description = "Состояние задания массового выпуска карт")
+@Data
+public class CardIssuanceJobResponse {
+    @Schema(description = "ID задания", example = "1")
+    private Long id;
+    @Schema(description = "Статус задания", example = "RUNNING")
+    private Status status;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    @Schema(description = "Количество карт в задании", example = "50000")
+    private int total;
+    @Schema(description = "Количество уже выпущенных карт", example = "12000")
+    private int issued;
+    @Schema(description = "Выпущенные карты, которые не удалось передать в движок балансов", example = "0")
+    private int engineFailed;
+    private String error;
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
@@ -1,8 +1,9 @@
 package com.example.bankcards.dto.card;
 
+import com.example.bankcards.util.Money;
+import com.example.bankcards.util.MoneyMin;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import io.swagger.v3.oas.annotations.media.Schema;
-import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -23,8 +24,8 @@ public class CardRequest {
     private YearMonth expirationDate;
     @Schema(description = "Начальный баланс карты (должен быть >= 0)", example = "1000.50", defaultValue = "0.0")
     @NotNull(message = "Баланс не может быть пустым")
-    @Min(value = 0, message = "Баланс должен быть больше или равен 0")
-    private Double balance = 0.0;
+    @MoneyMin(value = 0, message = "Баланс должен быть больше или равен 0")
+    private Money balance = Money.ZERO;
     @Schema(description = "ID пользователя-владельца карты", example = "2", required = true)
     @NotNull(message = "ID пользователя не может быть пустым")
     private Long userId;
@@ -1,6 +1,7 @@
 package com.example.bankcards.dto.card;
 
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.util.Money;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.Data;
 
@@ -14,14 +15,14 @@ public class CardResponse {
     @JsonFormat(pattern = "yyyy-MM")
     private YearMonth expirationDate;
     private Card.Status status;
-    private Double balance;
+    private Money balance;
+    private int balanceBuckets;
     private Long userId;
 
-    public static String maskCardNumber(String encryptedCardNumber) {
-        if (encryptedCardNumber == null || encryptedCardNumber.length() < 4) {
+    public static String maskCardNumber(String lastFour) {
+        if (lastFour == null || lastFour.length() != 4) {
             return "**** **** **** ****";
         }
-        String lastFour = encryptedCardNumber.substring(encryptedCardNumber.length() - 4);
         return "**** **** **** " + lastFour;
     }
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.example.bankcards.dto.card;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Schema(description = "Состояние ротации ключа шифрования номеров карт")
+@Data
+public class KeyRotationResponse {
+    @Schema(description = "ID ротации", example = "1")
+    private Long id;
+    @Schema(description = "Статус ротации", example = "RUNNING")
+    private Status status;
+    @Schema(description = "Заголовок значений, зашифрованных целевым ключом", example = "v2:")
+    private String keyPrefix;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    @Schema(description = "Количество обработанных порций", example = "40")
+    private int chunks;
+    @Schema(description = "Количество перешифрованных номеров", example = "40000")
+    private long reencrypted;
+    @Schema(description = "Номера, оставшиеся после завершения: карты были заблокированы другими транзакциями",
+            example = "0")
+    private Long remaining;
+    private String error;
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
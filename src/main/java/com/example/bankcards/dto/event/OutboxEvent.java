@@ -0,0 +1,17 @@
+package com.example.bankcards.dto.event;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class OutboxEvent {
+    private Long id;
+    private String aggregateType;
+    private Long aggregateId;
+    private OutboxEventType eventType;
+    // JSON: CardResponse для событий карты, TransactionResponse для событий перевода
+    private String payload;
+    private LocalDateTime createdAt;
+    private int attempts;
+}
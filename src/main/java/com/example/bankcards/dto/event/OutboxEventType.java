@@ -0,0 +1,23 @@
+package com.example.bankcards.dto.event;
+
+import lombok.Getter;
+
+@Getter
+public enum OutboxEventType {
+    CARD_CREATED(OutboxEventType.CARD),
+    CARD_UPDATED(OutboxEventType.CARD),
+    CARD_BLOCKED(OutboxEventType.CARD),
+    CARD_ACTIVATED(OutboxEventType.CARD),
+    CARD_DELETED(OutboxEventType.CARD),
+    // Пишутся триггером на transactions (014-outbox.sql)
+    TRANSFER_COMPLETED(OutboxEventType.TRANSFER),
+    TRANSFER_FAILED(OutboxEventType.TRANSFER);
+
+    public static final String CARD = "CARD";
+    public static final String TRANSFER = "TRANSFER";
+    private final String aggregateType;
+
+    OutboxEventType(String aggregateType) {
+        this.aggregateType = aggregateType;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.bankcards.dto.reconciliation;
+
+import com.example.bankcards.util.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationDiscrepancy {
+    private Long cardId;
+    // Начальный баланс плюс входящие минус исходящие успешные переводы
+    private Money expectedBalance;
+    // cards.balance вместе с корзинами горячей карты
+    private Money actualBalance;
+}
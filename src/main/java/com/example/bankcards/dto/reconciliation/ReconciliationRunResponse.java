@@ -0,0 +1,25 @@
+package com.example.bankcards.dto.reconciliation;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class ReconciliationRunResponse {
+    private Long id;
+    private Status status;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private int ranges;
+    private long cardsChecked;
+    private long discrepancyCount;
+    private String error;
+    private List<ReconciliationDiscrepancy> discrepancies;
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
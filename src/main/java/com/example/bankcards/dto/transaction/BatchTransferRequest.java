@@ -0,0 +1,26 @@
+package com.example.bankcards.dto.transaction;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Schema(description = "Пакет переводов, выполняемых в одной транзакции БД")
+@Data
+public class BatchTransferRequest {
+    @Schema(description = "Переводы пакета в порядке выполнения", required = true)
+    @NotEmpty(message = "Пакет должен содержать хотя бы один перевод")
+    @Size(max = 1000, message = "Пакет не должен содержать более 1000 переводов")
+    private List<@Valid @NotNull TransactionRequest> transfers;
+    @Schema(description = "ATOMIC - все переводы или ни одного, BEST_EFFORT - результат по каждому переводу", defaultValue = "ATOMIC")
+    private Mode mode = Mode.ATOMIC;
+
+    public enum Mode {
+        ATOMIC,
+        BEST_EFFORT
+    }
+}
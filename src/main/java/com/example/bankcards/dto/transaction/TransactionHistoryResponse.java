@@ -0,0 +1,18 @@
+package com.example.bankcards.dto.transaction;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionHistoryResponse {
+    private List<TransactionResponse> items;
+    // Передаётся в параметре cursor для получения следующей страницы; отсутствует на последней странице
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+}
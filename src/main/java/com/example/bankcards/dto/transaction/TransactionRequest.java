@@ -1,6 +1,7 @@
 package com.example.bankcards.dto.transaction;
 
-import jakarta.validation.constraints.Min;
+import com.example.bankcards.util.Money;
+import com.example.bankcards.util.MoneyMin;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
 
@@ -11,6 +12,6 @@ public class TransactionRequest {
     @NotNull(message = "ID карты-получателя обязателен")
     private Long toCardId;
     @NotNull(message = "Сумма обязательна")
-    @Min(value = 1, message = "Сумма должна быть не менее 0.01")
-    private Double amount;
+    @MoneyMin(value = 1, message = "Сумма должна быть не менее 0.01")
+    private Money amount;
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.example.bankcards.dto.transaction;
 
+import com.example.bankcards.util.Money;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 import java.time.LocalDateTime;
@@ -9,7 +11,9 @@ public class TransactionResponse {
     private Long id;
     private Long fromCardId;
     private Long toCardId;
-    private Double amount;
+    private Money amount;
     private LocalDateTime timestamp;
     private String status;
-}
\ No newline at end of file
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String message;
+}
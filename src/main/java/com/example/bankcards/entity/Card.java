@@ -1,11 +1,15 @@
 package com.example.bankcards.entity;
 
+import com.example.bankcards.config.PooledSequenceGenerator;
 import com.example.bankcards.util.YearMonthAttributeConverter;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import java.time.YearMonth;
 import java.util.ArrayList;
@@ -21,11 +25,20 @@ import java.util.List;
 @ToString(exclude = {"user"})
 public class Card {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "cards_id_generator")
+    @GenericGenerator(name = "cards_id_generator", type = PooledSequenceGenerator.class,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "cards_id_seq"))
     private Long id;
+    // Номер карты не меняется после выпуска; перешифровывает его только ротация ключа напрямую в БД,
+    // поэтому сохранение карты не должно перезаписывать его прочитанным ранее значением
     @NotBlank
-    @Column(unique = true, nullable = false)
+    @Column(unique = true, nullable = false, updatable = false)
     private String encryptedCardNumber;
+    // HMAC номера для проверки уникальности без расшифровки
+    @Column(unique = true, updatable = false)
+    private String cardNumberHash;
+    @Column(name = "card_number_last4", updatable = false)
+    private String cardNumberLast4;
     @NotBlank
     @Size(max = 50)
     @Column(nullable = false)
@@ -38,9 +51,18 @@ public class Card {
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private Status status;
-    @NotNull
+    // Баланс в копейках
+    @Column(nullable = false)
+    private long balance;
+    // Число корзин баланса горячей карты, 0 — обычная карта
+    @Column(nullable = false)
+    private int balanceBuckets;
+    // Баланс при выпуске карты, точка отсчёта для сверки с суммой переводов
+    @Column(nullable = false)
+    private long openingBalance;
+    @Version
     @Column(nullable = false)
-    private Double balance = 0.0;
+    private Long version;
     @NotNull
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
@@ -1,10 +1,14 @@
 package com.example.bankcards.entity;
 
+import com.example.bankcards.config.PooledSequenceGenerator;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import java.time.LocalDateTime;
 
@@ -16,7 +20,9 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class Transaction {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "transactions_id_generator")
+    @GenericGenerator(name = "transactions_id_generator", type = PooledSequenceGenerator.class,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "transactions_id_seq"))
     private Long id;
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "from_card_id", nullable = false)
@@ -24,13 +30,16 @@ public class Transaction {
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "to_card_id", nullable = false)
     private Card toCard;
+    // Сумма в копейках
     @Column(nullable = false)
-    private Double amount;
+    private long amount;
     @Column(nullable = false)
     private LocalDateTime timestamp = LocalDateTime.now();
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private Status status;
+    @Column(length = 255)
+    private String failureReason;
 
     public enum Status {
         SUCCESS,
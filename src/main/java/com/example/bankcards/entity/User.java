@@ -1,9 +1,13 @@
 package com.example.bankcards.entity;
 
+import com.example.bankcards.config.PooledSequenceGenerator;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
@@ -21,7 +25,9 @@ import java.util.Set;
 @ToString(exclude = {"roles"})
 public class User implements UserDetails {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "users_id_generator")
+    @GenericGenerator(name = "users_id_generator", type = PooledSequenceGenerator.class,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "users_id_seq"))
     private Long id;
     @NotBlank
     @Size(max = 50)
@@ -30,7 +36,9 @@ public class User implements UserDetails {
     @NotBlank
     @Column(nullable = false)
     private String password;
-    @ManyToMany(fetch = FetchType.EAGER, cascade = {CascadeType.PERSIST, CascadeType.MERGE})
+    // Роли — справочник: пользователю назначаются уже существующие строки roles, в том числе
+    // отсоединённые экземпляры из RoleCache, поэтому каскад на роли не распространяется
+    @ManyToMany(fetch = FetchType.EAGER)
     @JoinTable(
             name = "users_roles",
             joinColumns = @JoinColumn(name = "user_id"),
@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class CardIssuanceJobNotFoundException extends RuntimeException {
+    public CardIssuanceJobNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.bankcards.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.AuthenticationException;
@@ -51,21 +54,46 @@ public class GlobalExceptionHandler {
         return createErrorResponse(HttpStatus.FORBIDDEN, "Access denied", ex.getMessage());
     }
 
-    @ExceptionHandler({UserNotFoundException.class, CardNotFoundException.class})
+    @ExceptionHandler({UserNotFoundException.class, CardNotFoundException.class, TransactionNotFoundException.class,
+            ReconciliationRunNotFoundException.class, CardIssuanceJobNotFoundException.class,
+            KeyRotationNotFoundException.class})
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public Map<String, Object> handleNotFoundException(RuntimeException ex) {
         log.warn("Resource not found: {}", ex.getMessage());
         return createErrorResponse(HttpStatus.NOT_FOUND, "Resource not found", ex.getMessage());
     }
 
-    @ExceptionHandler({CardNumberAlreadyExistsException.class, UsernameAlreadyExistsException.class})
+    @ExceptionHandler({CardNumberAlreadyExistsException.class, UsernameAlreadyExistsException.class,
+            TransferConflictException.class, IdempotencyKeyConflictException.class, ReconciliationConflictException.class,
+            KeyRotationConflictException.class})
     @ResponseStatus(HttpStatus.CONFLICT)
     public Map<String, Object> handleConflictException(RuntimeException ex) {
         log.error("Conflict error: {}", ex.getMessage());
         return createErrorResponse(HttpStatus.CONFLICT, "Conflict", ex.getMessage());
     }
 
-    @ExceptionHandler({InvalidCardOperationException.class, NegativeBalanceException.class, InvalidRoleException.class})
+    // Конфликт версий карты, который не поглотил повтор в стратегии: изменения откатились, запрос можно повторить
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public Map<String, Object> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex) {
+        log.warn("Optimistic locking conflict: {}", ex.getMessage());
+        return createErrorResponse(HttpStatus.CONFLICT, "Conflict", "Карта изменена другой операцией, повторите запрос");
+    }
+
+    // Перевод передан исполнителю, но не подтверждён: он ещё может выполниться, поэтому не 409 с приглашением повторить
+    @ExceptionHandler(TransferOutcomeUnknownException.class)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Map<String, Object> handleTransferOutcomeUnknownException(TransferOutcomeUnknownException ex) {
+        log.warn("Transfer outcome unknown: {}", ex.getMessage());
+        Map<String, Object> response = createErrorResponse(HttpStatus.ACCEPTED, "Accepted", ex.getMessage());
+        if (ex.getTransactionId() != null) {
+            response.put("transactionId", ex.getTransactionId());
+        }
+        return response;
+    }
+
+    @ExceptionHandler({InvalidCardOperationException.class, NegativeBalanceException.class, InvalidRoleException.class,
+            InvalidIdempotencyKeyException.class, InvalidCursorException.class, InvalidExportRequestException.class})
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, Object> handleBadRequestException(RuntimeException ex) {
         log.warn("Bad request: {}", ex.getMessage());
@@ -79,6 +107,21 @@ public class GlobalExceptionHandler {
         return createErrorResponse(HttpStatus.BAD_REQUEST, "Bad Request", ex.getMessage());
     }
 
+    @ExceptionHandler(LoginRateLimitedException.class)
+    public ResponseEntity<Map<String, Object>> handleLoginRateLimitedException(LoginRateLimitedException ex) {
+        log.warn("Too many requests: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(createErrorResponse(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", ex.getMessage()));
+    }
+
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public Map<String, Object> handleServiceUnavailableException(RuntimeException ex) {
+        log.warn("Service unavailable: {}", ex.getMessage());
+        return createErrorResponse(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", ex.getMessage());
+    }
+
     @ExceptionHandler(Exception.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public Map<String, Object> handleGenericException(Exception ex) {
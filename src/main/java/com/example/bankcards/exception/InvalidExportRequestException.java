@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class InvalidExportRequestException extends RuntimeException {
+    public InvalidExportRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class KeyRotationConflictException extends RuntimeException {
+    public KeyRotationConflictException(String message) {
+        super(message);
+    }
+}
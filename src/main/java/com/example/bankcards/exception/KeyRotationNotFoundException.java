@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class KeyRotationNotFoundException extends RuntimeException {
+    public KeyRotationNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class ReconciliationConflictException extends RuntimeException {
+    public ReconciliationConflictException(String message) {
+        super(message);
+    }
+}
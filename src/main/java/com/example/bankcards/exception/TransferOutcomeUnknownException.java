@@ -0,0 +1,21 @@
+package com.example.bankcards.exception;
+
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+
+// Перевод уже передан исполнителю, но не завершился за время ожидания: он ещё может быть выполнен,
+// поэтому повторять его нельзя. outcome завершается, когда исход станет известен
+@Getter
+public class TransferOutcomeUnknownException extends RuntimeException {
+    private final Long transactionId;
+    private final CompletableFuture<TransactionResponse> outcome;
+
+    public TransferOutcomeUnknownException(String message, Long transactionId,
+                                           CompletableFuture<TransactionResponse> outcome, Throwable cause) {
+        super(message, cause);
+        this.transactionId = transactionId;
+        this.outcome = outcome;
+    }
+}
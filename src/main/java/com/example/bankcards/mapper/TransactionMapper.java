@@ -0,0 +1,21 @@
+package com.example.bankcards.mapper;
+
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.util.Money;
+import org.springframework.stereotype.Component;
+
+@Component
+public class TransactionMapper {
+    public TransactionResponse mapToTransactionResponse(Transaction transaction) {
+        TransactionResponse response = new TransactionResponse();
+        response.setId(transaction.getId());
+        response.setFromCardId(transaction.getFromCard().getId());
+        response.setToCardId(transaction.getToCard().getId());
+        response.setAmount(Money.ofMinor(transaction.getAmount()));
+        response.setTimestamp(transaction.getTimestamp());
+        response.setStatus(transaction.getStatus().name());
+        response.setMessage(transaction.getFailureReason());
+        return response;
+    }
+}
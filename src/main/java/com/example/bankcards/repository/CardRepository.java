@@ -1,11 +1,20 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Card;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface CardRepository extends JpaRepository<Card, Long> {
     void deleteAllCardsByUserId(Long userId);
@@ -13,4 +22,25 @@ public interface CardRepository extends JpaRepository<Card, Long> {
     Page<Card> findByUserId(Long userId, Pageable pageable);
 
     boolean existsByEncryptedCardNumber(String encryptedCardNumber);
-}
\ No newline at end of file
+
+    @Query("select c.user.id from Card c where c.id = :id")
+    Optional<Long> findOwnerIdById(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id = :id")
+    Optional<Card> findByIdForUpdate(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id in :ids order by c.id")
+    List<Card> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "UPDATE cards SET balance = balance - :amount, version = version + 1 " +
+            "WHERE id = :id AND user_id = :userId AND balance >= :amount AND status = 'ACTIVE'", nativeQuery = true)
+    int debitIfSufficient(@Param("id") Long id, @Param("userId") Long userId, @Param("amount") long amount);
+
+    @Modifying
+    @Query(value = "UPDATE cards SET balance = balance + :amount, version = version + 1 " +
+            "WHERE id = :id AND status = 'ACTIVE'", nativeQuery = true)
+    int creditIfActive(@Param("id") Long id, @Param("amount") long amount);
+}
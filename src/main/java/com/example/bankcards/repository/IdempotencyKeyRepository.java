@@ -0,0 +1,60 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, IdempotencyKey.PrimaryKey> {
+    Optional<IdempotencyKey> findByUserIdAndIdempotencyKey(Long userId, String idempotencyKey);
+
+    // Незавершённый резерв с истёкшей арендой перехватывается: его владелец упал до сохранения ответа
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys " +
+            "(user_id, idempotency_key, request_hash, created_at, expires_at, reservation_id, locked_until) " +
+            "VALUES (:userId, :key, :requestHash, :createdAt, :expiresAt, :reservationId, :lockedUntil) " +
+            "ON CONFLICT (user_id, idempotency_key) DO UPDATE SET request_hash = EXCLUDED.request_hash, " +
+            "response = NULL, created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at, " +
+            "reservation_id = EXCLUDED.reservation_id, locked_until = EXCLUDED.locked_until " +
+            "WHERE idempotency_keys.expires_at < EXCLUDED.created_at " +
+            "OR (idempotency_keys.response IS NULL AND idempotency_keys.locked_until < EXCLUDED.created_at)",
+            nativeQuery = true)
+    int reserve(@Param("userId") Long userId, @Param("key") String key, @Param("requestHash") String requestHash,
+                @Param("createdAt") LocalDateTime createdAt, @Param("expiresAt") LocalDateTime expiresAt,
+                @Param("reservationId") UUID reservationId, @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE idempotency_keys SET response = :response WHERE user_id = :userId " +
+            "AND idempotency_key = :key AND reservation_id = :reservationId AND response IS NULL", nativeQuery = true)
+    int complete(@Param("userId") Long userId, @Param("key") String key,
+                 @Param("reservationId") UUID reservationId, @Param("response") String response);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE idempotency_keys SET locked_until = :lockedUntil WHERE user_id = :userId " +
+            "AND idempotency_key = :key AND reservation_id = :reservationId AND response IS NULL", nativeQuery = true)
+    int extendLease(@Param("userId") Long userId, @Param("key") String key,
+                    @Param("reservationId") UUID reservationId, @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_keys WHERE user_id = :userId AND idempotency_key = :key " +
+            "AND reservation_id = :reservationId AND response IS NULL", nativeQuery = true)
+    int release(@Param("userId") Long userId, @Param("key") String key, @Param("reservationId") UUID reservationId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_keys WHERE ctid IN " +
+            "(SELECT ctid FROM idempotency_keys WHERE expires_at < :now LIMIT :batchSize)", nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") LocalDateTime now, @Param("batchSize") int batchSize);
+}
@@ -0,0 +1,11 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.transaction.TransactionResponse;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface TransactionHistoryRepository {
+    // Операции карты в порядке (timestamp, id) по убыванию, строго после курсора; null — с начала истории
+    List<TransactionResponse> findCardHistory(Long cardId, LocalDateTime afterTimestamp, Long afterId, int limit);
+}
@@ -0,0 +1,50 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.util.Money;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// История читается сразу в DTO без загрузки Transaction и прокси карт. Входящие и исходящие операции
+// выбираются двумя отдельными ветками: каждая идёт по своему составному индексу (card_id, timestamp, id)
+// и останавливается после limit строк, поэтому глубина страницы не влияет на стоимость запроса, в отличие от OFFSET
+@RequiredArgsConstructor
+public class TransactionHistoryRepositoryImpl implements TransactionHistoryRepository {
+    private static final String COLUMNS = "id, from_card_id, to_card_id, amount, timestamp, status, failure_reason";
+    private static final String KEYSET = " AND (timestamp, id) < (:afterTimestamp, :afterId)";
+    private static final RowMapper<TransactionResponse> ROW_MAPPER = (rs, rowNum) -> {
+        TransactionResponse response = new TransactionResponse();
+        response.setId(rs.getLong("id"));
+        response.setFromCardId(rs.getLong("from_card_id"));
+        response.setToCardId(rs.getLong("to_card_id"));
+        response.setAmount(Money.ofMinor(rs.getLong("amount")));
+        response.setTimestamp(rs.getObject("timestamp", LocalDateTime.class));
+        response.setStatus(rs.getString("status"));
+        response.setMessage(rs.getString("failure_reason"));
+        return response;
+    };
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<TransactionResponse> findCardHistory(Long cardId, LocalDateTime afterTimestamp, Long afterId, int limit) {
+        String keyset = afterTimestamp == null ? "" : KEYSET;
+        String sql = "SELECT " + COLUMNS + " FROM (" +
+                "(SELECT " + COLUMNS + " FROM transactions WHERE from_card_id = :cardId" + keyset +
+                " ORDER BY timestamp DESC, id DESC LIMIT :limit)" +
+                " UNION ALL " +
+                "(SELECT " + COLUMNS + " FROM transactions WHERE to_card_id = :cardId AND from_card_id <> :cardId" + keyset +
+                " ORDER BY timestamp DESC, id DESC LIMIT :limit)" +
+                ") history ORDER BY timestamp DESC, id DESC LIMIT :limit";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("cardId", cardId)
+                .addValue("afterTimestamp", afterTimestamp)
+                .addValue("afterId", afterId)
+                .addValue("limit", limit);
+        return jdbcTemplate.query(sql, params, ROW_MAPPER);
+    }
+}
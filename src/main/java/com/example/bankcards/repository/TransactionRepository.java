@@ -2,8 +2,29 @@ package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Transaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
-public interface TransactionRepository extends JpaRepository<Transaction, Long> {
-}
\ No newline at end of file
+public interface TransactionRepository extends JpaRepository<Transaction, Long>, TransactionHistoryRepository {
+    @Query(value = "SELECT id FROM transactions WHERE status = 'PENDING' ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<Long> lockPendingIds(@Param("limit") int limit);
+
+    @Query(value = "SELECT id FROM transactions WHERE id = :id AND status = 'PENDING' FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<Long> lockPendingId(@Param("id") Long id);
+
+    @Modifying
+    @Query(value = "UPDATE transactions SET status = 'FAILED', failure_reason = :reason " +
+            "WHERE id = :id AND status = 'PENDING'", nativeQuery = true)
+    int markFailed(@Param("id") Long id, @Param("reason") String reason);
+
+    @Query("select t from Transaction t where t.id = :id and (t.fromCard.user.id = :userId or t.toCard.user.id = :userId)")
+    Optional<Transaction> findByIdForUser(@Param("id") Long id, @Param("userId") Long userId);
+}
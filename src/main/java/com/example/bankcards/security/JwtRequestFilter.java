@@ -1,7 +1,7 @@
 package com.example.bankcards.security;
 
+import com.example.bankcards.service.auth.TokenRevocationService;
 import com.example.bankcards.service.auth.UserDetailsService;
-import com.example.bankcards.util.JwtUtil;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -22,45 +22,45 @@ import java.io.IOException;
 @Slf4j
 public class JwtRequestFilter extends OncePerRequestFilter {
     private final UserDetailsService userDetailsService;
-    private final JwtUtil jwtUtil;
+    private final JwtVerifier jwtVerifier;
+    private final TokenRevocationService tokenRevocationService;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
                                     FilterChain chain) throws ServletException, IOException {
         final String authorizationHeader = request.getHeader("Authorization");
-        String path = request.getRequestURI();
-        log.debug("=== JWT ФИЛЬТР ===");
-        log.debug("Метод: {}, Путь: {}, Authorization: {}",
-                request.getMethod(), path,
-                authorizationHeader != null ? "присутствует" : "отсутствует");
-        if (path.startsWith("/swagger-ui") || path.startsWith("/v3/api-docs")) {
-            log.debug("ЗАПРОС К SWAGGER: {} - пропускаем JWT фильтр", path);
+        // Фильтр стоит на каждом запросе: аргументы строк DEBUG не вычисляются, пока уровень выключен
+        if (log.isDebugEnabled()) {
+            log.debug("JWT фильтр: {} {}, Authorization: {}", request.getMethod(), request.getRequestURI(),
+                    authorizationHeader != null ? "присутствует" : "отсутствует");
         }
-        String username = null;
-        String jwtToken = null;
-        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwtToken = authorizationHeader.substring(7);
-            username = jwtUtil.extractUsername(jwtToken);
-            log.debug("Извлечен username из токена: {}", username);
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            jwtVerifier.verify(authorizationHeader.substring(7))
+                    .ifPresent(token -> authenticate(request, token));
         }
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            try {
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                if (jwtUtil.validateToken(jwtToken, userDetails)) {
-                    UsernamePasswordAuthenticationToken authToken =
-                            new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-                    log.info("Аутентификация установлена для пользователя: {}", username);
-                } else {
-                    log.warn("Токен не валиден для пользователя: {}", username);
-                }
-            } catch (Exception e) {
-                log.error("Ошибка при валидации токена для пользователя {}: {}", username, e.getMessage(), e);
+        chain.doFilter(request, response);
+    }
+
+    private void authenticate(HttpServletRequest request, VerifiedToken token) {
+        String username = token.username();
+        try {
+            if (tokenRevocationService.isRevoked(token)) {
+                log.warn("Предъявлен отозванный токен пользователя {}", username);
+                return;
             }
+            // Токены без uid выпущены до появления claim и проверяются по БД, как раньше
+            UserDetails userDetails = token.userId() != null
+                    ? AuthenticatedUser.from(token)
+                    : userDetailsService.loadUserByUsername(username);
+            UsernamePasswordAuthenticationToken authToken =
+                    new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+            authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            SecurityContextHolder.getContext().setAuthentication(authToken);
+            log.debug("Аутентификация установлена для пользователя: {}", username);
+        } catch (Exception e) {
+            log.error("Ошибка при аутентификации пользователя {}: {}", username, e.getMessage(), e);
         }
-        log.debug("=== КОНЕЦ JWT ФИЛЬТРА - передаем управление дальше ===");
-        chain.doFilter(request, response);
     }
 
     @Override
@@ -79,11 +79,10 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         };
         for (String publicPath : publicPaths) {
             if (path.equals(publicPath) || (publicPath.endsWith("**") && path.startsWith(publicPath.replace("/**", "")))) {
-                log.debug("🚫 JWT ФИЛЬТР ПРОПУЩЕН: {} (матчит {})", path, publicPath);
+                log.trace("JWT фильтр пропущен: {} (матчит {})", path, publicPath);
                 return true;
             }
         }
-        log.debug("🔒 JWT ФИЛЬТР ПРИМЕНЁН: {}", path);
         return false;
     }
 }
\ No newline at end of file
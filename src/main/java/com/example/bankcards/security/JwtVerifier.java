@@ -0,0 +1,157 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.util.JwtUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Проверяет токен один раз за запрос. Уже проверенные токены кэшируются по SHA-256 от строки токена
+// до истечения их срока: повторный запрос с тем же токеном не разбирает JSON и не считает HMAC
+@Component
+@Slf4j
+public class JwtVerifier {
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    });
+    private final JwtUtil jwtUtil;
+    // null, если кэш отключён (jwt.cache-size: 0)
+    private final Cache<String, VerifiedToken> verifiedTokens;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Counter rejected;
+
+    public JwtVerifier(JwtUtil jwtUtil, MeterRegistry meterRegistry,
+                       @Value("${jwt.cache-size:10000}") int cacheSize) {
+        this.jwtUtil = jwtUtil;
+        // Запись живёт ровно до истечения срока токена, поэтому истёкший токен из кэша не возвращается
+        this.verifiedTokens = cacheSize > 0
+                ? Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new UntilTokenExpiry())
+                .build()
+                : null;
+        this.cacheHits = Counter.builder("bank.jwt.cache")
+                .description("Токены, найденные в кэше проверенных токенов")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.cacheMisses = Counter.builder("bank.jwt.cache")
+                .description("Токены, проверенные разбором и подписью")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("bank.jwt.rejected")
+                .description("Токены с неверной подписью, форматом или истёкшим сроком")
+                .register(meterRegistry);
+    }
+
+    public Optional<VerifiedToken> verify(String token) {
+        String cacheKey = verifiedTokens != null ? hash(token) : null;
+        if (cacheKey != null) {
+            VerifiedToken cached = verifiedTokens.getIfPresent(cacheKey);
+            if (cached != null) {
+                cacheHits.increment();
+                return Optional.of(cached);
+            }
+            cacheMisses.increment();
+        }
+        VerifiedToken verified;
+        try {
+            verified = toVerifiedToken(jwtUtil.parseClaims(token));
+        } catch (JwtException | IllegalArgumentException e) {
+            rejected.increment();
+            log.warn("Токен отклонён: {}", e.getMessage());
+            return Optional.empty();
+        }
+        if (cacheKey != null) {
+            verifiedTokens.put(cacheKey, verified);
+        }
+        return Optional.of(verified);
+    }
+
+    private static VerifiedToken toVerifiedToken(Claims claims) {
+        if (claims.getSubject() == null || claims.getExpiration() == null) {
+            throw new IllegalArgumentException("В токене нет subject или срока действия");
+        }
+        Number userId = claims.get(JwtUtil.USER_ID_CLAIM, Number.class);
+        Object roles = claims.get(JwtUtil.ROLES_CLAIM);
+        return new VerifiedToken(
+                claims.getId(),
+                userId != null ? userId.longValue() : null,
+                claims.getSubject(),
+                roles != null ? roleAuthorities(roles) : authorities(claims.get("authorities")),
+                claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null,
+                claims.getExpiration().toInstant());
+    }
+
+    private static List<String> roleAuthorities(Object claim) {
+        if (!(claim instanceof Collection<?> values)) {
+            return List.of();
+        }
+        List<String> authorities = new ArrayList<>(values.size());
+        for (Object value : values) {
+            authorities.add("ROLE_" + value);
+        }
+        return authorities;
+    }
+
+    // Старые токены несут роли в claim authorities: GrantedAuthority сериализован объектом {"authority": "ROLE_..."}
+    private static List<String> authorities(Object claim) {
+        if (!(claim instanceof Collection<?> values)) {
+            return List.of();
+        }
+        List<String> authorities = new ArrayList<>(values.size());
+        for (Object value : values) {
+            if (value instanceof Map<?, ?> map && map.get("authority") != null) {
+                authorities.add(map.get("authority").toString());
+            } else if (value instanceof String authority) {
+                authorities.add(authority);
+            }
+        }
+        return authorities;
+    }
+
+    // digest() сбрасывает состояние, и экземпляр потока готов к следующему токену
+    private static String hash(String token) {
+        return HexFormat.of().formatHex(DIGESTS.get().digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Срок записи задаёт токен: чтения из кэша его не продлевают
+    private static final class UntilTokenExpiry implements Expiry<String, VerifiedToken> {
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+            return Math.max(0, Duration.between(Instant.now(), token.expiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, token, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
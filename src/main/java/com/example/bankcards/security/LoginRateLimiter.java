@@ -0,0 +1,95 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.LoginRateLimitedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// Ограничивает попытки входа по имени пользователя и по IP клиента до проверки пароля и чтения из БД.
+// IP берётся из request.getRemoteAddr(): RemoteIpValve Tomcat уже подставил в него x-forwarded-for
+@Component
+@Slf4j
+public class LoginRateLimiter {
+    private final boolean enabled;
+    private final TokenBucketLimiter usernames;
+    private final TokenBucketLimiter clientIps;
+    private final Counter usernameRejections;
+    private final Counter ipRejections;
+
+    public LoginRateLimiter(MeterRegistry meterRegistry,
+                            @Value("${login-throttle.enabled:true}") boolean enabled,
+                            @Value("${login-throttle.username.capacity:5}") int usernameCapacity,
+                            @Value("${login-throttle.username.refill-seconds:300}") long usernameRefillSeconds,
+                            @Value("${login-throttle.ip.capacity:20}") int ipCapacity,
+                            @Value("${login-throttle.ip.refill-seconds:60}") long ipRefillSeconds,
+                            @Value("${login-throttle.stripes:64}") int stripes,
+                            @Value("${login-throttle.max-keys:100000}") int maxKeys) {
+        this.enabled = enabled;
+        this.usernames = new TokenBucketLimiter(usernameCapacity, Duration.ofSeconds(usernameRefillSeconds),
+                stripes, maxKeys, System::nanoTime);
+        this.clientIps = new TokenBucketLimiter(ipCapacity, Duration.ofSeconds(ipRefillSeconds),
+                stripes, maxKeys, System::nanoTime);
+        this.usernameRejections = Counter.builder("bank.auth.login.throttled")
+                .description("Попытки входа, отклонённые лимитом на имя пользователя")
+                .tag("scope", "username")
+                .register(meterRegistry);
+        this.ipRejections = Counter.builder("bank.auth.login.throttled")
+                .description("Попытки входа, отклонённые лимитом на IP клиента")
+                .tag("scope", "ip")
+                .register(meterRegistry);
+        Gauge.builder("bank.auth.login.throttle.keys", this, limiter -> limiter.usernames.size() + limiter.clientIps.size())
+                .description("Имена пользователей и IP с неполным запасом попыток входа")
+                .register(meterRegistry);
+    }
+
+    public void acquire(String username, String clientIp) {
+        if (!enabled) {
+            return;
+        }
+        long ipWait = clientIps.tryAcquire(clientIp);
+        if (ipWait > 0) {
+            ipRejections.increment();
+            log.warn("Превышен лимит попыток входа с IP {}", clientIp);
+            throw rejected(ipWait);
+        }
+        long usernameWait = usernames.tryAcquire(normalize(username));
+        if (usernameWait > 0) {
+            usernameRejections.increment();
+            log.warn("Превышен лимит попыток входа для пользователя {}", username);
+            throw rejected(usernameWait);
+        }
+    }
+
+    // Успешный вход возвращает пользователю полный запас попыток; лимит IP не сбрасывается
+    public void onSuccess(String username) {
+        if (enabled) {
+            usernames.reset(normalize(username));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${login-throttle.sweep-interval-ms:1000}")
+    public void sweep() {
+        int removed = usernames.sweep() + clientIps.sweep();
+        if (removed > 0) {
+            log.debug("Снято восполненных лимитов входа: {}", removed);
+        }
+    }
+
+    private static String normalize(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    private static LoginRateLimitedException rejected(long waitNanos) {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        return new LoginRateLimitedException("Слишком много попыток входа, повторите через " + retryAfterSeconds + " с",
+                retryAfterSeconds);
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// BCrypt считается в отдельном ограниченном пуле: всплеск логинов занимает не больше threads ядер,
+// а запросы сверх очереди или дольше max-wait отклоняются сразу, не держа потоки Tomcat минутами
+@Slf4j
+public class PooledPasswordEncoder implements PasswordEncoder {
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+    private final BCryptPasswordEncoder delegate;
+    private final int strength;
+    private final ThreadPoolExecutor executor;
+    private final long maxWaitMs;
+    private final Timer encodeLatency;
+    private final Timer matchesLatency;
+    private final Timer queueWait;
+    private final Counter rejected;
+
+    public PooledPasswordEncoder(int strength, int threads, int queueCapacity, long maxWaitMs,
+                                 MeterRegistry meterRegistry) {
+        this.delegate = new BCryptPasswordEncoder(strength);
+        this.strength = strength;
+        this.maxWaitMs = maxWaitMs;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "password-hash-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.encodeLatency = Timer.builder("bank.password.hash")
+                .description("Время вычисления BCrypt-хэша пароля")
+                .tag("operation", "encode")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.matchesLatency = Timer.builder("bank.password.hash")
+                .description("Время проверки пароля по BCrypt-хэшу")
+                .tag("operation", "matches")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.queueWait = Timer.builder("bank.password.queue.wait")
+                .description("Ожидание свободного потока пула хэширования паролей")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejected = Counter.builder("bank.password.rejected")
+                .description("Операции с паролем, отклонённые из-за перегрузки пула")
+                .register(meterRegistry);
+        Gauge.builder("bank.password.queue.size", executor, e -> e.getQueue().size())
+                .description("Операции с паролем в очереди пула")
+                .register(meterRegistry);
+        log.info("Хэширование паролей: BCrypt cost={}, потоков {}, очередь {}", strength, threads, queueCapacity);
+    }
+
+    // Подбирает наибольший cost, при котором один хэш считается не дольше targetMs на этой машине.
+    // Каждый шаг cost удваивает время, поэтому калибровка занимает не больше ~2 * targetMs
+    public static int calibrate(long targetMs, int minStrength, int maxStrength) {
+        new BCryptPasswordEncoder(minStrength).encode("calibration");
+        int chosen = minStrength;
+        for (int cost = minStrength; cost <= maxStrength; cost++) {
+            long started = System.nanoTime();
+            new BCryptPasswordEncoder(cost).encode("calibration");
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            log.debug("BCrypt cost={}: {} мс", cost, elapsedMs);
+            if (elapsedMs > targetMs) {
+                break;
+            }
+            chosen = cost;
+        }
+        log.info("Калибровка BCrypt: cost={} для целевого времени {} мс", chosen, targetMs);
+        return chosen;
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> encodeLatency.record(() -> delegate.encode(rawPassword)));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> matchesLatency.record(() -> delegate.matches(rawPassword, encodedPassword)));
+    }
+
+    // DaoAuthenticationProvider перехэширует пароль при входе, если cost хранимого хэша отличается от текущего
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != strength;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> T execute(Supplier<T> task) {
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                queueWait.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                return task.get();
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("Очередь хэширования паролей заполнена ({} операций)", executor.getQueue().size());
+            throw new PasswordHashingBusyException("Сервис проверки паролей перегружен, повторите попытку позже", e);
+        }
+        try {
+            return future.get(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            log.warn("Операция с паролем не выполнена за {} мс", maxWaitMs);
+            throw new PasswordHashingBusyException("Сервис проверки паролей перегружен, повторите попытку позже", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingBusyException("Проверка пароля прервана", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Ошибка хэширования пароля", e.getCause());
+        }
+    }
+}
@@ -4,8 +4,10 @@ import com.example.bankcards.service.auth.UserDetailsService;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -19,7 +21,7 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -38,6 +40,7 @@ import java.util.List;
 @Primary
 public class SecurityConfig {
     private final UserDetailsService userDetailsService;
+    private final UserDetailsPasswordService userDetailsPasswordService;
     private final JwtRequestFilter jwtRequestFilter;
 
     @Bean
@@ -92,10 +95,12 @@ public class SecurityConfig {
     }
 
     @Bean
-    public AuthenticationProvider authenticationProvider() {
+    public AuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
+        // Хэш с устаревшим cost перезаписывается при успешном входе
+        authProvider.setUserDetailsPasswordService(userDetailsPasswordService);
         log.info("AuthenticationProvider ✅ НАСТРОЕН с BCrypt");
         return authProvider;
     }
@@ -107,10 +112,20 @@ public class SecurityConfig {
         return manager;
     }
 
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(12);
-        log.info("BCryptPasswordEncoder ✅ ИНИЦИАЛИЗИРОВАН (strength=12)");
+    // strength > 0 задаёт cost явно, 0 — подобрать cost под target-ms при старте
+    @Bean(destroyMethod = "shutdown")
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+                                           @Value("${password.bcrypt.strength:0}") int strength,
+                                           @Value("${password.bcrypt.target-ms:250}") long targetMs,
+                                           @Value("${password.bcrypt.min-strength:10}") int minStrength,
+                                           @Value("${password.bcrypt.max-strength:14}") int maxStrength,
+                                           @Value("${password.hashing.threads:0}") int threads,
+                                           @Value("${password.hashing.queue-capacity:64}") int queueCapacity,
+                                           @Value("${password.hashing.max-wait-ms:2000}") long maxWaitMs) {
+        int cost = strength > 0 ? strength : PooledPasswordEncoder.calibrate(targetMs, minStrength, maxStrength);
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        PooledPasswordEncoder encoder = new PooledPasswordEncoder(cost, poolSize, queueCapacity, maxWaitMs, meterRegistry);
+        log.info("PooledPasswordEncoder ✅ ИНИЦИАЛИЗИРОВАН (strength={})", cost);
         return encoder;
     }
 }
\ No newline at end of file
@@ -0,0 +1,172 @@
+package com.example.bankcards.security;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+// Token bucket на ключ. Ключи разложены по полосам с собственной блокировкой, поэтому попытки
+// с разными ключами почти не конкурируют. Полностью восполненное ведро неотличимо от отсутствующего,
+// и колесо таймеров удаляет его к моменту восполнения: память занимают только недавно активные ключи
+public class TokenBucketLimiter {
+    // Полное восполнение укладывается в половину колеса, поэтому ключ снимается за один оборот
+    private static final int WHEEL_SLOTS = 64;
+    private final Stripe[] stripes;
+    private final double capacity;
+    private final double tokensPerNano;
+    private final long tickNanos;
+    private final int maxKeysPerStripe;
+    private final LongSupplier clock;
+    private final long origin;
+
+    public TokenBucketLimiter(int capacity, Duration refillPeriod, int stripes, int maxKeys, LongSupplier clock) {
+        int stripeCount = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.capacity = capacity;
+        this.tokensPerNano = (double) capacity / refillPeriod.toNanos();
+        this.tickNanos = Math.max(1, refillPeriod.toNanos() / (WHEEL_SLOTS / 2));
+        this.maxKeysPerStripe = Math.max(1, maxKeys / stripeCount);
+        this.clock = clock;
+        this.origin = clock.getAsLong();
+    }
+
+    // 0 — токен выдан, иначе сколько наносекунд ждать следующего токена
+    public long tryAcquire(String key) {
+        long now = clock.getAsLong() - origin;
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                if (stripe.buckets.size() >= maxKeysPerStripe) {
+                    evict(stripe, now);
+                }
+                bucket = new Bucket(capacity, now);
+                stripe.buckets.put(key, bucket);
+            } else {
+                bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.updatedAt) * tokensPerNano);
+                bucket.updatedAt = now;
+            }
+            long waitNanos = 0;
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+            } else {
+                waitNanos = (long) Math.ceil((1 - bucket.tokens) / tokensPerNano);
+            }
+            schedule(stripe, key, bucket, now);
+            return waitNanos;
+        }
+    }
+
+    public void reset(String key) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Bucket bucket = stripe.buckets.remove(key);
+            if (bucket != null) {
+                stripe.slot(bucket.expiryTick).remove(key);
+            }
+        }
+    }
+
+    // Снимает ведра, восполнившиеся к текущему тику; возвращает число удалённых ключей
+    public int sweep() {
+        long nowTick = Math.floorDiv(clock.getAsLong() - origin, tickNanos);
+        int removed = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                removed += sweep(stripe, nowTick);
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.buckets.size();
+            }
+        }
+        return size;
+    }
+
+    private int sweep(Stripe stripe, long nowTick) {
+        int removed = 0;
+        for (long tick = Math.max(stripe.sweptTick + 1, nowTick - WHEEL_SLOTS + 1); tick <= nowTick; tick++) {
+            Iterator<String> keys = stripe.slot(tick).iterator();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                Bucket bucket = stripe.buckets.get(key);
+                if (bucket == null || bucket.expiryTick <= nowTick) {
+                    stripe.buckets.remove(key);
+                    keys.remove();
+                    removed++;
+                }
+            }
+        }
+        stripe.sweptTick = Math.max(stripe.sweptTick, nowTick);
+        return removed;
+    }
+
+    // Полоса заполнена: сначала снимаются восполнившиеся ведра, затем — ведро ключа, к которому дольше всех
+    // не обращались. Новый ключ всегда учитывается, а перебор по одному ключу держит его ведро свежим и не вытесняется
+    private void evict(Stripe stripe, long now) {
+        if (sweep(stripe, Math.floorDiv(now, tickNanos)) > 0) {
+            return;
+        }
+        Iterator<Map.Entry<String, Bucket>> eldest = stripe.buckets.entrySet().iterator();
+        Map.Entry<String, Bucket> entry = eldest.next();
+        stripe.slot(entry.getValue().expiryTick).remove(entry.getKey());
+        eldest.remove();
+    }
+
+    private void schedule(Stripe stripe, String key, Bucket bucket, long now) {
+        long fullAt = now + (long) Math.ceil((capacity - bucket.tokens) / tokensPerNano);
+        long expiryTick = Math.floorDiv(fullAt, tickNanos) + 1;
+        if (expiryTick != bucket.expiryTick) {
+            stripe.slot(bucket.expiryTick).remove(key);
+            stripe.slot(expiryTick).add(key);
+            bucket.expiryTick = expiryTick;
+        }
+    }
+
+    private Stripe stripeFor(String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    private static final class Stripe {
+        // Порядок обращений: первым идёт ключ, к которому дольше всех не обращались
+        private final Map<String, Bucket> buckets = new LinkedHashMap<>(16, 0.75f, true);
+        private final List<Set<String>> wheel = new ArrayList<>(WHEEL_SLOTS);
+        private long sweptTick;
+
+        private Stripe() {
+            for (int i = 0; i < WHEEL_SLOTS; i++) {
+                wheel.add(new HashSet<>());
+            }
+        }
+
+        private Set<String> slot(long tick) {
+            return wheel.get((int) Math.floorMod(tick, (long) WHEEL_SLOTS));
+        }
+    }
+
+    private static final class Bucket {
+        private double tokens;
+        private long updatedAt;
+        private long expiryTick = Long.MIN_VALUE;
+
+        private Bucket(double tokens, long updatedAt) {
+            this.tokens = tokens;
+            this.updatedAt = updatedAt;
+        }
+    }
+}
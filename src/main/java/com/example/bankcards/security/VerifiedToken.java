@@ -0,0 +1,17 @@
+package com.example.bankcards.security;
+
+import java.time.Instant;
+import java.util.List;
+
+// Результат однократной проверки подписи токена; дальше по запросу передаётся только он.
+// tokenId и userId пусты у токенов, выпущенных до появления claims jti и uid
+public record VerifiedToken(String tokenId, Long userId, String username, List<String> authorities,
+                            Instant issuedAt, Instant expiresAt) {
+    public VerifiedToken {
+        authorities = List.copyOf(authorities);
+    }
+
+    public boolean isExpired(Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.card.CardIssuanceJobResponse;
+import com.example.bankcards.dto.card.CardRequest;
+
+import java.io.InputStream;
+import java.util.List;
+
+public interface CardIssuanceService {
+    CardIssuanceJobResponse issue(List<CardRequest> requests);
+
+    // CSV в UTF-8: userId,ownerName,expirationDate(YYYY-MM),balance; строка заголовка необязательна.
+    // Читается построчно, но задание получает весь список, поэтому его размер ограничен max-cards
+    CardIssuanceJobResponse issueCsv(InputStream csv);
+
+    CardIssuanceJobResponse getJob(Long id);
+}
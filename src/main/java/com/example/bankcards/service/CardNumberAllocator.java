@@ -0,0 +1,13 @@
+package com.example.bankcards.service;
+
+import java.util.List;
+
+public interface CardNumberAllocator {
+    // Номер с BIN по умолчанию, прошедший проверку Луна и не занятый выпущенными картами
+    String next();
+
+    String next(String bin);
+
+    // Номера для массового выпуска генерируются и проверяются одной порцией, не опустошая пул
+    List<String> nextBatch(int count);
+}
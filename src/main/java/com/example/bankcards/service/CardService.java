@@ -3,9 +3,11 @@ package com.example.bankcards.service;
 import com.example.bankcards.dto.card.CardRequest;
 import com.example.bankcards.dto.card.CardResponse;
 import com.example.bankcards.dto.card.CardUpdateRequest;
+import com.example.bankcards.util.Money;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface CardService {
@@ -13,6 +15,8 @@ public interface CardService {
 
     CardResponse getCardById(Long id);
 
+    Money getCardBalanceAsOf(Long id, LocalDateTime asOf);
+
     Page<CardResponse> getUserCards(Long userId, Pageable pageable);
 
     List<CardResponse> getAllCards();
@@ -23,5 +27,9 @@ public interface CardService {
 
     CardResponse activateCard(Long id);
 
+    CardResponse splitCardBalance(Long id, int buckets);
+
+    CardResponse mergeCardBalance(Long id);
+
     void deleteCard(Long id);
 }
\ No newline at end of file
@@ -1,5 +1,20 @@
 package com.example.bankcards.service;
 
+import java.util.List;
+
 public interface EncryptionService {
     String encrypt(String data);
-}
\ No newline at end of file
+
+    String decrypt(String encrypted);
+
+    // Пакетные варианты для массовых операций: шифр и генератор берутся один раз на весь список
+    List<String> encryptAll(List<String> data);
+
+    List<String> decryptAll(List<String> encrypted);
+
+    // Детерминированный ключевой хэш: шифротекст каждый раз разный, поэтому поиск и уникальность — по хэшу
+    String hash(String data);
+
+    // Начало значений, зашифрованных текущим ключом; остальные подлежат перешифрованию
+    String currentKeyPrefix();
+}
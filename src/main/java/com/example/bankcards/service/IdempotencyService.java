@@ -0,0 +1,20 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public interface IdempotencyService {
+    TransactionResponse execute(Long userId, String idempotencyKey, TransactionRequest request,
+                                Supplier<TransactionResponse> action);
+
+    // Для перевода, который коммитится в чужой транзакции: действие получает колбэк сохранения ответа
+    // и вызывает его в транзакции перевода, а внешняя транзакция не открывается
+    TransactionResponse executeCommitted(Long userId, String idempotencyKey, TransactionRequest request,
+                                         Function<Consumer<TransactionResponse>, TransactionResponse> action);
+
+    int purgeExpired();
+}
@@ -0,0 +1,9 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.card.KeyRotationResponse;
+
+public interface KeyRotationService {
+    KeyRotationResponse startRotation();
+
+    KeyRotationResponse getRotation(Long id);
+}
@@ -0,0 +1,23 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.service.transfer.TransferLeg;
+import com.example.bankcards.service.transfer.TransferOutcome;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface LedgerService {
+    List<TransferOutcome> transfer(List<TransferLeg> legs, boolean atomic);
+
+    long getBalance(Long cardId);
+
+    // Балансы нескольких карт одним запросом; карта без проводок получает нулевой баланс
+    Map<Long, Long> getBalances(Collection<Long> cardIds);
+
+    long getBalanceAsOf(Long cardId, LocalDateTime asOf);
+
+    // Проводка без транзакции: начальный баланс карты или корректировка
+    void recordAdjustment(Long cardId, long amount);
+}
@@ -0,0 +1,12 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.event.OutboxEventType;
+
+import java.util.Map;
+
+public interface OutboxService {
+    void append(OutboxEventType eventType, Long aggregateId, Object payload);
+
+    // Одно событие на каждый агрегат, события пишутся одним JDBC-пакетом
+    void appendAll(OutboxEventType eventType, Map<Long, ?> payloads);
+}
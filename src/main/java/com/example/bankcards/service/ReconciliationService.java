@@ -0,0 +1,9 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.reconciliation.ReconciliationRunResponse;
+
+public interface ReconciliationService {
+    ReconciliationRunResponse startRun();
+
+    ReconciliationRunResponse getRun(Long id, int limit);
+}
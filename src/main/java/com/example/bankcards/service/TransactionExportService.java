@@ -0,0 +1,12 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.transaction.TransactionExportFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+
+public interface TransactionExportService {
+    // Пишет транзакции с timestamp в [from, to) в поток по мере чтения; null снимает соответствующую границу
+    long export(LocalDateTime from, LocalDateTime to, TransactionExportFormat format, OutputStream out) throws IOException;
+}
@@ -1,8 +1,25 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.transaction.BatchTransferRequest;
+import com.example.bankcards.dto.transaction.TransactionHistoryResponse;
 import com.example.bankcards.dto.transaction.TransactionRequest;
 import com.example.bankcards.dto.transaction.TransactionResponse;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public interface TransactionService {
     TransactionResponse transfer(TransactionRequest request);
-}
\ No newline at end of file
+
+    TransactionResponse transfer(TransactionRequest request, String idempotencyKey);
+
+    List<TransactionResponse> transferBatch(BatchTransferRequest request);
+
+    TransactionResponse submitTransfer(TransactionRequest request);
+
+    CompletableFuture<TransactionResponse> getTransaction(Long id, long waitMs);
+
+    TransactionHistoryResponse getCardHistory(Long cardId, String cursor, int limit);
+
+    TransactionHistoryResponse getCardHistoryForAdmin(Long cardId, String cursor, int limit);
+}
@@ -0,0 +1,7 @@
+package com.example.bankcards.service.auth;
+
+public interface CurrentUserService {
+    Long getCurrentUserId();
+
+    boolean isAdmin();
+}
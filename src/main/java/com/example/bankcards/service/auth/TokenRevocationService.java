@@ -0,0 +1,11 @@
+package com.example.bankcards.service.auth;
+
+import com.example.bankcards.security.VerifiedToken;
+
+public interface TokenRevocationService {
+    void revoke(VerifiedToken token);
+
+    boolean isRevoked(VerifiedToken token);
+
+    int purgeExpired();
+}
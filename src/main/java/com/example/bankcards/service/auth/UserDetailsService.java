@@ -6,4 +6,6 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 public interface UserDetailsService extends org.springframework.security.core.userdetails.UserDetailsService {
     @Override
     UserDetails loadUserByUsername(String username) throws UsernameNotFoundException;
+
+    void evictUser(Long userId);
 }
\ No newline at end of file
@@ -0,0 +1,387 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.card.CardIssuanceJobResponse;
+import com.example.bankcards.dto.card.CardRequest;
+import com.example.bankcards.dto.card.CardResponse;
+import com.example.bankcards.dto.event.OutboxEventType;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.CardIssuanceJobNotFoundException;
+import com.example.bankcards.exception.InvalidCardOperationException;
+import com.example.bankcards.exception.UserNotFoundException;
+import com.example.bankcards.service.CardIssuanceService;
+import com.example.bankcards.service.CardNumberAllocator;
+import com.example.bankcards.service.EncryptionService;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.service.OutboxService;
+import com.example.bankcards.service.impl.engine.BalanceEngine;
+import com.example.bankcards.util.CardUtils;
+import com.example.bankcards.util.Money;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Массовый выпуск карт. Запрос целиком проверяется до создания задания: поля карт — теми же ограничениями,
+// что и одиночный выпуск, владельцы — одним запросом к users. Карты вставляются порциями по chunk-size,
+// каждая порция — отдельная транзакция с JDBC-пакетами карт и событий outbox, ID берутся блоками из
+// cards_id_seq. Номера порции генерируются и сверяются с уже выпущенными одним запросом.
+// Задания, оставшиеся в RUNNING после падения экземпляра, помечаются прерванными при запуске следующего
+@Service
+@Slf4j
+public class CardIssuanceServiceImpl implements CardIssuanceService {
+    private static final int MAX_CHUNK_ATTEMPTS = 3;
+    private static final int MAX_ERROR_LENGTH = 255;
+    private static final String FAIL_STALE_SQL =
+            "UPDATE card_issuance_jobs SET status = 'FAILED', finished_at = LOCALTIMESTAMP, error = 'Выпуск прерван' " +
+                    "WHERE status = 'RUNNING' AND started_at < LOCALTIMESTAMP - ? * INTERVAL '1 millisecond'";
+    private static final String SELECT_USERS_SQL = "SELECT id FROM users WHERE id = ANY (?)";
+    private static final String INSERT_JOB_SQL =
+            "INSERT INTO card_issuance_jobs (status, total) VALUES ('RUNNING', ?) RETURNING id";
+    private static final String PROGRESS_SQL = "UPDATE card_issuance_jobs SET issued = issued + ? WHERE id = ?";
+    // Карты уже закоммичены, поэтому сбой передачи в движок не откатывает задание, а копится в нём
+    private static final String ENGINE_FAILED_SQL =
+            "UPDATE card_issuance_jobs SET engine_failed = engine_failed + ?, error = COALESCE(error, ?) WHERE id = ?";
+    // Ошибка передачи в движок, записанная по ходу выпуска, сохраняется и у завершённого задания
+    private static final String FINISH_JOB_SQL =
+            "UPDATE card_issuance_jobs SET status = ?, finished_at = LOCALTIMESTAMP, error = COALESCE(?, error) " +
+                    "WHERE id = ?";
+    private static final String SELECT_JOB_SQL =
+            "SELECT id, status, started_at, finished_at, total, issued, engine_failed, error " +
+                    "FROM card_issuance_jobs WHERE id = ?";
+    private static final String INSERT_CARD_SQL =
+            "INSERT INTO cards (id, encrypted_card_number, card_number_hash, card_number_last4, owner_name, " +
+                    "expiration_date, status, balance, balance_buckets, opening_balance, version, user_id) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0, ?, 0, ?)";
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EncryptionService encryptionService;
+    private final CardNumberAllocator cardNumberAllocator;
+    private final OutboxService outboxService;
+    private final Validator validator;
+    private final ObjectProvider<BalanceEngine> balanceEngine;
+    private final ObjectProvider<LedgerService> ledgerService;
+    private final PooledIdAllocator idAllocator;
+    private final ExecutorService executor;
+    private final int maxCards;
+    private final int chunkSize;
+    private final int syncThreshold;
+    private final long staleAfterMs;
+    private final Counter issuedCards;
+    private final Timer chunkDuration;
+
+    public CardIssuanceServiceImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                   EncryptionService encryptionService, CardNumberAllocator cardNumberAllocator,
+                                   OutboxService outboxService, Validator validator,
+                                   ObjectProvider<BalanceEngine> balanceEngine, ObjectProvider<LedgerService> ledgerService,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${persistence.id-allocation-size:50}") int idAllocationSize,
+                                   @Value("${card-issuance.max-cards:100000}") int maxCards,
+                                   @Value("${card-issuance.chunk-size:1000}") int chunkSize,
+                                   @Value("${card-issuance.sync-threshold:1000}") int syncThreshold,
+                                   @Value("${card-issuance.stale-after-ms:21600000}") long staleAfterMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.encryptionService = encryptionService;
+        this.cardNumberAllocator = cardNumberAllocator;
+        this.outboxService = outboxService;
+        this.validator = validator;
+        this.balanceEngine = balanceEngine;
+        this.ledgerService = ledgerService;
+        this.idAllocator = new PooledIdAllocator(jdbcTemplate, "cards_id_seq", idAllocationSize);
+        this.maxCards = Math.max(1, maxCards);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.syncThreshold = syncThreshold;
+        this.staleAfterMs = staleAfterMs;
+        // Задания выполняются по одному, чтобы массовый выпуск не занимал больше одного соединения пула
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "card-issuance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.issuedCards = Counter.builder("bank.cards.issued.bulk")
+                .description("Карты, выпущенные массовыми заданиями")
+                .register(meterRegistry);
+        this.chunkDuration = Timer.builder("bank.cards.issuance.chunk.duration")
+                .description("Длительность выпуска одной порции карт")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public CardIssuanceJobResponse issue(List<CardRequest> requests) {
+        validate(requests);
+        int failed = jdbcTemplate.update(FAIL_STALE_SQL, staleAfterMs);
+        if (failed > 0) {
+            log.warn("Зависших заданий массового выпуска помечено как прерванные: {}", failed);
+        }
+        Long jobId = jdbcTemplate.queryForObject(INSERT_JOB_SQL, Long.class, requests.size());
+        List<CardRequest> cards = List.copyOf(requests);
+        log.info("Задание массового выпуска ID {}: {} карт", jobId, cards.size());
+        // Небольшое задание выполняется сразу, и ответ уже содержит итог
+        if (cards.size() <= syncThreshold) {
+            run(jobId, cards);
+        } else {
+            executor.execute(() -> run(jobId, cards));
+        }
+        return getJob(jobId);
+    }
+
+    // Строки разбираются по мере чтения, и ошибка формата обрывает чтение на своей строке. Весь список
+    // при этом остаётся в памяти (не больше max-cards): проверка владельцев идёт до создания задания,
+    // а крупное задание выполняется в фоне уже после того, как тело запроса закрыто
+    @Override
+    public CardIssuanceJobResponse issueCsv(InputStream csv) {
+        List<CardRequest> requests = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && !Character.isDigit(line.strip().charAt(0)))) {
+                    continue;
+                }
+                if (requests.size() == maxCards) {
+                    throw new InvalidCardOperationException("В одном задании не больше " + maxCards + " карт");
+                }
+                requests.add(parseCsvLine(line, lineNumber));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return issue(requests);
+    }
+
+    @Override
+    public CardIssuanceJobResponse getJob(Long id) {
+        List<CardIssuanceJobResponse> jobs = jdbcTemplate.query(SELECT_JOB_SQL, (rs, rowNum) -> {
+            CardIssuanceJobResponse response = new CardIssuanceJobResponse();
+            response.setId(rs.getLong("id"));
+            response.setStatus(CardIssuanceJobResponse.Status.valueOf(rs.getString("status")));
+            response.setStartedAt(rs.getObject("started_at", LocalDateTime.class));
+            response.setFinishedAt(rs.getObject("finished_at", LocalDateTime.class));
+            response.setTotal(rs.getInt("total"));
+            response.setIssued(rs.getInt("issued"));
+            response.setEngineFailed(rs.getInt("engine_failed"));
+            response.setError(rs.getString("error"));
+            return response;
+        }, id);
+        if (jobs.isEmpty()) {
+            throw new CardIssuanceJobNotFoundException("Задание выпуска карт с ID " + id + " не найдено");
+        }
+        return jobs.get(0);
+    }
+
+    private CardRequest parseCsvLine(String line, int lineNumber) {
+        String[] fields = line.split(",", -1);
+        if (fields.length < 3 || fields.length > 4) {
+            throw new InvalidCardOperationException("Строка " + lineNumber
+                    + ": ожидается userId,ownerName,expirationDate,balance");
+        }
+        CardRequest request = new CardRequest();
+        try {
+            request.setUserId(Long.parseLong(fields[0].strip()));
+            request.setOwnerName(fields[1].strip());
+            request.setExpirationDate(YearMonth.parse(fields[2].strip()));
+            if (fields.length == 4 && !fields[3].isBlank()) {
+                request.setBalance(Money.parse(fields[3]));
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new InvalidCardOperationException("Строка " + lineNumber + ": " + e.getMessage());
+        }
+        return request;
+    }
+
+    private void validate(List<CardRequest> requests) {
+        if (requests.isEmpty()) {
+            throw new InvalidCardOperationException("Список карт пуст");
+        }
+        if (requests.size() > maxCards) {
+            throw new InvalidCardOperationException("В одном задании не больше " + maxCards + " карт");
+        }
+        Set<Long> userIds = new HashSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            Set<ConstraintViolation<CardRequest>> violations = validator.validate(requests.get(i));
+            if (!violations.isEmpty()) {
+                throw new InvalidCardOperationException("Карта №" + (i + 1) + ": "
+                        + violations.iterator().next().getMessage());
+            }
+            userIds.add(requests.get(i).getUserId());
+        }
+        List<Long> found = jdbcTemplate.query(SELECT_USERS_SQL,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", userIds.toArray())),
+                (rs, rowNum) -> rs.getLong(1));
+        found.forEach(userIds::remove);
+        if (!userIds.isEmpty()) {
+            throw new UserNotFoundException("Пользователи не найдены: " + userIds.stream().sorted().limit(10).toList());
+        }
+    }
+
+    private void run(Long jobId, List<CardRequest> requests) {
+        long startedAt = System.nanoTime();
+        try {
+            for (int from = 0; from < requests.size(); from += chunkSize) {
+                List<CardRequest> chunk = requests.subList(from, Math.min(from + chunkSize, requests.size()));
+                chunkDuration.record(() -> issueChunk(jobId, chunk));
+            }
+            jdbcTemplate.update(FINISH_JOB_SQL, CardIssuanceJobResponse.Status.COMPLETED.name(), null, jobId);
+            log.info("Задание массового выпуска ID {} завершено: {} карт за {} мс", jobId, requests.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        } catch (RuntimeException e) {
+            log.error("Задание массового выпуска ID {} прервано: {}", jobId, e.getMessage());
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            jdbcTemplate.update(FINISH_JOB_SQL, CardIssuanceJobResponse.Status.FAILED.name(),
+                    error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error, jobId);
+        }
+    }
+
+    // Между проверкой номеров и вставкой номер может занять одиночный выпуск: порция откатывается
+    // и повторяется с новыми номерами
+    private void issueChunk(Long jobId, List<CardRequest> chunk) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> insertChunk(jobId, chunk));
+                issuedCards.increment(chunk.size());
+                return;
+            } catch (DuplicateKeyException e) {
+                if (attempt == MAX_CHUNK_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("Конфликт номеров при выпуске порции задания ID {}, попытка {}", jobId, attempt);
+            }
+        }
+    }
+
+    private void insertChunk(Long jobId, List<CardRequest> chunk) {
+        List<String> numbers = cardNumberAllocator.nextBatch(chunk.size());
+        List<String> encryptedNumbers = encryptionService.encryptAll(numbers);
+        long[] ids = idAllocator.allocate(chunk.size());
+        List<Card> cards = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            CardRequest request = chunk.get(i);
+            User user = new User();
+            user.setId(request.getUserId());
+            Card card = new Card();
+            card.setId(ids[i]);
+            String number = numbers.get(i);
+            card.setEncryptedCardNumber(encryptedNumbers.get(i));
+            card.setCardNumberHash(encryptionService.hash(number));
+            card.setCardNumberLast4(number.substring(number.length() - 4));
+            card.setOwnerName(request.getOwnerName());
+            card.setExpirationDate(request.getExpirationDate());
+            card.setStatus(CardUtils.determineCardStatus(request.getExpirationDate()));
+            card.setBalance(request.getBalance() != null ? request.getBalance().getMinorUnits() : 0);
+            card.setOpeningBalance(card.getBalance());
+            card.setUser(user);
+            cards.add(card);
+        }
+        jdbcTemplate.batchUpdate(INSERT_CARD_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Card card = cards.get(i);
+                ps.setLong(1, card.getId());
+                ps.setString(2, card.getEncryptedCardNumber());
+                ps.setString(3, card.getCardNumberHash());
+                ps.setString(4, card.getCardNumberLast4());
+                ps.setString(5, card.getOwnerName());
+                ps.setDate(6, Date.valueOf(card.getExpirationDate().atDay(1)));
+                ps.setString(7, card.getStatus().name());
+                ps.setLong(8, card.getBalance());
+                ps.setLong(9, card.getOpeningBalance());
+                ps.setLong(10, card.getUser().getId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return cards.size();
+            }
+        });
+        Map<Long, CardResponse> events = new LinkedHashMap<>();
+        LedgerService ledger = ledgerService.getIfAvailable();
+        for (Card card : cards) {
+            events.put(card.getId(), CardUtils.mapToCardResponse(card));
+            if (ledger != null) {
+                ledger.recordAdjustment(card.getId(), card.getBalance());
+            }
+        }
+        outboxService.appendAll(OutboxEventType.CARD_CREATED, events);
+        jdbcTemplate.update(PROGRESS_SQL, cards.size(), jobId);
+        BalanceEngine engine = balanceEngine.getIfAvailable();
+        if (engine != null) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    syncEngine(engine, jobId, cards);
+                }
+            });
+        }
+    }
+
+    // Каждая карта передаётся отдельно, чтобы сбой на одной не оставил без движка остальные карты порции
+    private void syncEngine(BalanceEngine engine, Long jobId, List<Card> cards) {
+        int failed = 0;
+        String error = null;
+        for (Card card : cards) {
+            try {
+                engine.upsertCard(card.getId(), card.getUser().getId(), card.getStatus(), card.getBalance());
+            } catch (RuntimeException e) {
+                failed++;
+                if (error == null) {
+                    error = "Карта ID " + card.getId() + " не передана в движок балансов: " + e.getMessage();
+                }
+            }
+        }
+        if (failed == 0) {
+            return;
+        }
+        log.error("Задание массового выпуска ID {}: не переданы в движок балансов {} карт. {}", jobId, failed, error);
+        try {
+            jdbcTemplate.update(ENGINE_FAILED_SQL, failed,
+                    error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error, jobId);
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать сбой движка в задание ID {}: {}", jobId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.exception.InvalidCardOperationException;
+import com.example.bankcards.service.CardNumberAllocator;
+import com.example.bankcards.service.EncryptionService;
+import com.example.bankcards.util.CardUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Пул заранее сгенерированных номеров карт по каждому BIN. Номера проходят проверку Луна и сверяются
+// с выпущенными картами одним запросом на порцию, поэтому выпуск карты берёт номер из очереди без
+// обращения к БД и без общей блокировки. Когда в пуле остаётся меньше refill-threshold номеров,
+// фоновый поток дополняет его до capacity. Пустой пул не останавливает выпуск: номер генерируется
+// и проверяется на месте, как раньше. Выданный номер до коммита выпуска ещё не виден в cards, поэтому
+// он остаётся в members и исключается из генерации, пока транзакция выпуска не завершится.
+// Пока в cards есть карты без card_number_hash (выпущенные до AES-GCM и ещё не обработанные заполнением
+// при старте), кандидаты дополнительно сверяются с их устаревшим видом encrypted_<номер>
+@Service
+@Slf4j
+public class CardNumberPool implements CardNumberAllocator {
+    private static final int REFILL_BATCH_SIZE = 1000;
+    private static final String EXISTING_NUMBERS_SQL =
+            "SELECT card_number_hash FROM cards WHERE card_number_hash = ANY (?)";
+    private static final String LEGACY_PREFIX = "encrypted_";
+    private static final String EXISTING_LEGACY_NUMBERS_SQL =
+            "SELECT encrypted_card_number FROM cards WHERE encrypted_card_number = ANY (?)";
+    private static final String UNHASHED_EXISTS_SQL = "SELECT EXISTS (SELECT 1 FROM cards WHERE card_number_hash IS NULL)";
+    private final JdbcTemplate jdbcTemplate;
+    private final EncryptionService encryptionService;
+    private final String defaultBin;
+    private final Map<String, BinPool> pools;
+    private final int capacity;
+    private final int refillThreshold;
+    private final ExecutorService refiller;
+    // Выдача из пула генератор не трогает: он нужен пополнению, массовому выпуску и пустому пулу
+    private final SecureRandom random = new SecureRandom();
+    private final Counter pooled;
+    private final Counter generatedInline;
+    // Новые карты всегда выпускаются с хэшем, поэтому после сброса флаг уже не поднимается
+    private volatile boolean legacyUnhashed = true;
+
+    public CardNumberPool(JdbcTemplate jdbcTemplate, EncryptionService encryptionService, MeterRegistry meterRegistry,
+                          @Value("${card-numbers.bins:3985}") List<String> bins,
+                          @Value("${card-numbers.pool-capacity:10000}") int capacity,
+                          @Value("${card-numbers.refill-threshold:2000}") int refillThreshold) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.encryptionService = encryptionService;
+        if (bins.isEmpty()) {
+            throw new IllegalArgumentException("Не задан ни один BIN для выпуска карт");
+        }
+        Map<String, BinPool> configured = new LinkedHashMap<>();
+        for (String bin : bins) {
+            CardUtils.validateBin(bin.strip());
+            configured.put(bin.strip(), new BinPool(bin.strip()));
+        }
+        this.defaultBin = configured.keySet().iterator().next();
+        this.pools = Map.copyOf(configured);
+        this.capacity = Math.max(1, capacity);
+        this.refillThreshold = Math.min(Math.max(0, refillThreshold), this.capacity);
+        this.refiller = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "card-number-refill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pooled = Counter.builder("bank.cards.number.allocated")
+                .description("Номера карт, выданные из пула")
+                .tag("source", "pool")
+                .register(meterRegistry);
+        this.generatedInline = Counter.builder("bank.cards.number.allocated")
+                .description("Номера карт, сгенерированные при выпуске из-за пустого пула")
+                .tag("source", "inline")
+                .register(meterRegistry);
+        for (BinPool pool : pools.values()) {
+            Gauge.builder("bank.cards.number.pool.size", pool.size, AtomicInteger::get)
+                    .description("Номера карт, готовые к выдаче")
+                    .tag("bin", pool.bin)
+                    .register(meterRegistry);
+            Gauge.builder("bank.cards.number.pool.reserved", pool, BinPool::reserved)
+                    .description("Выданные номера карт, ожидающие завершения транзакции выпуска")
+                    .tag("bin", pool.bin)
+                    .register(meterRegistry);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void fill() {
+        pools.values().forEach(this::requestRefill);
+    }
+
+    @PreDestroy
+    public void stop() {
+        refiller.shutdownNow();
+    }
+
+    @Override
+    public String next() {
+        return next(defaultBin);
+    }
+
+    @Override
+    public String next(String bin) {
+        BinPool pool = pools.get(bin);
+        if (pool == null) {
+            throw new InvalidCardOperationException("BIN " + bin + " не используется для выпуска карт");
+        }
+        String number = pool.numbers.poll();
+        if (number != null) {
+            if (pool.size.decrementAndGet() < refillThreshold) {
+                requestRefill(pool);
+            }
+            releaseOnCompletion(pool, List.of(number));
+            pooled.increment();
+            return number;
+        }
+        requestRefill(pool);
+        generatedInline.increment();
+        return reserve(pool, generate(bin, 1, pool.members)).get(0);
+    }
+
+    @Override
+    public List<String> nextBatch(int count) {
+        BinPool pool = pools.get(defaultBin);
+        return reserve(pool, generate(defaultBin, count, pool.members));
+    }
+
+    // Номер, сгенерированный мимо очереди, тоже попадает в members, иначе пополнение может выдать его повторно
+    private List<String> reserve(BinPool pool, List<String> numbers) {
+        pool.members.addAll(numbers);
+        releaseOnCompletion(pool, numbers);
+        return numbers;
+    }
+
+    // После коммита номер уже виден запросу к cards, после отката снова свободен
+    private void releaseOnCompletion(BinPool pool, List<String> numbers) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            numbers.forEach(pool.members::remove);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                numbers.forEach(pool.members::remove);
+            }
+        });
+    }
+
+    private void requestRefill(BinPool pool) {
+        if (!pool.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refiller.execute(() -> refill(pool));
+        } catch (RejectedExecutionException e) {
+            pool.refilling.set(false);
+        }
+    }
+
+    private void refill(BinPool pool) {
+        try {
+            if (legacyUnhashed) {
+                legacyUnhashed = Boolean.TRUE.equals(jdbcTemplate.queryForObject(UNHASHED_EXISTS_SQL, Boolean.class));
+            }
+            int missing;
+            while ((missing = capacity - pool.size.get()) > 0 && !Thread.currentThread().isInterrupted()) {
+                for (String number : generate(pool.bin, Math.min(missing, REFILL_BATCH_SIZE), pool.members)) {
+                    if (pool.members.add(number)) {
+                        pool.numbers.add(number);
+                        pool.size.incrementAndGet();
+                    }
+                }
+            }
+            log.debug("Пул номеров BIN {} пополнен до {}", pool.bin, pool.size.get());
+        } catch (RuntimeException e) {
+            log.warn("Не удалось пополнить пул номеров BIN {}: {}", pool.bin, e.getMessage());
+        } finally {
+            pool.refilling.set(false);
+        }
+    }
+
+    // Номера, лежащие в пуле или выданные незавершённым выпускам, исключаются, чтобы один номер не выдали дважды
+    private List<String> generate(String bin, int count, Set<String> excluded) {
+        Set<String> accepted = new LinkedHashSet<>(count);
+        while (accepted.size() < count) {
+            Map<String, String> candidates = new HashMap<>();
+            while (accepted.size() + candidates.size() < count) {
+                String number = CardUtils.generateCardNumber(bin, random);
+                if (!accepted.contains(number) && !excluded.contains(number)) {
+                    candidates.put(number, encryptionService.hash(number));
+                }
+            }
+            Set<String> taken = new HashSet<>(jdbcTemplate.query(EXISTING_NUMBERS_SQL,
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", candidates.values().toArray())),
+                    (rs, rowNum) -> rs.getString(1)));
+            Set<String> takenLegacy = legacyUnhashed ? existingLegacy(candidates.keySet()) : Set.of();
+            candidates.forEach((number, hash) -> {
+                if (!taken.contains(hash) && !takenLegacy.contains(LEGACY_PREFIX + number)) {
+                    accepted.add(number);
+                }
+            });
+        }
+        return new ArrayList<>(accepted);
+    }
+
+    private Set<String> existingLegacy(Set<String> numbers) {
+        Object[] legacy = numbers.stream().map(number -> LEGACY_PREFIX + number).toArray();
+        return new HashSet<>(jdbcTemplate.query(EXISTING_LEGACY_NUMBERS_SQL,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", legacy)),
+                (rs, rowNum) -> rs.getString(1)));
+    }
+
+    private static final class BinPool {
+        private final String bin;
+        private final ConcurrentLinkedQueue<String> numbers = new ConcurrentLinkedQueue<>();
+        private final Set<String> members = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean refilling = new AtomicBoolean();
+
+        private BinPool(String bin) {
+            this.bin = bin;
+        }
+
+        private int reserved() {
+            return Math.max(0, members.size() - size.get());
+        }
+    }
+}
@@ -3,62 +3,88 @@ package com.example.bankcards.service.impl;
 import com.example.bankcards.dto.card.CardRequest;
 import com.example.bankcards.dto.card.CardResponse;
 import com.example.bankcards.dto.card.CardUpdateRequest;
+import com.example.bankcards.dto.event.OutboxEventType;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.CardNotFoundException;
-import com.example.bankcards.exception.CardNumberAlreadyExistsException;
 import com.example.bankcards.exception.InvalidCardOperationException;
+import com.example.bankcards.exception.TransferOutcomeUnknownException;
 import com.example.bankcards.exception.UserNotFoundException;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardNumberAllocator;
 import com.example.bankcards.service.CardService;
 import com.example.bankcards.service.EncryptionService;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.service.OutboxService;
+import com.example.bankcards.service.impl.bucket.BalanceBucketStore;
+import com.example.bankcards.service.impl.engine.BalanceEngine;
 import com.example.bankcards.util.CardUtils;
+import com.example.bankcards.util.Money;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CardServiceImpl implements CardService {
+    private static final int ENGINE_SYNC_ATTEMPTS = 3;
     private final CardRepository cardRepository;
     private final UserRepository userRepository;
     private final EncryptionService encryptionService;
+    private final CardNumberAllocator cardNumberAllocator;
     private final CardUtils cardUtils;
+    private final ObjectProvider<BalanceEngine> balanceEngine;
+    private final ObjectProvider<LedgerService> ledgerService;
+    private final BalanceBucketStore balanceBucketStore;
+    private final OutboxService outboxService;
 
     @Override
     @Transactional
     public CardResponse createCard(CardRequest cardRequest) {
         log.info("Запрос на создание карты для пользователя ID: {}", cardRequest.getUserId());
-        if (cardRequest.getBalance() != null && cardRequest.getBalance() < 0) {
+        if (cardRequest.getBalance() != null && cardRequest.getBalance().isNegative()) {
             log.error("Попытка создать карту с отрицательным балансом: {}", cardRequest.getBalance());
             throw new InvalidCardOperationException("Баланс карты не может быть отрицательным");
         }
         User user = userRepository.findById(cardRequest.getUserId())
                 .orElseThrow(() -> new UserNotFoundException("Пользователь с ID " + cardRequest.getUserId() + " не найден"));
-        String cardNumber = CardUtils.generateCardNumber();
-        String encryptedCardNumber = encryptionService.encrypt(cardNumber);
-        if (cardRepository.existsByEncryptedCardNumber(encryptedCardNumber)) {
-            log.error("Попытка создать карту с уже существующим номером: {}", cardNumber);
-            throw new CardNumberAlreadyExistsException("Карта с номером '" + cardNumber + "' уже существует");
-        }
+        // Номер из пула уже сверен с выпущенными картами и до коммита не выдаётся повторно;
+        // последняя защита — уникальный индекс на card_number_hash
+        String cardNumber = cardNumberAllocator.next();
         Card card = new Card();
-        card.setEncryptedCardNumber(encryptedCardNumber);
+        card.setEncryptedCardNumber(encryptionService.encrypt(cardNumber));
+        card.setCardNumberHash(encryptionService.hash(cardNumber));
+        card.setCardNumberLast4(cardNumber.substring(cardNumber.length() - 4));
         card.setOwnerName(cardRequest.getOwnerName());
         card.setExpirationDate(cardRequest.getExpirationDate());
-        card.setBalance(cardRequest.getBalance() != null ? cardRequest.getBalance() : 0.0);
+        card.setBalance(cardRequest.getBalance() != null ? cardRequest.getBalance().getMinorUnits() : 0);
+        card.setOpeningBalance(card.getBalance());
         card.setUser(user);
         card.setStatus(CardUtils.determineCardStatus(cardRequest.getExpirationDate()));
         Card savedCard = cardRepository.save(card);
+        publishCardState(savedCard);
+        LedgerService ledger = ledgerService.getIfAvailable();
+        if (ledger != null) {
+            ledger.recordAdjustment(savedCard.getId(), savedCard.getBalance());
+        }
+        CardResponse response = CardUtils.mapToCardResponse(savedCard);
+        outboxService.append(OutboxEventType.CARD_CREATED, savedCard.getId(), response);
         log.info("Карта успешно создана с ID: {} для пользователя: {}", savedCard.getId(), user.getUsername());
-        return CardUtils.mapToCardResponse(savedCard);
+        return response;
     }
 
     @Override
@@ -68,7 +94,27 @@ public class CardServiceImpl implements CardService {
         Card card = cardRepository.findById(id)
                 .orElseThrow(() -> new CardNotFoundException("Карта с ID " + id + " не найдена"));
         cardUtils.checkCardOwnership(card);
-        return CardUtils.mapToCardResponse(card);
+        CardResponse response = mapToCardResponse(card);
+        LedgerService ledger = ledgerService.getIfAvailable();
+        if (ledger != null) {
+            // cards.balance материализуется из журнала с задержкой, для одной карты баланс считается по журналу
+            response.setBalance(Money.ofMinor(ledger.getBalance(id)));
+        }
+        return response;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Money getCardBalanceAsOf(Long id, LocalDateTime asOf) {
+        log.debug("Запрос баланса карты ID {} на {}", id, asOf);
+        Card card = cardRepository.findById(id)
+                .orElseThrow(() -> new CardNotFoundException("Карта с ID " + id + " не найдена"));
+        cardUtils.checkCardOwnership(card);
+        LedgerService ledger = ledgerService.getIfAvailable();
+        if (ledger == null) {
+            throw new InvalidCardOperationException("Баланс на дату доступен только при ведении журнала проводок");
+        }
+        return Money.ofMinor(ledger.getBalanceAsOf(id, asOf));
     }
 
     @Override
@@ -76,7 +122,7 @@ public class CardServiceImpl implements CardService {
     public Page<CardResponse> getUserCards(Long userId, Pageable pageable) {
         log.debug("Запрос всех карт для пользователя ID: {} с пагинацией", userId);
         Page<Card> cards = cardRepository.findByUserId(userId, pageable);
-        return cards.map(CardUtils::mapToCardResponse);
+        return cards.map(responseMapper(cards.getContent()));
     }
 
     @Override
@@ -84,7 +130,7 @@ public class CardServiceImpl implements CardService {
     public List<CardResponse> getAllCards() {
         log.debug("Запрос всех карт без пагинации");
         List<Card> cards = cardRepository.findAll();
-        return cards.stream().map(CardUtils::mapToCardResponse).collect(Collectors.toList());
+        return cards.stream().map(responseMapper(cards)).collect(Collectors.toList());
     }
 
     @Override
@@ -102,8 +148,11 @@ public class CardServiceImpl implements CardService {
             card.setStatus(CardUtils.determineCardStatus(cardUpdateRequest.getExpirationDate()));
         }
         Card updatedCard = cardRepository.save(card);
+        publishCardState(updatedCard);
+        CardResponse response = mapToCardResponse(updatedCard);
+        outboxService.append(OutboxEventType.CARD_UPDATED, id, response);
         log.info("Карта с ID {} успешно обновлена", id);
-        return CardUtils.mapToCardResponse(updatedCard);
+        return response;
     }
 
     @Override
@@ -122,8 +171,11 @@ public class CardServiceImpl implements CardService {
         }
         card.setStatus(Card.Status.BLOCKED);
         Card blockedCard = cardRepository.save(card);
+        publishCardState(blockedCard);
+        CardResponse response = mapToCardResponse(blockedCard);
+        outboxService.append(OutboxEventType.CARD_BLOCKED, id, response);
         log.info("Карта с ID {} успешно заблокирована", id);
-        return CardUtils.mapToCardResponse(blockedCard);
+        return response;
     }
 
     @Override
@@ -142,8 +194,46 @@ public class CardServiceImpl implements CardService {
         }
         card.setStatus(Card.Status.ACTIVE);
         Card activatedCard = cardRepository.save(card);
+        publishCardState(activatedCard);
+        CardResponse response = mapToCardResponse(activatedCard);
+        outboxService.append(OutboxEventType.CARD_ACTIVATED, id, response);
         log.info("Карта с ID {} успешно активирована", id);
-        return CardUtils.mapToCardResponse(activatedCard);
+        return response;
+    }
+
+    @Override
+    @Transactional
+    public CardResponse splitCardBalance(Long id, int buckets) {
+        log.info("Запрос на разбиение баланса карты ID {} на {} корзин", id, buckets);
+        requireCardsOwnBalance();
+        balanceBucketStore.validateBucketCount(buckets);
+        Card card = cardRepository.findByIdForUpdate(id)
+                .orElseThrow(() -> new CardNotFoundException("Карта с ID " + id + " не найдена"));
+        // Повторное разбиение сначала сливает прежние корзины, чтобы поменять их число
+        long total = card.getBalance() + balanceBucketStore.drain(id);
+        balanceBucketStore.split(id, buckets, total);
+        card.setBalance(0);
+        card.setBalanceBuckets(buckets);
+        Card savedCard = cardRepository.save(card);
+        log.info("Баланс карты ID {} разбит на {} корзин", id, buckets);
+        return mapToCardResponse(savedCard);
+    }
+
+    @Override
+    @Transactional
+    public CardResponse mergeCardBalance(Long id) {
+        log.info("Запрос на слияние корзин баланса карты ID {}", id);
+        Card card = cardRepository.findByIdForUpdate(id)
+                .orElseThrow(() -> new CardNotFoundException("Карта с ID " + id + " не найдена"));
+        if (card.getBalanceBuckets() == 0) {
+            log.warn("Попытка слить корзины карты ID {} без корзин", id);
+            throw new InvalidCardOperationException("Баланс карты не разбит на корзины");
+        }
+        card.setBalance(card.getBalance() + balanceBucketStore.drain(id));
+        card.setBalanceBuckets(0);
+        Card savedCard = cardRepository.save(card);
+        log.info("Корзины баланса карты ID {} слиты", id);
+        return mapToCardResponse(savedCard);
     }
 
     @Override
@@ -155,6 +245,92 @@ public class CardServiceImpl implements CardService {
             throw new CardNotFoundException("Карта с ID " + id + " не найдена");
         }
         cardRepository.deleteById(id);
+        outboxService.append(OutboxEventType.CARD_DELETED, id, Map.of("id", id));
+        BalanceEngine engine = balanceEngine.getIfAvailable();
+        if (engine != null) {
+            afterCommit(engine, id, () -> engine.removeCard(id));
+        }
         log.info("Карта с ID {} успешно удалена", id);
     }
-}
\ No newline at end of file
+
+    private void requireCardsOwnBalance() {
+        if (balanceEngine.getIfAvailable() != null || ledgerService.getIfAvailable() != null) {
+            throw new InvalidCardOperationException("Корзины баланса недоступны, когда балансом управляет движок или журнал проводок");
+        }
+    }
+
+    // При включённом движке балансов баланс в таблице cards — проекция, актуальное значение берётся из движка
+    private CardResponse mapToCardResponse(Card card) {
+        CardResponse response = CardUtils.mapToCardResponse(card);
+        if (card.getBalanceBuckets() > 0) {
+            response.setBalance(Money.ofMinor(card.getBalance() + balanceBucketStore.sum(card.getId())));
+        }
+        BalanceEngine engine = balanceEngine.getIfAvailable();
+        if (engine != null) {
+            engine.findBalance(card.getId()).ifPresent(balance -> response.setBalance(Money.ofMinor(balance)));
+        }
+        return response;
+    }
+
+    // cards.balance материализуется из журнала проводок с задержкой, поэтому балансы списка, как и одной карты,
+    // считаются по журналу — одним запросом на страницу
+    private Function<Card, CardResponse> responseMapper(List<Card> cards) {
+        LedgerService ledger = ledgerService.getIfAvailable();
+        if (ledger == null || cards.isEmpty()) {
+            return this::mapToCardResponse;
+        }
+        Map<Long, Long> balances = ledger.getBalances(cards.stream().map(Card::getId).toList());
+        return card -> {
+            CardResponse response = mapToCardResponse(card);
+            response.setBalance(Money.ofMinor(balances.getOrDefault(card.getId(), 0L)));
+            return response;
+        };
+    }
+
+    private void publishCardState(Card card) {
+        BalanceEngine engine = balanceEngine.getIfAvailable();
+        if (engine == null) {
+            return;
+        }
+        long cardId = card.getId();
+        long ownerId = card.getUser().getId();
+        Card.Status status = card.getStatus();
+        long balance = card.getBalance();
+        afterCommit(engine, cardId, () -> engine.upsertCard(cardId, ownerId, status, balance));
+    }
+
+    // Движок узнаёт об изменении только после коммита; состав и статусы карт сверяются с таблицей cards
+    // при его запуске, поэтому изменение, которое он так и не принял, видно по остановке приёма операций
+    private void afterCommit(BalanceEngine engine, long cardId, Runnable action) {
+        Runnable guarded = () -> syncEngine(engine, cardId, action);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    guarded.run();
+                }
+            });
+        } else {
+            guarded.run();
+        }
+    }
+
+    private void syncEngine(BalanceEngine engine, long cardId, Runnable action) {
+        RuntimeException failure = null;
+        for (int attempt = 1; attempt <= ENGINE_SYNC_ATTEMPTS; attempt++) {
+            try {
+                action.run();
+                return;
+            } catch (TransferOutcomeUnknownException e) {
+                // Команда уже в кольцевом буфере движка и будет применена, повтор не нужен
+                log.warn("Движок балансов не подтвердил изменение карты ID {} вовремя: {}", cardId, e.getMessage());
+                return;
+            } catch (RuntimeException e) {
+                failure = e;
+                log.warn("Попытка {} передать изменение карты ID {} в движок балансов не удалась: {}",
+                        attempt, cardId, e.getMessage());
+            }
+        }
+        engine.markOutOfSync(cardId, failure);
+    }
+}
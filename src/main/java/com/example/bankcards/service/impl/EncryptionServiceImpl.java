@@ -2,14 +2,190 @@ package com.example.bankcards.service.impl;
 
 import com.example.bankcards.service.EncryptionService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+// AES-256-GCM. Значение хранится как "v<версия ключа>:" + base64(IV || шифротекст || тег), заголовок
+// с версией входит в аутентифицируемые данные. Расшифровка выбирает ключ по версии из заголовка, поэтому
+// после смены current-key-version старые значения читаются, пока ротация их не перешифрует.
+// Cipher.getInstance ищет провайдера под общей блокировкой и дорог на каждом вызове, поэтому у каждого
+// потока свои Cipher, Mac и генератор IV; ключи неизменяемы и общие
 @Service
 @Slf4j
 public class EncryptionServiceImpl implements EncryptionService {
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String HASH_ALGORITHM = "HmacSHA256";
+    // Значения прежней заглушки: номер открытым текстом после префикса
+    private static final String LEGACY_PREFIX = "encrypted_";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+    private final Map<Integer, SecretKey> keys;
+    private final SecretKey currentKey;
+    private final String currentPrefix;
+    private final byte[] currentHeader;
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Шифрование " + TRANSFORMATION + " недоступно", e);
+        }
+    });
+    private final ThreadLocal<Mac> macs;
+    // Экземпляры NativePRNG читают /dev/urandom под общей статической блокировкой, у DRBG состояние своё
+    private final ThreadLocal<SecureRandom> randoms = ThreadLocal.withInitial(() -> {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    });
+
+    public EncryptionServiceImpl(@Value("${encryption.keys}") List<String> keys,
+                                 @Value("${encryption.current-key-version}") int currentKeyVersion,
+                                 @Value("${encryption.hash-key}") String hashKey) {
+        Map<Integer, SecretKey> configured = new HashMap<>();
+        for (String entry : keys) {
+            int separator = entry.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Ключ шифрования задаётся как <версия>:<ключ в base64>");
+            }
+            int version = Integer.parseInt(entry.substring(0, separator).strip());
+            configured.put(version, new SecretKeySpec(decodeKey(entry.substring(separator + 1).strip()), "AES"));
+        }
+        this.keys = Map.copyOf(configured);
+        this.currentKey = this.keys.get(currentKeyVersion);
+        if (currentKey == null) {
+            throw new IllegalArgumentException("Не задан ключ шифрования версии " + currentKeyVersion);
+        }
+        this.currentPrefix = header(currentKeyVersion);
+        this.currentHeader = currentPrefix.getBytes(StandardCharsets.US_ASCII);
+        SecretKey macKey = new SecretKeySpec(decodeKey(hashKey), HASH_ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(HASH_ALGORITHM);
+                mac.init(macKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Хэширование " + HASH_ALGORITHM + " недоступно", e);
+            }
+        });
+        log.info("Шифрование номеров карт: ключей {}, текущая версия {}", this.keys.size(), currentKeyVersion);
+    }
+
     @Override
     public String encrypt(String data) {
-        log.debug("Шифрование данных: {}", data.substring(0, Math.min(4, data.length())) + "***");
-        return "encrypted_" + data;
+        return encrypt(data, ciphers.get(), randoms.get());
+    }
+
+    @Override
+    public String decrypt(String encrypted) {
+        return decrypt(encrypted, ciphers.get());
+    }
+
+    @Override
+    public List<String> encryptAll(List<String> data) {
+        Cipher cipher = ciphers.get();
+        SecureRandom random = randoms.get();
+        List<String> result = new ArrayList<>(data.size());
+        for (String value : data) {
+            result.add(encrypt(value, cipher, random));
+        }
+        return result;
+    }
+
+    @Override
+    public List<String> decryptAll(List<String> encrypted) {
+        Cipher cipher = ciphers.get();
+        List<String> result = new ArrayList<>(encrypted.size());
+        for (String value : encrypted) {
+            result.add(decrypt(value, cipher));
+        }
+        return result;
+    }
+
+    @Override
+    public String hash(String data) {
+        return HexFormat.of().formatHex(macs.get().doFinal(data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public String currentKeyPrefix() {
+        return currentPrefix;
+    }
+
+    private String encrypt(String data, Cipher cipher, SecureRandom random) {
+        byte[] plain = data.getBytes(StandardCharsets.UTF_8);
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, currentKey, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            cipher.updateAAD(currentHeader);
+            byte[] payload = new byte[IV_LENGTH + cipher.getOutputSize(plain.length)];
+            System.arraycopy(iv, 0, payload, 0, IV_LENGTH);
+            cipher.doFinal(plain, 0, plain.length, payload, IV_LENGTH);
+            return currentPrefix + Base64.getEncoder().encodeToString(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Не удалось зашифровать данные", e);
+        }
+    }
+
+    private String decrypt(String encrypted, Cipher cipher) {
+        if (encrypted.startsWith(LEGACY_PREFIX)) {
+            return encrypted.substring(LEGACY_PREFIX.length());
+        }
+        int separator = encrypted.indexOf(':');
+        if (separator < 2 || encrypted.charAt(0) != 'v') {
+            throw new IllegalArgumentException("Неизвестный формат зашифрованного значения");
+        }
+        int version;
+        try {
+            version = Integer.parseInt(encrypted, 1, separator, 10);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Неизвестный формат зашифрованного значения");
+        }
+        SecretKey key = keys.get(version);
+        if (key == null) {
+            throw new IllegalStateException("Ключ шифрования версии " + version + " не задан");
+        }
+        byte[] payload = Base64.getDecoder().decode(encrypted.substring(separator + 1));
+        if (payload.length < IV_LENGTH + TAG_LENGTH_BITS / 8) {
+            throw new IllegalArgumentException("Зашифрованное значение повреждено");
+        }
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, payload, 0, IV_LENGTH));
+            cipher.updateAAD(encrypted.substring(0, separator + 1).getBytes(StandardCharsets.US_ASCII));
+            byte[] plain = cipher.doFinal(payload, IV_LENGTH, payload.length - IV_LENGTH);
+            return new String(plain, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Не удалось расшифровать данные ключом версии " + version, e);
+        }
+    }
+
+    private static String header(int version) {
+        return "v" + version + ":";
+    }
+
+    private static byte[] decodeKey(String base64) {
+        byte[] key = Base64.getDecoder().decode(base64);
+        if (key.length != 16 && key.length != 24 && key.length != 32) {
+            throw new IllegalArgumentException("Длина ключа должна быть 128, 192 или 256 бит, задано " + key.length * 8);
+        }
+        return key;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,24 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.service.IdempotencyService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyKeySweeper {
+    private final IdempotencyService idempotencyService;
+
+    @Scheduled(fixedDelayString = "${idempotency.sweep-interval-ms:60000}",
+            initialDelayString = "${idempotency.sweep-interval-ms:60000}")
+    public void sweep() {
+        try {
+            idempotencyService.purgeExpired();
+        } catch (RuntimeException e) {
+            log.error("Ошибка очистки просроченных Idempotency-Key: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.exception.IdempotencyKeyConflictException;
+import com.example.bankcards.exception.InvalidIdempotencyKeyException;
+import com.example.bankcards.exception.TransferOutcomeUnknownException;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.example.bankcards.service.IdempotencyService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+@Service
+@Slf4j
+public class IdempotencyServiceImpl implements IdempotencyService {
+    private static final int MAX_KEY_LENGTH = 100;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final Duration processingLease;
+    private final int sweepBatchSize;
+    private final Map<String, CachedResponse> recentResponses;
+
+    public IdempotencyServiceImpl(IdempotencyKeyRepository idempotencyKeyRepository, ObjectMapper objectMapper,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${idempotency.ttl-hours:24}") long ttlHours,
+                                  @Value("${idempotency.processing-lease-ms:60000}") long processingLeaseMs,
+                                  @Value("${idempotency.cache-size:10000}") int cacheSize,
+                                  @Value("${idempotency.sweep-batch-size:1000}") int sweepBatchSize) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = Duration.ofHours(ttlHours);
+        this.processingLease = Duration.ofMillis(processingLeaseMs);
+        this.sweepBatchSize = sweepBatchSize;
+        this.recentResponses = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    @Override
+    public TransactionResponse execute(Long userId, String idempotencyKey, TransactionRequest request,
+                                       Supplier<TransactionResponse> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        // Стратегия перевода присоединяется к этой транзакции, поэтому ответ фиксируется вместе с переводом:
+        // перевод без сохранённого ответа, который повтор выполнил бы ещё раз, не коммитится
+        return run(userId, idempotencyKey, request, store -> transactionTemplate.execute(status -> {
+            TransactionResponse result = action.get();
+            store.accept(result);
+            return result;
+        }));
+    }
+
+    @Override
+    public TransactionResponse executeCommitted(Long userId, String idempotencyKey, TransactionRequest request,
+                                                Function<Consumer<TransactionResponse>, TransactionResponse> action) {
+        if (idempotencyKey == null) {
+            return action.apply(result -> {
+            });
+        }
+        return run(userId, idempotencyKey, request, action);
+    }
+
+    private TransactionResponse run(Long userId, String idempotencyKey, TransactionRequest request,
+                                    Function<Consumer<TransactionResponse>, TransactionResponse> action) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException("Idempotency-Key должен содержать от 1 до " + MAX_KEY_LENGTH + " символов");
+        }
+        String cacheKey = userId + ":" + idempotencyKey;
+        String requestHash = hash(request);
+        LocalDateTime now = LocalDateTime.now();
+        CachedResponse cached = getCached(cacheKey, now);
+        if (cached != null) {
+            log.info("Повторный запрос с Idempotency-Key {} обслужен из кэша", idempotencyKey);
+            return replay(idempotencyKey, requestHash, cached.getRequestHash(), cached.getResponse());
+        }
+        // Резерв коммитится до перевода и держится только на время аренды: если процесс упадёт,
+        // не сохранив ответ, повтор после locked_until перехватит ключ, а не получит 409 до expires_at
+        UUID reservationId = UUID.randomUUID();
+        if (!reserve(userId, idempotencyKey, requestHash, now, reservationId)) {
+            Optional<TransactionResponse> stored = findStored(userId, idempotencyKey, requestHash, cacheKey, now);
+            if (stored.isPresent()) {
+                return stored.get();
+            }
+            if (!reserve(userId, idempotencyKey, requestHash, now, reservationId)) {
+                throw new IdempotencyKeyConflictException("Запрос с этим Idempotency-Key уже обрабатывается");
+            }
+        }
+        TransactionResponse response;
+        try {
+            response = action.apply(result -> {
+                if (idempotencyKeyRepository.complete(userId, idempotencyKey, reservationId, toJson(result)) == 0) {
+                    // Аренда истекла и резерв перехвачен повтором: откатываем перевод, его выполнит повтор
+                    throw new IdempotencyKeyConflictException("Запрос с этим Idempotency-Key уже обрабатывается");
+                }
+            });
+        } catch (TransferOutcomeUnknownException e) {
+            // Перевод ещё может выполниться: ключ остаётся занятым до expires_at, чтобы повтор
+            // не перехватил резерв по истечении аренды и не выполнил перевод второй раз
+            idempotencyKeyRepository.extendLease(userId, idempotencyKey, reservationId, now.plus(ttl));
+            if (e.getOutcome() != null) {
+                completeLater(userId, idempotencyKey, reservationId, requestHash, cacheKey, now, e);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            idempotencyKeyRepository.release(userId, idempotencyKey, reservationId);
+            throw e;
+        }
+        putCached(cacheKey, new CachedResponse(requestHash, response, now.plus(ttl)));
+        return response;
+    }
+
+    @Override
+    public int purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        int total = 0;
+        int deleted;
+        do {
+            deleted = idempotencyKeyRepository.deleteExpiredBatch(now, sweepBatchSize);
+            total += deleted;
+        } while (deleted == sweepBatchSize);
+        if (total > 0) {
+            log.info("Удалено просроченных Idempotency-Key: {}", total);
+        }
+        return total;
+    }
+
+    // Исход приходит из потока исполнителя, поэтому запись в БД уходит в общий пул, а не задерживает его
+    private void completeLater(Long userId, String idempotencyKey, UUID reservationId, String requestHash,
+                               String cacheKey, LocalDateTime now, TransferOutcomeUnknownException e) {
+        e.getOutcome().whenCompleteAsync((response, failure) -> {
+            try {
+                if (failure == null) {
+                    idempotencyKeyRepository.complete(userId, idempotencyKey, reservationId, toJson(response));
+                    putCached(cacheKey, new CachedResponse(requestHash, response, now.plus(ttl)));
+                    log.info("Ответ отложенного перевода сохранён для Idempotency-Key {}", idempotencyKey);
+                } else {
+                    idempotencyKeyRepository.release(userId, idempotencyKey, reservationId);
+                }
+            } catch (RuntimeException storeFailure) {
+                log.error("Не удалось сохранить исход отложенного перевода для Idempotency-Key {}: {}",
+                        idempotencyKey, storeFailure.getMessage());
+            }
+        });
+    }
+
+    private boolean reserve(Long userId, String idempotencyKey, String requestHash, LocalDateTime now,
+                            UUID reservationId) {
+        return idempotencyKeyRepository.reserve(userId, idempotencyKey, requestHash, now, now.plus(ttl),
+                reservationId, now.plus(processingLease)) > 0;
+    }
+
+    private Optional<TransactionResponse> findStored(Long userId, String idempotencyKey, String requestHash,
+                                                     String cacheKey, LocalDateTime now) {
+        Optional<IdempotencyKey> existing = idempotencyKeyRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey);
+        if (existing.isEmpty()) {
+            return Optional.empty();
+        }
+        IdempotencyKey key = existing.get();
+        // Просроченный ключ и резерв с истёкшей арендой перехватывает повторный reserve
+        if (key.getExpiresAt().isBefore(now) || key.getResponse() == null && key.getLockedUntil().isBefore(now)) {
+            return Optional.empty();
+        }
+        if (key.getResponse() == null) {
+            if (!key.getRequestHash().equals(requestHash)) {
+                throw new IdempotencyKeyConflictException("Idempotency-Key уже использован для другого запроса");
+            }
+            throw new IdempotencyKeyConflictException("Запрос с этим Idempotency-Key уже обрабатывается");
+        }
+        TransactionResponse response = fromJson(key.getResponse());
+        putCached(cacheKey, new CachedResponse(key.getRequestHash(), response, key.getExpiresAt()));
+        log.info("Повторный запрос с Idempotency-Key {} обслужен из хранилища", idempotencyKey);
+        return Optional.of(replay(idempotencyKey, requestHash, key.getRequestHash(), response));
+    }
+
+    private TransactionResponse replay(String idempotencyKey, String requestHash, String storedHash,
+                                       TransactionResponse response) {
+        if (!storedHash.equals(requestHash)) {
+            log.error("Idempotency-Key {} повторно использован с другими параметрами перевода", idempotencyKey);
+            throw new IdempotencyKeyConflictException("Idempotency-Key уже использован для другого запроса");
+        }
+        return response;
+    }
+
+    private CachedResponse getCached(String cacheKey, LocalDateTime now) {
+        synchronized (recentResponses) {
+            CachedResponse cached = recentResponses.get(cacheKey);
+            if (cached != null && cached.getExpiresAt().isBefore(now)) {
+                recentResponses.remove(cacheKey);
+                return null;
+            }
+            return cached;
+        }
+    }
+
+    private void putCached(String cacheKey, CachedResponse cached) {
+        synchronized (recentResponses) {
+            recentResponses.put(cacheKey, cached);
+        }
+    }
+
+    private String hash(TransactionRequest request) {
+        String canonical = request.getFromCardId() + "|" + request.getToCardId() + "|" + request.getAmount().getMinorUnits();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    private String toJson(TransactionResponse response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать ответ перевода", e);
+        }
+    }
+
+    private TransactionResponse fromJson(String json) {
+        try {
+            return objectMapper.readValue(json, TransactionResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось прочитать сохранённый ответ перевода", e);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class CachedResponse {
+        private final String requestHash;
+        private final TransactionResponse response;
+        private final LocalDateTime expiresAt;
+    }
+}
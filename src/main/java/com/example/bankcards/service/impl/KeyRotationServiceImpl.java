@@ -0,0 +1,309 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.card.KeyRotationResponse;
+import com.example.bankcards.exception.KeyRotationConflictException;
+import com.example.bankcards.exception.KeyRotationNotFoundException;
+import com.example.bankcards.service.EncryptionService;
+import com.example.bankcards.service.KeyRotationService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Перешифрование cards.encrypted_card_number текущим ключом. Потоки ротации разбирают диапазоны ID карт
+// по chunk-size из общего курсора; каждый диапазон — одна транзакция: строки, ещё не зашифрованные текущим
+// ключом или без хэша номера, блокируются с SKIP LOCKED, расшифровываются и шифруются пакетом и
+// обновляются одним batch. Карты, занятые в этот момент переводами, пропускаются и попадают в remaining;
+// их перешифрует повторный запуск. При старте тем же порядком заполняется card_number_hash у карт,
+// выпущенных до шифрования AES-GCM: пока хэша нет, пул номеров сверяет кандидатов и с устаревшим видом номера
+@Service
+@Slf4j
+public class KeyRotationServiceImpl implements KeyRotationService {
+    private static final String FAIL_STALE_SQL =
+            "UPDATE card_key_rotations SET status = 'FAILED', finished_at = LOCALTIMESTAMP, error = 'Ротация прервана' " +
+                    "WHERE status = 'RUNNING' AND started_at < LOCALTIMESTAMP - ? * INTERVAL '1 millisecond'";
+    private static final String INSERT_ROTATION_SQL =
+            "INSERT INTO card_key_rotations (status, key_prefix) VALUES ('RUNNING', ?) RETURNING id";
+    private static final String BOUNDS_SQL = "SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM cards";
+    private static final String SELECT_CHUNK_SQL =
+            "SELECT id, encrypted_card_number FROM cards WHERE id >= ? AND id < ? " +
+                    "AND (encrypted_card_number NOT LIKE ? OR card_number_hash IS NULL) FOR UPDATE SKIP LOCKED";
+    private static final String UPDATE_CARD_SQL =
+            "UPDATE cards SET encrypted_card_number = ?, card_number_hash = ?, card_number_last4 = ? WHERE id = ?";
+    private static final String PROGRESS_SQL =
+            "UPDATE card_key_rotations SET chunks = chunks + 1, reencrypted = reencrypted + ? WHERE id = ?";
+    private static final String REMAINING_SQL =
+            "SELECT COUNT(*) FROM cards WHERE encrypted_card_number NOT LIKE ? OR card_number_hash IS NULL";
+    private static final String FINISH_ROTATION_SQL =
+            "UPDATE card_key_rotations SET status = ?, finished_at = LOCALTIMESTAMP, remaining = ?, error = ? WHERE id = ?";
+    private static final String SELECT_UNHASHED_CHUNK_SQL =
+            "SELECT id, encrypted_card_number FROM cards WHERE id >= ? AND id < ? AND card_number_hash IS NULL " +
+                    "FOR UPDATE SKIP LOCKED";
+    private static final String UPDATE_HASH_SQL =
+            "UPDATE cards SET card_number_hash = ?, card_number_last4 = ? WHERE id = ?";
+    private static final String UNHASHED_SQL = "SELECT COUNT(*) FROM cards WHERE card_number_hash IS NULL";
+    private static final String SELECT_ROTATION_SQL =
+            "SELECT id, status, key_prefix, started_at, finished_at, chunks, reencrypted, remaining, error " +
+                    "FROM card_key_rotations WHERE id = ?";
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EncryptionService encryptionService;
+    private final ExecutorService coordinator;
+    private final ExecutorService workers;
+    private final int parallelism;
+    private final int chunkSize;
+    private final long staleAfterMs;
+    private final Timer chunkDuration;
+    private final Counter reencryptedCounter;
+
+    public KeyRotationServiceImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                  EncryptionService encryptionService, MeterRegistry meterRegistry,
+                                  @Value("${encryption.rotation.parallelism:2}") int parallelism,
+                                  @Value("${encryption.rotation.chunk-size:1000}") int chunkSize,
+                                  @Value("${encryption.rotation.stale-after-ms:21600000}") long staleAfterMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.encryptionService = encryptionService;
+        this.parallelism = Math.max(1, parallelism);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.staleAfterMs = staleAfterMs;
+        this.coordinator = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "key-rotation-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "key-rotation-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.chunkDuration = Timer.builder("bank.encryption.rotation.chunk.duration")
+                .description("Длительность перешифрования одной порции номеров карт")
+                .register(meterRegistry);
+        this.reencryptedCounter = Counter.builder("bank.encryption.rotation.reencrypted")
+                .description("Количество перешифрованных номеров карт")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    // Заполнение идёт в потоке ротаций, поэтому не задерживает старт и не пересекается с запущенной ротацией
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleHashBackfill() {
+        coordinator.execute(() -> {
+            try {
+                backfillHashes();
+            } catch (RuntimeException e) {
+                log.error("Не удалось заполнить хэши номеров карт: {}", e.getMessage());
+            }
+        });
+    }
+
+    // Возвращает число карт, оставшихся без хэша: занятые переводами строки дозаполнит следующая ротация
+    public long backfillHashes() {
+        Long remaining = jdbcTemplate.queryForObject(UNHASHED_SQL, Long.class);
+        if (remaining == null || remaining == 0) {
+            return 0;
+        }
+        log.info("Заполнение хэшей номеров карт, выпущенных до шифрования AES-GCM: {}", remaining);
+        Map<String, Object> bounds = jdbcTemplate.queryForMap(BOUNDS_SQL);
+        long maxId = ((Number) bounds.get("max_id")).longValue();
+        long filled = 0;
+        for (long lo = ((Number) bounds.get("min_id")).longValue(); lo <= maxId; lo += chunkSize) {
+            filled += backfillChunk(lo, lo + chunkSize);
+        }
+        remaining = jdbcTemplate.queryForObject(UNHASHED_SQL, Long.class);
+        log.info("Хэши номеров карт заполнены: {}, осталось без хэша: {}", filled, remaining);
+        return remaining != null ? remaining : 0;
+    }
+
+    @Override
+    public KeyRotationResponse startRotation() {
+        int failed = jdbcTemplate.update(FAIL_STALE_SQL, staleAfterMs);
+        if (failed > 0) {
+            log.warn("Зависших ротаций ключа помечено как прерванные: {}", failed);
+        }
+        String keyPrefix = encryptionService.currentKeyPrefix();
+        Long rotationId;
+        try {
+            rotationId = jdbcTemplate.queryForObject(INSERT_ROTATION_SQL, Long.class, keyPrefix);
+        } catch (DuplicateKeyException e) {
+            throw new KeyRotationConflictException("Ротация ключа шифрования уже выполняется");
+        }
+        log.info("Запущена ротация ключа шифрования ID {}, целевой ключ {}", rotationId, keyPrefix);
+        coordinator.execute(() -> run(rotationId, keyPrefix));
+        return getRotation(rotationId);
+    }
+
+    @Override
+    public KeyRotationResponse getRotation(Long id) {
+        List<KeyRotationResponse> rotations = jdbcTemplate.query(SELECT_ROTATION_SQL, (rs, rowNum) -> {
+            KeyRotationResponse response = new KeyRotationResponse();
+            response.setId(rs.getLong("id"));
+            response.setStatus(KeyRotationResponse.Status.valueOf(rs.getString("status")));
+            response.setKeyPrefix(rs.getString("key_prefix"));
+            response.setStartedAt(rs.getObject("started_at", LocalDateTime.class));
+            response.setFinishedAt(rs.getObject("finished_at", LocalDateTime.class));
+            response.setChunks(rs.getInt("chunks"));
+            response.setReencrypted(rs.getLong("reencrypted"));
+            response.setRemaining(rs.getObject("remaining", Long.class));
+            response.setError(rs.getString("error"));
+            return response;
+        }, id);
+        if (rotations.isEmpty()) {
+            throw new KeyRotationNotFoundException("Ротация ключа с ID " + id + " не найдена");
+        }
+        return rotations.get(0);
+    }
+
+    private void run(Long rotationId, String keyPrefix) {
+        long startedAt = System.nanoTime();
+        String pattern = keyPrefix + "%";
+        try {
+            Map<String, Object> bounds = jdbcTemplate.queryForMap(BOUNDS_SQL);
+            if (bounds.get("min_id") != null) {
+                long maxId = ((Number) bounds.get("max_id")).longValue();
+                AtomicLong cursor = new AtomicLong(((Number) bounds.get("min_id")).longValue());
+                AtomicBoolean failed = new AtomicBoolean();
+                List<Callable<Void>> tasks = new ArrayList<>(parallelism);
+                for (int i = 0; i < parallelism; i++) {
+                    tasks.add(() -> {
+                        long lo;
+                        while (!failed.get() && (lo = cursor.getAndAdd(chunkSize)) <= maxId) {
+                            try {
+                                rotateChunk(rotationId, pattern, lo, lo + chunkSize);
+                            } catch (RuntimeException e) {
+                                failed.set(true);
+                                throw e;
+                            }
+                        }
+                        return null;
+                    });
+                }
+                for (Future<Void> result : workers.invokeAll(tasks)) {
+                    result.get();
+                }
+            }
+            Long remaining = jdbcTemplate.queryForObject(REMAINING_SQL, Long.class, pattern);
+            jdbcTemplate.update(FINISH_ROTATION_SQL, KeyRotationResponse.Status.COMPLETED.name(), remaining, null,
+                    rotationId);
+            log.info("Ротация ключа шифрования ID {} завершена за {} мс, осталось номеров: {}", rotationId,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), remaining);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(rotationId, new IllegalStateException("Ротация прервана", e));
+        } catch (ExecutionException e) {
+            fail(rotationId, e.getCause());
+        } catch (RuntimeException e) {
+            fail(rotationId, e);
+        }
+    }
+
+    private void fail(Long rotationId, Throwable cause) {
+        log.error("Ротация ключа шифрования ID {} завершилась ошибкой: {}", rotationId, cause.getMessage());
+        String error = cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage();
+        jdbcTemplate.update(FINISH_ROTATION_SQL, KeyRotationResponse.Status.FAILED.name(), null,
+                error.length() > 255 ? error.substring(0, 255) : error, rotationId);
+    }
+
+    private int backfillChunk(long lo, long hi) {
+        Integer filled = transactionTemplate.execute(status -> {
+            List<Long> ids = new ArrayList<>();
+            List<String> encrypted = new ArrayList<>();
+            jdbcTemplate.query(SELECT_UNHASHED_CHUNK_SQL, rs -> {
+                ids.add(rs.getLong(1));
+                encrypted.add(rs.getString(2));
+            }, lo, hi);
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            List<String> numbers = encryptionService.decryptAll(encrypted);
+            jdbcTemplate.batchUpdate(UPDATE_HASH_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    String number = numbers.get(i);
+                    ps.setString(1, encryptionService.hash(number));
+                    ps.setString(2, number.substring(number.length() - 4));
+                    ps.setLong(3, ids.get(i));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return ids.size();
+                }
+            });
+            return ids.size();
+        });
+        return filled != null ? filled : 0;
+    }
+
+    private void rotateChunk(Long rotationId, String pattern, long lo, long hi) {
+        long startedAt = System.nanoTime();
+        Integer rotated = transactionTemplate.execute(status -> {
+            List<Long> ids = new ArrayList<>();
+            List<String> encrypted = new ArrayList<>();
+            jdbcTemplate.query(SELECT_CHUNK_SQL, rs -> {
+                ids.add(rs.getLong(1));
+                encrypted.add(rs.getString(2));
+            }, lo, hi, pattern);
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            List<String> numbers = encryptionService.decryptAll(encrypted);
+            List<String> reencrypted = encryptionService.encryptAll(numbers);
+            jdbcTemplate.batchUpdate(UPDATE_CARD_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    String number = numbers.get(i);
+                    ps.setString(1, reencrypted.get(i));
+                    ps.setString(2, encryptionService.hash(number));
+                    ps.setString(3, number.substring(number.length() - 4));
+                    ps.setLong(4, ids.get(i));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return ids.size();
+                }
+            });
+            return ids.size();
+        });
+        chunkDuration.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        if (rotated != null && rotated > 0) {
+            reencryptedCounter.increment(rotated);
+            jdbcTemplate.update(PROGRESS_SQL, rotated, rotationId);
+            log.debug("Перешифрованы номера карт в диапазоне ID [{}, {}): {}", lo, hi, rotated);
+        }
+    }
+}
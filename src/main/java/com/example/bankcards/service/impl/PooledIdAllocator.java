@@ -0,0 +1,53 @@
+package com.example.bankcards.service.impl;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+// Идентификаторы для строк, которые вставляются в обход Hibernate: движок балансов заранее выдаёт ID
+// транзакций клиенту, массовый выпуск вставляет карты JDBC-пакетами. Последовательность работает
+// по схеме pooled-lo, как и генератор Hibernate: nextval — начало диапазона из INCREMENT BY значений
+public final class PooledIdAllocator {
+    private static final String INCREMENT_SQL = "SELECT seqincrement FROM pg_sequence WHERE seqrelid = ?::regclass";
+    private static final String NEXT_RANGES_SQL = "SELECT nextval(?::regclass) FROM generate_series(1, ?)";
+    private final JdbcTemplate jdbcTemplate;
+    private final String sequenceName;
+    private final int blockSize;
+    private long increment;
+    private long[] rangeStarts = new long[0];
+    private int range;
+    private long offset;
+
+    public PooledIdAllocator(JdbcTemplate jdbcTemplate, String sequenceName, int blockSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sequenceName = sequenceName;
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    public synchronized long[] allocate(int count) {
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            if (range == rangeStarts.length) {
+                fetchRanges(Math.max(blockSize, count - i));
+            }
+            ids[i] = rangeStarts[range] + offset;
+            if (++offset == increment) {
+                offset = 0;
+                range++;
+            }
+        }
+        return ids;
+    }
+
+    private void fetchRanges(int ids) {
+        if (increment == 0) {
+            Long configured = jdbcTemplate.queryForObject(INCREMENT_SQL, Long.class, sequenceName);
+            increment = configured == null ? 1 : Math.max(1, configured);
+        }
+        long rangeCount = (ids + increment - 1) / increment;
+        List<Long> fetched = jdbcTemplate.queryForList(NEXT_RANGES_SQL, Long.class, sequenceName, rangeCount);
+        rangeStarts = fetched.stream().mapToLong(Long::longValue).toArray();
+        range = 0;
+        offset = 0;
+    }
+}
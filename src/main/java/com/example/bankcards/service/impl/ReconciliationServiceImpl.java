@@ -0,0 +1,292 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.reconciliation.ReconciliationDiscrepancy;
+import com.example.bankcards.dto.reconciliation.ReconciliationRunResponse;
+import com.example.bankcards.exception.ReconciliationConflictException;
+import com.example.bankcards.exception.ReconciliationRunNotFoundException;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.service.ReconciliationService;
+import com.example.bankcards.service.impl.engine.BalanceEngine;
+import com.example.bankcards.util.Money;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Сверка cards.balance с начальным балансом и суммой успешных переводов. Пространство ID карт делится
+// пополам, пока диапазон не станет не больше range-size; каждый диапазон сверяется одним агрегирующим
+// запросом, который сам пишет расхождения в отчёт. Все подзапросы выполняются в одном снимке, поэтому
+// переводы, идущие во время сверки, видны либо целиком, либо не видны вовсе
+@Service
+@Slf4j
+public class ReconciliationServiceImpl implements ReconciliationService {
+    private static final int MAX_REPORT_SIZE = 1000;
+    private static final String FAIL_STALE_SQL =
+            "UPDATE reconciliation_runs SET status = 'FAILED', finished_at = LOCALTIMESTAMP, error = 'Сверка прервана' " +
+                    "WHERE status = 'RUNNING' AND started_at < LOCALTIMESTAMP - ? * INTERVAL '1 millisecond'";
+    private static final String INSERT_RUN_SQL = "INSERT INTO reconciliation_runs (status) VALUES ('RUNNING') RETURNING id";
+    private static final String BOUNDS_SQL = "SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM cards";
+    private static final String RECONCILE_RANGE_SQL =
+            "WITH outgoing AS (" +
+                    "SELECT from_card_id AS card_id, SUM(amount) AS amount FROM transactions " +
+                    "WHERE status = 'SUCCESS' AND from_card_id >= :lo AND from_card_id < :hi GROUP BY from_card_id" +
+                    "), incoming AS (" +
+                    "SELECT to_card_id AS card_id, SUM(amount) AS amount FROM transactions " +
+                    "WHERE status = 'SUCCESS' AND to_card_id >= :lo AND to_card_id < :hi GROUP BY to_card_id" +
+                    "), buckets AS (" +
+                    "SELECT card_id, SUM(balance) AS balance FROM card_balance_buckets " +
+                    "WHERE card_id >= :lo AND card_id < :hi GROUP BY card_id" +
+                    "), checked AS (" +
+                    "SELECT c.id, c.opening_balance + COALESCE(i.amount, 0) - COALESCE(o.amount, 0) AS expected, " +
+                    "c.balance + COALESCE(b.balance, 0) AS actual FROM cards c " +
+                    "LEFT JOIN outgoing o ON o.card_id = c.id " +
+                    "LEFT JOIN incoming i ON i.card_id = c.id " +
+                    "LEFT JOIN buckets b ON b.card_id = c.id " +
+                    "WHERE c.id >= :lo AND c.id < :hi" +
+                    "), found AS (" +
+                    "INSERT INTO reconciliation_discrepancies (run_id, card_id, expected_balance, actual_balance) " +
+                    "SELECT :runId, id, expected, actual FROM checked WHERE expected <> actual RETURNING 1" +
+                    ") " +
+                    "SELECT (SELECT COUNT(*) FROM checked) AS checked, (SELECT COUNT(*) FROM found) AS found";
+    private static final String FINISH_RUN_SQL =
+            "UPDATE reconciliation_runs SET status = ?, finished_at = LOCALTIMESTAMP, ranges = ?, cards_checked = ?, " +
+                    "discrepancies = ?, error = ? WHERE id = ?";
+    private static final String SELECT_RUN_SQL =
+            "SELECT id, status, started_at, finished_at, ranges, cards_checked, discrepancies, error " +
+                    "FROM reconciliation_runs WHERE id = ?";
+    private static final String SELECT_DISCREPANCIES_SQL =
+            "SELECT card_id, expected_balance, actual_balance FROM reconciliation_discrepancies " +
+                    "WHERE run_id = ? ORDER BY card_id LIMIT ?";
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<BalanceEngine> balanceEngine;
+    private final ObjectProvider<LedgerService> ledgerService;
+    private final ForkJoinPool pool;
+    private final ExecutorService coordinator;
+    private final long rangeSize;
+    private final double dutyCycle;
+    private final long statementTimeoutMs;
+    private final long staleAfterMs;
+    private final Timer rangeDuration;
+    private final Counter discrepancyCounter;
+
+    public ReconciliationServiceImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                     ObjectProvider<BalanceEngine> balanceEngine, ObjectProvider<LedgerService> ledgerService,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${reconciliation.parallelism:2}") int parallelism,
+                                     @Value("${reconciliation.range-size:10000}") long rangeSize,
+                                     @Value("${reconciliation.duty-cycle:0.5}") double dutyCycle,
+                                     @Value("${reconciliation.statement-timeout-ms:60000}") long statementTimeoutMs,
+                                     @Value("${reconciliation.stale-after-ms:21600000}") long staleAfterMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.balanceEngine = balanceEngine;
+        this.ledgerService = ledgerService;
+        this.rangeSize = Math.max(1, rangeSize);
+        this.dutyCycle = Math.min(Math.max(dutyCycle, 0.05), 1.0);
+        this.statementTimeoutMs = statementTimeoutMs;
+        this.staleAfterMs = staleAfterMs;
+        int threads = Math.max(1, parallelism);
+        // Пул не создаёт компенсирующих потоков при блокировке в join: к базе одновременно обращаются
+        // не больше parallelism потоков сверки, и пул соединений остаётся переводам
+        this.pool = new ForkJoinPool(threads, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("reconciliation-" + thread.getPoolIndex());
+            return thread;
+        }, null, false, threads, threads, 1, forkJoinPool -> true, 60, TimeUnit.SECONDS);
+        this.coordinator = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reconciliation-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.rangeDuration = Timer.builder("bank.reconciliation.range.duration")
+                .description("Длительность сверки одного диапазона ID карт")
+                .register(meterRegistry);
+        this.discrepancyCounter = Counter.builder("bank.reconciliation.discrepancies")
+                .description("Количество найденных расхождений баланса")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        coordinator.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    @Scheduled(cron = "${reconciliation.cron:-}")
+    public void scheduledRun() {
+        try {
+            startRun();
+        } catch (ReconciliationConflictException e) {
+            log.warn("Плановая сверка балансов не запущена: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public ReconciliationRunResponse startRun() {
+        if (balanceEngine.getIfAvailable() != null || ledgerService.getIfAvailable() != null) {
+            // cards.balance в этих режимах — отстающая проекция, и сверка показала бы ложные расхождения
+            throw new ReconciliationConflictException("Сверка недоступна, когда балансом управляет движок или журнал проводок");
+        }
+        int failed = jdbcTemplate.update(FAIL_STALE_SQL, staleAfterMs);
+        if (failed > 0) {
+            log.warn("Зависших сверок помечено как прерванные: {}", failed);
+        }
+        Long runId;
+        try {
+            runId = jdbcTemplate.queryForObject(INSERT_RUN_SQL, Long.class);
+        } catch (DuplicateKeyException e) {
+            throw new ReconciliationConflictException("Сверка балансов уже выполняется");
+        }
+        log.info("Запущена сверка балансов ID {}", runId);
+        coordinator.execute(() -> run(runId));
+        return getRun(runId, 0);
+    }
+
+    @Override
+    public ReconciliationRunResponse getRun(Long id, int limit) {
+        List<ReconciliationRunResponse> runs = jdbcTemplate.query(SELECT_RUN_SQL, (rs, rowNum) -> {
+            ReconciliationRunResponse response = new ReconciliationRunResponse();
+            response.setId(rs.getLong("id"));
+            response.setStatus(ReconciliationRunResponse.Status.valueOf(rs.getString("status")));
+            response.setStartedAt(rs.getObject("started_at", LocalDateTime.class));
+            response.setFinishedAt(rs.getObject("finished_at", LocalDateTime.class));
+            response.setRanges(rs.getInt("ranges"));
+            response.setCardsChecked(rs.getLong("cards_checked"));
+            response.setDiscrepancyCount(rs.getLong("discrepancies"));
+            response.setError(rs.getString("error"));
+            return response;
+        }, id);
+        if (runs.isEmpty()) {
+            throw new ReconciliationRunNotFoundException("Сверка с ID " + id + " не найдена");
+        }
+        ReconciliationRunResponse response = runs.get(0);
+        int reportSize = Math.min(Math.max(limit, 0), MAX_REPORT_SIZE);
+        response.setDiscrepancies(reportSize == 0 ? List.of() : jdbcTemplate.query(SELECT_DISCREPANCIES_SQL,
+                (rs, rowNum) -> new ReconciliationDiscrepancy(rs.getLong("card_id"),
+                        Money.ofMinor(rs.getLong("expected_balance")),
+                        Money.ofMinor(rs.getLong("actual_balance"))),
+                id, reportSize));
+        return response;
+    }
+
+    private void run(Long runId) {
+        long startedAt = System.nanoTime();
+        Progress progress = new Progress();
+        try {
+            Map<String, Object> bounds = jdbcTemplate.queryForMap(BOUNDS_SQL);
+            if (bounds.get("min_id") != null) {
+                long minId = ((Number) bounds.get("min_id")).longValue();
+                long maxId = ((Number) bounds.get("max_id")).longValue();
+                pool.invoke(new RangeTask(runId, progress, minId, maxId + 1));
+            }
+            finish(runId, ReconciliationRunResponse.Status.COMPLETED, progress, null);
+            log.info("Сверка балансов ID {} завершена за {} мс: диапазонов {}, карт {}, расхождений {}", runId,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), progress.ranges.get(),
+                    progress.checked.sum(), progress.found.sum());
+        } catch (RuntimeException e) {
+            log.error("Сверка балансов ID {} завершилась ошибкой: {}", runId, e.getMessage());
+            String error = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+            finish(runId, ReconciliationRunResponse.Status.FAILED, progress,
+                    error.length() > 255 ? error.substring(0, 255) : error);
+        }
+    }
+
+    private void finish(Long runId, ReconciliationRunResponse.Status status, Progress progress, String error) {
+        jdbcTemplate.update(FINISH_RUN_SQL, status.name(), progress.ranges.get(), progress.checked.sum(),
+                progress.found.sum(), error, runId);
+    }
+
+    private void reconcileRange(Long runId, Progress progress, long lo, long hi) {
+        long startedAt = System.nanoTime();
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("lo", lo)
+                .addValue("hi", hi)
+                .addValue("runId", runId);
+        Map<String, Object> result = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("SET LOCAL statement_timeout = " + statementTimeoutMs);
+            return namedJdbcTemplate.queryForMap(RECONCILE_RANGE_SQL, params);
+        });
+        long elapsed = System.nanoTime() - startedAt;
+        rangeDuration.record(elapsed, TimeUnit.NANOSECONDS);
+        long found = ((Number) result.get("found")).longValue();
+        progress.ranges.incrementAndGet();
+        progress.checked.add(((Number) result.get("checked")).longValue());
+        progress.found.add(found);
+        if (found > 0) {
+            discrepancyCounter.increment(found);
+            log.warn("Расхождения балансов в диапазоне ID [{}, {}): {}", lo, hi, found);
+        }
+        throttle(elapsed);
+    }
+
+    // Поток сверки занят запросами не больше duty-cycle своего времени: после диапазона, сверенного
+    // за t, он отдыхает t * (1 - duty-cycle) / duty-cycle, оставляя базу переводам
+    private void throttle(long elapsedNanos) {
+        if (dutyCycle >= 1.0) {
+            return;
+        }
+        long pauseNanos = (long) (elapsedNanos * (1 - dutyCycle) / dutyCycle);
+        try {
+            TimeUnit.NANOSECONDS.sleep(pauseNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Сверка прервана", e);
+        }
+    }
+
+    private static class Progress {
+        private final AtomicInteger ranges = new AtomicInteger();
+        private final LongAdder checked = new LongAdder();
+        private final LongAdder found = new LongAdder();
+    }
+
+    private class RangeTask extends RecursiveAction {
+        private final Long runId;
+        private final Progress progress;
+        private final long lo;
+        private final long hi;
+
+        private RangeTask(Long runId, Progress progress, long lo, long hi) {
+            this.runId = runId;
+            this.progress = progress;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= rangeSize) {
+                reconcileRange(runId, progress, lo, hi);
+                return;
+            }
+            long mid = lo + (hi - lo) / 2;
+            invokeAll(new RangeTask(runId, progress, lo, mid), new RangeTask(runId, progress, mid, hi));
+        }
+    }
+}
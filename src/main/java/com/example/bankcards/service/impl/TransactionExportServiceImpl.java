@@ -0,0 +1,178 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.transaction.TransactionExportFormat;
+import com.example.bankcards.service.TransactionExportService;
+import com.example.bankcards.util.Money;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Выгрузка идёт серверным курсором PostgreSQL: драйвер читает по fetch-size строк только внутри транзакции,
+// а каждая строка сразу пишется в поток ответа, поэтому память не зависит от размера диапазона
+@Service
+@Slf4j
+public class TransactionExportServiceImpl implements TransactionExportService {
+    private static final String SELECT_SQL =
+            "SELECT id, from_card_id, to_card_id, amount, timestamp, status, failure_reason FROM transactions";
+    private static final String CSV_HEADER = "id,from_card_id,to_card_id,amount,timestamp,status,failure_reason\n";
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    public TransactionExportServiceImpl(DataSource dataSource, PlatformTransactionManager transactionManager,
+                                        ObjectMapper objectMapper,
+                                        @Value("${export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public long export(LocalDateTime from, LocalDateTime to, TransactionExportFormat format, OutputStream out)
+            throws IOException {
+        StringBuilder sql = new StringBuilder(SELECT_SQL);
+        List<Object> params = new ArrayList<>(2);
+        if (from != null) {
+            sql.append(" WHERE timestamp >= ?");
+            params.add(from);
+        }
+        if (to != null) {
+            sql.append(from == null ? " WHERE" : " AND").append(" timestamp < ?");
+            params.add(to);
+        }
+        sql.append(" ORDER BY timestamp, id");
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        RowWriter rowWriter = format == TransactionExportFormat.CSV
+                ? new CsvRowWriter(writer)
+                : new NdjsonRowWriter(objectMapper.getFactory().createGenerator(writer));
+        long[] rows = new long[1];
+        try {
+            rowWriter.begin();
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(sql.toString(), rs -> {
+                try {
+                    rowWriter.write(rs);
+                } catch (IOException e) {
+                    // Клиент оборвал соединение: исключение прерывает чтение курсора и закрывает транзакцию
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            }, params.toArray()));
+            rowWriter.end();
+        } catch (UncheckedIOException e) {
+            log.warn("Выгрузка транзакций прервана после {} строк: {}", rows[0], e.getCause().getMessage());
+            throw e.getCause();
+        }
+        writer.flush();
+        log.info("Выгрузка транзакций завершена: {} строк, формат {}", rows[0], format);
+        return rows[0];
+    }
+
+    private interface RowWriter {
+        void begin() throws IOException;
+
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        void end() throws IOException;
+    }
+
+    private static class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        private CsvRowWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            writer.write(CSV_HEADER);
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            writer.write(Long.toString(rs.getLong(1)));
+            writer.write(',');
+            writer.write(Long.toString(rs.getLong(2)));
+            writer.write(',');
+            writer.write(Long.toString(rs.getLong(3)));
+            writer.write(',');
+            writer.write(Money.ofMinor(rs.getLong(4)).toString());
+            writer.write(',');
+            writer.write(rs.getObject(5, LocalDateTime.class).toString());
+            writer.write(',');
+            writer.write(rs.getString(6));
+            writer.write(',');
+            String failureReason = rs.getString(7);
+            if (failureReason != null) {
+                writer.write('"');
+                writer.write(failureReason.replace("\"", "\"\""));
+                writer.write('"');
+            }
+            writer.write('\n');
+        }
+
+        @Override
+        public void end() {
+        }
+    }
+
+    private static class NdjsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+
+        private NdjsonRowWriter(JsonGenerator generator) {
+            this.generator = generator;
+            // Поток ответа закрывает контейнер, генератор только сбрасывает буфер; объекты разделяются
+            // переводом строки, который пишется явно, а не пробелом по умолчанию
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void begin() {
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", rs.getLong(1));
+            generator.writeNumberField("fromCardId", rs.getLong(2));
+            generator.writeNumberField("toCardId", rs.getLong(3));
+            generator.writeFieldName("amount");
+            generator.writeNumber(Money.ofMinor(rs.getLong(4)).toString());
+            generator.writeStringField("timestamp", rs.getObject(5, LocalDateTime.class).toString());
+            generator.writeStringField("status", rs.getString(6));
+            String failureReason = rs.getString(7);
+            if (failureReason != null) {
+                generator.writeStringField("message", failureReason);
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void end() throws IOException {
+            generator.flush();
+        }
+    }
+}
@@ -1,39 +1,153 @@
 package com.example.bankcards.service.impl;
 
+import com.example.bankcards.dto.transaction.BatchTransferRequest;
+import com.example.bankcards.dto.transaction.TransactionHistoryResponse;
 import com.example.bankcards.dto.transaction.TransactionRequest;
 import com.example.bankcards.dto.transaction.TransactionResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transaction;
-import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.CardNotFoundException;
-import com.example.bankcards.exception.InsufficientFundsException;
 import com.example.bankcards.exception.InvalidCardOperationException;
 import com.example.bankcards.exception.SameCardTransferException;
+import com.example.bankcards.exception.TransactionNotFoundException;
+import com.example.bankcards.mapper.TransactionMapper;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.TransactionRepository;
-import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.service.LedgerService;
 import com.example.bankcards.service.TransactionService;
-import lombok.RequiredArgsConstructor;
+import com.example.bankcards.service.auth.CurrentUserService;
+import com.example.bankcards.service.impl.bucket.HotCardTransferExecutor;
+import com.example.bankcards.service.impl.engine.BalanceEngine;
+import com.example.bankcards.service.impl.transfer.AsyncTransferProcessor;
+import com.example.bankcards.service.impl.transfer.BatchTransferExecutor;
+import com.example.bankcards.service.impl.transfer.TransferCompletionNotifier;
+import com.example.bankcards.service.impl.transfer.TransferMetrics;
+import com.example.bankcards.service.transfer.TransferLeg;
+import com.example.bankcards.service.transfer.TransferOutcome;
+import com.example.bankcards.service.transfer.TransferStrategy;
+import com.example.bankcards.util.TransactionCursor;
+import com.example.bankcards.util.TransferUtils;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class TransactionServiceImpl implements TransactionService {
-    private final TransactionRepository transactionRepository;
+    private static final int MAX_HISTORY_PAGE_SIZE = 500;
+    private final CurrentUserService currentUserService;
     private final CardRepository cardRepository;
-    private final UserRepository userRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionMapper transactionMapper;
+    private final TransferStrategy transferStrategy;
+    private final BatchTransferExecutor batchTransferExecutor;
+    private final HotCardTransferExecutor hotCardTransferExecutor;
+    private final AsyncTransferProcessor asyncTransferProcessor;
+    private final TransferCompletionNotifier completionNotifier;
+    private final IdempotencyService idempotencyService;
+    private final ObjectProvider<BalanceEngine> balanceEngine;
+    private final ObjectProvider<LedgerService> ledgerService;
+    private final TransferMetrics.StrategyMeters meters;
+    private final long maxWaitMs;
+
+    public TransactionServiceImpl(CurrentUserService currentUserService, CardRepository cardRepository,
+                                  TransactionRepository transactionRepository, TransactionMapper transactionMapper,
+                                  TransferStrategy transferStrategy, BatchTransferExecutor batchTransferExecutor,
+                                  HotCardTransferExecutor hotCardTransferExecutor,
+                                  AsyncTransferProcessor asyncTransferProcessor,
+                                  TransferCompletionNotifier completionNotifier, IdempotencyService idempotencyService,
+                                  ObjectProvider<BalanceEngine> balanceEngine, ObjectProvider<LedgerService> ledgerService,
+                                  TransferMetrics transferMetrics,
+                                  @Value("${transfer.async.max-wait-ms:30000}") long maxWaitMs) {
+        this.currentUserService = currentUserService;
+        this.cardRepository = cardRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionMapper = transactionMapper;
+        this.transferStrategy = transferStrategy;
+        this.batchTransferExecutor = batchTransferExecutor;
+        this.hotCardTransferExecutor = hotCardTransferExecutor;
+        this.asyncTransferProcessor = asyncTransferProcessor;
+        this.completionNotifier = completionNotifier;
+        this.idempotencyService = idempotencyService;
+        this.balanceEngine = balanceEngine;
+        this.ledgerService = ledgerService;
+        this.meters = transferMetrics.forStrategy(transferStrategy.getName());
+        this.maxWaitMs = maxWaitMs;
+        log.info("Стратегия выполнения переводов: {}", transferStrategy.getName());
+    }
 
     @Override
-    @Transactional
     public TransactionResponse transfer(TransactionRequest request) {
+        return transfer(request, null);
+    }
+
+    @Override
+    public TransactionResponse transfer(TransactionRequest request, String idempotencyKey) {
         log.info("Запрос на перевод: с карты {} на карту {}, сумма {}", request.getFromCardId(), request.getToCardId(), request.getAmount());
-        Long currentUserId = getCurrentUserId();
+        Long currentUserId = currentUserService.getCurrentUserId();
+        if (routesToBuckets(request)) {
+            return idempotencyService.execute(currentUserId, idempotencyKey, request,
+                    () -> record(() -> hotCardTransferExecutor.transfer(currentUserId, request)));
+        }
+        if (transferStrategy.commitsOwnTransaction()) {
+            // Перевод коммитится в потоке стратегии: ответ сохраняется в её транзакции,
+            // а запрос не держит свою транзакцию и соединение с БД, пока ждёт
+            return idempotencyService.executeCommitted(currentUserId, idempotencyKey, request,
+                    onCommit -> record(() -> transferStrategy.transfer(currentUserId, request, onCommit)));
+        }
+        return idempotencyService.execute(currentUserId, idempotencyKey, request,
+                () -> record(() -> transferStrategy.transfer(currentUserId, request)));
+    }
+
+    @Override
+    public List<TransactionResponse> transferBatch(BatchTransferRequest request) {
+        log.info("Запрос на пакетный перевод: {} операций, режим {}", request.getTransfers().size(), request.getMode());
+        Long currentUserId = currentUserService.getCurrentUserId();
+        List<TransferLeg> legs = request.getTransfers().stream()
+                .map(transfer -> new TransferLeg(currentUserId, transfer))
+                .toList();
+        boolean atomic = request.getMode() != BatchTransferRequest.Mode.BEST_EFFORT;
+        BalanceEngine engine = balanceEngine.getIfAvailable();
+        if (engine != null) {
+            return engine.transfer(legs, atomic).stream()
+                    .map(TransferOutcome::getResponse)
+                    .toList();
+        }
+        LedgerService ledger = ledgerService.getIfAvailable();
+        if (ledger != null) {
+            return ledger.transfer(legs, atomic).stream()
+                    .map(TransferOutcome::getResponse)
+                    .toList();
+        }
+        return batchTransferExecutor.execute(legs, atomic);
+    }
+
+    @Override
+    @Transactional
+    public TransactionResponse submitTransfer(TransactionRequest request) {
+        log.info("Запрос на асинхронный перевод: с карты {} на карту {}, сумма {}", request.getFromCardId(), request.getToCardId(), request.getAmount());
+        Long currentUserId = currentUserService.getCurrentUserId();
+        BalanceEngine engine = balanceEngine.getIfAvailable();
+        if (engine != null) {
+            // Движок подтверждает перевод за время сброса журнала, ставить его в очередь PENDING незачем
+            return engine.transfer(currentUserId, request);
+        }
+        if (ledgerService.getIfAvailable() != null) {
+            // Перевод по журналу — только вставки без блокировки карты-получателя, очередь PENDING ему не нужна
+            return transferStrategy.transfer(currentUserId, request);
+        }
         Card fromCard = cardRepository.findById(request.getFromCardId())
                 .orElseThrow(() -> new CardNotFoundException("Карта-отправитель с ID " + request.getFromCardId() + " не найдена"));
         Card toCard = cardRepository.findById(request.getToCardId())
@@ -46,52 +160,95 @@ public class TransactionServiceImpl implements TransactionService {
             log.error("Попытка перевода с чужой карты: {} пользователем: {}", fromCard.getId(), currentUserId);
             throw new InvalidCardOperationException("Вы не можете использовать эту карту для перевода");
         }
-        if (fromCard.getStatus() != Card.Status.ACTIVE) {
-            log.error("Карта-отправитель ID {} не активна: {}", fromCard.getId(), fromCard.getStatus());
-            throw new InvalidCardOperationException("Карта-отправитель не активна");
+        Transaction transaction = TransferUtils.buildTransaction(fromCard, toCard, request.getAmount().getMinorUnits(), Transaction.Status.PENDING);
+        Transaction savedTransaction = transactionRepository.save(transaction);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                asyncTransferProcessor.signal();
+            }
+        });
+        log.info("Перевод поставлен в очередь, ID транзакции: {}", savedTransaction.getId());
+        return transactionMapper.mapToTransactionResponse(savedTransaction);
+    }
+
+    @Override
+    public CompletableFuture<TransactionResponse> getTransaction(Long id, long waitMs) {
+        Long currentUserId = currentUserService.getCurrentUserId();
+        BalanceEngine engine = balanceEngine.getIfAvailable();
+        if (engine != null) {
+            Optional<TransactionResponse> recent = engine.findTransaction(id, currentUserId);
+            if (recent.isPresent()) {
+                return CompletableFuture.completedFuture(recent.get());
+            }
         }
-        if (toCard.getStatus() != Card.Status.ACTIVE) {
-            log.error("Карта-получатель ID {} не активна: {}", toCard.getId(), toCard.getStatus());
-            throw new InvalidCardOperationException("Карта-получатель не активна");
+        CompletableFuture<Void> completion = completionNotifier.register(id);
+        TransactionResponse current = loadTransaction(id, currentUserId);
+        long boundedWaitMs = Math.min(Math.max(waitMs, 0), maxWaitMs);
+        if (!Transaction.Status.PENDING.name().equals(current.getStatus()) || boundedWaitMs == 0) {
+            completionNotifier.unregister(id, completion);
+            return CompletableFuture.completedFuture(current);
         }
-        if (fromCard.getBalance() < request.getAmount()) {
-            log.error("Недостаточно средств на карте ID {}: баланс {}, запрос {}", fromCard.getId(), fromCard.getBalance(), request.getAmount());
-            throw new InsufficientFundsException("Недостаточно средств на карте-отправителе");
+        log.debug("Ожидание завершения транзакции ID {} до {} мс", id, boundedWaitMs);
+        return completion
+                .completeOnTimeout(null, boundedWaitMs, TimeUnit.MILLISECONDS)
+                .thenApplyAsync(ignored -> {
+                    completionNotifier.unregister(id, completion);
+                    return loadTransaction(id, currentUserId);
+                });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public TransactionHistoryResponse getCardHistory(Long cardId, String cursor, int limit) {
+        Long currentUserId = currentUserService.getCurrentUserId();
+        Long ownerId = cardRepository.findOwnerIdById(cardId)
+                .orElseThrow(() -> new CardNotFoundException("Карта с ID " + cardId + " не найдена"));
+        if (!ownerId.equals(currentUserId)) {
+            throw new AccessDeniedException("Доступ к карте запрещен");
         }
-        fromCard.setBalance(fromCard.getBalance() - request.getAmount());
-        toCard.setBalance(toCard.getBalance() + request.getAmount());
-        cardRepository.save(fromCard);
-        cardRepository.save(toCard);
-        Transaction transaction = new Transaction();
-        transaction.setFromCard(fromCard);
-        transaction.setToCard(toCard);
-        transaction.setAmount(request.getAmount());
-        transaction.setStatus(Transaction.Status.SUCCESS);
-        Transaction savedTransaction = transactionRepository.save(transaction);
-        log.info("Перевод успешно выполнен, ID транзакции: {}", savedTransaction.getId());
-        return mapToResponse(savedTransaction);
+        return loadHistory(cardId, cursor, limit);
     }
 
-    private TransactionResponse mapToResponse(Transaction transaction) {
-        TransactionResponse response = new TransactionResponse();
-        response.setId(transaction.getId());
-        response.setFromCardId(transaction.getFromCard().getId());
-        response.setToCardId(transaction.getToCard().getId());
-        response.setAmount(transaction.getAmount());
-        response.setTimestamp(transaction.getTimestamp());
-        response.setStatus(transaction.getStatus().name());
-        return response;
+    @Override
+    @Transactional(readOnly = true)
+    public TransactionHistoryResponse getCardHistoryForAdmin(Long cardId, String cursor, int limit) {
+        if (!cardRepository.existsById(cardId)) {
+            throw new CardNotFoundException("Карта с ID " + cardId + " не найдена");
+        }
+        return loadHistory(cardId, cursor, limit);
     }
 
-    private Long getCurrentUserId() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !authentication.isAuthenticated()) {
-            log.error("Попытка доступа без аутентификации");
-            throw new com.example.bankcards.exception.AuthenticationException("Пользователь не аутентифицирован");
+    private TransactionHistoryResponse loadHistory(Long cardId, String cursor, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_HISTORY_PAGE_SIZE);
+        TransactionCursor after = cursor == null || cursor.isBlank() ? null : TransactionCursor.decode(cursor);
+        // Лишняя строка показывает, есть ли следующая страница, без отдельного COUNT
+        List<TransactionResponse> rows = transactionRepository.findCardHistory(cardId,
+                after == null ? null : after.timestamp(), after == null ? null : after.id(), pageSize + 1);
+        if (rows.size() <= pageSize) {
+            return new TransactionHistoryResponse(rows, null);
         }
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        User user = userRepository.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new com.example.bankcards.exception.UserNotFoundException("Пользователь не найден"));
-        return user.getId();
+        List<TransactionResponse> page = rows.subList(0, pageSize);
+        return new TransactionHistoryResponse(page, TransactionCursor.after(page.get(pageSize - 1)).encode());
+    }
+
+    private TransactionResponse record(Supplier<TransactionResponse> transfer) {
+        meters.getAttempts().increment();
+        TransactionResponse response = meters.getDuration().record(transfer);
+        log.info("Перевод успешно выполнен, ID транзакции: {}", response.getId());
+        return response;
+    }
+
+    // Корзины баланса ведутся только поверх таблицы cards: при движке и журнале проводок
+    // балансом владеют они, и карты не разбиваются
+    private boolean routesToBuckets(TransactionRequest request) {
+        return balanceEngine.getIfAvailable() == null && ledgerService.getIfAvailable() == null
+                && hotCardTransferExecutor.involvesHotCard(request);
+    }
+
+    private TransactionResponse loadTransaction(Long id, Long userId) {
+        return transactionRepository.findByIdForUser(id, userId)
+                .map(transactionMapper::mapToTransactionResponse)
+                .orElseThrow(() -> new TransactionNotFoundException("Транзакция с ID " + id + " не найдена"));
     }
-}
\ No newline at end of file
+}
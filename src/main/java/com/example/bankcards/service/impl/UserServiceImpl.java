@@ -9,6 +9,7 @@ import com.example.bankcards.exception.UsernameAlreadyExistsException;
 import com.example.bankcards.mapper.UserMapper;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.service.UserService;
+import com.example.bankcards.service.auth.UserDetailsService;
 import com.example.bankcards.util.UserUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,6 +29,7 @@ public class UserServiceImpl implements UserService {
     private final PasswordEncoder passwordEncoder;
     private final UserUtils userUtils;
     private final UserMapper userMapper;
+    private final UserDetailsService userDetailsService;
 
     @Override
     @Transactional
@@ -83,6 +85,7 @@ public class UserServiceImpl implements UserService {
             user.setRoles(userUtils.resolveRoles(userRequest.getRoles()));
         }
         User updatedUser = userRepository.save(user);
+        userDetailsService.evictUser(id);
         log.info("Пользователь с ID {} успешно обновлен", id);
         return userMapper.mapToUserResponse(updatedUser);
     }
@@ -96,6 +99,7 @@ public class UserServiceImpl implements UserService {
             throw new UserNotFoundException("Пользователь с ID " + id + " не найден");
         }
         userRepository.deleteById(id);
+        userDetailsService.evictUser(id);
         log.info("Пользователь с ID {} успешно удален", id);
     }
 }
\ No newline at end of file
@@ -11,6 +11,7 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
@@ -39,7 +40,7 @@ public class AuthServiceImpl implements AuthService {
             response.setUsername(userDetails.getUsername());
             response.setExpiration(jwtUtil.getExpirationDateFromToken(jwt).getTime());
             response.setRoles(userDetails.getAuthorities().stream()
-                    .map(Object::toString)
+                    .map(GrantedAuthority::getAuthority)
                     .toArray(String[]::new));
             log.info("Аутентификация завершена успешно для пользователя: {}", authRequest.getUsername());
             return response;
@@ -0,0 +1,53 @@
+package com.example.bankcards.service.impl.auth;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.AuthenticationException;
+import com.example.bankcards.exception.UserNotFoundException;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.AuthenticatedUser;
+import com.example.bankcards.service.auth.CurrentUserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+
+// Текущий пользователь берётся из SecurityContext запроса. Principal из токена уже несёт ID;
+// в БД идём только для principal без ID — старых токенов и тестовых пользователей
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CurrentUserServiceImpl implements CurrentUserService {
+    private final UserRepository userRepository;
+
+    @Override
+    public Long getCurrentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            log.error("Попытка доступа без аутентификации");
+            throw new AuthenticationException("Пользователь не аутентифицирован");
+        }
+        Object principal = authentication.getPrincipal();
+        if (principal instanceof AuthenticatedUser authenticatedUser) {
+            return authenticatedUser.getId();
+        }
+        if (principal instanceof User user && user.getId() != null) {
+            return user.getId();
+        }
+        if (!(principal instanceof UserDetails userDetails)) {
+            log.error("Неизвестный тип principal: {}", principal != null ? principal.getClass().getName() : "null");
+            throw new AuthenticationException("Пользователь не аутентифицирован");
+        }
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new UserNotFoundException("Пользователь не найден"));
+        return user.getId();
+    }
+
+    @Override
+    public boolean isAdmin() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getAuthorities().stream()
+                .anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.bankcards.service.impl.auth;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.repository.RoleRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Справочник ролей читается целиком при старте. Роли не меняются во время работы приложения,
+// поэтому таблица неизменяема; роль, которой не было при старте, дочитывается по имени и добавляется копированием
+@Component
+@Slf4j
+public class RoleCache {
+    private final RoleRepository roleRepository;
+    private volatile Map<Role.RoleType, Role> roles = Map.of();
+
+    public RoleCache(RoleRepository roleRepository) {
+        this.roleRepository = roleRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        Map<Role.RoleType, Role> loaded = new EnumMap<>(Role.RoleType.class);
+        for (Role role : roleRepository.findAll()) {
+            loaded.put(role.getName(), role);
+        }
+        roles = Collections.unmodifiableMap(loaded);
+        log.info("Загружено ролей: {}", loaded.size());
+    }
+
+    public Role get(Role.RoleType type) {
+        Role role = roles.get(type);
+        return role != null ? role : load(type);
+    }
+
+    private synchronized Role load(Role.RoleType type) {
+        Role cached = roles.get(type);
+        if (cached != null) {
+            return cached;
+        }
+        Role role = roleRepository.findByName(type)
+                .orElseThrow(() -> new IllegalStateException("Роль " + type + " не найдена в базе данных"));
+        Map<Role.RoleType, Role> updated = new EnumMap<>(Role.RoleType.class);
+        updated.putAll(roles);
+        updated.put(type, role);
+        roles = Collections.unmodifiableMap(updated);
+        return role;
+    }
+}
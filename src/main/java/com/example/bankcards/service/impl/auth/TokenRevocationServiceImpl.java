@@ -0,0 +1,206 @@
+package com.example.bankcards.service.impl.auth;
+
+import com.example.bankcards.exception.InvalidTokenException;
+import com.example.bankcards.security.BloomFilter;
+import com.example.bankcards.security.VerifiedToken;
+import com.example.bankcards.service.auth.TokenRevocationService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Проверка отзыва не ходит в БД для подавляющего большинства токенов: фильтр Блума отвечает
+// «точно не отозван», и только при попадании в фильтр отзыв подтверждается запросом к revoked_tokens.
+// Фильтр строится из таблицы при старте и дочитывает новые отзывы по revoked_at; отзыв на другом
+// экземпляре начинает действовать здесь не позже чем через refresh-interval-ms. Пока фильтр
+// не построен, каждый токен проверяется по таблице. Все моменты времени берутся по часам БД
+// (LOCALTIMESTAMP сессии), как и значения по умолчанию в revoked_tokens: часы JVM в сравнениях не участвуют
+@Service
+@Slf4j
+public class TokenRevocationServiceImpl implements TokenRevocationService {
+    // Срок передаётся в миллисекундах эпохи и переводится в локальное время сессии, в котором
+    // считаются revoked_at и сравнение с LOCALTIMESTAMP при очистке
+    private static final String INSERT_SQL =
+            "INSERT INTO revoked_tokens (jti, user_id, expires_at) " +
+                    "VALUES (?, ?, to_timestamp(? / 1000.0)::TIMESTAMP) ON CONFLICT DO NOTHING";
+    private static final String NOW_SQL = "SELECT LOCALTIMESTAMP";
+    private static final String EXISTS_SQL = "SELECT EXISTS (SELECT 1 FROM revoked_tokens WHERE jti = ?)";
+    private static final String COUNT_SQL = "SELECT count(*) FROM revoked_tokens";
+    private static final String LOAD_SQL = "SELECT jti FROM revoked_tokens";
+    private static final String LOAD_SINCE_SQL = "SELECT jti FROM revoked_tokens WHERE revoked_at > ?";
+    private static final String DELETE_EXPIRED_SQL =
+            "DELETE FROM revoked_tokens WHERE ctid IN " +
+                    "(SELECT ctid FROM revoked_tokens WHERE expires_at < LOCALTIMESTAMP LIMIT ?)";
+    private final JdbcTemplate jdbcTemplate;
+    private final long expectedRevocations;
+    private final double falsePositiveRate;
+    private final Duration refreshOverlap;
+    private final int purgeBatchSize;
+    // Подтверждённые отзывы не меняются, поэтому повторное предъявление отозванного токена не идёт в БД
+    private final Cache<UUID, Boolean> confirmed;
+    private final Counter negatives;
+    private final Counter falsePositives;
+    private final Counter revokedHits;
+    private volatile BloomFilter filter;
+    private volatile LocalDateTime loadedUntil;
+
+    public TokenRevocationServiceImpl(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                                      @Value("${jwt.revocation.expected-revocations:100000}") long expectedRevocations,
+                                      @Value("${jwt.revocation.false-positive-rate:0.001}") double falsePositiveRate,
+                                      @Value("${jwt.revocation.refresh-overlap-ms:60000}") long refreshOverlapMs,
+                                      @Value("${jwt.revocation.purge-batch-size:1000}") int purgeBatchSize,
+                                      @Value("${jwt.revocation.confirmed-cache-size:10000}") long confirmedCacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.expectedRevocations = expectedRevocations;
+        this.falsePositiveRate = falsePositiveRate;
+        this.refreshOverlap = Duration.ofMillis(refreshOverlapMs);
+        this.purgeBatchSize = purgeBatchSize;
+        this.confirmed = Caffeine.newBuilder().maximumSize(confirmedCacheSize).build();
+        this.negatives = checks(meterRegistry, "negative", "Токены, отсеянные фильтром Блума без запроса к БД");
+        this.falsePositives = checks(meterRegistry, "false_positive", "Ложные срабатывания фильтра Блума");
+        this.revokedHits = checks(meterRegistry, "revoked", "Предъявления отозванных токенов");
+    }
+
+    @Override
+    public void revoke(VerifiedToken token) {
+        UUID jti = parseJti(token);
+        if (jti == null || token.userId() == null) {
+            throw new InvalidTokenException("Токен выпущен без идентификатора и не может быть отозван");
+        }
+        jdbcTemplate.update(INSERT_SQL, jti, token.userId(), token.expiresAt().toEpochMilli());
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(jti);
+        }
+        confirmed.put(jti, Boolean.TRUE);
+        log.info("Отозван токен {} пользователя ID {}", jti, token.userId());
+    }
+
+    @Override
+    public boolean isRevoked(VerifiedToken token) {
+        UUID jti = parseJti(token);
+        if (jti == null) {
+            return false;
+        }
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(jti)) {
+            negatives.increment();
+            return false;
+        }
+        if (confirmed.getIfPresent(jti) != null) {
+            revokedHits.increment();
+            return true;
+        }
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(EXISTS_SQL, Boolean.class, jti))) {
+            confirmed.put(jti, Boolean.TRUE);
+            revokedHits.increment();
+            return true;
+        }
+        falsePositives.increment();
+        return false;
+    }
+
+    @Override
+    public int purgeExpired() {
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(DELETE_EXPIRED_SQL, purgeBatchSize);
+            total += deleted;
+        } while (deleted == purgeBatchSize);
+        if (total > 0) {
+            log.info("Удалено истёкших отзывов токенов: {}", total);
+            // Биты удалённых отзывов из фильтра не убрать, поэтому после очистки он строится заново
+            rebuild();
+        }
+        return total;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.error("Не удалось построить фильтр отозванных токенов, проверка идёт по БД: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.refresh-interval-ms:5000}",
+            initialDelayString = "${jwt.revocation.refresh-interval-ms:5000}")
+    public synchronized void refresh() {
+        try {
+            if (filter == null) {
+                rebuild();
+                return;
+            }
+            BloomFilter current = filter;
+            LocalDateTime readAt = databaseNow();
+            // Отзывы с ранним revoked_at могут закоммититься позже уже прочитанных,
+            // поэтому окно перечитывается с перекрытием: повторное добавление в фильтр безвредно
+            jdbcTemplate.query(LOAD_SINCE_SQL, rs -> {
+                current.put(rs.getObject("jti", UUID.class));
+            }, Timestamp.valueOf(loadedUntil.minus(refreshOverlap)));
+            loadedUntil = readAt;
+        } catch (RuntimeException e) {
+            log.error("Ошибка обновления фильтра отозванных токенов: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval-ms:3600000}",
+            initialDelayString = "${jwt.revocation.purge-interval-ms:3600000}")
+    public void purge() {
+        try {
+            purgeExpired();
+        } catch (RuntimeException e) {
+            log.error("Ошибка очистки истёкших отзывов токенов: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void rebuild() {
+        Long count = jdbcTemplate.queryForObject(COUNT_SQL, Long.class);
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedRevocations, 2 * (count != null ? count : 0)),
+                falsePositiveRate);
+        // Отметка берётся до чтения: всё, что закоммичено позже, попадёт в окно следующего обновления
+        LocalDateTime readAt = databaseNow();
+        jdbcTemplate.query(LOAD_SQL, rs -> {
+            rebuilt.put(rs.getObject("jti", UUID.class));
+        });
+        loadedUntil = readAt;
+        filter = rebuilt;
+        log.info("Фильтр отозванных токенов построен: {} записей", count);
+    }
+
+    private LocalDateTime databaseNow() {
+        return jdbcTemplate.queryForObject(NOW_SQL, LocalDateTime.class);
+    }
+
+    private static UUID parseJti(VerifiedToken token) {
+        if (token.tokenId() == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(token.tokenId());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Counter checks(MeterRegistry meterRegistry, String result, String description) {
+        return Counter.builder("bank.jwt.revocation.checks")
+                .description(description)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -2,23 +2,85 @@ package com.example.bankcards.service.impl.auth;
 
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.AuthenticatedUser;
 import com.example.bankcards.service.auth.UserDetailsService;
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
+
+// Пользователи кэшируются неизменяемым снимком с ролями и хэшем пароля. Изменение и удаление
+// пользователя сбрасывают его запись сразу и ещё раз после коммита, чтобы параллельная загрузка
+// не вернула в кэш состояние до коммита; срок жизни записи ограничивает расхождение между экземплярами
 @Service
 @Primary
-@RequiredArgsConstructor
 @Slf4j
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
     private final UserRepository userRepository;
+    private final Cache<String, AuthenticatedUser> users;
+
+    public UserDetailsServiceImpl(UserRepository userRepository, MeterRegistry meterRegistry,
+                                  @Value("${user-cache.max-size:10000}") long maxSize,
+                                  @Value("${user-cache.expire-after-write-seconds:300}") long expireAfterWriteSeconds) {
+        this.userRepository = userRepository;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(expireAfterWriteSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "users");
+    }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        return users.get(username, this::load);
+    }
+
+    // Вызывается DaoAuthenticationProvider после успешного входа, если cost хэша устарел
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        AuthenticatedUser current = (AuthenticatedUser) user;
+        userRepository.updatePassword(current.getId(), newPassword);
+        evictUser(current.getId());
+        log.info("Хэш пароля пользователя ID {} пересчитан с текущим cost", current.getId());
+        return new AuthenticatedUser(current.getId(), current.getUsername(), newPassword,
+                current.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+    }
+
+    @Override
+    public void evictUser(Long userId) {
+        evict(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(userId);
+                }
+            });
+        }
+    }
+
+    // Записей немного, а изменения пользователей редки: поиск по ID перебором избавляет от второго индекса
+    // и находит запись даже после смены username
+    private void evict(Long userId) {
+        if (users.asMap().values().removeIf(user -> userId.equals(user.getId()))) {
+            log.debug("Пользователь ID {} удалён из кэша", userId);
+        }
+    }
+
+    private AuthenticatedUser load(String username) {
         log.debug("Загрузка пользователя по username: {}", username);
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> {
@@ -26,8 +88,10 @@ public class UserDetailsServiceImpl implements UserDetailsService {
                     return new UsernameNotFoundException(
                             "Пользователь с именем '" + username + "' не найден");
                 });
-        log.info("Пользователь успешно загружен: {} с ролями: {}",
-                username, user.getAuthorities().stream().map(Object::toString).toList());
-        return user;
+        if (log.isDebugEnabled()) {
+            log.debug("Пользователь успешно загружен: {} с ролями: {}",
+                    username, user.getAuthorities().stream().map(Object::toString).toList());
+        }
+        return AuthenticatedUser.from(user);
     }
-}
\ No newline at end of file
+}
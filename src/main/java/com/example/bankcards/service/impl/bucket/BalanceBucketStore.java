@@ -0,0 +1,186 @@
+package com.example.bankcards.service.impl.bucket;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.InvalidCardOperationException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Корзины баланса горячих карт. Зачисление блокирует одну случайную корзину, поэтому N корзин
+// делят поток зачислений на карту мерчанта между N строками вместо одной строки cards
+@Component
+@Slf4j
+public class BalanceBucketStore {
+    private static final String HOT_CARD_IDS_SQL = "SELECT id FROM cards WHERE balance_buckets > 0";
+    private static final String SUM_SQL = "SELECT COALESCE(SUM(balance), 0) FROM card_balance_buckets WHERE card_id = ?";
+    private static final String CREDIT_SQL =
+            "UPDATE card_balance_buckets SET balance = balance + ? WHERE card_id = ? AND bucket = ?";
+    // Случайная незаблокированная корзина с достаточным остатком; занятые корзины пропускаются, а не ожидаются
+    private static final String TRY_DEBIT_SQL =
+            "UPDATE card_balance_buckets SET balance = balance - ? " +
+                    "WHERE card_id = ? AND balance >= ? AND bucket = (" +
+                    "SELECT bucket FROM card_balance_buckets WHERE card_id = ? AND balance >= ? " +
+                    "ORDER BY random() LIMIT 1 FOR UPDATE SKIP LOCKED)";
+    private static final String LOCK_SQL =
+            "SELECT bucket, balance FROM card_balance_buckets WHERE card_id = ? ORDER BY bucket FOR UPDATE";
+    private static final String DEBIT_SQL =
+            "UPDATE card_balance_buckets SET balance = balance - ? WHERE card_id = ? AND bucket = ?";
+    private static final String DRAIN_SQL =
+            "WITH drained AS (DELETE FROM card_balance_buckets WHERE card_id = ? RETURNING balance) " +
+                    "SELECT COALESCE(SUM(balance), 0) FROM drained";
+    private static final String INSERT_SQL =
+            "INSERT INTO card_balance_buckets (card_id, bucket, balance) VALUES (?, ?, ?)";
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxBuckets;
+    private volatile Set<Long> hotCardIds = Set.of();
+
+    public BalanceBucketStore(JdbcTemplate jdbcTemplate, @Value("${hot-card.max-buckets:64}") int maxBuckets) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxBuckets = maxBuckets;
+    }
+
+    // Список горячих карт перечитывается периодически: карту могли разбить или слить на другом экземпляре.
+    // Устаревший список не нарушает балансы — зачисление без корзины уходит в cards.balance
+    @Scheduled(fixedDelayString = "${hot-card.refresh-interval-ms:5000}")
+    public void refresh() {
+        Set<Long> loaded = Set.copyOf(jdbcTemplate.queryForList(HOT_CARD_IDS_SQL, Long.class));
+        synchronized (this) {
+            if (!loaded.equals(hotCardIds)) {
+                log.info("Горячих карт с корзинами баланса: {}", loaded.size());
+            }
+            hotCardIds = loaded;
+        }
+    }
+
+    public boolean isHot(Long cardId) {
+        return hotCardIds.contains(cardId);
+    }
+
+    public void validateBucketCount(int buckets) {
+        if (buckets < 2 || buckets > maxBuckets) {
+            throw new InvalidCardOperationException("Число корзин баланса должно быть от 2 до " + maxBuckets);
+        }
+    }
+
+    public long sum(Long cardId) {
+        Long sum = jdbcTemplate.queryForObject(SUM_SQL, Long.class, cardId);
+        return sum != null ? sum : 0;
+    }
+
+    // false — корзины нет: карту слили после того, как перевод прочитал число корзин
+    public boolean credit(Long cardId, int buckets, long amount) {
+        int bucket = ThreadLocalRandom.current().nextInt(buckets);
+        return jdbcTemplate.update(CREDIT_SQL, amount, cardId, bucket) == 1;
+    }
+
+    public boolean tryDebit(Long cardId, long amount) {
+        return jdbcTemplate.update(TRY_DEBIT_SQL, amount, cardId, amount, cardId, amount) == 1;
+    }
+
+    public List<Bucket> lockAll(Long cardId) {
+        return jdbcTemplate.query(LOCK_SQL, (rs, rowNum) -> new Bucket(rs.getInt("bucket"), rs.getLong("balance")), cardId);
+    }
+
+    public void debit(Long cardId, int bucket, long amount) {
+        jdbcTemplate.update(DEBIT_SQL, amount, cardId, bucket);
+    }
+
+    // Для путей, которые списывают с заблокированной строки cards (пакеты, очередь PENDING): если основного
+    // баланса горячей карты не хватает, недостающее переносится в него из корзин по убыванию остатка.
+    // Вызывается под блокировкой строки карты; когда и корзин не хватает, ничего не переносится
+    public void refill(Card card, long amount) {
+        if (card.getBalanceBuckets() == 0 || card.getBalance() >= amount) {
+            return;
+        }
+        long missing = amount - card.getBalance();
+        List<Bucket> buckets = new ArrayList<>(lockAll(card.getId()));
+        long available = 0;
+        for (Bucket bucket : buckets) {
+            available += bucket.balance();
+        }
+        if (available < missing) {
+            return;
+        }
+        buckets.sort(Comparator.comparingLong(Bucket::balance).reversed());
+        long remaining = missing;
+        for (Bucket bucket : buckets) {
+            if (remaining == 0) {
+                break;
+            }
+            long taken = Math.min(bucket.balance(), remaining);
+            if (taken > 0) {
+                debit(card.getId(), bucket.bucket(), taken);
+                remaining -= taken;
+            }
+        }
+        card.setBalance(card.getBalance() + missing);
+        log.debug("Баланс карты ID {} пополнен из корзин на {}", card.getId(), missing);
+    }
+
+    // Вызывается под блокировкой строки карты; возвращает сумму удалённых корзин
+    public long drain(Long cardId) {
+        Long drained = jdbcTemplate.queryForObject(DRAIN_SQL, Long.class, cardId);
+        afterCommit(() -> register(cardId, false));
+        return drained != null ? drained : 0;
+    }
+
+    // Остаток от деления достаётся корзине 0
+    public void split(Long cardId, int buckets, long total) {
+        long share = total / buckets;
+        long remainder = total % buckets;
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, cardId);
+                ps.setInt(2, i);
+                ps.setLong(3, i == 0 ? share + remainder : share);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return buckets;
+            }
+        });
+        afterCommit(() -> register(cardId, true));
+    }
+
+    private synchronized void register(Long cardId, boolean hot) {
+        Set<Long> ids = new HashSet<>(hotCardIds);
+        if (hot) {
+            ids.add(cardId);
+        } else {
+            ids.remove(cardId);
+        }
+        hotCardIds = Set.copyOf(ids);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    public record Bucket(int bucket, long balance) {
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.bankcards.service.impl.bucket;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.InvalidCardOperationException;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.mapper.TransactionMapper;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.service.impl.transfer.TransferMetrics;
+import com.example.bankcards.util.Money;
+import com.example.bankcards.util.TransferUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Перевод, в котором участвует горячая карта. Строка горячей карты не блокируется: зачисление меняет
+// одну случайную корзину, списание — корзину с достаточным остатком. Обычная карта перевода меняется
+// условным UPDATE, как в стратегии conditional-update
+@Component
+@Slf4j
+public class HotCardTransferExecutor {
+    private static final String LOAD_CARDS_SQL =
+            "SELECT id, user_id, status, balance, balance_buckets FROM cards WHERE id IN (?, ?)";
+    private static final String LOCK_CARD_BALANCE_SQL = "SELECT balance FROM cards WHERE id = ? FOR UPDATE";
+    private static final String DEBIT_CARD_SQL = "UPDATE cards SET balance = balance - ?, version = version + 1 WHERE id = ?";
+    private final BalanceBucketStore bucketStore;
+    private final CardRepository cardRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionMapper transactionMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransferMetrics.StrategyMeters meters;
+    private final Counter fastDebits;
+    private final Counter slowDebits;
+
+    public HotCardTransferExecutor(BalanceBucketStore bucketStore, CardRepository cardRepository,
+                                   TransactionRepository transactionRepository, TransactionMapper transactionMapper,
+                                   JdbcTemplate jdbcTemplate, TransferMetrics transferMetrics, MeterRegistry meterRegistry) {
+        this.bucketStore = bucketStore;
+        this.cardRepository = cardRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionMapper = transactionMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.meters = transferMetrics.forStrategy("hot-card");
+        this.fastDebits = Counter.builder("bank.transfer.bucket.debits")
+                .description("Списания с горячей карты, покрытые одной свободной корзиной")
+                .tag("path", "single")
+                .register(meterRegistry);
+        this.slowDebits = Counter.builder("bank.transfer.bucket.debits")
+                .description("Списания с горячей карты, собранные из нескольких корзин под блокировкой карты")
+                .tag("path", "merged")
+                .register(meterRegistry);
+    }
+
+    public boolean involvesHotCard(TransactionRequest request) {
+        return bucketStore.isHot(request.getFromCardId()) || bucketStore.isHot(request.getToCardId());
+    }
+
+    @Transactional
+    public TransactionResponse transfer(Long userId, TransactionRequest request) {
+        Long fromCardId = request.getFromCardId();
+        Long toCardId = request.getToCardId();
+        long amount = request.getAmount().getMinorUnits();
+        meters.getAttempts().increment();
+        Map<Long, Card> cards = loadCards(fromCardId, toCardId);
+        Card fromCard = cards.get(fromCardId);
+        if (fromCard == null) {
+            throw new CardNotFoundException("Карта-отправитель с ID " + fromCardId + " не найдена");
+        }
+        Card toCard = cards.get(toCardId);
+        if (toCard == null) {
+            throw new CardNotFoundException("Карта-получатель с ID " + toCardId + " не найдена");
+        }
+        TransferUtils.validateParticipants(fromCard, toCard, userId);
+        try {
+            // Блокировки берутся по возрастанию ID карты, как и в остальных стратегиях
+            if (fromCardId < toCardId) {
+                debit(fromCard, userId, amount);
+                credit(toCard, amount);
+            } else {
+                credit(toCard, amount);
+                debit(fromCard, userId, amount);
+            }
+        } catch (PessimisticLockingFailureException e) {
+            meters.getConflicts().increment();
+            log.error("Не удалось заблокировать карты {} и {}: {}", fromCardId, toCardId, e.getMessage());
+            throw new TransferConflictException("Карта занята другой операцией, повторите перевод позже", e);
+        }
+        Transaction transaction = TransferUtils.buildTransaction(
+                cardRepository.getReferenceById(fromCardId),
+                cardRepository.getReferenceById(toCardId),
+                amount,
+                Transaction.Status.SUCCESS);
+        return transactionMapper.mapToTransactionResponse(transactionRepository.save(transaction));
+    }
+
+    private Map<Long, Card> loadCards(Long fromCardId, Long toCardId) {
+        Map<Long, Card> cards = new HashMap<>();
+        jdbcTemplate.query(LOAD_CARDS_SQL, rs -> {
+            User user = new User();
+            user.setId(rs.getLong("user_id"));
+            Card card = new Card();
+            card.setId(rs.getLong("id"));
+            card.setUser(user);
+            card.setStatus(Card.Status.valueOf(rs.getString("status")));
+            card.setBalance(rs.getLong("balance"));
+            card.setBalanceBuckets(rs.getInt("balance_buckets"));
+            cards.put(card.getId(), card);
+        }, fromCardId, toCardId);
+        return cards;
+    }
+
+    private void debit(Card card, Long userId, long amount) {
+        if (card.getBalanceBuckets() == 0) {
+            if (cardRepository.debitIfSufficient(card.getId(), userId, amount) == 0) {
+                throw insufficientFunds(card.getId(), card.getBalance(), amount);
+            }
+            return;
+        }
+        if (bucketStore.tryDebit(card.getId(), amount)) {
+            fastDebits.increment();
+            return;
+        }
+        slowDebits.increment();
+        debitAcrossBuckets(card.getId(), amount);
+    }
+
+    // Ни одна свободная корзина не покрывает сумму: строка карты и все её корзины блокируются по порядку,
+    // и сумма собирается с основного баланса и корзин по убыванию остатка
+    private void debitAcrossBuckets(Long cardId, long amount) {
+        Long base = jdbcTemplate.queryForObject(LOCK_CARD_BALANCE_SQL, Long.class, cardId);
+        List<BalanceBucketStore.Bucket> buckets = new ArrayList<>(bucketStore.lockAll(cardId));
+        long total = base != null ? base : 0;
+        for (BalanceBucketStore.Bucket bucket : buckets) {
+            total += bucket.balance();
+        }
+        if (total < amount) {
+            throw insufficientFunds(cardId, total, amount);
+        }
+        long remaining = amount;
+        long fromBase = Math.min(base != null ? base : 0, remaining);
+        if (fromBase > 0) {
+            jdbcTemplate.update(DEBIT_CARD_SQL, fromBase, cardId);
+            remaining -= fromBase;
+        }
+        buckets.sort(Comparator.comparingLong(BalanceBucketStore.Bucket::balance).reversed());
+        for (BalanceBucketStore.Bucket bucket : buckets) {
+            if (remaining == 0) {
+                break;
+            }
+            long taken = Math.min(bucket.balance(), remaining);
+            if (taken > 0) {
+                bucketStore.debit(cardId, bucket.bucket(), taken);
+                remaining -= taken;
+            }
+        }
+    }
+
+    private void credit(Card card, long amount) {
+        if (card.getBalanceBuckets() > 0 && bucketStore.credit(card.getId(), card.getBalanceBuckets(), amount)) {
+            return;
+        }
+        // Корзины могли слить после чтения карты — тогда зачисление уходит в основной баланс
+        if (cardRepository.creditIfActive(card.getId(), amount) == 0) {
+            log.error("Карта-получатель ID {} не активна", card.getId());
+            throw new InvalidCardOperationException("Карта-получатель не активна");
+        }
+    }
+
+    private InsufficientFundsException insufficientFunds(Long cardId, long balance, long amount) {
+        log.error("Недостаточно средств на карте ID {}: баланс {}, запрос {}", cardId,
+                Money.ofMinor(balance), Money.ofMinor(amount));
+        return new InsufficientFundsException("Недостаточно средств на карте-отправителе");
+    }
+}
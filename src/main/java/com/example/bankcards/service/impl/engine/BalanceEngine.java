@@ -0,0 +1,607 @@
+package com.example.bankcards.service.impl.engine;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.InvalidCardOperationException;
+import com.example.bankcards.exception.SameCardTransferException;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.exception.TransferOutcomeUnknownException;
+import com.example.bankcards.service.impl.PooledIdAllocator;
+import com.example.bankcards.service.impl.transfer.InMemoryTransferStrategy;
+import com.example.bankcards.service.transfer.TransferLeg;
+import com.example.bankcards.service.transfer.TransferOutcome;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Балансы и статусы карт живут в памяти и меняются только потоком движка, который забирает команды
+// из кольцевого буфера пакетами. Принятые команды пишутся в журнал, журнал сбрасывается на диск один раз
+// на пакет, и только после этого отправители получают ответ. Таблицы cards/transactions обновляет проекция
+@Component
+@ConditionalOnProperty(name = "transfer.strategy", havingValue = InMemoryTransferStrategy.NAME)
+@Slf4j
+public class BalanceEngine {
+    private static final long MISSING = Long.MIN_VALUE;
+    private static final String LOAD_CARDS_SQL = "SELECT id, user_id, status, balance FROM cards";
+    private final JdbcTemplate jdbcTemplate;
+    private final CardTable cards;
+    private final CommandRingBuffer ring;
+    private final MappedJournal journal;
+    private final SnapshotStore snapshotStore;
+    private final EngineProjector projector;
+    private final PooledIdAllocator idAllocator;
+    private final AtomicReferenceArray<RecentTransaction> recentTransactions;
+    private final Path journalDirectory;
+    private final int maxBatchSize;
+    private final long snapshotInterval;
+    private final long ackTimeoutMs;
+    private final Timer groupCommit;
+    private final DistributionSummary batchSize;
+    private final Counter cardSyncFailures;
+    private final Thread thread;
+    private volatile boolean accepting;
+    private volatile boolean running;
+    // Состояние в памяти разошлось с журналом: команды больше не применяются, а снимок не пишется,
+    // чтобы после перезапуска состояние восстановилось из журнала
+    private volatile boolean halted;
+    private boolean started;
+    private volatile long sequence;
+    private long lastSnapshotSequence;
+
+    public BalanceEngine(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry,
+                         @Value("${engine.journal-dir:data/engine}") String journalDir,
+                         @Value("${engine.ring-size:65536}") int ringSize,
+                         @Value("${engine.max-batch-size:1024}") int maxBatchSize,
+                         @Value("${engine.journal-segment-size-mb:64}") int segmentSizeMb,
+                         @Value("${engine.snapshot-interval:1000000}") long snapshotInterval,
+                         @Value("${engine.projection-batch-size:1000}") int projectionBatchSize,
+                         @Value("${engine.projection-queue-capacity:1000000}") int projectionQueueCapacity,
+                         @Value("${engine.ack-timeout-ms:5000}") long ackTimeoutMs,
+                         @Value("${engine.id-block-size:1000}") int idBlockSize,
+                         @Value("${engine.recent-transactions:65536}") int recentTransactions,
+                         @Value("${engine.expected-cards:100000}") int expectedCards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.journalDirectory = Path.of(journalDir);
+        this.cards = new CardTable(expectedCards);
+        this.ring = new CommandRingBuffer(ringSize);
+        this.journal = new MappedJournal(journalDirectory, segmentSizeMb * 1024 * 1024);
+        this.snapshotStore = new SnapshotStore(journalDirectory);
+        this.projector = new EngineProjector(jdbcTemplate, new TransactionTemplate(transactionManager),
+                projectionQueueCapacity, projectionBatchSize);
+        this.idAllocator = new PooledIdAllocator(jdbcTemplate, "transactions_id_seq", idBlockSize);
+        this.recentTransactions = new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(1, recentTransactions)));
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.snapshotInterval = Math.max(1, snapshotInterval);
+        this.ackTimeoutMs = ackTimeoutMs;
+        this.thread = new Thread(this::runLoop, "balance-engine");
+        this.thread.setDaemon(true);
+        this.groupCommit = Timer.builder("bank.engine.group.commit")
+                .description("Длительность сброса журнала движка балансов на диск")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("bank.engine.batch.size")
+                .description("Количество команд, подтверждённых одним сбросом журнала")
+                .register(meterRegistry);
+        this.cardSyncFailures = Counter.builder("bank.engine.card.sync.failures")
+                .description("Количество изменений карт, которые движок балансов так и не принял")
+                .register(meterRegistry);
+        Gauge.builder("bank.engine.ring.remaining", ring, CommandRingBuffer::remainingCapacity)
+                .description("Свободные слоты кольцевого буфера движка балансов")
+                .register(meterRegistry);
+        Gauge.builder("bank.engine.projection.lag", this, engine -> engine.sequence - engine.projector.getProjectedSequence())
+                .description("Количество записей журнала, ещё не перенесённых в PostgreSQL")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException, InterruptedException {
+        recover();
+        started = true;
+        running = true;
+        thread.start();
+        accepting = true;
+        log.info("Движок балансов запущен: {} карт, номер журнала {}", cards.size(), sequence);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        if (!started) {
+            return;
+        }
+        accepting = false;
+        running = false;
+        thread.join(TimeUnit.SECONDS.toMillis(30));
+        if (!halted) {
+            snapshotStore.write(sequence, cards);
+        }
+        projector.stop();
+        journal.close();
+        log.info("Движок балансов остановлен, номер журнала {}", sequence);
+    }
+
+    public TransactionResponse transfer(Long userId, TransactionRequest request) {
+        long[] transactionIds = idAllocator.allocate(1);
+        CompletableFuture<List<TransferOutcome>> future =
+                publishTransfer(List.of(new TransferLeg(userId, request)), transactionIds, true);
+        // ID перевода выделен до публикации, поэтому клиент, не дождавшийся подтверждения, может запросить статус
+        return await(future, transactionIds[0], future.thenApply(outcomes -> outcomes.get(0).getResponse()))
+                .get(0).getResponse();
+    }
+
+    public List<TransferOutcome> transfer(List<TransferLeg> legs, boolean atomic) {
+        long[] transactionIds = idAllocator.allocate(legs.size());
+        return await(publishTransfer(legs, transactionIds, atomic));
+    }
+
+    public void upsertCard(long cardId, long ownerId, Card.Status status, long balance) {
+        await(publish(command -> {
+            command.type = EngineCommand.Type.UPSERT_CARD;
+            command.cardId = cardId;
+            command.ownerId = ownerId;
+            command.status = CardTable.encodeStatus(status);
+            command.balance = balance;
+        }));
+    }
+
+    public void removeCard(long cardId) {
+        await(publish(command -> {
+            command.type = EngineCommand.Type.REMOVE_CARD;
+            command.cardId = cardId;
+        }));
+    }
+
+    // Изменение карты из PostgreSQL не дошло до движка: он мог бы провести перевод с заблокированной
+    // или удалённой карты, поэтому перестаёт принимать операции до перезапуска, который сверит карты с таблицей
+    public void markOutOfSync(long cardId, RuntimeException cause) {
+        cardSyncFailures.increment();
+        accepting = false;
+        log.error("Изменение карты ID {} не передано в движок балансов, приём операций остановлен до перезапуска: {}",
+                cardId, cause.getMessage());
+    }
+
+    public OptionalLong findBalance(long cardId) {
+        long balance = cards.readBalance(cardId, MISSING);
+        return balance == MISSING ? OptionalLong.empty() : OptionalLong.of(balance);
+    }
+
+    // Ответы последних переводов: проекция отстаёт от движка, а клиент может запросить транзакцию сразу
+    public Optional<TransactionResponse> findTransaction(long transactionId, long userId) {
+        RecentTransaction recent = recentTransactions.get((int) transactionId & (recentTransactions.length() - 1));
+        if (recent == null || recent.response.getId() != transactionId
+                || (recent.fromOwnerId != userId && recent.toOwnerId != userId)) {
+            return Optional.empty();
+        }
+        return Optional.of(recent.response);
+    }
+
+    private CompletableFuture<List<TransferOutcome>> publish(Consumer<EngineCommand> filler) {
+        if (!accepting) {
+            throw new TransferConflictException("Движок балансов недоступен, повторите операцию позже");
+        }
+        CompletableFuture<List<TransferOutcome>> future = new CompletableFuture<>();
+        long slot = ring.claim();
+        EngineCommand command = ring.get(slot);
+        filler.accept(command);
+        command.result = future;
+        ring.publish(slot);
+        return future;
+    }
+
+    private CompletableFuture<List<TransferOutcome>> publishTransfer(List<TransferLeg> legs, long[] transactionIds,
+                                                                     boolean atomic) {
+        return publish(command -> {
+            command.type = EngineCommand.Type.TRANSFER;
+            command.legs = legs;
+            command.transactionIds = transactionIds;
+            command.atomic = atomic;
+        });
+    }
+
+    private List<TransferOutcome> await(CompletableFuture<List<TransferOutcome>> future) {
+        return await(future, null, null);
+    }
+
+    // Команда уже в кольцевом буфере и будет применена, даже если ответа не дождались: это не конфликт,
+    // после которого операцию можно повторить, а неизвестный исход
+    private List<TransferOutcome> await(CompletableFuture<List<TransferOutcome>> future, Long transactionId,
+                                        CompletableFuture<TransactionResponse> outcome) {
+        try {
+            return future.get(ackTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new TransferOutcomeUnknownException(
+                    "Движок балансов не подтвердил операцию за отведённое время, проверьте её результат позже",
+                    transactionId, outcome, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferOutcomeUnknownException(
+                    "Ожидание подтверждения операции прервано, проверьте её результат позже", transactionId, outcome, e);
+        }
+    }
+
+    private void recover() throws IOException, InterruptedException {
+        long projected = projector.loadOffset();
+        projector.start();
+        long snapshotSequence = snapshotStore.load(cards);
+        // Без снимка состояние берётся из таблицы cards, которая соответствует номеру журнала проекции
+        long base = snapshotSequence >= 0 ? snapshotSequence : projected;
+        if (snapshotSequence < 0) {
+            synchronizeWithDatabase();
+        }
+        long last = Math.max(base, projected);
+        int replayed = 0;
+        for (JournalRecord record : MappedJournal.read(journalDirectory, Math.min(base, projected))) {
+            if (record.sequence > base) {
+                replay(record);
+                replayed++;
+            }
+            if (record.sequence > projected) {
+                projector.enqueue(record);
+            }
+            last = Math.max(last, record.sequence);
+        }
+        if (snapshotSequence >= 0) {
+            synchronizeWithDatabase();
+        }
+        sequence = last;
+        log.info("Восстановление движка балансов: снимок {}, проекция {}, применено записей журнала {}",
+                snapshotSequence, projected, replayed);
+        snapshotStore.write(sequence, cards);
+        lastSnapshotSequence = sequence;
+        journal.openSegment(sequence + 1);
+        journal.deleteSegmentsUpTo(Math.min(sequence, projected));
+    }
+
+    // Статусы и состав карт меняет администратор через PostgreSQL, поэтому при старте они берутся из таблицы.
+    // Балансы из таблицы берутся только для карт, которых движок ещё не знает
+    private void synchronizeWithDatabase() {
+        Set<Long> existing = new HashSet<>();
+        jdbcTemplate.query(LOAD_CARDS_SQL, rs -> {
+            long cardId = rs.getLong("id");
+            long ownerId = rs.getLong("user_id");
+            byte status = CardTable.encodeStatus(Card.Status.valueOf(rs.getString("status")));
+            int slot = cards.slotOf(cardId);
+            if (slot >= 0) {
+                cards.updateCard(slot, ownerId, status);
+            } else {
+                cards.put(cardId, ownerId, status, rs.getLong("balance"));
+            }
+            existing.add(cardId);
+        });
+        List<Long> removed = new ArrayList<>();
+        cards.forEach((cardId, ownerId, status, balance) -> {
+            if (!existing.contains(cardId)) {
+                removed.add(cardId);
+            }
+        });
+        removed.forEach(cards::remove);
+    }
+
+    private void replay(JournalRecord record) {
+        switch (record.type) {
+            case JournalRecord.TRANSFERS -> {
+                for (int i = 0; i < record.transactionIds.length; i++) {
+                    int fromSlot = cards.slotOf(record.fromCardIds[i]);
+                    int toSlot = cards.slotOf(record.toCardIds[i]);
+                    if (fromSlot >= 0) {
+                        cards.setBalance(fromSlot, cards.balance(fromSlot) - record.amounts[i]);
+                    }
+                    if (toSlot >= 0) {
+                        cards.setBalance(toSlot, cards.balance(toSlot) + record.amounts[i]);
+                    }
+                }
+            }
+            case JournalRecord.UPSERT_CARD -> upsert(record.cardId, record.ownerId, record.status, record.balance);
+            case JournalRecord.REMOVE_CARD -> cards.remove(record.cardId);
+            default -> throw new IllegalStateException("Неизвестный тип записи журнала: " + record.type);
+        }
+    }
+
+    private void upsert(long cardId, long ownerId, byte status, long balance) {
+        int slot = cards.slotOf(cardId);
+        if (slot >= 0) {
+            cards.updateCard(slot, ownerId, status);
+        } else {
+            cards.put(cardId, ownerId, status, balance);
+        }
+    }
+
+    private void runLoop() {
+        long next = 0;
+        int idleRounds = 0;
+        while (running || ring.highestPublished(next, 1) >= next) {
+            long available = ring.highestPublished(next, maxBatchSize);
+            if (available < next) {
+                idle(idleRounds++);
+                continue;
+            }
+            idleRounds = 0;
+            processBatch(next, available);
+            next = available + 1;
+        }
+    }
+
+    private void idle(int idleRounds) {
+        if (idleRounds < 100) {
+            Thread.onSpinWait();
+        } else if (idleRounds < 200) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(50_000);
+        }
+    }
+
+    private void processBatch(long from, long to) {
+        batchSize.record(to - from + 1);
+        List<JournalRecord> records = new ArrayList<>();
+        for (long slot = from; slot <= to; slot++) {
+            EngineCommand command = ring.get(slot);
+            if (halted) {
+                command.failure = new TransferConflictException("Движок балансов недоступен, повторите операцию позже");
+                continue;
+            }
+            long appliedSequence = sequence;
+            try {
+                apply(command);
+            } catch (IOException | UncheckedIOException e) {
+                log.error("Не удалось записать команду в журнал движка балансов: {}", e.getMessage());
+                command.failure = new TransferConflictException("Движок балансов не смог сохранить операцию", e);
+            } catch (RuntimeException e) {
+                command.failure = applyFailure(command, appliedSequence, e);
+            }
+            if (command.record != null) {
+                records.add(command.record);
+            }
+        }
+        RuntimeException commitFailure = null;
+        try {
+            groupCommit.record(journal::force);
+        } catch (UncheckedIOException e) {
+            // Состояние в памяти уже опережает диск: движок перестаёт принимать команды до перезапуска
+            log.error("Не удалось сбросить журнал движка балансов на диск: {}", e.getMessage());
+            halt();
+            commitFailure = new TransferConflictException("Движок балансов не смог сохранить операцию", e);
+        }
+        for (long slot = from; slot <= to; slot++) {
+            EngineCommand command = ring.get(slot);
+            if (commitFailure != null) {
+                command.result.completeExceptionally(commitFailure);
+            } else if (command.failure != null) {
+                command.result.completeExceptionally(command.failure);
+            } else {
+                command.result.complete(command.outcomes != null ? command.outcomes : List.of());
+            }
+            command.clear();
+        }
+        ring.release(to);
+        if (commitFailure != null) {
+            return;
+        }
+        try {
+            for (JournalRecord record : records) {
+                projector.enqueue(record);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+            return;
+        }
+        if (!halted && sequence - lastSnapshotSequence >= snapshotInterval) {
+            takeSnapshot();
+        }
+    }
+
+    // Пока запись не попала в журнал, состояние в памяти не менялось, и отклоняется только эта команда.
+    // После записи в журнал память могла обновиться не полностью: движок останавливается, а исход команды
+    // неизвестен, потому что после перезапуска она применится из журнала
+    private RuntimeException applyFailure(EngineCommand command, long appliedSequence, RuntimeException e) {
+        if (sequence == appliedSequence) {
+            log.error("Команда {} отклонена движком балансов: {}", command.type, e.getMessage(), e);
+            return new TransferConflictException("Движок балансов не смог выполнить операцию", e);
+        }
+        log.error("Сбой движка балансов после записи команды {} в журнал, движок остановлен до перезапуска: {}",
+                command.type, e.getMessage(), e);
+        halt();
+        Long transactionId = command.transactionIds != null && command.transactionIds.length == 1
+                ? command.transactionIds[0] : null;
+        return new TransferOutcomeUnknownException(
+                "Движок балансов остановлен, результат операции станет известен после его перезапуска",
+                transactionId, null, e);
+    }
+
+    private void halt() {
+        halted = true;
+        accepting = false;
+        running = false;
+    }
+
+    private void apply(EngineCommand command) throws IOException {
+        long timestamp = System.currentTimeMillis();
+        switch (command.type) {
+            case TRANSFER -> applyTransfers(command, timestamp);
+            case UPSERT_CARD -> {
+                int slot = cards.slotOf(command.cardId);
+                long balance = slot >= 0 ? cards.balance(slot) : command.balance;
+                JournalRecord record = JournalRecord.upsertCard(sequence + 1, timestamp, command.cardId,
+                        command.ownerId, command.status, balance);
+                journal.append(record);
+                sequence = record.sequence;
+                upsert(command.cardId, command.ownerId, command.status, balance);
+            }
+            case REMOVE_CARD -> {
+                JournalRecord record = JournalRecord.removeCard(sequence + 1, timestamp, command.cardId);
+                journal.append(record);
+                sequence = record.sequence;
+                cards.remove(command.cardId);
+            }
+        }
+    }
+
+    private void applyTransfers(EngineCommand command, long timestamp) throws IOException {
+        List<TransferLeg> legs = command.legs;
+        LocalDateTime now = LocalDateTime.now();
+        // Новые балансы копятся отдельно и попадают в таблицу только после записи в журнал
+        Map<Integer, Long> pendingBalances = new HashMap<>();
+        List<TransferOutcome> outcomes = new ArrayList<>(legs.size());
+        long[] transactionIds = new long[legs.size()];
+        long[] fromCardIds = new long[legs.size()];
+        long[] toCardIds = new long[legs.size()];
+        long[] amounts = new long[legs.size()];
+        long[] fromOwners = new long[legs.size()];
+        long[] toOwners = new long[legs.size()];
+        int accepted = 0;
+        for (int i = 0; i < legs.size(); i++) {
+            TransferLeg leg = legs.get(i);
+            TransactionRequest request = leg.getRequest();
+            try {
+                long amount = request.getAmount().getMinorUnits();
+                int fromSlot = validate(leg, amount, pendingBalances);
+                int toSlot = cards.slotOf(request.getToCardId());
+                pendingBalances.put(fromSlot, pendingBalances.getOrDefault(fromSlot, cards.balance(fromSlot)) - amount);
+                pendingBalances.put(toSlot, pendingBalances.getOrDefault(toSlot, cards.balance(toSlot)) + amount);
+                transactionIds[accepted] = command.transactionIds[i];
+                fromCardIds[accepted] = request.getFromCardId();
+                toCardIds[accepted] = request.getToCardId();
+                amounts[accepted] = amount;
+                fromOwners[accepted] = cards.owner(fromSlot);
+                toOwners[accepted] = cards.owner(toSlot);
+                accepted++;
+                outcomes.add(new TransferOutcome(response(command.transactionIds[i], request, now, Transaction.Status.SUCCESS, null), null));
+            } catch (CardNotFoundException | SameCardTransferException | InvalidCardOperationException
+                     | InsufficientFundsException e) {
+                if (command.atomic) {
+                    command.failure = e;
+                    return;
+                }
+                outcomes.add(new TransferOutcome(response(null, request, now, Transaction.Status.FAILED, e.getMessage()), e));
+            }
+        }
+        if (accepted > 0) {
+            JournalRecord record = JournalRecord.transfers(sequence + 1, timestamp,
+                    Arrays.copyOf(transactionIds, accepted), Arrays.copyOf(fromCardIds, accepted),
+                    Arrays.copyOf(toCardIds, accepted), Arrays.copyOf(amounts, accepted));
+            journal.append(record);
+            sequence = record.sequence;
+            command.record = record;
+            pendingBalances.forEach(cards::setBalance);
+            int recent = 0;
+            for (TransferOutcome outcome : outcomes) {
+                if (outcome.isSuccess()) {
+                    TransactionResponse response = outcome.getResponse();
+                    recentTransactions.set((int) (long) response.getId() & (recentTransactions.length() - 1),
+                            new RecentTransaction(response, fromOwners[recent], toOwners[recent]));
+                    recent++;
+                }
+            }
+        }
+        command.outcomes = outcomes;
+    }
+
+    private int validate(TransferLeg leg, long amount, Map<Integer, Long> pendingBalances) {
+        TransactionRequest request = leg.getRequest();
+        int fromSlot = cards.slotOf(request.getFromCardId());
+        if (fromSlot < 0) {
+            throw new CardNotFoundException("Карта-отправитель с ID " + request.getFromCardId() + " не найдена");
+        }
+        int toSlot = cards.slotOf(request.getToCardId());
+        if (toSlot < 0) {
+            throw new CardNotFoundException("Карта-получатель с ID " + request.getToCardId() + " не найдена");
+        }
+        if (fromSlot == toSlot) {
+            throw new SameCardTransferException("Нельзя выполнить перевод на ту же карту");
+        }
+        if (cards.owner(fromSlot) != leg.getUserId()) {
+            throw new InvalidCardOperationException("Вы не можете использовать эту карту для перевода");
+        }
+        if (cards.status(fromSlot) != CardTable.encodeStatus(Card.Status.ACTIVE)) {
+            throw new InvalidCardOperationException("Карта-отправитель не активна");
+        }
+        if (cards.status(toSlot) != CardTable.encodeStatus(Card.Status.ACTIVE)) {
+            throw new InvalidCardOperationException("Карта-получатель не активна");
+        }
+        if (pendingBalances.getOrDefault(fromSlot, cards.balance(fromSlot)) < amount) {
+            throw new InsufficientFundsException("Недостаточно средств на карте-отправителе");
+        }
+        return fromSlot;
+    }
+
+    private TransactionResponse response(Long transactionId, TransactionRequest request, LocalDateTime timestamp,
+                                         Transaction.Status status, String message) {
+        TransactionResponse response = new TransactionResponse();
+        response.setId(transactionId);
+        response.setFromCardId(request.getFromCardId());
+        response.setToCardId(request.getToCardId());
+        response.setAmount(request.getAmount());
+        response.setTimestamp(timestamp);
+        response.setStatus(status.name());
+        response.setMessage(message);
+        return response;
+    }
+
+    // Снимок пишется потоком движка между пакетами, поэтому он согласован с номером журнала
+    private void takeSnapshot() {
+        try {
+            snapshotStore.write(sequence, cards);
+            lastSnapshotSequence = sequence;
+            journal.force();
+            journal.openSegment(sequence + 1);
+            journal.deleteSegmentsUpTo(Math.min(lastSnapshotSequence, projector.getProjectedSequence()));
+            log.info("Снимок движка балансов записан, номер журнала {}", sequence);
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Не удалось записать снимок движка балансов: {}", e.getMessage());
+        }
+    }
+
+    private static final class RecentTransaction {
+        private final TransactionResponse response;
+        private final long fromOwnerId;
+        private final long toOwnerId;
+
+        private RecentTransaction(TransactionResponse response, long fromOwnerId, long toOwnerId) {
+            this.response = response;
+            this.fromOwnerId = fromOwnerId;
+            this.toOwnerId = toOwnerId;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.bankcards.service.impl.engine;
+
+import com.example.bankcards.entity.Card;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+// Открытая адресация по примитивным массивам: пишет только поток движка, читать можно из любого потока.
+// Ключ публикуется последним (release), поэтому читатель, увидевший ключ, видит и заполненные поля слота
+final class CardTable {
+    static final byte ABSENT = 0;
+    private static final long EMPTY_KEY = 0L;
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle BYTES = MethodHandles.arrayElementVarHandle(byte[].class);
+    private volatile Segment segment;
+    private int used;
+
+    CardTable(int expectedCards) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedCards * 2 - 1)) << 1;
+        this.segment = new Segment(capacity);
+    }
+
+    static byte encodeStatus(Card.Status status) {
+        return (byte) (status.ordinal() + 1);
+    }
+
+    static Card.Status decodeStatus(byte status) {
+        return status == ABSENT ? null : Card.Status.values()[status - 1];
+    }
+
+    int slotOf(long cardId) {
+        Segment current = segment;
+        int slot = current.find(cardId);
+        return slot >= 0 && (byte) BYTES.getAcquire(current.statuses, slot) != ABSENT ? slot : -1;
+    }
+
+    void put(long cardId, long ownerId, byte status, long balance) {
+        Segment current = segment;
+        int slot = current.find(cardId);
+        if (slot >= 0) {
+            LONGS.setRelease(current.owners, slot, ownerId);
+            LONGS.setRelease(current.balances, slot, balance);
+            BYTES.setRelease(current.statuses, slot, status);
+            return;
+        }
+        if ((used + 1) * 2 > current.keys.length) {
+            current = resize(current);
+        }
+        slot = current.freeSlot(cardId);
+        current.owners[slot] = ownerId;
+        current.balances[slot] = balance;
+        current.statuses[slot] = status;
+        LONGS.setRelease(current.keys, slot, cardId);
+        used++;
+    }
+
+    void updateCard(int slot, long ownerId, byte status) {
+        Segment current = segment;
+        LONGS.setRelease(current.owners, slot, ownerId);
+        BYTES.setRelease(current.statuses, slot, status);
+    }
+
+    // Ключ остаётся в таблице как надгробие до следующего перестроения, чтобы не ломать цепочки проб
+    void remove(long cardId) {
+        Segment current = segment;
+        int slot = current.find(cardId);
+        if (slot >= 0) {
+            BYTES.setRelease(current.statuses, slot, ABSENT);
+        }
+    }
+
+    long balance(int slot) {
+        return (long) LONGS.getAcquire(segment.balances, slot);
+    }
+
+    void setBalance(int slot, long balance) {
+        LONGS.setRelease(segment.balances, slot, balance);
+    }
+
+    long owner(int slot) {
+        return (long) LONGS.getAcquire(segment.owners, slot);
+    }
+
+    byte status(int slot) {
+        return (byte) BYTES.getAcquire(segment.statuses, slot);
+    }
+
+    long readBalance(long cardId, long missing) {
+        Segment current = segment;
+        int slot = current.find(cardId);
+        if (slot < 0 || (byte) BYTES.getAcquire(current.statuses, slot) == ABSENT) {
+            return missing;
+        }
+        return (long) LONGS.getAcquire(current.balances, slot);
+    }
+
+    long readOwner(long cardId, long missing) {
+        Segment current = segment;
+        int slot = current.find(cardId);
+        if (slot < 0 || (byte) BYTES.getAcquire(current.statuses, slot) == ABSENT) {
+            return missing;
+        }
+        return (long) LONGS.getAcquire(current.owners, slot);
+    }
+
+    int size() {
+        Segment current = segment;
+        int size = 0;
+        for (int slot = 0; slot < current.keys.length; slot++) {
+            if (current.keys[slot] != EMPTY_KEY && current.statuses[slot] != ABSENT) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    void forEach(CardVisitor visitor) {
+        Segment current = segment;
+        for (int slot = 0; slot < current.keys.length; slot++) {
+            long cardId = (long) LONGS.getAcquire(current.keys, slot);
+            byte status = (byte) BYTES.getAcquire(current.statuses, slot);
+            if (cardId != EMPTY_KEY && status != ABSENT) {
+                visitor.visit(cardId, (long) LONGS.getAcquire(current.owners, slot), status,
+                        (long) LONGS.getAcquire(current.balances, slot));
+            }
+        }
+    }
+
+    private Segment resize(Segment current) {
+        Segment resized = new Segment(current.keys.length << 1);
+        int live = 0;
+        for (int slot = 0; slot < current.keys.length; slot++) {
+            long cardId = current.keys[slot];
+            if (cardId != EMPTY_KEY && current.statuses[slot] != ABSENT) {
+                int target = resized.freeSlot(cardId);
+                resized.keys[target] = cardId;
+                resized.owners[target] = current.owners[slot];
+                resized.balances[target] = current.balances[slot];
+                resized.statuses[target] = current.statuses[slot];
+                live++;
+            }
+        }
+        used = live;
+        segment = resized;
+        return resized;
+    }
+
+    @FunctionalInterface
+    interface CardVisitor {
+        void visit(long cardId, long ownerId, byte status, long balance);
+    }
+
+    private static final class Segment {
+        private final long[] keys;
+        private final long[] owners;
+        private final long[] balances;
+        private final byte[] statuses;
+        private final int mask;
+
+        private Segment(int capacity) {
+            this.keys = new long[capacity];
+            this.owners = new long[capacity];
+            this.balances = new long[capacity];
+            this.statuses = new byte[capacity];
+            this.mask = capacity - 1;
+        }
+
+        private int index(long cardId) {
+            long hash = cardId * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+
+        private int find(long cardId) {
+            int slot = index(cardId);
+            while (true) {
+                long key = (long) LONGS.getAcquire(keys, slot);
+                if (key == cardId) {
+                    return slot;
+                }
+                if (key == EMPTY_KEY) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private int freeSlot(long cardId) {
+            int slot = index(cardId);
+            while (keys[slot] != EMPTY_KEY) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
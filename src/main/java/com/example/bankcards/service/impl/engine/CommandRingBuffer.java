@@ -0,0 +1,61 @@
+package com.example.bankcards.service.impl.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Кольцевой буфер с предвыделенными слотами: много отправителей, один потребитель (поток движка).
+// Отправитель захватывает номер, заполняет слот и публикует его; потребитель забирает непрерывный диапазон
+final class CommandRingBuffer {
+    private final EngineCommand[] slots;
+    private final int mask;
+    private final AtomicLong claimSequence = new AtomicLong(-1);
+    private final AtomicLong releasedSequence = new AtomicLong(-1);
+    private final AtomicLongArray published;
+
+    CommandRingBuffer(int size) {
+        if (Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Размер кольцевого буфера должен быть степенью двойки: " + size);
+        }
+        this.slots = new EngineCommand[size];
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new EngineCommand();
+            published.set(i, -1);
+        }
+    }
+
+    long claim() {
+        long sequence = claimSequence.incrementAndGet();
+        while (sequence - releasedSequence.get() > slots.length) {
+            LockSupport.parkNanos(1_000);
+        }
+        return sequence;
+    }
+
+    EngineCommand get(long sequence) {
+        return slots[(int) sequence & mask];
+    }
+
+    void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+    }
+
+    long highestPublished(long from, int maxBatch) {
+        long sequence = from;
+        long limit = from + maxBatch;
+        while (sequence < limit && published.get((int) sequence & mask) == sequence) {
+            sequence++;
+        }
+        return sequence - 1;
+    }
+
+    void release(long sequence) {
+        releasedSequence.set(sequence);
+    }
+
+    long remainingCapacity() {
+        return slots.length - (claimSequence.get() - releasedSequence.get());
+    }
+}
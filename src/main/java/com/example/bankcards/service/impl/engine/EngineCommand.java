@@ -0,0 +1,44 @@
+package com.example.bankcards.service.impl.engine;
+
+import com.example.bankcards.service.transfer.TransferLeg;
+import com.example.bankcards.service.transfer.TransferOutcome;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Слот кольцевого буфера: создаётся один раз и переиспользуется, поля заполняет поток-отправитель
+final class EngineCommand {
+    enum Type {
+        TRANSFER,
+        UPSERT_CARD,
+        REMOVE_CARD
+    }
+
+    Type type;
+    List<TransferLeg> legs;
+    long[] transactionIds;
+    boolean atomic;
+    long cardId;
+    long ownerId;
+    byte status;
+    long balance;
+    CompletableFuture<List<TransferOutcome>> result;
+    List<TransferOutcome> outcomes;
+    RuntimeException failure;
+    JournalRecord record;
+
+    void clear() {
+        type = null;
+        legs = null;
+        transactionIds = null;
+        atomic = false;
+        cardId = 0;
+        ownerId = 0;
+        status = CardTable.ABSENT;
+        balance = 0;
+        result = null;
+        outcomes = null;
+        failure = null;
+        record = null;
+    }
+}
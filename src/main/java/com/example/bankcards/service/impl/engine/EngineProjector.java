@@ -0,0 +1,148 @@
+package com.example.bankcards.service.impl.engine;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Асинхронно переносит принятые движком переводы в cards/transactions.
+// Изменения балансов пишутся дельтами вместе с номером последней записи журнала в одной транзакции,
+// поэтому после рестарта проекция продолжает ровно с того места, где остановилась
+@Slf4j
+final class EngineProjector implements Runnable {
+    private static final String LOAD_OFFSET_SQL = "SELECT last_sequence FROM engine_projection_offset WHERE id = 1";
+    private static final String UPDATE_OFFSET_SQL = "UPDATE engine_projection_offset SET last_sequence = ? WHERE id = 1";
+    private static final String UPDATE_BALANCE_SQL =
+            "UPDATE cards SET balance = balance + ?, version = version + 1 WHERE id = ?";
+    // Карта могла быть удалена администратором до проекции: такие переводы не вставляются
+    private static final String INSERT_TRANSACTION_SQL =
+            "INSERT INTO transactions (id, from_card_id, to_card_id, amount, timestamp, status) " +
+                    "SELECT ?, f.id, t.id, ?, ?, 'SUCCESS' FROM cards f JOIN cards t ON t.id = ? WHERE f.id = ? " +
+                    "ON CONFLICT (id) DO NOTHING";
+    private static final long RETRY_DELAY_MS = 1000;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<JournalRecord> queue;
+    private final int batchSize;
+    private final Thread thread;
+    private volatile long projectedSequence;
+    private volatile boolean running;
+
+    EngineProjector(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, int queueCapacity, int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.thread = new Thread(this, "balance-engine-projector");
+        this.thread.setDaemon(true);
+    }
+
+    long loadOffset() {
+        Long offset = jdbcTemplate.queryForObject(LOAD_OFFSET_SQL, Long.class);
+        projectedSequence = offset != null ? offset : 0;
+        return projectedSequence;
+    }
+
+    long getProjectedSequence() {
+        return projectedSequence;
+    }
+
+    int getQueueSize() {
+        return queue.size();
+    }
+
+    void enqueue(JournalRecord record) throws InterruptedException {
+        queue.put(record);
+    }
+
+    void start() {
+        running = true;
+        thread.start();
+    }
+
+    void stop() throws InterruptedException {
+        running = false;
+        thread.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    @Override
+    public void run() {
+        List<JournalRecord> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                JournalRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                projectWithRetry(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void projectWithRetry(List<JournalRecord> batch) throws InterruptedException {
+        while (true) {
+            try {
+                project(batch);
+                return;
+            } catch (RuntimeException e) {
+                log.error("Не удалось записать проекцию движка балансов, повтор через {} мс: {}", RETRY_DELAY_MS, e.getMessage());
+                Thread.sleep(RETRY_DELAY_MS);
+            }
+        }
+    }
+
+    private void project(List<JournalRecord> batch) {
+        long lastSequence = batch.get(batch.size() - 1).sequence;
+        if (lastSequence <= projectedSequence) {
+            return;
+        }
+        Map<Long, Long> deltas = new TreeMap<>();
+        List<Object[]> transactions = new ArrayList<>();
+        for (JournalRecord record : batch) {
+            if (record.sequence <= projectedSequence || record.type != JournalRecord.TRANSFERS) {
+                continue;
+            }
+            Timestamp timestamp = Timestamp.valueOf(LocalDateTime.ofInstant(Instant.ofEpochMilli(record.timestamp), ZoneId.systemDefault()));
+            for (int i = 0; i < record.transactionIds.length; i++) {
+                deltas.merge(record.fromCardIds[i], -record.amounts[i], Long::sum);
+                deltas.merge(record.toCardIds[i], record.amounts[i], Long::sum);
+                transactions.add(new Object[]{record.transactionIds[i], record.amounts[i],
+                        timestamp, record.toCardIds[i], record.fromCardIds[i]});
+            }
+        }
+        List<Object[]> balanceUpdates = new ArrayList<>(deltas.size());
+        // Один UPDATE на карту за пакет, в порядке возрастания ID
+        deltas.forEach((cardId, delta) -> {
+            if (delta != 0) {
+                balanceUpdates.add(new Object[]{delta, cardId});
+            }
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!balanceUpdates.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_BALANCE_SQL, balanceUpdates);
+            }
+            if (!transactions.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_TRANSACTION_SQL, transactions);
+            }
+            jdbcTemplate.update(UPDATE_OFFSET_SQL, lastSequence);
+        });
+        projectedSequence = lastSequence;
+    }
+}
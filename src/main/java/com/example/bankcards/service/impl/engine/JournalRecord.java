@@ -0,0 +1,58 @@
+package com.example.bankcards.service.impl.engine;
+
+// Принятая движком команда в том виде, в котором она пишется в журнал и уходит в проекцию PostgreSQL
+final class JournalRecord {
+    static final byte TRANSFERS = 1;
+    static final byte UPSERT_CARD = 2;
+    static final byte REMOVE_CARD = 3;
+    private static final int HEADER_SIZE = Long.BYTES + 1 + Long.BYTES;
+
+    final long sequence;
+    final byte type;
+    final long timestamp;
+    final long[] transactionIds;
+    final long[] fromCardIds;
+    final long[] toCardIds;
+    final long[] amounts;
+    final long cardId;
+    final long ownerId;
+    final byte status;
+    final long balance;
+
+    private JournalRecord(long sequence, byte type, long timestamp, long[] transactionIds, long[] fromCardIds,
+                          long[] toCardIds, long[] amounts, long cardId, long ownerId, byte status, long balance) {
+        this.sequence = sequence;
+        this.type = type;
+        this.timestamp = timestamp;
+        this.transactionIds = transactionIds;
+        this.fromCardIds = fromCardIds;
+        this.toCardIds = toCardIds;
+        this.amounts = amounts;
+        this.cardId = cardId;
+        this.ownerId = ownerId;
+        this.status = status;
+        this.balance = balance;
+    }
+
+    static JournalRecord transfers(long sequence, long timestamp, long[] transactionIds, long[] fromCardIds,
+                                   long[] toCardIds, long[] amounts) {
+        return new JournalRecord(sequence, TRANSFERS, timestamp, transactionIds, fromCardIds, toCardIds, amounts,
+                0, 0, CardTable.ABSENT, 0);
+    }
+
+    static JournalRecord upsertCard(long sequence, long timestamp, long cardId, long ownerId, byte status, long balance) {
+        return new JournalRecord(sequence, UPSERT_CARD, timestamp, null, null, null, null, cardId, ownerId, status, balance);
+    }
+
+    static JournalRecord removeCard(long sequence, long timestamp, long cardId) {
+        return new JournalRecord(sequence, REMOVE_CARD, timestamp, null, null, null, null, cardId, 0, CardTable.ABSENT, 0);
+    }
+
+    int size() {
+        return switch (type) {
+            case TRANSFERS -> HEADER_SIZE + Integer.BYTES + transactionIds.length * 4 * Long.BYTES;
+            case UPSERT_CARD -> HEADER_SIZE + Long.BYTES * 3 + 1;
+            default -> HEADER_SIZE + Long.BYTES;
+        };
+    }
+}
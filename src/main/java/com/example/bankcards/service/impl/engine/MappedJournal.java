@@ -0,0 +1,208 @@
+package com.example.bankcards.service.impl.engine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Журнал из отображённых в память сегментов фиксированного размера.
+// Запись: [длина][тело][CRC32 тела]; длина пишется последней, нулевая длина означает конец сегмента.
+// append() только копирует байты в страницы, на диск их сбрасывает force() один раз на пакет команд
+@Slf4j
+final class MappedJournal implements Closeable {
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+    private final Path directory;
+    private final int segmentSize;
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private Path currentSegment;
+    private boolean dirty;
+
+    MappedJournal(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    static List<JournalRecord> read(Path directory, long afterSequence) throws IOException {
+        List<JournalRecord> records = new ArrayList<>();
+        for (Path segment : segments(directory)) {
+            try (FileChannel readChannel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                MappedByteBuffer readBuffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+                CRC32 checksum = new CRC32();
+                while (readBuffer.remaining() >= Integer.BYTES) {
+                    int start = readBuffer.position();
+                    int length = readBuffer.getInt();
+                    if (length <= 0 || length + Integer.BYTES > readBuffer.remaining()) {
+                        break;
+                    }
+                    checksum.reset();
+                    checksum.update(readBuffer.slice(start + Integer.BYTES, length));
+                    if ((int) checksum.getValue() != readBuffer.getInt(start + Integer.BYTES + length)) {
+                        log.warn("Повреждённая запись журнала {} на позиции {}, чтение сегмента остановлено", segment, start);
+                        break;
+                    }
+                    JournalRecord record = decode(readBuffer);
+                    readBuffer.position(start + Integer.BYTES + length + Integer.BYTES);
+                    if (record.sequence > afterSequence) {
+                        records.add(record);
+                    }
+                }
+            }
+        }
+        return records;
+    }
+
+    void openSegment(long firstSequence) throws IOException {
+        closeSegment();
+        Files.createDirectories(directory);
+        currentSegment = directory.resolve(String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX));
+        channel = FileChannel.open(currentSegment, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    void append(JournalRecord record) throws IOException {
+        int length = record.size();
+        int required = Integer.BYTES + length + Integer.BYTES + Integer.BYTES;
+        if (required > segmentSize) {
+            throw new IllegalArgumentException("Запись журнала размером " + length + " байт не помещается в сегмент");
+        }
+        if (buffer.remaining() < required) {
+            force();
+            openSegment(record.sequence);
+        }
+        int start = buffer.position();
+        try {
+            buffer.position(start + Integer.BYTES);
+            encode(record, buffer);
+            crc.reset();
+            crc.update(buffer.slice(start + Integer.BYTES, length));
+            buffer.putInt((int) crc.getValue());
+        } catch (RuntimeException e) {
+            // Длина пишется последней, поэтому недописанная запись не видна при чтении; следующая ляжет на её место
+            buffer.position(start);
+            throw e;
+        }
+        buffer.putInt(start, length);
+        dirty = true;
+    }
+
+    void force() {
+        if (dirty) {
+            buffer.force();
+            dirty = false;
+        }
+    }
+
+    // Удаляет сегменты, все записи которых не новее sequence; текущий сегмент не трогается
+    void deleteSegmentsUpTo(long sequence) throws IOException {
+        List<Path> segments = segments(directory);
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            Path segment = segments.get(i);
+            if (segment.equals(currentSegment) || firstSequence(segments.get(i + 1)) - 1 > sequence) {
+                continue;
+            }
+            Files.deleteIfExists(segment);
+            log.debug("Удалён сегмент журнала {}", segment.getFileName());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+
+    private void closeSegment() throws IOException {
+        if (channel != null) {
+            force();
+            channel.close();
+            channel = null;
+            buffer = null;
+        }
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static void encode(JournalRecord record, ByteBuffer target) {
+        target.putLong(record.sequence);
+        target.put(record.type);
+        target.putLong(record.timestamp);
+        switch (record.type) {
+            case JournalRecord.TRANSFERS -> {
+                target.putInt(record.transactionIds.length);
+                for (int i = 0; i < record.transactionIds.length; i++) {
+                    target.putLong(record.transactionIds[i]);
+                    target.putLong(record.fromCardIds[i]);
+                    target.putLong(record.toCardIds[i]);
+                    target.putLong(record.amounts[i]);
+                }
+            }
+            case JournalRecord.UPSERT_CARD -> {
+                target.putLong(record.cardId);
+                target.putLong(record.ownerId);
+                target.put(record.status);
+                target.putLong(record.balance);
+            }
+            default -> target.putLong(record.cardId);
+        }
+    }
+
+    private static JournalRecord decode(ByteBuffer source) {
+        long sequence = source.getLong();
+        byte type = source.get();
+        long timestamp = source.getLong();
+        switch (type) {
+            case JournalRecord.TRANSFERS -> {
+                int count = source.getInt();
+                long[] transactionIds = new long[count];
+                long[] fromCardIds = new long[count];
+                long[] toCardIds = new long[count];
+                long[] amounts = new long[count];
+                for (int i = 0; i < count; i++) {
+                    transactionIds[i] = source.getLong();
+                    fromCardIds[i] = source.getLong();
+                    toCardIds[i] = source.getLong();
+                    amounts[i] = source.getLong();
+                }
+                return JournalRecord.transfers(sequence, timestamp, transactionIds, fromCardIds, toCardIds, amounts);
+            }
+            case JournalRecord.UPSERT_CARD -> {
+                return JournalRecord.upsertCard(sequence, timestamp, source.getLong(), source.getLong(), source.get(),
+                        source.getLong());
+            }
+            case JournalRecord.REMOVE_CARD -> {
+                return JournalRecord.removeCard(sequence, timestamp, source.getLong());
+            }
+            default -> throw new UncheckedIOException(new IOException("Неизвестный тип записи журнала: " + type));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.bankcards.service.impl.ledger;
+
+import com.example.bankcards.service.impl.transfer.LedgerTransferStrategy;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+// Периодически сворачивает новые проводки в контрольные точки и материализует cards.balance.
+// Горизонт точки — xmin текущего снимка: все транзакции с меньшим xid уже завершены, поэтому
+// проводки с txid < горизонта больше не появятся, а более поздние войдут в следующую точку
+@Component
+@ConditionalOnProperty(name = "transfer.strategy", havingValue = LedgerTransferStrategy.NAME)
+@Slf4j
+public class LedgerCheckpointer {
+    // Пустой результат означает, что точку в этот момент строит другой экземпляр приложения
+    private static final String LOCK_OFFSET_SQL =
+            "SELECT horizon FROM ledger_checkpoint_offset WHERE id = 1 FOR UPDATE SKIP LOCKED";
+    private static final String HORIZON_SQL = "SELECT pg_snapshot_xmin(pg_current_snapshot())::text::BIGINT";
+    private static final String CHECKPOINT_SQL =
+            "WITH delta AS (" +
+                    "SELECT card_id, SUM(amount) AS amount FROM ledger_entries " +
+                    "WHERE txid >= ? AND txid < ? GROUP BY card_id" +
+                    "), checkpoint AS (" +
+                    "INSERT INTO balance_checkpoints (card_id, horizon, balance) " +
+                    "SELECT d.card_id, ?, COALESCE(last.balance, 0) + d.amount FROM delta d " +
+                    "LEFT JOIN LATERAL (SELECT balance FROM balance_checkpoints " +
+                    "WHERE card_id = d.card_id ORDER BY horizon DESC LIMIT 1) last ON true " +
+                    "RETURNING card_id, balance" +
+                    ") " +
+                    "UPDATE cards c SET balance = checkpoint.balance, version = c.version + 1 " +
+                    "FROM checkpoint WHERE c.id = checkpoint.card_id";
+    private static final String UPDATE_OFFSET_SQL = "UPDATE ledger_checkpoint_offset SET horizon = ? WHERE id = 1";
+    // Сразу после построения точки cards.balance совпадает с ней у всех карт без новых проводок.
+    // Расхождение возможно, только если баланс меняли в обход журнала, например при работе
+    // с другой стратегией переводов; оно фиксируется корректирующей проводкой
+    private static final String RECONCILE_SQL =
+            "INSERT INTO ledger_entries (card_id, amount) " +
+                    "SELECT c.id, c.balance - COALESCE(last.balance, 0) FROM cards c " +
+                    "LEFT JOIN LATERAL (SELECT balance FROM balance_checkpoints " +
+                    "WHERE card_id = c.id ORDER BY horizon DESC LIMIT 1) last ON true " +
+                    "WHERE c.balance <> COALESCE(last.balance, 0) AND NOT EXISTS (" +
+                    "SELECT 1 FROM ledger_entries e WHERE e.card_id = c.id " +
+                    "AND e.txid >= (SELECT horizon FROM ledger_checkpoint_offset WHERE id = 1))";
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer checkpointTimer;
+    private final DistributionSummary checkpointCards;
+
+    public LedgerCheckpointer(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.checkpointTimer = Timer.builder("bank.ledger.checkpoint.duration")
+                .description("Длительность построения контрольных точек балансов")
+                .register(meterRegistry);
+        this.checkpointCards = DistributionSummary.builder("bank.ledger.checkpoint.cards")
+                .description("Количество карт, балансы которых материализованы за один проход")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcile() {
+        Integer adjusted = transactionTemplate.execute(status -> {
+            if (checkpointLocked() < 0) {
+                return 0;
+            }
+            return jdbcTemplate.update(RECONCILE_SQL);
+        });
+        if (adjusted != null && adjusted > 0) {
+            log.warn("Балансы {} карт изменены в обход журнала проводок, добавлены корректирующие проводки", adjusted);
+        }
+        checkpoint();
+    }
+
+    @Scheduled(fixedDelayString = "${ledger.checkpoint-interval-ms:5000}",
+            initialDelayString = "${ledger.checkpoint-interval-ms:5000}")
+    public void checkpoint() {
+        try {
+            Integer cards = checkpointTimer.record(() -> transactionTemplate.execute(status -> checkpointLocked()));
+            if (cards != null && cards > 0) {
+                checkpointCards.record(cards);
+                log.debug("Материализованы балансы карт: {}", cards);
+            }
+        } catch (RuntimeException e) {
+            log.error("Ошибка построения контрольных точек балансов: {}", e.getMessage());
+        }
+    }
+
+    // Возвращает число обновлённых карт или -1, если точку строит другой экземпляр
+    private int checkpointLocked() {
+        List<Long> previous = jdbcTemplate.queryForList(LOCK_OFFSET_SQL, Long.class);
+        if (previous.isEmpty()) {
+            return -1;
+        }
+        Long horizon = jdbcTemplate.queryForObject(HORIZON_SQL, Long.class);
+        if (horizon == null || horizon <= previous.get(0)) {
+            return 0;
+        }
+        int cards = jdbcTemplate.update(CHECKPOINT_SQL, previous.get(0), horizon, horizon);
+        jdbcTemplate.update(UPDATE_OFFSET_SQL, horizon);
+        return cards;
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.bankcards.service.impl.ledger;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.InvalidCardOperationException;
+import com.example.bankcards.exception.SameCardTransferException;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.service.impl.transfer.LedgerTransferStrategy;
+import com.example.bankcards.service.transfer.TransferLeg;
+import com.example.bankcards.service.transfer.TransferOutcome;
+import com.example.bankcards.util.TransferUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Журнал проводок — источник истины для балансов: перевод только добавляет строку в transactions
+// и две проводки в ledger_entries, строки cards на горячем пути не изменяются. Баланс карты —
+// последняя контрольная точка плюс проводки после её горизонта. Списания с одной карты
+// упорядочиваются транзакционной advisory-блокировкой по ID карты, зачисления не блокируют ничего
+@Service
+@ConditionalOnProperty(name = "transfer.strategy", havingValue = LedgerTransferStrategy.NAME)
+@Slf4j
+public class LedgerServiceImpl implements LedgerService {
+    private static final String CARDS_SQL = "SELECT id, user_id, status FROM cards WHERE id = ANY (?)";
+    private static final String LOCK_SQL = "SELECT pg_advisory_xact_lock(?)";
+    private static final String BALANCES_SQL =
+            "SELECT ids.card_id, COALESCE(cp.balance, 0) + COALESCE((SELECT SUM(e.amount) FROM ledger_entries e " +
+                    "WHERE e.card_id = ids.card_id AND e.txid >= COALESCE(cp.horizon, 0)), 0) AS balance " +
+                    "FROM unnest(?::BIGINT[]) AS ids(card_id) " +
+                    "LEFT JOIN LATERAL (SELECT balance, horizon FROM balance_checkpoints " +
+                    "WHERE card_id = ids.card_id ORDER BY horizon DESC LIMIT 1) cp ON true";
+    // Проводки между ближайшими контрольными точками до и после момента; проводки транзакций,
+    // не завершившихся к следующей точке, на этот момент ещё не были видны и не учитываются
+    private static final String BALANCE_AS_OF_SQL =
+            "SELECT COALESCE(cp.balance, 0) + COALESCE((SELECT SUM(e.amount) FROM ledger_entries e " +
+                    "WHERE e.card_id = ? AND e.txid >= COALESCE(cp.horizon, 0) " +
+                    "AND e.txid < COALESCE(nx.horizon, 9223372036854775807) AND e.created_at <= ?), 0) " +
+                    "FROM (SELECT 1) one " +
+                    "LEFT JOIN LATERAL (SELECT balance, horizon FROM balance_checkpoints " +
+                    "WHERE card_id = ? AND created_at <= ? ORDER BY created_at DESC, horizon DESC LIMIT 1) cp ON true " +
+                    "LEFT JOIN LATERAL (SELECT horizon FROM balance_checkpoints " +
+                    "WHERE card_id = ? AND created_at > ? ORDER BY created_at, horizon LIMIT 1) nx ON true";
+    private static final String INSERT_TRANSACTION_SQL =
+            "INSERT INTO transactions (from_card_id, to_card_id, amount, timestamp, status) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_ENTRY_SQL =
+            "INSERT INTO ledger_entries (card_id, transaction_id, amount) VALUES (?, ?, ?)";
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public LedgerServiceImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public List<TransferOutcome> transfer(List<TransferLeg> legs, boolean atomic) {
+        return transactionTemplate.execute(status -> run(legs, atomic));
+    }
+
+    @Override
+    public long getBalance(Long cardId) {
+        return loadBalances(List.of(cardId)).getOrDefault(cardId, 0L);
+    }
+
+    @Override
+    public Map<Long, Long> getBalances(Collection<Long> cardIds) {
+        Map<Long, Long> balances = loadBalances(cardIds);
+        for (Long cardId : cardIds) {
+            balances.putIfAbsent(cardId, 0L);
+        }
+        return balances;
+    }
+
+    @Override
+    public long getBalanceAsOf(Long cardId, LocalDateTime asOf) {
+        Timestamp timestamp = Timestamp.valueOf(asOf);
+        Long balance = jdbcTemplate.queryForObject(BALANCE_AS_OF_SQL, Long.class,
+                cardId, timestamp, cardId, timestamp, cardId, timestamp);
+        return balance == null ? 0 : balance;
+    }
+
+    @Override
+    public void recordAdjustment(Long cardId, long amount) {
+        if (amount == 0) {
+            return;
+        }
+        jdbcTemplate.update(INSERT_ENTRY_SQL, cardId, null, amount);
+        log.info("Корректирующая проводка по карте ID {}: {}", cardId, amount);
+    }
+
+    private List<TransferOutcome> run(List<TransferLeg> legs, boolean atomic) {
+        TreeSet<Long> cardIds = new TreeSet<>();
+        TreeSet<Long> debitedIds = new TreeSet<>();
+        for (TransferLeg leg : legs) {
+            cardIds.add(leg.getRequest().getFromCardId());
+            cardIds.add(leg.getRequest().getToCardId());
+            debitedIds.add(leg.getRequest().getFromCardId());
+        }
+        Map<Long, Card> cards = loadCards(cardIds);
+        // Блокировки берутся по возрастанию ID, поэтому пакеты с общими картами не взаимоблокируются;
+        // баланс читается уже под блокировкой и видит все списания, завершённые до неё
+        debitedIds.retainAll(cards.keySet());
+        for (Long cardId : debitedIds) {
+            jdbcTemplate.query(LOCK_SQL, rs -> {
+            }, cardId);
+        }
+        loadBalances(debitedIds).forEach((cardId, balance) -> cards.get(cardId).setBalance(balance));
+        List<TransferOutcome> outcomes = new ArrayList<>(legs.size());
+        List<TransactionResponse> succeeded = new ArrayList<>(legs.size());
+        for (int i = 0; i < legs.size(); i++) {
+            TransferLeg leg = legs.get(i);
+            try {
+                TransactionResponse response = applyLeg(leg, cards);
+                outcomes.add(new TransferOutcome(response, null));
+                succeeded.add(response);
+            } catch (CardNotFoundException | SameCardTransferException | InvalidCardOperationException
+                     | InsufficientFundsException e) {
+                if (atomic) {
+                    log.error("Перевод по журналу отменён на операции {}: {}", i + 1, e.getMessage());
+                    throw e;
+                }
+                log.warn("Операция {} перевода по журналу отклонена: {}", i + 1, e.getMessage());
+                outcomes.add(new TransferOutcome(failedResponse(leg.getRequest(), e.getMessage()), e));
+            }
+        }
+        insertTransactions(succeeded);
+        insertEntries(succeeded);
+        return outcomes;
+    }
+
+    // Карты читаются без блокировки строк: статус и владелец нужны только для проверок,
+    // баланс подставляется из журнала. Объекты не управляются JPA и никогда не сохраняются
+    private Map<Long, Card> loadCards(TreeSet<Long> cardIds) {
+        Map<Long, Card> cards = new HashMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(CARDS_SQL);
+            ps.setArray(1, connection.createArrayOf("bigint", cardIds.toArray()));
+            return ps;
+        }, rs -> {
+            User owner = new User();
+            owner.setId(rs.getLong("user_id"));
+            Card card = new Card();
+            card.setId(rs.getLong("id"));
+            card.setUser(owner);
+            card.setStatus(Card.Status.valueOf(rs.getString("status")));
+            cards.put(card.getId(), card);
+        });
+        return cards;
+    }
+
+    private Map<Long, Long> loadBalances(Collection<Long> cardIds) {
+        Map<Long, Long> balances = new HashMap<>();
+        if (cardIds.isEmpty()) {
+            return balances;
+        }
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(BALANCES_SQL);
+            ps.setArray(1, connection.createArrayOf("bigint", cardIds.toArray()));
+            return ps;
+        }, rs -> {
+            balances.put(rs.getLong("card_id"), rs.getLong("balance"));
+        });
+        return balances;
+    }
+
+    private TransactionResponse applyLeg(TransferLeg leg, Map<Long, Card> cards) {
+        TransactionRequest request = leg.getRequest();
+        Card fromCard = cards.get(request.getFromCardId());
+        if (fromCard == null) {
+            throw new CardNotFoundException("Карта-отправитель с ID " + request.getFromCardId() + " не найдена");
+        }
+        Card toCard = cards.get(request.getToCardId());
+        if (toCard == null) {
+            throw new CardNotFoundException("Карта-получатель с ID " + request.getToCardId() + " не найдена");
+        }
+        long amount = request.getAmount().getMinorUnits();
+        TransferUtils.validateTransfer(fromCard, toCard, leg.getUserId(), amount);
+        // Баланс из журнала загружен только для карт-отправителей пакета; у остальных он не проверяется
+        TransferUtils.applyTransfer(fromCard, toCard, amount);
+        TransactionResponse response = new TransactionResponse();
+        response.setFromCardId(fromCard.getId());
+        response.setToCardId(toCard.getId());
+        response.setAmount(request.getAmount());
+        response.setTimestamp(LocalDateTime.now());
+        response.setStatus(Transaction.Status.SUCCESS.name());
+        return response;
+    }
+
+    private TransactionResponse failedResponse(TransactionRequest request, String message) {
+        TransactionResponse response = new TransactionResponse();
+        response.setFromCardId(request.getFromCardId());
+        response.setToCardId(request.getToCardId());
+        response.setAmount(request.getAmount());
+        response.setTimestamp(LocalDateTime.now());
+        response.setStatus(Transaction.Status.FAILED.name());
+        response.setMessage(message);
+        return response;
+    }
+
+    private void insertTransactions(List<TransactionResponse> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_TRANSACTION_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        TransactionResponse row = rows.get(i);
+                        ps.setLong(1, row.getFromCardId());
+                        ps.setLong(2, row.getToCardId());
+                        ps.setLong(3, row.getAmount().getMinorUnits());
+                        ps.setTimestamp(4, Timestamp.valueOf(row.getTimestamp()));
+                        ps.setString(5, row.getStatus());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows.size();
+                    }
+                },
+                keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i).setId(((Number) keys.get(i).get("id")).longValue());
+        }
+    }
+
+    private void insertEntries(List<TransactionResponse> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_ENTRY_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                TransactionResponse row = rows.get(i / 2);
+                boolean debit = i % 2 == 0;
+                long amount = row.getAmount().getMinorUnits();
+                ps.setLong(1, debit ? row.getFromCardId() : row.getToCardId());
+                ps.setLong(2, row.getId());
+                ps.setLong(3, debit ? -amount : amount);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size() * 2;
+            }
+        });
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.bankcards.service.impl.outbox;
+
+import com.example.bankcards.dto.event.OutboxEvent;
+import com.example.bankcards.dto.event.OutboxEventType;
+import com.example.bankcards.service.outbox.OutboxListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Пересылает события из outbox подписчикам внутри приложения. Пакет событий блокируется
+// FOR UPDATE SKIP LOCKED, поэтому несколько экземпляров приложения разбирают outbox без дублей,
+// но порядок событий одного агрегата между экземплярами не гарантируется
+@Component
+@Slf4j
+public class OutboxRelay {
+    private static final String CLAIM_SQL =
+            "SELECT id, aggregate_type, aggregate_id, event_type, payload, created_at, attempts FROM outbox " +
+                    "WHERE available_at <= LOCALTIMESTAMP ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String DELETE_SQL = "DELETE FROM outbox WHERE id = ANY (?)";
+    private static final String RETRY_SQL =
+            "UPDATE outbox SET attempts = attempts + 1, " +
+                    "available_at = LOCALTIMESTAMP + LEAST(? * power(2, attempts), ?) * INTERVAL '1 millisecond' " +
+                    "WHERE id = ANY (?)";
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final List<OutboxListener> listeners;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    private final long maxRetryBackoffMs;
+    private final Timer lag;
+    private final DistributionSummary batchSizes;
+    private final Counter failures;
+    private final Counter dropped;
+
+    public OutboxRelay(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                       ObjectProvider<OutboxListener> listeners, MeterRegistry meterRegistry,
+                       @Value("${outbox.batch-size:500}") int batchSize,
+                       @Value("${outbox.max-attempts:10}") int maxAttempts,
+                       @Value("${outbox.retry-backoff-ms:1000}") long retryBackoffMs,
+                       @Value("${outbox.max-retry-backoff-ms:300000}") long maxRetryBackoffMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.listeners = listeners.orderedStream().toList();
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxRetryBackoffMs = maxRetryBackoffMs;
+        this.lag = Timer.builder("bank.outbox.relay.lag")
+                .description("Время от записи события в outbox до его доставки подписчикам")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("bank.outbox.relay.batch.size")
+                .description("Количество событий, разобранных за один пакет")
+                .register(meterRegistry);
+        this.failures = Counter.builder("bank.outbox.relay.failures")
+                .description("Доставки событий, завершившиеся ошибкой подписчика")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("bank.outbox.relay.dropped")
+                .description("События, отброшенные после исчерпания попыток доставки")
+                .register(meterRegistry);
+        log.info("Подписчиков outbox: {}", this.listeners.size());
+    }
+
+    // Полный пакет означает, что в outbox остались события, поэтому разбор продолжается без паузы
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:500}")
+    public void relay() {
+        try {
+            Integer claimed;
+            do {
+                claimed = transactionTemplate.execute(status -> relayBatch());
+            } while (claimed != null && claimed == batchSize);
+        } catch (RuntimeException e) {
+            log.error("Ошибка разбора outbox: {}", e.getMessage());
+        }
+    }
+
+    private int relayBatch() {
+        List<OutboxEvent> events = jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> {
+            OutboxEvent event = new OutboxEvent();
+            event.setId(rs.getLong("id"));
+            event.setAggregateType(rs.getString("aggregate_type"));
+            event.setAggregateId(rs.getLong("aggregate_id"));
+            event.setEventType(OutboxEventType.valueOf(rs.getString("event_type")));
+            event.setPayload(rs.getString("payload"));
+            event.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+            event.setAttempts(rs.getInt("attempts"));
+            return event;
+        }, batchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+        batchSizes.record(events.size());
+        List<Long> done = new ArrayList<>(events.size());
+        List<Long> retry = new ArrayList<>();
+        for (OutboxEvent event : events) {
+            if (dispatch(event)) {
+                lag.record(Duration.between(event.getCreatedAt(), LocalDateTime.now()));
+                done.add(event.getId());
+            } else if (event.getAttempts() + 1 >= maxAttempts) {
+                dropped.increment();
+                log.error("Событие outbox ID {} ({}) отброшено после {} попыток доставки",
+                        event.getId(), event.getEventType(), event.getAttempts() + 1);
+                done.add(event.getId());
+            } else {
+                retry.add(event.getId());
+            }
+        }
+        if (!done.isEmpty()) {
+            jdbcTemplate.update(DELETE_SQL, ps -> ps.setArray(1, toArray(ps.getConnection(), done)));
+        }
+        if (!retry.isEmpty()) {
+            jdbcTemplate.update(RETRY_SQL, ps -> {
+                ps.setLong(1, retryBackoffMs);
+                ps.setLong(2, maxRetryBackoffMs);
+                ps.setArray(3, toArray(ps.getConnection(), retry));
+            });
+        }
+        log.debug("Разобрано событий outbox: {}, отложено: {}", done.size(), retry.size());
+        return events.size();
+    }
+
+    private boolean dispatch(OutboxEvent event) {
+        boolean delivered = true;
+        for (OutboxListener listener : listeners) {
+            if (!listener.supports(event.getEventType())) {
+                continue;
+            }
+            try {
+                listener.onEvent(event);
+            } catch (RuntimeException e) {
+                failures.increment();
+                delivered = false;
+                log.warn("Подписчик {} не обработал событие outbox ID {}: {}",
+                        listener.getClass().getSimpleName(), event.getId(), e.getMessage());
+            }
+        }
+        return delivered;
+    }
+
+    private static Array toArray(Connection connection, List<Long> ids) throws SQLException {
+        return connection.createArrayOf("bigint", ids.toArray());
+    }
+}
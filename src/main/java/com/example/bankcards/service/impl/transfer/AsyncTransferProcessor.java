@@ -0,0 +1,218 @@
+package com.example.bankcards.service.impl.transfer;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.InvalidCardOperationException;
+import com.example.bankcards.exception.SameCardTransferException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.service.impl.bucket.BalanceBucketStore;
+import com.example.bankcards.service.impl.engine.BalanceEngine;
+import com.example.bankcards.util.TransferUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+@Slf4j
+public class AsyncTransferProcessor {
+    private static final String INTERNAL_ERROR = "Внутренняя ошибка обработки перевода";
+    private final TransactionRepository transactionRepository;
+    private final CardRepository cardRepository;
+    private final BalanceBucketStore bucketStore;
+    private final TransactionTemplate transactionTemplate;
+    private final TransferCompletionNotifier completionNotifier;
+    private final TransferMetrics.StrategyMeters meters;
+    private final ObjectProvider<LedgerService> ledgerService;
+    private final ObjectProvider<BalanceEngine> balanceEngine;
+    private final boolean enabled;
+    private final int workers;
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final Semaphore wakeups = new Semaphore(0);
+    private ExecutorService executor;
+    private volatile boolean running;
+
+    public AsyncTransferProcessor(TransactionRepository transactionRepository, CardRepository cardRepository,
+                                  BalanceBucketStore bucketStore, PlatformTransactionManager transactionManager,
+                                  TransferCompletionNotifier completionNotifier, TransferMetrics transferMetrics,
+                                  ObjectProvider<LedgerService> ledgerService,
+                                  ObjectProvider<BalanceEngine> balanceEngine,
+                                  @Value("${transfer.async.enabled:true}") boolean enabled,
+                                  @Value("${transfer.async.workers:2}") int workers,
+                                  @Value("${transfer.async.batch-size:100}") int batchSize,
+                                  @Value("${transfer.async.poll-interval-ms:1000}") long pollIntervalMs) {
+        this.transactionRepository = transactionRepository;
+        this.cardRepository = cardRepository;
+        this.bucketStore = bucketStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.completionNotifier = completionNotifier;
+        this.meters = transferMetrics.forStrategy("async");
+        this.ledgerService = ledgerService;
+        this.balanceEngine = balanceEngine;
+        this.enabled = enabled;
+        this.workers = Math.max(1, workers);
+        this.batchSize = Math.max(1, batchSize);
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("Асинхронная обработка переводов отключена");
+            return;
+        }
+        if (ledgerService.getIfAvailable() != null) {
+            // Обработчик меняет cards.balance напрямую, а при журнале проводок баланс материализуется из журнала
+            log.info("Асинхронная обработка переводов не запускается: балансы ведутся в журнале проводок");
+            return;
+        }
+        if (balanceEngine.getIfAvailable() != null) {
+            // При движке балансов cards.balance — лишь его проекция: перевод мимо движка затёрся бы проектором
+            log.info("Асинхронная обработка переводов не запускается: балансы ведутся в движке балансов");
+            return;
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "async-transfer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            executor.submit(this::runWorker);
+        }
+        log.info("Запущено обработчиков асинхронных переводов: {}, размер пакета: {}", workers, batchSize);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (executor == null) {
+            return;
+        }
+        running = false;
+        wakeups.release(workers);
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    public void signal() {
+        if (wakeups.availablePermits() < workers) {
+            wakeups.release();
+        }
+    }
+
+    private void runWorker() {
+        while (running) {
+            int processed;
+            try {
+                processed = drainBatch();
+            } catch (RuntimeException e) {
+                log.error("Ошибка обработки пакета асинхронных переводов: {}", e.getMessage(), e);
+                processed = 0;
+            }
+            if (processed < batchSize) {
+                try {
+                    wakeups.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    int drainBatch() {
+        List<Long> completed;
+        try {
+            completed = transactionTemplate.execute(status -> process(transactionRepository.lockPendingIds(batchSize)));
+        } catch (RuntimeException e) {
+            // Пакет откатился целиком: без разбора по одному переводу строка с неожиданной ошибкой
+            // роняла бы его при каждом повторном захвате, и остальные переводы пакета не выполнились бы никогда
+            log.error("Ошибка обработки пакета асинхронных переводов, переводы обрабатываются по одному: {}",
+                    e.getMessage(), e);
+            completed = drainIsolated();
+        }
+        completed.forEach(completionNotifier::complete);
+        if (!completed.isEmpty()) {
+            log.debug("Обработано асинхронных переводов: {}", completed.size());
+        }
+        return completed.size();
+    }
+
+    private List<Long> drainIsolated() {
+        List<Long> ids = transactionTemplate.execute(status -> transactionRepository.lockPendingIds(batchSize));
+        List<Long> completed = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            try {
+                completed.addAll(transactionTemplate.execute(status -> process(transactionRepository.lockPendingId(id))));
+            } catch (RuntimeException e) {
+                log.error("Асинхронный перевод ID {} не выполнен из-за внутренней ошибки: {}", id, e.getMessage(), e);
+                if (transactionTemplate.execute(status -> transactionRepository.markFailed(id, INTERNAL_ERROR)) > 0) {
+                    completed.add(id);
+                }
+            }
+        }
+        return completed;
+    }
+
+    private List<Long> process(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<Transaction> pending = new ArrayList<>(transactionRepository.findAllById(ids));
+        pending.sort(Comparator.comparing(Transaction::getId));
+        TreeSet<Long> cardIds = new TreeSet<>();
+        for (Transaction transaction : pending) {
+            cardIds.add(transaction.getFromCard().getId());
+            cardIds.add(transaction.getToCard().getId());
+        }
+        Map<Long, Card> cards = new HashMap<>();
+        for (Card card : cardRepository.findAllByIdInForUpdate(cardIds)) {
+            cards.put(card.getId(), card);
+        }
+        List<Long> processedIds = new ArrayList<>(pending.size());
+        for (Transaction transaction : pending) {
+            apply(transaction, cards);
+            processedIds.add(transaction.getId());
+        }
+        return processedIds;
+    }
+
+    private void apply(Transaction transaction, Map<Long, Card> cards) {
+        meters.getAttempts().increment();
+        Card fromCard = cards.get(transaction.getFromCard().getId());
+        Card toCard = cards.get(transaction.getToCard().getId());
+        try {
+            bucketStore.refill(fromCard, transaction.getAmount());
+            TransferUtils.validateTransfer(fromCard, toCard, fromCard.getUser().getId(), transaction.getAmount());
+            TransferUtils.applyTransfer(fromCard, toCard, transaction.getAmount());
+            transaction.setStatus(Transaction.Status.SUCCESS);
+        } catch (SameCardTransferException | InvalidCardOperationException | InsufficientFundsException e) {
+            log.warn("Асинхронный перевод ID {} отклонён: {}", transaction.getId(), e.getMessage());
+            transaction.setStatus(Transaction.Status.FAILED);
+            transaction.setFailureReason(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.bankcards.service.impl.transfer;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.InvalidCardOperationException;
+import com.example.bankcards.exception.SameCardTransferException;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.impl.bucket.BalanceBucketStore;
+import com.example.bankcards.service.transfer.TransferLeg;
+import com.example.bankcards.service.transfer.TransferOutcome;
+import com.example.bankcards.util.TransferUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+@Component
+@Slf4j
+public class BatchTransferExecutor {
+    private static final String INSERT_TRANSACTION_SQL =
+            "INSERT INTO transactions (from_card_id, to_card_id, amount, timestamp, status) VALUES (?, ?, ?, ?, ?)";
+    private final CardRepository cardRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final BalanceBucketStore bucketStore;
+    private final TransferMetrics.StrategyMeters meters;
+
+    public BatchTransferExecutor(CardRepository cardRepository, JdbcTemplate jdbcTemplate, BalanceBucketStore bucketStore,
+                                 TransferMetrics transferMetrics) {
+        this.cardRepository = cardRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.bucketStore = bucketStore;
+        this.meters = transferMetrics.forStrategy("batch");
+    }
+
+    @Transactional
+    public List<TransactionResponse> execute(List<TransferLeg> legs, boolean atomic) {
+        return run(legs, atomic).stream()
+                .map(TransferOutcome::getResponse)
+                .toList();
+    }
+
+    // Независимые переводы в одной транзакции: отклонённый перевод не отменяет остальные
+    // и возвращается вместе с исключением, которое выбросил бы одиночный перевод
+    @Transactional
+    public List<TransferOutcome> executeIndependent(List<TransferLeg> legs) {
+        return run(legs, false);
+    }
+
+    private List<TransferOutcome> run(List<TransferLeg> legs, boolean atomic) {
+        TreeSet<Long> cardIds = new TreeSet<>();
+        for (TransferLeg leg : legs) {
+            cardIds.add(leg.getRequest().getFromCardId());
+            cardIds.add(leg.getRequest().getToCardId());
+        }
+        Map<Long, Card> cards = lockCards(cardIds);
+        List<TransferOutcome> outcomes = new ArrayList<>(legs.size());
+        List<TransactionResponse> succeeded = new ArrayList<>(legs.size());
+        for (int i = 0; i < legs.size(); i++) {
+            TransferLeg leg = legs.get(i);
+            meters.getAttempts().increment();
+            try {
+                TransactionResponse response = applyLeg(leg, cards);
+                outcomes.add(new TransferOutcome(response, null));
+                succeeded.add(response);
+            } catch (CardNotFoundException | SameCardTransferException | InvalidCardOperationException
+                     | InsufficientFundsException e) {
+                if (atomic) {
+                    log.error("Пакетный перевод отменён на операции {}: {}", i + 1, e.getMessage());
+                    throw e;
+                }
+                log.warn("Операция {} пакетного перевода отклонена: {}", i + 1, e.getMessage());
+                outcomes.add(new TransferOutcome(failedResponse(leg.getRequest(), e.getMessage()), e));
+            }
+        }
+        // Изменения карт сбрасываются при коммите: несколько операций по одной карте дают один UPDATE
+        insertTransactions(succeeded);
+        for (int i = 0; i < legs.size(); i++) {
+            TransferLeg leg = legs.get(i);
+            if (leg.getOnCommit() != null && outcomes.get(i).isSuccess()) {
+                // Ответ идемпотентного перевода сохраняется в этой же транзакции; ошибка откатывает весь пакет
+                leg.getOnCommit().accept(outcomes.get(i).getResponse());
+            }
+        }
+        log.info("Пакетный перевод завершён: выполнено {} из {} операций", succeeded.size(), legs.size());
+        return outcomes;
+    }
+
+    private Map<Long, Card> lockCards(TreeSet<Long> cardIds) {
+        try {
+            // Один SELECT ... ORDER BY id FOR UPDATE блокирует все карты пакета по возрастанию ID
+            Map<Long, Card> cards = new HashMap<>();
+            for (Card card : cardRepository.findAllByIdInForUpdate(cardIds)) {
+                cards.put(card.getId(), card);
+            }
+            return cards;
+        } catch (PessimisticLockingFailureException e) {
+            meters.getConflicts().increment();
+            log.error("Не удалось заблокировать карты пакета: {}", e.getMessage());
+            throw new TransferConflictException("Карты заняты другой операцией, повторите перевод позже", e);
+        }
+    }
+
+    private TransactionResponse applyLeg(TransferLeg leg, Map<Long, Card> cards) {
+        TransactionRequest request = leg.getRequest();
+        Card fromCard = cards.get(request.getFromCardId());
+        if (fromCard == null) {
+            throw new CardNotFoundException("Карта-отправитель с ID " + request.getFromCardId() + " не найдена");
+        }
+        Card toCard = cards.get(request.getToCardId());
+        if (toCard == null) {
+            throw new CardNotFoundException("Карта-получатель с ID " + request.getToCardId() + " не найдена");
+        }
+        refill(fromCard, request.getAmount().getMinorUnits());
+        TransferUtils.validateTransfer(fromCard, toCard, leg.getUserId(), request.getAmount().getMinorUnits());
+        TransferUtils.applyTransfer(fromCard, toCard, request.getAmount().getMinorUnits());
+        TransactionResponse response = new TransactionResponse();
+        response.setFromCardId(fromCard.getId());
+        response.setToCardId(toCard.getId());
+        response.setAmount(request.getAmount());
+        response.setTimestamp(LocalDateTime.now());
+        response.setStatus(Transaction.Status.SUCCESS.name());
+        return response;
+    }
+
+    // Строки карт уже заблокированы; корзины горячей карты блокируются после них, поэтому взаимоблокировка
+    // с зачислением в корзину возможна и отдаётся как конфликт, а не как ошибка сервера
+    private void refill(Card fromCard, long amount) {
+        try {
+            bucketStore.refill(fromCard, amount);
+        } catch (PessimisticLockingFailureException e) {
+            meters.getConflicts().increment();
+            log.error("Не удалось заблокировать корзины баланса карты {}: {}", fromCard.getId(), e.getMessage());
+            throw new TransferConflictException("Карты заняты другой операцией, повторите перевод позже", e);
+        }
+    }
+
+    private TransactionResponse failedResponse(TransactionRequest request, String message) {
+        TransactionResponse response = new TransactionResponse();
+        response.setFromCardId(request.getFromCardId());
+        response.setToCardId(request.getToCardId());
+        response.setAmount(request.getAmount());
+        response.setTimestamp(LocalDateTime.now());
+        response.setStatus(Transaction.Status.FAILED.name());
+        response.setMessage(message);
+        return response;
+    }
+
+    private void insertTransactions(List<TransactionResponse> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_TRANSACTION_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        TransactionResponse row = rows.get(i);
+                        ps.setLong(1, row.getFromCardId());
+                        ps.setLong(2, row.getToCardId());
+                        ps.setLong(3, row.getAmount().getMinorUnits());
+                        ps.setTimestamp(4, Timestamp.valueOf(row.getTimestamp()));
+                        ps.setString(5, row.getStatus());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows.size();
+                    }
+                },
+                keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i).setId(((Number) keys.get(i).get("id")).longValue());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.bankcards.service.impl.transfer;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.SameCardTransferException;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.mapper.TransactionMapper;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.service.transfer.TransferStrategy;
+import com.example.bankcards.util.TransferUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+@ConditionalOnProperty(name = "transfer.strategy", havingValue = ConditionalUpdateTransferStrategy.NAME)
+@Slf4j
+public class ConditionalUpdateTransferStrategy implements TransferStrategy {
+    public static final String NAME = "conditional-update";
+    private final CardRepository cardRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionMapper transactionMapper;
+    private final TransferMetrics.StrategyMeters meters;
+
+    public ConditionalUpdateTransferStrategy(CardRepository cardRepository, TransactionRepository transactionRepository,
+                                             TransactionMapper transactionMapper, TransferMetrics transferMetrics) {
+        this.cardRepository = cardRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionMapper = transactionMapper;
+        this.meters = transferMetrics.forStrategy(NAME);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    @Transactional
+    public TransactionResponse transfer(Long userId, TransactionRequest request) {
+        Long fromCardId = request.getFromCardId();
+        Long toCardId = request.getToCardId();
+        if (fromCardId.equals(toCardId)) {
+            log.error("Попытка перевода на ту же карту: {}", fromCardId);
+            throw new SameCardTransferException("Нельзя выполнить перевод на ту же карту");
+        }
+        // UPDATE выполняются по возрастанию ID, чтобы блокировки строк брались в одном порядке
+        if (fromCardId < toCardId) {
+            debit(userId, request);
+            credit(userId, request);
+        } else {
+            credit(userId, request);
+            debit(userId, request);
+        }
+        Transaction transaction = TransferUtils.buildTransaction(
+                cardRepository.getReferenceById(fromCardId),
+                cardRepository.getReferenceById(toCardId),
+                request.getAmount().getMinorUnits(),
+                Transaction.Status.SUCCESS);
+        return transactionMapper.mapToTransactionResponse(transactionRepository.save(transaction));
+    }
+
+    private void debit(Long userId, TransactionRequest request) {
+        if (cardRepository.debitIfSufficient(request.getFromCardId(), userId, request.getAmount().getMinorUnits()) == 0) {
+            explainRejection(userId, request);
+        }
+    }
+
+    private void credit(Long userId, TransactionRequest request) {
+        if (cardRepository.creditIfActive(request.getToCardId(), request.getAmount().getMinorUnits()) == 0) {
+            explainRejection(userId, request);
+        }
+    }
+
+    private void explainRejection(Long userId, TransactionRequest request) {
+        Card fromCard = cardRepository.findById(request.getFromCardId())
+                .orElseThrow(() -> new CardNotFoundException("Карта-отправитель с ID " + request.getFromCardId() + " не найдена"));
+        Card toCard = cardRepository.findById(request.getToCardId())
+                .orElseThrow(() -> new CardNotFoundException("Карта-получатель с ID " + request.getToCardId() + " не найдена"));
+        TransferUtils.validateTransfer(fromCard, toCard, userId, request.getAmount().getMinorUnits());
+        meters.getConflicts().increment();
+        log.warn("Условное обновление карт {} и {} не применилось, хотя проверки проходят", fromCard.getId(), toCard.getId());
+        throw new TransferConflictException("Карта изменена другой операцией, повторите перевод");
+    }
+}
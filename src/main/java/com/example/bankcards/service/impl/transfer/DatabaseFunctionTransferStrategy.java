@@ -0,0 +1,86 @@
+package com.example.bankcards.service.impl.transfer;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.InvalidCardOperationException;
+import com.example.bankcards.exception.SameCardTransferException;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.service.transfer.TransferResultCode;
+import com.example.bankcards.service.transfer.TransferStrategy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+@Service
+@ConditionalOnProperty(name = "transfer.strategy", havingValue = DatabaseFunctionTransferStrategy.NAME)
+@Slf4j
+public class DatabaseFunctionTransferStrategy implements TransferStrategy {
+    public static final String NAME = "database-function";
+    private static final String TRANSFER_SQL =
+            "SELECT o_result_code, o_transaction_id, o_timestamp FROM transfer_funds(?, ?, ?, ?)";
+    private final JdbcTemplate jdbcTemplate;
+    private final TransferMetrics.StrategyMeters meters;
+
+    public DatabaseFunctionTransferStrategy(JdbcTemplate jdbcTemplate, TransferMetrics transferMetrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meters = transferMetrics.forStrategy(NAME);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    // Без @Transactional: вызов функции выполняется в autocommit одним сетевым запросом. С Idempotency-Key
+    // он идёт в транзакции сервиса идемпотентности вместе с сохранением ответа
+    @Override
+    public TransactionResponse transfer(Long userId, TransactionRequest request) {
+        TransactionResponse response = new TransactionResponse();
+        TransferResultCode resultCode;
+        try {
+            resultCode = jdbcTemplate.queryForObject(TRANSFER_SQL, (rs, rowNum) -> {
+                response.setId(rs.getObject("o_transaction_id", Long.class));
+                response.setTimestamp(rs.getObject("o_timestamp", LocalDateTime.class));
+                return TransferResultCode.valueOf(rs.getString("o_result_code"));
+            }, userId, request.getFromCardId(), request.getToCardId(), request.getAmount().getMinorUnits());
+        } catch (PessimisticLockingFailureException e) {
+            meters.getConflicts().increment();
+            log.error("Не удалось заблокировать карты {} и {}: {}", request.getFromCardId(), request.getToCardId(), e.getMessage());
+            throw new TransferConflictException("Карта занята другой операцией, повторите перевод позже", e);
+        }
+        if (resultCode != TransferResultCode.SUCCESS) {
+            throw toException(resultCode, userId, request);
+        }
+        response.setFromCardId(request.getFromCardId());
+        response.setToCardId(request.getToCardId());
+        response.setAmount(request.getAmount());
+        response.setStatus(Transaction.Status.SUCCESS.name());
+        return response;
+    }
+
+    private RuntimeException toException(TransferResultCode resultCode, Long userId, TransactionRequest request) {
+        log.error("Перевод с карты {} на карту {} отклонён базой данных: {}", request.getFromCardId(), request.getToCardId(), resultCode);
+        return switch (resultCode) {
+            case FROM_CARD_NOT_FOUND ->
+                    new CardNotFoundException("Карта-отправитель с ID " + request.getFromCardId() + " не найдена");
+            case TO_CARD_NOT_FOUND ->
+                    new CardNotFoundException("Карта-получатель с ID " + request.getToCardId() + " не найдена");
+            case SAME_CARD -> new SameCardTransferException("Нельзя выполнить перевод на ту же карту");
+            case NOT_CARD_OWNER -> {
+                log.error("Попытка перевода с чужой карты: {} пользователем: {}", request.getFromCardId(), userId);
+                yield new InvalidCardOperationException("Вы не можете использовать эту карту для перевода");
+            }
+            case FROM_CARD_INACTIVE -> new InvalidCardOperationException("Карта-отправитель не активна");
+            case TO_CARD_INACTIVE -> new InvalidCardOperationException("Карта-получатель не активна");
+            case INSUFFICIENT_FUNDS -> new InsufficientFundsException("Недостаточно средств на карте-отправителе");
+            case SUCCESS -> throw new IllegalStateException("Успешный результат не является ошибкой");
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.bankcards.service.impl.transfer;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.service.impl.engine.BalanceEngine;
+import com.example.bankcards.service.transfer.TransferStrategy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+@Service
+@ConditionalOnProperty(name = "transfer.strategy", havingValue = InMemoryTransferStrategy.NAME)
+public class InMemoryTransferStrategy implements TransferStrategy {
+    public static final String NAME = "in-memory";
+    private final BalanceEngine balanceEngine;
+
+    public InMemoryTransferStrategy(BalanceEngine balanceEngine) {
+        this.balanceEngine = balanceEngine;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public TransactionResponse transfer(Long userId, TransactionRequest request) {
+        return balanceEngine.transfer(userId, request);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.bankcards.service.impl.transfer;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.service.transfer.TransferLeg;
+import com.example.bankcards.service.transfer.TransferOutcome;
+import com.example.bankcards.service.transfer.TransferStrategy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+@ConditionalOnProperty(name = "transfer.strategy", havingValue = LedgerTransferStrategy.NAME)
+public class LedgerTransferStrategy implements TransferStrategy {
+    public static final String NAME = "ledger";
+    private final LedgerService ledgerService;
+
+    public LedgerTransferStrategy(LedgerService ledgerService) {
+        this.ledgerService = ledgerService;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public TransactionResponse transfer(Long userId, TransactionRequest request) {
+        TransferOutcome outcome = ledgerService.transfer(List.of(new TransferLeg(userId, request)), true).get(0);
+        return outcome.getResponse();
+    }
+}
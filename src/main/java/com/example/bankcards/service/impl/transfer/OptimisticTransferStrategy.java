@@ -0,0 +1,109 @@
+package com.example.bankcards.service.impl.transfer;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.mapper.TransactionMapper;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.service.transfer.TransferStrategy;
+import com.example.bankcards.util.TransferUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+@Service
+@ConditionalOnProperty(name = "transfer.strategy", havingValue = OptimisticTransferStrategy.NAME)
+@Slf4j
+public class OptimisticTransferStrategy implements TransferStrategy {
+    public static final String NAME = "optimistic";
+    private final CardRepository cardRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionMapper transactionMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final TransferMetrics.StrategyMeters meters;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    public OptimisticTransferStrategy(CardRepository cardRepository, TransactionRepository transactionRepository,
+                                      TransactionMapper transactionMapper, PlatformTransactionManager transactionManager,
+                                      TransferMetrics transferMetrics,
+                                      @Value("${transfer.optimistic.max-attempts:5}") int maxAttempts,
+                                      @Value("${transfer.optimistic.initial-backoff-ms:5}") long initialBackoffMs,
+                                      @Value("${transfer.optimistic.max-backoff-ms:100}") long maxBackoffMs) {
+        this.cardRepository = cardRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionMapper = transactionMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meters = transferMetrics.forStrategy(NAME);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public TransactionResponse transfer(Long userId, TransactionRequest request) {
+        // Внутри внешней транзакции (перевод с Idempotency-Key) откат попытки откатывает и её, повторять нечего:
+        // конфликт сразу отдаётся вызывающему, и запрос повторяется целиком
+        int attempts = TransactionSynchronizationManager.isActualTransactionActive() ? 1 : maxAttempts;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> doTransfer(userId, request));
+            } catch (OptimisticLockingFailureException e) {
+                meters.getConflicts().increment();
+                if (attempt >= attempts) {
+                    log.error("Перевод с карты {} на карту {} не выполнен после {} попыток из-за конфликтов версий",
+                            request.getFromCardId(), request.getToCardId(), attempt);
+                    throw new TransferConflictException("Карта занята другой операцией, повторите перевод позже", e);
+                }
+                meters.getRetries().increment();
+                log.warn("Конфликт версий при переводе с карты {} на карту {}, попытка {} из {}",
+                        request.getFromCardId(), request.getToCardId(), attempt, attempts);
+                backoff(attempt);
+            }
+        }
+    }
+
+    private TransactionResponse doTransfer(Long userId, TransactionRequest request) {
+        Card fromCard = cardRepository.findById(request.getFromCardId())
+                .orElseThrow(() -> new CardNotFoundException("Карта-отправитель с ID " + request.getFromCardId() + " не найдена"));
+        Card toCard = cardRepository.findById(request.getToCardId())
+                .orElseThrow(() -> new CardNotFoundException("Карта-получатель с ID " + request.getToCardId() + " не найдена"));
+        TransferUtils.validateTransfer(fromCard, toCard, userId, request.getAmount().getMinorUnits());
+        TransferUtils.applyTransfer(fromCard, toCard, request.getAmount().getMinorUnits());
+        // Версии карт проверяются при flush; hibernate.order_updates упорядочивает UPDATE по ID. Явный flush
+        // нужен во внешней транзакции: иначе конфликт всплыл бы только при её коммите, мимо обработки выше
+        cardRepository.save(fromCard);
+        cardRepository.save(toCard);
+        cardRepository.flush();
+        Transaction transaction = TransferUtils.buildTransaction(fromCard, toCard, request.getAmount().getMinorUnits(), Transaction.Status.SUCCESS);
+        return transactionMapper.mapToTransactionResponse(transactionRepository.save(transaction));
+    }
+
+    private void backoff(int attempt) {
+        long delay = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+        long jitter = delay > 0 ? ThreadLocalRandom.current().nextLong(delay + 1) : 0;
+        try {
+            Thread.sleep(delay / 2 + jitter / 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferConflictException("Перевод прерван во время ожидания повтора", e);
+        }
+    }
+}
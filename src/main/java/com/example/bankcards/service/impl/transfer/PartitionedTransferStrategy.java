@@ -0,0 +1,237 @@
+package com.example.bankcards.service.impl.transfer;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.exception.TransferOutcomeUnknownException;
+import com.example.bankcards.service.transfer.TransferLeg;
+import com.example.bankcards.service.transfer.TransferOutcome;
+import com.example.bankcards.service.transfer.TransferStrategy;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+@Service
+@ConditionalOnProperty(name = "transfer.strategy", havingValue = PartitionedTransferStrategy.NAME)
+@Slf4j
+public class PartitionedTransferStrategy implements TransferStrategy {
+    public static final String NAME = "partitioned";
+    private final BatchTransferExecutor batchTransferExecutor;
+    private final MeterRegistry meterRegistry;
+    private final TransferMetrics.StrategyMeters meters;
+    private final int maxBatchSize;
+    private final long timeoutMs;
+    private final Partition[] partitions;
+
+    public PartitionedTransferStrategy(BatchTransferExecutor batchTransferExecutor, MeterRegistry meterRegistry,
+                                       TransferMetrics transferMetrics,
+                                       @Value("${transfer.partitioned.partitions:4}") int partitionCount,
+                                       @Value("${transfer.partitioned.queue-capacity:10000}") int queueCapacity,
+                                       @Value("${transfer.partitioned.max-batch-size:256}") int maxBatchSize,
+                                       @Value("${transfer.partitioned.timeout-ms:5000}") long timeoutMs) {
+        this.batchTransferExecutor = batchTransferExecutor;
+        this.meterRegistry = meterRegistry;
+        this.meters = transferMetrics.forStrategy(NAME);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.timeoutMs = timeoutMs;
+        this.partitions = new Partition[Math.max(1, partitionCount)];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition(i, Math.max(1, queueCapacity));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @PostConstruct
+    public void start() {
+        for (Partition partition : partitions) {
+            partition.thread.start();
+        }
+        log.info("Запущено партиций переводов: {}, максимальный пакет: {}", partitions.length, maxBatchSize);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (Partition partition : partitions) {
+            partition.thread.interrupt();
+        }
+        for (Partition partition : partitions) {
+            partition.thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    @Override
+    public boolean commitsOwnTransaction() {
+        return true;
+    }
+
+    @Override
+    public TransactionResponse transfer(Long userId, TransactionRequest request) {
+        return submit(new TransferLeg(userId, request));
+    }
+
+    @Override
+    public TransactionResponse transfer(Long userId, TransactionRequest request, Consumer<TransactionResponse> onCommit) {
+        return submit(new TransferLeg(userId, request, onCommit));
+    }
+
+    private TransactionResponse submit(TransferLeg leg) {
+        TransactionRequest request = leg.getRequest();
+        // Партиция выбирается по карте-отправителю: все списания с карты выполняет один поток в порядке
+        // постановки в очередь, поэтому они не обгоняют друг друга при проверке остатка. Зачисления на карту
+        // приходят из разных партиций; их сериализует блокировка строки карты, а на остаток для списаний
+        // они влияют только в большую сторону
+        Partition partition = partitionOf(request.getFromCardId());
+        PendingTransfer pending = new PendingTransfer(leg);
+        if (!partition.queue.offer(pending)) {
+            meters.getConflicts().increment();
+            log.warn("Очередь партиции {} переполнена, перевод с карты {} отклонён", partition.index, request.getFromCardId());
+            throw new TransferConflictException("Сервис переводов перегружен, повторите перевод позже");
+        }
+        TransferOutcome outcome = await(pending);
+        if (!outcome.isSuccess()) {
+            throw outcome.getFailure();
+        }
+        return outcome.getResponse();
+    }
+
+    private Partition partitionOf(Long cardId) {
+        return partitions[Math.floorMod(Long.hashCode(cardId), partitions.length)];
+    }
+
+    private TransferOutcome await(PendingTransfer pending) {
+        try {
+            return pending.result.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            // Перевод остаётся в очереди и будет выполнен, поэтому клиенту нужен статус, а не повтор
+            meters.getConflicts().increment();
+            throw outcomeUnknown("Перевод не завершён за отведённое время, проверьте историю операций", pending, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw outcomeUnknown("Ожидание перевода прервано, проверьте историю операций", pending, e);
+        }
+    }
+
+    private TransferOutcomeUnknownException outcomeUnknown(String message, PendingTransfer pending, Exception cause) {
+        CompletableFuture<TransactionResponse> response = pending.result.thenApply(outcome -> {
+            if (!outcome.isSuccess()) {
+                throw outcome.getFailure();
+            }
+            return outcome.getResponse();
+        });
+        return new TransferOutcomeUnknownException(message, null, response, cause);
+    }
+
+    private void process(Partition partition, List<PendingTransfer> batch) {
+        partition.batchSize.record(batch.size());
+        List<TransferLeg> legs = new ArrayList<>(batch.size());
+        for (PendingTransfer pending : batch) {
+            legs.add(pending.leg);
+        }
+        try {
+            List<TransferOutcome> outcomes = batchTransferExecutor.executeIndependent(legs);
+            for (int i = 0; i < batch.size(); i++) {
+                complete(partition, batch.get(i), outcomes.get(i), null);
+            }
+        } catch (RuntimeException e) {
+            log.error("Ошибка обработки пакета партиции {}: {}", partition.index, e.getMessage());
+            for (PendingTransfer pending : batch) {
+                complete(partition, pending, null, e);
+            }
+        }
+    }
+
+    private void complete(Partition partition, PendingTransfer pending, TransferOutcome outcome, RuntimeException failure) {
+        partition.latency.record(System.nanoTime() - pending.enqueuedAt, TimeUnit.NANOSECONDS);
+        if (failure != null) {
+            pending.result.completeExceptionally(failure);
+        } else {
+            pending.result.complete(outcome);
+        }
+    }
+
+    private static class PendingTransfer {
+        private final TransferLeg leg;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<TransferOutcome> result = new CompletableFuture<>();
+
+        private PendingTransfer(TransferLeg leg) {
+            this.leg = leg;
+        }
+    }
+
+    private class Partition implements Runnable {
+        private final int index;
+        private final BlockingQueue<PendingTransfer> queue;
+        private final Thread thread;
+        private final Timer latency;
+        private final DistributionSummary batchSize;
+
+        private Partition(int index, int queueCapacity) {
+            this.index = index;
+            this.queue = new LinkedBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(this, "transfer-partition-" + index);
+            this.thread.setDaemon(true);
+            String partitionTag = String.valueOf(index);
+            Gauge.builder("bank.transfer.partition.queue.depth", queue, BlockingQueue::size)
+                    .description("Количество переводов в очереди партиции")
+                    .tag("partition", partitionTag)
+                    .register(meterRegistry);
+            this.latency = Timer.builder("bank.transfer.partition.latency")
+                    .description("Время от постановки перевода в очередь партиции до его завершения")
+                    .tag("partition", partitionTag)
+                    .register(meterRegistry);
+            this.batchSize = DistributionSummary.builder("bank.transfer.partition.batch.size")
+                    .description("Количество переводов, выполненных партицией за одну транзакцию")
+                    .tag("partition", partitionTag)
+                    .register(meterRegistry);
+        }
+
+        @Override
+        public void run() {
+            List<PendingTransfer> batch = new ArrayList<>(maxBatchSize);
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                queue.drainTo(batch, maxBatchSize - 1);
+                process(this, batch);
+                batch.clear();
+            }
+            List<PendingTransfer> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            for (PendingTransfer pending : remaining) {
+                pending.result.completeExceptionally(
+                        new TransferConflictException("Сервис переводов остановлен, повторите перевод позже"));
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.bankcards.service.impl.transfer;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.mapper.TransactionMapper;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.service.transfer.TransferStrategy;
+import com.example.bankcards.util.TransferUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+@ConditionalOnProperty(name = "transfer.strategy", havingValue = PessimisticTransferStrategy.NAME, matchIfMissing = true)
+@Slf4j
+public class PessimisticTransferStrategy implements TransferStrategy {
+    public static final String NAME = "pessimistic";
+    private final CardRepository cardRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionMapper transactionMapper;
+    private final TransferMetrics.StrategyMeters meters;
+
+    public PessimisticTransferStrategy(CardRepository cardRepository, TransactionRepository transactionRepository,
+                                       TransactionMapper transactionMapper, TransferMetrics transferMetrics) {
+        this.cardRepository = cardRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionMapper = transactionMapper;
+        this.meters = transferMetrics.forStrategy(NAME);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    @Transactional
+    public TransactionResponse transfer(Long userId, TransactionRequest request) {
+        Long fromCardId = request.getFromCardId();
+        Long toCardId = request.getToCardId();
+        Card fromCard;
+        Card toCard;
+        try {
+            // Блокировки берутся строго по возрастанию ID, поэтому встречные переводы A→B и B→A не дают дедлок
+            if (fromCardId <= toCardId) {
+                fromCard = lockCard(fromCardId, true);
+                toCard = fromCardId.equals(toCardId) ? fromCard : lockCard(toCardId, false);
+            } else {
+                toCard = lockCard(toCardId, false);
+                fromCard = lockCard(fromCardId, true);
+            }
+        } catch (PessimisticLockingFailureException e) {
+            meters.getConflicts().increment();
+            log.error("Не удалось заблокировать карты {} и {}: {}", fromCardId, toCardId, e.getMessage());
+            throw new TransferConflictException("Карта занята другой операцией, повторите перевод позже", e);
+        }
+        TransferUtils.validateTransfer(fromCard, toCard, userId, request.getAmount().getMinorUnits());
+        TransferUtils.applyTransfer(fromCard, toCard, request.getAmount().getMinorUnits());
+        Transaction transaction = TransferUtils.buildTransaction(fromCard, toCard, request.getAmount().getMinorUnits(), Transaction.Status.SUCCESS);
+        return transactionMapper.mapToTransactionResponse(transactionRepository.save(transaction));
+    }
+
+    private Card lockCard(Long cardId, boolean sender) {
+        return cardRepository.findByIdForUpdate(cardId)
+                .orElseThrow(() -> new CardNotFoundException(
+                        (sender ? "Карта-отправитель" : "Карта-получатель") + " с ID " + cardId + " не найдена"));
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.bankcards.service.impl.transfer;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+@Component
+public class TransferCompletionNotifier {
+    private final ConcurrentMap<Long, CompletableFuture<Void>> waiters = new ConcurrentHashMap<>();
+
+    public CompletableFuture<Void> register(Long transactionId) {
+        return waiters.computeIfAbsent(transactionId, id -> new CompletableFuture<>());
+    }
+
+    public void unregister(Long transactionId, CompletableFuture<Void> future) {
+        waiters.remove(transactionId, future);
+    }
+
+    public void complete(Long transactionId) {
+        CompletableFuture<Void> future = waiters.remove(transactionId);
+        if (future != null) {
+            future.complete(null);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.bankcards.service.impl.transfer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class TransferMetrics {
+    private final MeterRegistry meterRegistry;
+
+    public StrategyMeters forStrategy(String strategy) {
+        return new StrategyMeters(
+                Counter.builder("bank.transfer.attempts")
+                        .description("Количество попыток перевода")
+                        .tag("strategy", strategy)
+                        .register(meterRegistry),
+                Counter.builder("bank.transfer.retries")
+                        .description("Количество повторов перевода после конфликта")
+                        .tag("strategy", strategy)
+                        .register(meterRegistry),
+                Counter.builder("bank.transfer.conflicts")
+                        .description("Количество конфликтов конкурентного доступа к картам")
+                        .tag("strategy", strategy)
+                        .register(meterRegistry),
+                Timer.builder("bank.transfer.duration")
+                        .description("Длительность выполнения перевода")
+                        .tag("strategy", strategy)
+                        .register(meterRegistry));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class StrategyMeters {
+        private final Counter attempts;
+        private final Counter retries;
+        private final Counter conflicts;
+        private final Timer duration;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.bankcards.service.outbox;
+
+import com.example.bankcards.dto.event.OutboxEvent;
+import com.example.bankcards.dto.event.OutboxEventType;
+
+// Подписчик событий outbox. Доставка «хотя бы один раз»: после ошибки любого подписчика событие
+// повторно получат все, поэтому обработка должна быть идемпотентной по OutboxEvent.id
+public interface OutboxListener {
+    default boolean supports(OutboxEventType eventType) {
+        return true;
+    }
+
+    void onEvent(OutboxEvent event);
+}
@@ -0,0 +1,21 @@
+package com.example.bankcards.service.transfer;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.function.Consumer;
+
+@Getter
+@AllArgsConstructor
+public class TransferLeg {
+    private final Long userId;
+    private final TransactionRequest request;
+    // Вызывается для выполненного перевода в транзакции, которая его коммитит
+    private final Consumer<TransactionResponse> onCommit;
+
+    public TransferLeg(Long userId, TransactionRequest request) {
+        this(userId, request, null);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.bankcards.service.transfer;
+
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class TransferOutcome {
+    private final TransactionResponse response;
+    private final RuntimeException failure;
+
+    public boolean isSuccess() {
+        return failure == null;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.bankcards.service.transfer;
+
+public enum TransferResultCode {
+    SUCCESS,
+    FROM_CARD_NOT_FOUND,
+    TO_CARD_NOT_FOUND,
+    SAME_CARD,
+    NOT_CARD_OWNER,
+    FROM_CARD_INACTIVE,
+    TO_CARD_INACTIVE,
+    INSUFFICIENT_FUNDS
+}
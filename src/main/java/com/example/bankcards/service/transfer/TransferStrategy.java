@@ -0,0 +1,24 @@
+package com.example.bankcards.service.transfer;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+
+import java.util.function.Consumer;
+
+public interface TransferStrategy {
+    String getName();
+
+    TransactionResponse transfer(Long userId, TransactionRequest request);
+
+    // Стратегия, которая коммитит перевод в собственной транзакции, а не в транзакции вызывающего
+    default boolean commitsOwnTransaction() {
+        return false;
+    }
+
+    // onCommit вызывается в транзакции, которая коммитит перевод, чтобы ответ сохранялся атомарно с ним
+    default TransactionResponse transfer(Long userId, TransactionRequest request, Consumer<TransactionResponse> onCommit) {
+        TransactionResponse response = transfer(userId, request);
+        onCommit.accept(response);
+        return response;
+    }
+}
@@ -2,9 +2,7 @@ package com.example.bankcards.util;
 
 import com.example.bankcards.dto.card.CardResponse;
 import com.example.bankcards.entity.Card;
-import com.example.bankcards.entity.User;
-import com.example.bankcards.exception.UserNotFoundException;
-import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.auth.CurrentUserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
@@ -12,22 +10,73 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
-import java.security.SecureRandom;
 import java.time.YearMonth;
+import java.util.random.RandomGenerator;
 
 @Component
 @RequiredArgsConstructor
 public class CardUtils {
-    private static final String CARD_NUMBER_PREFIX = "3985";
-    private static final SecureRandom random = new SecureRandom();
-    private final UserRepository userRepository;
+    private static final int CARD_NUMBER_LENGTH = 16;
+    private static final long[] POWERS_OF_TEN = new long[CARD_NUMBER_LENGTH];
 
-    public static String generateCardNumber() {
-        StringBuilder cardNumber = new StringBuilder(CARD_NUMBER_PREFIX);
-        for (int i = 0; i < 12; i++) {
-            cardNumber.append(random.nextInt(10));
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
         }
-        return cardNumber.toString();
+    }
+
+    private final CurrentUserService currentUserService;
+
+    // Номер длиной 16 цифр: BIN, случайная часть одним вызовом генератора и контрольная цифра Луна
+    public static String generateCardNumber(String bin, RandomGenerator random) {
+        char[] digits = new char[CARD_NUMBER_LENGTH];
+        bin.getChars(0, bin.length(), digits, 0);
+        long value = random.nextLong(POWERS_OF_TEN[CARD_NUMBER_LENGTH - 1 - bin.length()]);
+        for (int i = CARD_NUMBER_LENGTH - 2; i >= bin.length(); i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        digits[CARD_NUMBER_LENGTH - 1] = (char) ('0' + luhnCheckDigit(digits, CARD_NUMBER_LENGTH - 1));
+        return new String(digits);
+    }
+
+    public static boolean isLuhnValid(String number) {
+        int length = number.length();
+        if (length < 2) {
+            return false;
+        }
+        char[] digits = number.toCharArray();
+        for (char digit : digits) {
+            if (digit < '0' || digit > '9') {
+                return false;
+            }
+        }
+        return digits[length - 1] - '0' == luhnCheckDigit(digits, length - 1);
+    }
+
+    public static void validateBin(String bin) {
+        if (bin == null || bin.isEmpty() || bin.length() > CARD_NUMBER_LENGTH - 2 || !bin.chars().allMatch(Character::isDigit)) {
+            throw new IllegalArgumentException("BIN должен состоять из 1-" + (CARD_NUMBER_LENGTH - 2) + " цифр: " + bin);
+        }
+    }
+
+    // Удваивается каждая вторая цифра, начиная с ближайшей к контрольной
+    private static int luhnCheckDigit(char[] digits, int length) {
+        int sum = 0;
+        boolean doubled = true;
+        for (int i = length - 1; i >= 0; i--) {
+            int digit = digits[i] - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
     }
 
     public static Card.Status determineCardStatus(YearMonth expirationDate) {
@@ -40,14 +89,10 @@ public class CardUtils {
 
     public void checkCardOwnership(Card card) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.getPrincipal() instanceof UserDetails) {
-            UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-            if (!userDetails.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"))) {
-                User currentUser = userRepository.findByUsername(userDetails.getUsername())
-                        .orElseThrow(() -> new UserNotFoundException("Пользователь не найден"));
-                if (!card.getUser().getId().equals(currentUser.getId())) {
-                    throw new AccessDeniedException("Доступ к карте запрещен");
-                }
+        if (authentication != null && authentication.getPrincipal() instanceof UserDetails
+                && !currentUserService.isAdmin()) {
+            if (!card.getUser().getId().equals(currentUserService.getCurrentUserId())) {
+                throw new AccessDeniedException("Доступ к карте запрещен");
             }
         }
     }
@@ -55,11 +100,12 @@ public class CardUtils {
     public static CardResponse mapToCardResponse(Card card) {
         CardResponse response = new CardResponse();
         response.setId(card.getId());
-        response.setMaskedCardNumber(CardResponse.maskCardNumber(card.getEncryptedCardNumber()));
+        response.setMaskedCardNumber(CardResponse.maskCardNumber(card.getCardNumberLast4()));
         response.setOwnerName(card.getOwnerName());
         response.setExpirationDate(card.getExpirationDate());
         response.setStatus(card.getStatus());
-        response.setBalance(card.getBalance());
+        response.setBalance(Money.ofMinor(card.getBalance()));
+        response.setBalanceBuckets(card.getBalanceBuckets());
         response.setUserId(card.getUser().getId());
         return response;
     }
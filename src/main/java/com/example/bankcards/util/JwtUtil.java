@@ -1,27 +1,41 @@
 package com.example.bankcards.util;
 
+import com.example.bankcards.entity.User;
+import com.example.bankcards.security.AuthenticatedUser;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.UUID;
 
 @Component
 @Slf4j
 public class JwtUtil {
-    @Value("${jwt.secret}")
-    private String secret;
-    @Value("${jwt.expiration}")
-    private Long expiration;
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ROLES_CLAIM = "roles";
+    private final String secret;
+    private final Long expiration;
+    // Ключ и парсер неизменяемы и потокобезопасны, поэтому строятся один раз на всё приложение
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+
+    public JwtUtil(@Value("${jwt.secret}") String secret, @Value("${jwt.expiration}") Long expiration) {
+        this.secret = secret;
+        this.expiration = expiration;
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser().verifyWith(signingKey).build();
+    }
 
     public Long getExpiration() {
         return expiration;
@@ -31,95 +45,48 @@ public class JwtUtil {
         return secret;
     }
 
-    private SecretKey getSigningKey() {
-        log.debug("Генерация секретного ключа для подписи JWT");
-        return Keys.hmacShaKeyFor(secret.getBytes());
-    }
-
-    public String extractUsername(String token) {
-        log.debug("Извлечение username из токена: {}", token.substring(0, Math.min(20, token.length())));
-        return extractClaim(token, Claims::getSubject);
-    }
-
-    public Date extractExpiration(String token) {
-        log.debug("Извлечение времени истечения токена");
-        return extractClaim(token, Claims::getExpiration);
+    // Проверяет подпись и срок действия; бросает JwtException или IllegalArgumentException для невалидного токена
+    public Claims parseClaims(String token) {
+        return parser.parseSignedClaims(token).getPayload();
     }
 
     public Date getExpirationDateFromToken(String token) {
         log.debug("Получение даты истечения токена: {}", token.substring(0, Math.min(20, token.length())));
         try {
-            return extractExpiration(token);
+            return parseClaims(token).getExpiration();
         } catch (Exception e) {
             log.error("Ошибка извлечения даты истечения токена: {}", e.getMessage());
             throw new IllegalArgumentException("Некорректный формат токена");
         }
     }
 
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
-    }
-
-    private Claims extractAllClaims(String token) {
-        log.debug("Извлечение всех claims из токена");
-        return Jwts.parser()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        boolean isValid = (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
-        if (isValid) {
-            log.debug("Токен валиден для пользователя: {}", username);
-        } else {
-            log.warn("Токен невалиден для пользователя: {}", username);
-        }
-        return isValid;
-    }
-
-    private Boolean isTokenExpired(String token) {
-        boolean isExpired = extractExpiration(token).before(new Date());
-        if (isExpired) {
-            log.warn("Токен истек: {}", extractExpiration(token));
-        }
-        return isExpired;
-    }
-
     public String generateToken(UserDetails userDetails) {
         log.info("Генерация нового токена для пользователя: {}", userDetails.getUsername());
         Map<String, Object> claims = new HashMap<>();
-        claims.put("authorities", userDetails.getAuthorities());
+        // ID и имена ролей в токене позволяют аутентифицировать запрос без чтения пользователя из БД
+        if (userDetails instanceof User user) {
+            claims.put(USER_ID_CLAIM, user.getId());
+        } else if (userDetails instanceof AuthenticatedUser user) {
+            claims.put(USER_ID_CLAIM, user.getId());
+        }
+        claims.put(ROLES_CLAIM, userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .map(authority -> authority.startsWith("ROLE_") ? authority.substring(5) : authority)
+                .toList());
         return createToken(claims, userDetails.getUsername());
     }
 
     private String createToken(Map<String, Object> claims, String subject) {
         log.debug("Создание токена для subject: {}", subject);
+        long now = System.currentTimeMillis();
         return Jwts.builder()
-                .setClaims(claims)
-                .setSubject(subject)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS512)
+                .claims(claims)
+                .subject(subject)
+                // jti — ключ отзыва токена до истечения срока
+                .id(UUID.randomUUID().toString())
+                .issuedAt(new Date(now))
+                .expiration(new Date(now + expiration))
+                .signWith(signingKey, Jwts.SIG.HS512)
                 .compact();
     }
-
-    public Boolean isTokenValid(String token) {
-        if (token == null || !token.startsWith("Bearer ")) {
-            log.warn("Некорректный формат токена: {}", token != null ? token.substring(0, Math.min(20, token.length())) : "null");
-            return false;
-        }
-        String jwtToken = token.substring(7);
-        try {
-            extractAllClaims(jwtToken);
-            log.debug("Токен валиден по формату и подписи");
-            return true;
-        } catch (Exception e) {
-            log.error("Ошибка валидации токена: {}", e.getMessage(), e);
-            return false;
-        }
-    }
-}
\ No newline at end of file
+}
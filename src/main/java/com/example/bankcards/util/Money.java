@@ -0,0 +1,142 @@
+package com.example.bankcards.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.io.IOException;
+
+// Сумма в копейках. В JSON передаётся десятичным числом с двумя знаками после точки (1000.50),
+// при разборе дробная часть не проходит через double
+@JsonSerialize(using = Money.Serializer.class)
+@JsonDeserialize(using = Money.Deserializer.class)
+@Schema(type = "number", format = "decimal", example = "1000.50")
+public final class Money implements Comparable<Money> {
+    public static final Money ZERO = new Money(0);
+    private static final int SCALE = 100;
+    private final long minorUnits;
+
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    // Разбор без промежуточного double и регулярных выражений: знак, целая часть, до двух значащих знаков копеек
+    public static Money parse(String value) {
+        String text = value.trim();
+        int length = text.length();
+        int position = 0;
+        boolean negative = false;
+        if (position < length && (text.charAt(position) == '-' || text.charAt(position) == '+')) {
+            negative = text.charAt(position) == '-';
+            position++;
+        }
+        long whole = 0;
+        int digits = 0;
+        while (position < length && text.charAt(position) != '.') {
+            whole = Math.addExact(Math.multiplyExact(whole, 10), digit(text, position++, value));
+            digits++;
+        }
+        long cents = 0;
+        if (position < length) {
+            position++;
+            for (int scale = 10; position < length; position++, scale /= 10) {
+                int digit = digit(text, position, value);
+                digits++;
+                // Незначащие нули после копеек допустимы: 100.500 == 100.50
+                if (scale == 0 && digit != 0) {
+                    throw new NumberFormatException("Сумма содержит больше двух знаков после точки: " + value);
+                }
+                cents += (long) digit * scale;
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Некорректная сумма: " + value);
+        }
+        long minor = Math.addExact(Math.multiplyExact(whole, SCALE), cents);
+        return ofMinor(negative ? -minor : minor);
+    }
+
+    private static int digit(String text, int position, String value) {
+        char symbol = text.charAt(position);
+        if (symbol < '0' || symbol > '9') {
+            throw new NumberFormatException("Некорректная сумма: " + value);
+        }
+        return symbol - '0';
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public Money plus(Money other) {
+        return ofMinor(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    public Money minus(Money other) {
+        return ofMinor(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+    public boolean isLessThan(Money other) {
+        return minorUnits < other.minorUnits;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof Money money && money.minorUnits == minorUnits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        long absolute = Math.abs(minorUnits);
+        long cents = absolute % SCALE;
+        return (minorUnits < 0 ? "-" : "") + absolute / SCALE + (cents < 10 ? ".0" : ".") + cents;
+    }
+
+    public static class Serializer extends JsonSerializer<Money> {
+        @Override
+        public void serialize(Money value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeNumber(value.toString());
+        }
+    }
+
+    public static class Deserializer extends JsonDeserializer<Money> {
+        @Override
+        public Money deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_STRING) {
+                return (Money) context.handleUnexpectedToken(Money.class, parser);
+            }
+            try {
+                return parse(parser.getText());
+            } catch (NumberFormatException | ArithmeticException e) {
+                return (Money) context.handleWeirdStringValue(Money.class, parser.getText(),
+                        "сумма должна содержать не больше двух знаков после точки");
+            }
+        }
+    }
+}
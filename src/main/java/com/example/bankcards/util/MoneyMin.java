@@ -0,0 +1,39 @@
+package com.example.bankcards.util;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Нижняя граница суммы в копейках
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+@Constraint(validatedBy = MoneyMin.Validator.class)
+public @interface MoneyMin {
+    long value();
+
+    String message() default "Сумма меньше допустимой";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+
+    class Validator implements ConstraintValidator<MoneyMin, Money> {
+        private long min;
+
+        @Override
+        public void initialize(MoneyMin annotation) {
+            this.min = annotation.value();
+        }
+
+        @Override
+        public boolean isValid(Money value, ConstraintValidatorContext context) {
+            return value == null || value.getMinorUnits() >= min;
+        }
+    }
+}
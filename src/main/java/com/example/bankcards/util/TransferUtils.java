@@ -0,0 +1,57 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.InvalidCardOperationException;
+import com.example.bankcards.exception.SameCardTransferException;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public final class TransferUtils {
+    private TransferUtils() {
+    }
+
+    public static void validateTransfer(Card fromCard, Card toCard, Long currentUserId, long amount) {
+        validateParticipants(fromCard, toCard, currentUserId);
+        if (fromCard.getBalance() < amount) {
+            log.error("Недостаточно средств на карте ID {}: баланс {}, запрос {}", fromCard.getId(),
+                    Money.ofMinor(fromCard.getBalance()), Money.ofMinor(amount));
+            throw new InsufficientFundsException("Недостаточно средств на карте-отправителе");
+        }
+    }
+
+    // Проверки без баланса: для горячей карты достаточность средств решает списание с корзин
+    public static void validateParticipants(Card fromCard, Card toCard, Long currentUserId) {
+        if (fromCard.getId().equals(toCard.getId())) {
+            log.error("Попытка перевода на ту же карту: {}", fromCard.getId());
+            throw new SameCardTransferException("Нельзя выполнить перевод на ту же карту");
+        }
+        if (!fromCard.getUser().getId().equals(currentUserId)) {
+            log.error("Попытка перевода с чужой карты: {} пользователем: {}", fromCard.getId(), currentUserId);
+            throw new InvalidCardOperationException("Вы не можете использовать эту карту для перевода");
+        }
+        if (fromCard.getStatus() != Card.Status.ACTIVE) {
+            log.error("Карта-отправитель ID {} не активна: {}", fromCard.getId(), fromCard.getStatus());
+            throw new InvalidCardOperationException("Карта-отправитель не активна");
+        }
+        if (toCard.getStatus() != Card.Status.ACTIVE) {
+            log.error("Карта-получатель ID {} не активна: {}", toCard.getId(), toCard.getStatus());
+            throw new InvalidCardOperationException("Карта-получатель не активна");
+        }
+    }
+
+    public static void applyTransfer(Card fromCard, Card toCard, long amount) {
+        fromCard.setBalance(fromCard.getBalance() - amount);
+        toCard.setBalance(toCard.getBalance() + amount);
+    }
+
+    public static Transaction buildTransaction(Card fromCard, Card toCard, long amount, Transaction.Status status) {
+        Transaction transaction = new Transaction();
+        transaction.setFromCard(fromCard);
+        transaction.setToCard(toCard);
+        transaction.setAmount(amount);
+        transaction.setStatus(status);
+        return transaction;
+    }
+}
@@ -1,7 +1,7 @@
 package com.example.bankcards.util;
 
 import com.example.bankcards.entity.Role;
-import com.example.bankcards.repository.RoleRepository;
+import com.example.bankcards.service.impl.auth.RoleCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -13,14 +13,12 @@ import java.util.Set;
 @RequiredArgsConstructor
 @Slf4j
 public class UserUtils {
-    private final RoleRepository roleRepository;
+    private final RoleCache roleCache;
 
     public Set<Role> resolveRoles(Set<String> roleNames) {
         Set<Role> roles = new HashSet<>();
         if (roleNames == null || roleNames.isEmpty()) {
-            Role defaultRole = roleRepository.findByName(Role.RoleType.USER)
-                    .orElseThrow(() -> new IllegalStateException("Роль USER не найдена в базе данных"));
-            roles.add(defaultRole);
+            roles.add(roleCache.get(Role.RoleType.USER));
             log.debug("Назначена роль по умолчанию: USER");
         } else {
             for (String roleName : roleNames) {
@@ -31,9 +29,7 @@ public class UserUtils {
                     log.error("Указана несуществующая роль: {}", roleName);
                     throw new IllegalArgumentException("Роль '" + roleName + "' не существует");
                 }
-                Role role = roleRepository.findByName(roleType)
-                        .orElseThrow(() -> new IllegalStateException("Роль " + roleType + " не найдена в базе данных"));
-                roles.add(role);
+                roles.add(roleCache.get(roleType));
             }
             log.debug("Назначены роли: {}", roleNames);
         }
@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+--changeset bank-rest:003-card-version
+ALTER TABLE cards
+    ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,61 @@
+--liquibase formatted sql
+
+--changeset bank-rest:004-transfer-function splitStatements:false runOnChange:true
+CREATE OR REPLACE FUNCTION transfer_funds(p_user_id BIGINT,
+                                          p_from_card_id BIGINT,
+                                          p_to_card_id BIGINT,
+                                          p_amount BIGINT)
+    RETURNS TABLE
+            (
+                o_result_code    VARCHAR,
+                o_transaction_id BIGINT,
+                o_timestamp      TIMESTAMP
+            )
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    v_from           cards%ROWTYPE;
+    v_to             cards%ROWTYPE;
+    v_transaction_id BIGINT;
+    v_now            TIMESTAMP := LOCALTIMESTAMP;
+BEGIN
+    PERFORM 1 FROM cards WHERE id IN (p_from_card_id, p_to_card_id) ORDER BY id FOR UPDATE;
+    SELECT * INTO v_from FROM cards WHERE id = p_from_card_id;
+    IF NOT FOUND THEN
+        RETURN QUERY SELECT 'FROM_CARD_NOT_FOUND'::VARCHAR, NULL::BIGINT, NULL::TIMESTAMP;
+        RETURN;
+    END IF;
+    SELECT * INTO v_to FROM cards WHERE id = p_to_card_id;
+    IF NOT FOUND THEN
+        RETURN QUERY SELECT 'TO_CARD_NOT_FOUND'::VARCHAR, NULL::BIGINT, NULL::TIMESTAMP;
+        RETURN;
+    END IF;
+    IF p_from_card_id = p_to_card_id THEN
+        RETURN QUERY SELECT 'SAME_CARD'::VARCHAR, NULL::BIGINT, NULL::TIMESTAMP;
+        RETURN;
+    END IF;
+    IF v_from.user_id <> p_user_id THEN
+        RETURN QUERY SELECT 'NOT_CARD_OWNER'::VARCHAR, NULL::BIGINT, NULL::TIMESTAMP;
+        RETURN;
+    END IF;
+    IF v_from.status <> 'ACTIVE' THEN
+        RETURN QUERY SELECT 'FROM_CARD_INACTIVE'::VARCHAR, NULL::BIGINT, NULL::TIMESTAMP;
+        RETURN;
+    END IF;
+    IF v_to.status <> 'ACTIVE' THEN
+        RETURN QUERY SELECT 'TO_CARD_INACTIVE'::VARCHAR, NULL::BIGINT, NULL::TIMESTAMP;
+        RETURN;
+    END IF;
+    IF v_from.balance < p_amount THEN
+        RETURN QUERY SELECT 'INSUFFICIENT_FUNDS'::VARCHAR, NULL::BIGINT, NULL::TIMESTAMP;
+        RETURN;
+    END IF;
+    UPDATE cards SET balance = balance - p_amount, version = version + 1 WHERE id = p_from_card_id;
+    UPDATE cards SET balance = balance + p_amount, version = version + 1 WHERE id = p_to_card_id;
+    INSERT INTO transactions (from_card_id, to_card_id, amount, timestamp, status)
+    VALUES (p_from_card_id, p_to_card_id, p_amount, v_now, 'SUCCESS')
+    RETURNING id INTO v_transaction_id;
+    RETURN QUERY SELECT 'SUCCESS'::VARCHAR, v_transaction_id, v_now;
+END;
+$$;
@@ -0,0 +1,14 @@
+--liquibase formatted sql
+
+--changeset bank-rest:005-idempotency-keys
+CREATE TABLE IF NOT EXISTS idempotency_keys
+(
+    user_id         BIGINT       NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    idempotency_key VARCHAR(100) NOT NULL,
+    request_hash    VARCHAR(64)  NOT NULL,
+    response        TEXT,
+    created_at      TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at      TIMESTAMP    NOT NULL,
+    PRIMARY KEY (user_id, idempotency_key)
+);
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_expires_at ON idempotency_keys (expires_at);
@@ -0,0 +1,6 @@
+--liquibase formatted sql
+
+--changeset bank-rest:006-async-transfers
+ALTER TABLE transactions
+    ADD COLUMN IF NOT EXISTS failure_reason VARCHAR(255);
+CREATE INDEX IF NOT EXISTS idx_transactions_pending ON transactions (id) WHERE status = 'PENDING';
@@ -0,0 +1,11 @@
+--liquibase formatted sql
+
+--changeset bank-rest:007-balance-engine
+CREATE TABLE IF NOT EXISTS engine_projection_offset
+(
+    id            SMALLINT PRIMARY KEY,
+    last_sequence BIGINT NOT NULL
+);
+INSERT INTO engine_projection_offset (id, last_sequence)
+VALUES (1, 0)
+ON CONFLICT (id) DO NOTHING;
@@ -0,0 +1,13 @@
+--liquibase formatted sql
+
+--changeset bank-rest:008-money-minor-units
+ALTER TABLE cards
+    ALTER COLUMN balance DROP DEFAULT,
+    ALTER COLUMN balance TYPE BIGINT USING ROUND(balance * 100)::BIGINT,
+    ALTER COLUMN balance SET DEFAULT 0;
+ALTER TABLE transactions
+    ALTER COLUMN amount TYPE BIGINT USING ROUND(amount * 100)::BIGINT;
+
+--changeset bank-rest:008-transfer-function-minor-units splitStatements:false runOnChange:true
+-- Функция с суммой BIGINT определена в 004; здесь удаляется прежняя перегрузка с DOUBLE PRECISION
+DROP FUNCTION IF EXISTS transfer_funds(BIGINT, BIGINT, BIGINT, DOUBLE PRECISION);
@@ -0,0 +1,6 @@
+--liquibase formatted sql
+
+--changeset bank-rest:009-pooled-id-sequences runAlways:true
+ALTER SEQUENCE users_id_seq INCREMENT BY ${idAllocationSize};
+ALTER SEQUENCE cards_id_seq INCREMENT BY ${idAllocationSize};
+ALTER SEQUENCE transactions_id_seq INCREMENT BY ${idAllocationSize};
@@ -0,0 +1,7 @@
+--liquibase formatted sql
+
+--changeset bank-rest:010-transaction-history-indexes runInTransaction:false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_from_card_history
+    ON transactions (from_card_id, timestamp DESC, id DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_to_card_history
+    ON transactions (to_card_id, timestamp DESC, id DESC);
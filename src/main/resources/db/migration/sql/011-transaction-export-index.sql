@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+--changeset bank-rest:011-transaction-export-index runInTransaction:false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_timestamp
+    ON transactions (timestamp, id);
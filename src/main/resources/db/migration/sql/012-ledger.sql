@@ -0,0 +1,39 @@
+--liquibase formatted sql
+
+--changeset bank-rest:012-ledger
+-- Журнал только дополняется; внешние ключи не заводятся, чтобы вставка проводки не брала
+-- разделяемую блокировку строки карты. txid — xid транзакции, записавшей проводку
+CREATE TABLE IF NOT EXISTS ledger_entries
+(
+    id             BIGSERIAL PRIMARY KEY,
+    card_id        BIGINT    NOT NULL,
+    transaction_id BIGINT,
+    amount         BIGINT    NOT NULL,
+    created_at     TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    txid           BIGINT    NOT NULL DEFAULT pg_current_xact_id()::TEXT::BIGINT
+);
+CREATE INDEX IF NOT EXISTS idx_ledger_entries_card_txid ON ledger_entries (card_id, txid);
+CREATE INDEX IF NOT EXISTS idx_ledger_entries_txid ON ledger_entries (txid);
+-- Баланс карты с учётом всех проводок с txid < horizon
+CREATE TABLE IF NOT EXISTS balance_checkpoints
+(
+    card_id    BIGINT    NOT NULL,
+    horizon    BIGINT    NOT NULL,
+    balance    BIGINT    NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (card_id, horizon)
+);
+CREATE INDEX IF NOT EXISTS idx_balance_checkpoints_card_created ON balance_checkpoints (card_id, created_at);
+CREATE TABLE IF NOT EXISTS ledger_checkpoint_offset
+(
+    id      SMALLINT PRIMARY KEY,
+    horizon BIGINT NOT NULL
+);
+INSERT INTO ledger_checkpoint_offset (id, horizon)
+VALUES (1, 0)
+ON CONFLICT (id) DO NOTHING;
+-- История до появления журнала неизвестна: текущий баланс считается начальным
+INSERT INTO balance_checkpoints (card_id, horizon, balance, created_at)
+SELECT id, 0, balance, '-infinity'::TIMESTAMP
+FROM cards
+ON CONFLICT (card_id, horizon) DO NOTHING;
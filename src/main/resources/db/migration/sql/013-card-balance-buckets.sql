@@ -0,0 +1,15 @@
+--liquibase formatted sql
+
+--changeset bank-rest:013-card-balance-buckets
+-- balance_buckets > 0 — «горячая» карта: её баланс разложен по строкам card_balance_buckets,
+-- и зачисления блокируют случайную корзину, а не строку карты. Полный баланс — cards.balance плюс сумма корзин
+ALTER TABLE cards
+    ADD COLUMN IF NOT EXISTS balance_buckets INTEGER NOT NULL DEFAULT 0;
+CREATE TABLE IF NOT EXISTS card_balance_buckets
+(
+    card_id BIGINT  NOT NULL REFERENCES cards (id) ON DELETE CASCADE,
+    bucket  INTEGER NOT NULL,
+    balance BIGINT  NOT NULL CHECK (balance >= 0),
+    PRIMARY KEY (card_id, bucket)
+);
+CREATE INDEX IF NOT EXISTS idx_cards_hot ON cards (id) WHERE balance_buckets > 0;
@@ -0,0 +1,47 @@
+--liquibase formatted sql
+
+--changeset bank-rest:014-outbox
+CREATE TABLE IF NOT EXISTS outbox
+(
+    id             BIGSERIAL PRIMARY KEY,
+    aggregate_type VARCHAR(20) NOT NULL,
+    aggregate_id   BIGINT      NOT NULL,
+    event_type     VARCHAR(50) NOT NULL,
+    payload        TEXT        NOT NULL,
+    created_at     TIMESTAMP   NOT NULL DEFAULT LOCALTIMESTAMP,
+    attempts       INTEGER     NOT NULL DEFAULT 0,
+    available_at   TIMESTAMP   NOT NULL DEFAULT LOCALTIMESTAMP
+);
+CREATE INDEX IF NOT EXISTS idx_outbox_available ON outbox (available_at, id);
+
+--changeset bank-rest:014-outbox-transfer-trigger splitStatements:false runOnChange:true
+-- События переводов пишет триггер: строку transactions вставляют стратегии, пакетный исполнитель,
+-- журнал проводок, проекция движка и асинхронный обработчик, и так событие всегда попадает
+-- в ту же транзакцию, что и сам перевод. Поставленный в очередь перевод (PENDING) события не даёт
+CREATE OR REPLACE FUNCTION outbox_transfer_event() RETURNS TRIGGER
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    IF NEW.status = 'PENDING' OR (TG_OP = 'UPDATE' AND OLD.status = NEW.status) THEN
+        RETURN NEW;
+    END IF;
+    INSERT INTO outbox (aggregate_type, aggregate_id, event_type, payload)
+    VALUES ('TRANSFER', NEW.id,
+            CASE WHEN NEW.status = 'SUCCESS' THEN 'TRANSFER_COMPLETED' ELSE 'TRANSFER_FAILED' END,
+            json_build_object('id', NEW.id,
+                              'fromCardId', NEW.from_card_id,
+                              'toCardId', NEW.to_card_id,
+                              'amount', round(NEW.amount / 100.0, 2),
+                              'timestamp', NEW."timestamp",
+                              'status', NEW.status,
+                              'message', NEW.failure_reason)::TEXT);
+    RETURN NEW;
+END;
+$$;
+DROP TRIGGER IF EXISTS transactions_outbox ON transactions;
+CREATE TRIGGER transactions_outbox
+    AFTER INSERT OR UPDATE OF status
+    ON transactions
+    FOR EACH ROW
+EXECUTE FUNCTION outbox_transfer_event();
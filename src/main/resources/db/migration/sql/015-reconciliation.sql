@@ -0,0 +1,37 @@
+--liquibase formatted sql
+
+--changeset bank-rest:015-reconciliation
+-- Начальный баланс карты нужен, чтобы сверять cards.balance с суммой переводов. Для уже выпущенных
+-- карт он выводится из текущего баланса: состояние на момент миграции принимается за верное
+ALTER TABLE cards
+    ADD COLUMN IF NOT EXISTS opening_balance BIGINT;
+UPDATE cards c
+SET opening_balance = c.balance
+    + COALESCE((SELECT SUM(b.balance) FROM card_balance_buckets b WHERE b.card_id = c.id), 0)
+    - COALESCE((SELECT SUM(t.amount) FROM transactions t WHERE t.to_card_id = c.id AND t.status = 'SUCCESS'), 0)
+    + COALESCE((SELECT SUM(t.amount) FROM transactions t WHERE t.from_card_id = c.id AND t.status = 'SUCCESS'), 0)
+WHERE opening_balance IS NULL;
+ALTER TABLE cards
+    ALTER COLUMN opening_balance SET DEFAULT 0,
+    ALTER COLUMN opening_balance SET NOT NULL;
+CREATE TABLE IF NOT EXISTS reconciliation_runs
+(
+    id            BIGSERIAL PRIMARY KEY,
+    status        VARCHAR(20) NOT NULL,
+    started_at    TIMESTAMP   NOT NULL DEFAULT LOCALTIMESTAMP,
+    finished_at   TIMESTAMP,
+    ranges        INTEGER     NOT NULL DEFAULT 0,
+    cards_checked BIGINT      NOT NULL DEFAULT 0,
+    discrepancies BIGINT      NOT NULL DEFAULT 0,
+    error         VARCHAR(255)
+);
+-- Одновременно выполняется не больше одной сверки на все экземпляры приложения
+CREATE UNIQUE INDEX IF NOT EXISTS idx_reconciliation_runs_running ON reconciliation_runs ((TRUE)) WHERE status = 'RUNNING';
+CREATE TABLE IF NOT EXISTS reconciliation_discrepancies
+(
+    run_id           BIGINT NOT NULL REFERENCES reconciliation_runs (id) ON DELETE CASCADE,
+    card_id          BIGINT NOT NULL,
+    expected_balance BIGINT NOT NULL,
+    actual_balance   BIGINT NOT NULL,
+    PRIMARY KEY (run_id, card_id)
+);
@@ -0,0 +1,14 @@
+--liquibase formatted sql
+
+--changeset bank-rest:016-revoked-tokens
+-- Отозванные JWT до истечения их срока. Строка нужна только пока токен мог бы пройти проверку подписи,
+-- поэтому истёкшие отзывы удаляются пакетами
+CREATE TABLE IF NOT EXISTS revoked_tokens
+(
+    jti        UUID PRIMARY KEY,
+    user_id    BIGINT    NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    revoked_at TIMESTAMP NOT NULL DEFAULT LOCALTIMESTAMP
+);
+CREATE INDEX IF NOT EXISTS idx_revoked_tokens_revoked_at ON revoked_tokens (revoked_at);
+CREATE INDEX IF NOT EXISTS idx_revoked_tokens_expires_at ON revoked_tokens (expires_at);
@@ -0,0 +1,15 @@
+--liquibase formatted sql
+
+--changeset bank-rest:017-card-issuance-jobs
+-- Массовый выпуск карт: issued растёт по мере коммита очередных порций, поэтому после сбоя видно,
+-- сколько карт задания уже выпущено
+CREATE TABLE IF NOT EXISTS card_issuance_jobs
+(
+    id          BIGSERIAL PRIMARY KEY,
+    status      VARCHAR(20) NOT NULL,
+    started_at  TIMESTAMP   NOT NULL DEFAULT LOCALTIMESTAMP,
+    finished_at TIMESTAMP,
+    total       INTEGER     NOT NULL,
+    issued      INTEGER     NOT NULL DEFAULT 0,
+    error       VARCHAR(255)
+);
@@ -0,0 +1,28 @@
+--liquibase formatted sql
+
+--changeset bank-rest:018-card-number-encryption
+-- AES-GCM даёт разный шифротекст для одного номера, поэтому уникальность номера держит ключевой хэш,
+-- а последние цифры для маски хранятся отдельно, чтобы список карт не расшифровывал каждый номер.
+-- Хэш карт, выпущенных до миграции, заполняет ротация ключа: в SQL ключа HMAC нет
+ALTER TABLE cards
+    ADD COLUMN IF NOT EXISTS card_number_hash  VARCHAR(64),
+    ADD COLUMN IF NOT EXISTS card_number_last4 VARCHAR(4);
+UPDATE cards
+SET card_number_last4 = RIGHT(encrypted_card_number, 4)
+WHERE card_number_last4 IS NULL
+  AND encrypted_card_number LIKE 'encrypted\_%';
+CREATE UNIQUE INDEX IF NOT EXISTS idx_cards_card_number_hash ON cards (card_number_hash);
+CREATE TABLE IF NOT EXISTS card_key_rotations
+(
+    id          BIGSERIAL PRIMARY KEY,
+    status      VARCHAR(20) NOT NULL,
+    key_prefix  VARCHAR(16) NOT NULL,
+    started_at  TIMESTAMP   NOT NULL DEFAULT LOCALTIMESTAMP,
+    finished_at TIMESTAMP,
+    chunks      INTEGER     NOT NULL DEFAULT 0,
+    reencrypted BIGINT      NOT NULL DEFAULT 0,
+    remaining   BIGINT,
+    error       VARCHAR(255)
+);
+-- Одновременно выполняется не больше одной ротации на все экземпляры приложения
+CREATE UNIQUE INDEX IF NOT EXISTS idx_card_key_rotations_running ON card_key_rotations ((TRUE)) WHERE status = 'RUNNING';
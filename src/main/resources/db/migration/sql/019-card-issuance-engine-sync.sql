@@ -0,0 +1,7 @@
+--liquibase formatted sql
+
+--changeset bank-rest:019-card-issuance-engine-sync
+-- Карты порции передаются в движок балансов после коммита; сколько из них движок не получил,
+-- видно в задании, а не только в логе
+ALTER TABLE card_issuance_jobs
+    ADD COLUMN IF NOT EXISTS engine_failed INTEGER NOT NULL DEFAULT 0;
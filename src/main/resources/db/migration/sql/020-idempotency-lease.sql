@@ -0,0 +1,11 @@
+--liquibase formatted sql
+
+--changeset bank-rest:020-idempotency-lease
+-- Резерв ключа держится только на время аренды: если процесс упал до сохранения ответа,
+-- повтор после locked_until перехватывает резерв, а не получает 409 до expires_at
+ALTER TABLE idempotency_keys
+    ADD COLUMN IF NOT EXISTS reservation_id UUID,
+    ADD COLUMN IF NOT EXISTS locked_until   TIMESTAMP;
+UPDATE idempotency_keys SET locked_until = created_at WHERE locked_until IS NULL;
+ALTER TABLE idempotency_keys
+    ALTER COLUMN locked_until SET NOT NULL;
@@ -0,0 +1,85 @@
+package com.example.bankcards.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.example.bankcards.service.impl.CardNumberPool;
+import com.example.bankcards.service.impl.EncryptionServiceImpl;
+import com.example.bankcards.util.CardUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Получение номера карты при одновременном выпуске из 8 потоков. legacy — прежняя генерация: 12 вызовов
+// nextInt(10) общего SecureRandom на номер, без контрольной цифры. luhn — номер с контрольной цифрой Луна
+// из одного вызова общего генератора. pool — выдача из пула, который пополняет фоновый поток; проверка
+// занятости номеров заменена заглушкой без БД, поэтому прежний лишний запрос на карту здесь не учтён
+// mvn -Pbenchmark test-compile exec:exec -Djmh.args="CardNumberBenchmark"
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class CardNumberBenchmark {
+    private static final String BIN = "3985";
+    private static final String KEY = "PMEZhGHraNvecfCZ34ig/nTRlELWZKa1RlY+kgGV+/A=";
+    private final SecureRandom random = new SecureRandom();
+    private CardNumberPool pool;
+
+    @Setup
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+        JdbcTemplate noCollisions = new JdbcTemplate() {
+            @Override
+            public <T> List<T> query(String sql, PreparedStatementSetter pss, RowMapper<T> rowMapper) {
+                return List.of();
+            }
+        };
+        pool = new CardNumberPool(noCollisions, new EncryptionServiceImpl(List.of("1:" + KEY), 1, KEY),
+                new SimpleMeterRegistry(), List.of(BIN), 10000, 2000);
+        pool.fill();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.stop();
+    }
+
+    @Benchmark
+    public String legacy() {
+        StringBuilder cardNumber = new StringBuilder(BIN);
+        for (int i = 0; i < 12; i++) {
+            cardNumber.append(random.nextInt(10));
+        }
+        return cardNumber.toString();
+    }
+
+    @Benchmark
+    public String luhn() {
+        return CardUtils.generateCardNumber(BIN, random);
+    }
+
+    @Benchmark
+    public String pool() {
+        return pool.next();
+    }
+}
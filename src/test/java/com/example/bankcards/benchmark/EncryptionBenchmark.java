@@ -0,0 +1,90 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.service.impl.EncryptionServiceImpl;
+import com.example.bankcards.util.CardUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Шифрование номеров карт из 8 потоков, результат — номеров в миллисекунду. naive — Cipher.getInstance,
+// новый ключ и общий SecureRandom на каждый номер. encrypt/decrypt — по одному номеру через сервис
+// с шифром и генератором IV на поток. encryptAll/decryptAll — пакет из BATCH_SIZE номеров, как в порции
+// массового выпуска и ротации ключа
+// mvn -Pbenchmark test-compile exec:exec -Djmh.args="EncryptionBenchmark"
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class EncryptionBenchmark {
+    private static final String KEY = "PMEZhGHraNvecfCZ34ig/nTRlELWZKa1RlY+kgGV+/A=";
+    private static final int BATCH_SIZE = 1000;
+    private final SecureRandom random = new SecureRandom();
+    private final byte[] rawKey = Base64.getDecoder().decode(KEY);
+    private EncryptionServiceImpl encryptionService;
+    private List<String> numbers;
+    private List<String> encrypted;
+
+    @Setup
+    public void setUp() {
+        encryptionService = new EncryptionServiceImpl(List.of("1:" + KEY), 1, KEY);
+        numbers = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            numbers.add(CardUtils.generateCardNumber("3985", random));
+        }
+        encrypted = encryptionService.encryptAll(numbers);
+    }
+
+    @Benchmark
+    public String naive() throws Exception {
+        byte[] iv = new byte[12];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(rawKey, "AES"), new GCMParameterSpec(128, iv));
+        byte[] ciphertext = cipher.doFinal(numbers.get(0).getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(iv) + Base64.getEncoder().encodeToString(ciphertext);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return encryptionService.encrypt(numbers.get(0));
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return encryptionService.decrypt(encrypted.get(0));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<String> encryptAll() {
+        return encryptionService.encryptAll(numbers);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<String> decryptAll() {
+        return encryptionService.decryptAll(encrypted);
+    }
+}
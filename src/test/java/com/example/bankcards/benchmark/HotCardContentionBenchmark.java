@@ -0,0 +1,114 @@
+package com.example.bankcards.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Пропускная способность зачислений на одну горячую карту в зависимости от числа корзин баланса.
+// Каждая операция — перевод в отдельной транзакции: списание с собственной карты потока, зачисление
+// в случайную корзину получателя и запись в transactions. Блокировка корзины держится до коммита,
+// поэтому при buckets=1 все потоки выстраиваются в очередь на одну строку, как на строку cards.
+// Нужна запущенная PostgreSQL: mvn -Pbenchmark test-compile exec:exec
+//   -Djmh.args="HotCardContentionBenchmark -jvmArgs -Dbench.jdbc.url=jdbc:postgresql://localhost:5433/bankdb"
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(32)
+@State(Scope.Benchmark)
+public class HotCardContentionBenchmark {
+    private static final long HOT_CARD_ID = 0;
+    private static final int MAX_THREADS = 256;
+    @Param({"1", "4", "16", "64"})
+    public int buckets;
+    private final AtomicInteger threadIndexes = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE SCHEMA IF NOT EXISTS bench");
+            statement.execute("DROP TABLE IF EXISTS bench.card_balance_buckets, bench.cards, bench.transactions");
+            statement.execute("CREATE TABLE bench.cards (id BIGINT PRIMARY KEY, balance BIGINT NOT NULL)");
+            statement.execute("CREATE TABLE bench.card_balance_buckets (card_id BIGINT NOT NULL, bucket INTEGER NOT NULL, "
+                    + "balance BIGINT NOT NULL, PRIMARY KEY (card_id, bucket))");
+            statement.execute("CREATE TABLE bench.transactions (id BIGSERIAL PRIMARY KEY, from_card_id BIGINT NOT NULL, "
+                    + "to_card_id BIGINT NOT NULL, amount BIGINT NOT NULL, timestamp TIMESTAMP NOT NULL DEFAULT now())");
+            statement.execute("INSERT INTO bench.cards (id, balance) SELECT g, 1000000000 FROM generate_series(1, "
+                    + MAX_THREADS + ") g");
+            statement.execute("INSERT INTO bench.card_balance_buckets (card_id, bucket, balance) SELECT "
+                    + HOT_CARD_ID + ", g, 0 FROM generate_series(0, " + (buckets - 1) + ") g");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA bench CASCADE");
+        }
+    }
+
+    @Benchmark
+    public int creditHotCard(Payer payer) throws Exception {
+        payer.debit.setLong(1, payer.cardId);
+        payer.debit.executeUpdate();
+        payer.credit.setInt(1, ThreadLocalRandom.current().nextInt(buckets));
+        int updated = payer.credit.executeUpdate();
+        payer.insert.setLong(1, payer.cardId);
+        payer.insert.executeUpdate();
+        payer.connection.commit();
+        return updated;
+    }
+
+    private static Connection connect() throws Exception {
+        return DriverManager.getConnection(System.getProperty("bench.jdbc.url", "jdbc:postgresql://localhost:5433/bankdb"),
+                System.getProperty("bench.jdbc.user", "postgres"),
+                System.getProperty("bench.jdbc.password", "123"));
+    }
+
+    // Соединение и обычная карта-отправитель у каждого потока свои: конкуренция есть только за корзины
+    @State(Scope.Thread)
+    public static class Payer {
+        private Connection connection;
+        private PreparedStatement debit;
+        private PreparedStatement credit;
+        private PreparedStatement insert;
+        private long cardId;
+
+        @Setup(Level.Trial)
+        public void setUp(HotCardContentionBenchmark benchmark) throws Exception {
+            cardId = benchmark.threadIndexes.incrementAndGet();
+            connection = connect();
+            connection.setAutoCommit(false);
+            debit = connection.prepareStatement("UPDATE bench.cards SET balance = balance - 1 WHERE id = ?");
+            credit = connection.prepareStatement("UPDATE bench.card_balance_buckets SET balance = balance + 1 "
+                    + "WHERE card_id = " + HOT_CARD_ID + " AND bucket = ?");
+            insert = connection.prepareStatement("INSERT INTO bench.transactions (from_card_id, to_card_id, amount) "
+                    + "VALUES (?, " + HOT_CARD_ID + ", 1)");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.security.AuthenticatedUser;
+import com.example.bankcards.security.BloomFilter;
+import com.example.bankcards.security.JwtRequestFilter;
+import com.example.bankcards.security.JwtVerifier;
+import com.example.bankcards.security.VerifiedToken;
+import com.example.bankcards.service.auth.TokenRevocationService;
+import com.example.bankcards.service.auth.UserDetailsService;
+import com.example.bankcards.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Стоимость JWT-фильтра на один запрос. legacy воспроизводит прежний путь: ключ и парсер строятся
+// заново, токен разбирается и проверяется трижды. filter при cacheSize=0 проверяет токен один раз
+// общим парсером, при cacheSize>0 повторный запрос с тем же токеном берётся из кэша. Загрузка
+// пользователя не вызывается: токен несёт uid, и principal собирается из claims. Проверка отзыва —
+// только фильтр Блума, как для подавляющего большинства неотозванных токенов
+// mvn -Pbenchmark test-compile exec:exec -Djmh.args="JwtFilterBenchmark"
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JwtFilterBenchmark {
+    private static final String SECRET = "6d9a8f4c2b7e1a3d5f8c9b2a7e4d1f6c3a9b8d7e2f5c1a3d6f9e8b7c4a2d5f1e3c";
+    @Param({"0", "10000"})
+    public int cacheSize;
+    private final AuthenticatedUser user = new AuthenticatedUser(1L, "user", null, List.of("ROLE_USER"));
+    private JwtUtil jwtUtil;
+    private JwtRequestFilter filter;
+    private String token;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil(SECRET, 86400000L);
+        JwtVerifier verifier = new JwtVerifier(jwtUtil, new SimpleMeterRegistry(), cacheSize);
+        filter = new JwtRequestFilter(new UserDetailsService() {
+            @Override
+            public UserDetails loadUserByUsername(String username) {
+                return user;
+            }
+
+            @Override
+            public void evictUser(Long userId) {
+            }
+        }, verifier, new TokenRevocationService() {
+            private final BloomFilter revoked = new BloomFilter(100_000, 0.001);
+
+            @Override
+            public void revoke(VerifiedToken token) {
+                revoked.put(UUID.fromString(token.tokenId()));
+            }
+
+            @Override
+            public boolean isRevoked(VerifiedToken token) {
+                return revoked.mightContain(UUID.fromString(token.tokenId()));
+            }
+
+            @Override
+            public int purgeExpired() {
+                return 0;
+            }
+        });
+        token = jwtUtil.generateToken(user);
+        request = new MockHttpServletRequest("GET", "/api/cards");
+        request.addHeader("Authorization", "Bearer " + token);
+    }
+
+    @Benchmark
+    public Object filter() throws Exception {
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Object authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    @Benchmark
+    public boolean legacy() {
+        String username = extractClaim(token, Claims::getSubject);
+        return extractClaim(token, Claims::getSubject).equals(user.getUsername())
+                && !extractClaim(token, Claims::getExpiration).before(new Date())
+                && username != null;
+    }
+
+    private static <T> T extractClaim(String token, Function<Claims, T> resolver) {
+        Claims claims = Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+        return resolver.apply(claims);
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.bankcards.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.FileAppender;
+import ch.qos.logback.core.encoder.Encoder;
+import com.example.bankcards.config.logging.JsonLogEncoder;
+import com.example.bankcards.config.logging.LogSamplingTurboFilter;
+import com.example.bankcards.security.AuthenticatedUser;
+import com.example.bankcards.security.JwtRequestFilter;
+import com.example.bankcards.security.JwtVerifier;
+import com.example.bankcards.security.VerifiedToken;
+import com.example.bankcards.service.auth.TokenRevocationService;
+import com.example.bankcards.service.auth.UserDetailsService;
+import com.example.bankcards.util.JwtUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Пропускная способность JWT-фильтра при разных настройках логирования. dev — синхронная запись
+// текстом в файл с DEBUG для com.example.bankcards, как в профиле dev. prod — асинхронный аппендер
+// с JSON, уровень INFO и выборка WARN/ERROR, как в профиле prod. revokedToken на каждом запросе пишет
+// WARN и показывает, что даёт выборка при потоке однотипных предупреждений
+// mvn -Pbenchmark test-compile exec:exec -Djmh.args="LoggingBenchmark"
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+    private static final String SECRET = "6d9a8f4c2b7e1a3d5f8c9b2a7e4d1f6c3a9b8d7e2f5c1a3d6f9e8b7c4a2d5f1e3c";
+    @Param({"dev", "prod"})
+    public String profile;
+    private final AuthenticatedUser user = new AuthenticatedUser(1L, "user", null, List.of("ROLE_USER"));
+    private final AuthenticatedUser revokedUser = new AuthenticatedUser(2L, "revoked", null, List.of("ROLE_USER"));
+    private JwtRequestFilter filter;
+    private String token;
+    private String revokedToken;
+    private Path logFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        logFile = Files.createTempFile("logging-benchmark", ".log");
+        configureLogging();
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 86400000L);
+        filter = new JwtRequestFilter(new UserDetailsService() {
+            @Override
+            public UserDetails loadUserByUsername(String username) {
+                return user;
+            }
+
+            @Override
+            public void evictUser(Long userId) {
+            }
+        }, new JwtVerifier(jwtUtil, new SimpleMeterRegistry(), 10000), new TokenRevocationService() {
+            @Override
+            public void revoke(VerifiedToken token) {
+            }
+
+            @Override
+            public boolean isRevoked(VerifiedToken token) {
+                return token.userId().equals(revokedUser.getId());
+            }
+
+            @Override
+            public int purgeExpired() {
+                return 0;
+            }
+        });
+        token = jwtUtil.generateToken(user);
+        revokedToken = jwtUtil.generateToken(revokedUser);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        ((LoggerContext) LoggerFactory.getILoggerFactory()).stop();
+        Files.deleteIfExists(logFile);
+    }
+
+    @Benchmark
+    public Object filter(Requests requests) throws Exception {
+        return doFilter(requests.valid);
+    }
+
+    @Benchmark
+    public Object revokedToken(Requests requests) throws Exception {
+        return doFilter(requests.revoked);
+    }
+
+    private Object doFilter(MockHttpServletRequest request) throws Exception {
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Object authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    private void configureLogging() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        context.reset();
+        Logger root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        root.setLevel(ch.qos.logback.classic.Level.INFO);
+        if ("prod".equals(profile)) {
+            FileAppender<ILoggingEvent> file = fileAppender(context, new JsonLogEncoder());
+            AsyncAppender async = new AsyncAppender();
+            async.setContext(context);
+            async.setQueueSize(8192);
+            async.setDiscardingThreshold(1638);
+            async.setNeverBlock(true);
+            async.addAppender(file);
+            async.start();
+            root.addAppender(async);
+            LogSamplingTurboFilter sampling = new LogSamplingTurboFilter();
+            sampling.setContext(context);
+            sampling.start();
+            context.addTurboFilter(sampling);
+        } else {
+            PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+            encoder.setPattern("%d{yyyy-MM-dd HH:mm:ss} [%thread] %-5level %logger{36} - %msg%n");
+            root.addAppender(fileAppender(context, encoder));
+            context.getLogger("com.example.bankcards").setLevel(ch.qos.logback.classic.Level.DEBUG);
+        }
+    }
+
+    private FileAppender<ILoggingEvent> fileAppender(LoggerContext context, Encoder<ILoggingEvent> encoder) {
+        encoder.setContext(context);
+        encoder.start();
+        FileAppender<ILoggingEvent> file = new FileAppender<>();
+        file.setContext(context);
+        file.setFile(logFile.toString());
+        file.setEncoder(encoder);
+        file.start();
+        return file;
+    }
+
+    // У каждого потока свои запросы: фильтр помечает запрос атрибутами
+    @State(Scope.Thread)
+    public static class Requests {
+        private MockHttpServletRequest valid;
+        private MockHttpServletRequest revoked;
+
+        @Setup(Level.Trial)
+        public void setUp(LoggingBenchmark benchmark) {
+            valid = request(benchmark.token);
+            revoked = request(benchmark.revokedToken);
+        }
+
+        private static MockHttpServletRequest request(String token) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/cards");
+            request.addHeader("Authorization", "Bearer " + token);
+            return request;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.util.Money;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Сравнение прежнего представления денег (Double) с копейками в long: арифметика перевода и JSON
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+    private static final int CARDS = 1024;
+    private static final int TRANSFERS = 1024;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Double[] doubleBalances;
+    private Double[] doubleAmounts;
+    private long[] minorBalances;
+    private long[] minorAmounts;
+    private int[] fromIndexes;
+    private int[] toIndexes;
+    private LegacyTransactionRequest legacyRequest;
+    private TransactionRequest moneyRequest;
+    private String legacyJson;
+    private String moneyJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        doubleBalances = new Double[CARDS];
+        minorBalances = new long[CARDS];
+        for (int i = 0; i < CARDS; i++) {
+            long minor = random.nextLong(1_000_00, 100_000_00);
+            minorBalances[i] = minor;
+            doubleBalances[i] = minor / 100.0;
+        }
+        doubleAmounts = new Double[TRANSFERS];
+        minorAmounts = new long[TRANSFERS];
+        fromIndexes = new int[TRANSFERS];
+        toIndexes = new int[TRANSFERS];
+        for (int i = 0; i < TRANSFERS; i++) {
+            long minor = random.nextLong(1, 500_00);
+            minorAmounts[i] = minor;
+            doubleAmounts[i] = minor / 100.0;
+            fromIndexes[i] = random.nextInt(CARDS);
+            toIndexes[i] = random.nextInt(CARDS);
+        }
+        legacyRequest = new LegacyTransactionRequest();
+        legacyRequest.setFromCardId(1L);
+        legacyRequest.setToCardId(2L);
+        legacyRequest.setAmount(1234.56);
+        moneyRequest = new TransactionRequest();
+        moneyRequest.setFromCardId(1L);
+        moneyRequest.setToCardId(2L);
+        moneyRequest.setAmount(Money.parse("1234.56"));
+        legacyJson = objectMapper.writeValueAsString(legacyRequest);
+        moneyJson = objectMapper.writeValueAsString(moneyRequest);
+    }
+
+    @Benchmark
+    public int doubleTransfers() {
+        int applied = 0;
+        for (int i = 0; i < TRANSFERS; i++) {
+            Double amount = doubleAmounts[i];
+            int from = fromIndexes[i];
+            int to = toIndexes[i];
+            if (doubleBalances[from] >= amount) {
+                doubleBalances[from] = doubleBalances[from] - amount;
+                doubleBalances[to] = doubleBalances[to] + amount;
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    @Benchmark
+    public int minorUnitTransfers() {
+        int applied = 0;
+        for (int i = 0; i < TRANSFERS; i++) {
+            long amount = minorAmounts[i];
+            int from = fromIndexes[i];
+            int to = toIndexes[i];
+            if (minorBalances[from] >= amount) {
+                minorBalances[from] -= amount;
+                minorBalances[to] += amount;
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    @Benchmark
+    public String doubleSerialize() throws Exception {
+        return objectMapper.writeValueAsString(legacyRequest);
+    }
+
+    @Benchmark
+    public String moneySerialize() throws Exception {
+        return objectMapper.writeValueAsString(moneyRequest);
+    }
+
+    @Benchmark
+    public LegacyTransactionRequest doubleDeserialize() throws Exception {
+        return objectMapper.readValue(legacyJson, LegacyTransactionRequest.class);
+    }
+
+    @Benchmark
+    public TransactionRequest moneyDeserialize() throws Exception {
+        return objectMapper.readValue(moneyJson, TransactionRequest.class);
+    }
+
+    // Форма TransactionRequest до перехода на копейки
+    @Data
+    public static class LegacyTransactionRequest {
+        private Long fromCardId;
+        private Long toCardId;
+        private Double amount;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.bankcards.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Вставка 100 000 строк transactions так, как её выполняет Hibernate до и после перехода на последовательности:
+// IDENTITY — отдельный INSERT ... RETURNING id на каждую строку, pooled-lo — один nextval на блок ID
+// и JDBC-пакеты, которые драйвер с reWriteBatchedInserts сворачивает в многострочные INSERT.
+// Нужна запущенная PostgreSQL: mvn -Pbenchmark test-compile exec:exec
+//   -Djmh.args="TransactionInsertBenchmark -jvmArgs -Dbench.jdbc.url=jdbc:postgresql://localhost:5433/bankdb"
+// Таблицы создаются в отдельной схеме bench без внешних ключей, чтобы не трогать данные приложения
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class TransactionInsertBenchmark {
+    private static final int ROWS = 100_000;
+    private static final int ALLOCATION_SIZE = 50;
+    private static final int BATCH_SIZE = 100;
+    private static final String COLUMNS = "from_card_id, to_card_id, amount, timestamp, status";
+    private Connection connection;
+
+    @Setup
+    public void setUp() throws Exception {
+        String url = System.getProperty("bench.jdbc.url", "jdbc:postgresql://localhost:5433/bankdb");
+        String separator = url.contains("?") ? "&" : "?";
+        connection = DriverManager.getConnection(url + separator + "reWriteBatchedInserts=true",
+                System.getProperty("bench.jdbc.user", "postgres"),
+                System.getProperty("bench.jdbc.password", "123"));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE SCHEMA IF NOT EXISTS bench");
+            for (String table : new String[]{"transactions_identity", "transactions_pooled"}) {
+                statement.execute("DROP TABLE IF EXISTS bench." + table);
+                statement.execute("CREATE TABLE bench." + table + " (id BIGSERIAL PRIMARY KEY, "
+                        + "from_card_id BIGINT NOT NULL, to_card_id BIGINT NOT NULL, amount BIGINT NOT NULL, "
+                        + "timestamp TIMESTAMP NOT NULL, status VARCHAR(20) NOT NULL)");
+            }
+            statement.execute("ALTER SEQUENCE bench.transactions_pooled_id_seq INCREMENT BY " + ALLOCATION_SIZE);
+        }
+        connection.setAutoCommit(false);
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE bench.transactions_identity, bench.transactions_pooled");
+        }
+        connection.commit();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA bench CASCADE");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long identityInserts() throws Exception {
+        long lastId = 0;
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO bench.transactions_identity (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?)",
+                new String[]{"id"})) {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            for (int i = 0; i < ROWS; i++) {
+                bind(insert, i, now);
+                insert.executeUpdate();
+                try (ResultSet keys = insert.getGeneratedKeys()) {
+                    keys.next();
+                    lastId = keys.getLong(1);
+                }
+            }
+        }
+        connection.commit();
+        return lastId;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long pooledLoBatchedInserts() throws Exception {
+        long id = 0;
+        long rangeEnd = 0;
+        try (PreparedStatement nextval = connection.prepareStatement(
+                "SELECT nextval('bench.transactions_pooled_id_seq')");
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO bench.transactions_pooled (id, " + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?)")) {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            for (int i = 0; i < ROWS; i++) {
+                if (id == rangeEnd) {
+                    try (ResultSet resultSet = nextval.executeQuery()) {
+                        resultSet.next();
+                        id = resultSet.getLong(1);
+                        rangeEnd = id + ALLOCATION_SIZE;
+                    }
+                }
+                insert.setLong(1, id++);
+                bind(insert, i, now, 2);
+                insert.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        return id;
+    }
+
+    private static void bind(PreparedStatement insert, int i, Timestamp now) throws Exception {
+        bind(insert, i, now, 1);
+    }
+
+    private static void bind(PreparedStatement insert, int i, Timestamp now, int first) throws Exception {
+        insert.setLong(first, i % 1000 + 1);
+        insert.setLong(first + 1, (i + 1) % 1000 + 1);
+        insert.setLong(first + 2, 100 + i % 10_000);
+        insert.setTimestamp(first + 3, now);
+        insert.setString(first + 4, "SUCCESS");
+    }
+}
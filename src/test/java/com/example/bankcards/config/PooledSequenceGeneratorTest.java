@@ -0,0 +1,84 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {"spring.jpa.properties.hibernate.default_schema=test"})
+@Sql(scripts = "classpath:db/migration/sql/001-initial-schema-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/002-initial-data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/clear-schema-test.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+// Оптимизатор Hibernate держит полученный блок в памяти, а схема пересоздаётся перед каждым тестом
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class PooledSequenceGeneratorTest {
+    private static final int ALLOCATION_SIZE = 50;
+    private static final String DEFAULT_INSERT_SQL =
+            "INSERT INTO transactions (from_card_id, to_card_id, amount, status) VALUES (1, 2, 100, 'SUCCESS') RETURNING id";
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private CardRepository cardRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void save_ManyRows_OneSequenceCallPerBlock() {
+        List<Long> ids = saveTransactions(120);
+        long first = ids.get(0);
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(first + i, ids.get(i));
+        }
+        // 120 строк заняли три блока по 50: следующий nextval начинается сразу за третьим блоком
+        Long next = jdbcTemplate.queryForObject(DEFAULT_INSERT_SQL, Long.class);
+        assertEquals(first + 3L * ALLOCATION_SIZE, next);
+        assertEquals(121, transactionRepository.count());
+    }
+
+    @Test
+    void defaultInsert_DoesNotCollideWithHibernateBlock() {
+        long hibernateId = saveTransactions(1).get(0);
+        // Вставка с DEFAULT (как в transfer_funds) получает начало следующего диапазона, а не hibernateId + 1
+        Long defaultId = jdbcTemplate.queryForObject(DEFAULT_INSERT_SQL, Long.class);
+        assertEquals(hibernateId + ALLOCATION_SIZE, defaultId);
+        // Hibernate продолжает выдавать ID из уже полученного блока
+        long nextHibernateId = saveTransactions(1).get(0);
+        assertEquals(hibernateId + 1, nextHibernateId);
+        assertEquals(3, transactionRepository.count());
+    }
+
+    private List<Long> saveTransactions(int count) {
+        return transactionTemplate.execute(status -> {
+            Card from = cardRepository.getReferenceById(1L);
+            Card to = cardRepository.getReferenceById(2L);
+            List<Transaction> transactions = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                Transaction transaction = new Transaction();
+                transaction.setFromCard(from);
+                transaction.setToCard(to);
+                transaction.setAmount(100);
+                transaction.setStatus(Transaction.Status.SUCCESS);
+                transactions.add(transaction);
+            }
+            return transactionRepository.saveAll(transactions).stream().map(Transaction::getId).toList();
+        });
+    }
+}
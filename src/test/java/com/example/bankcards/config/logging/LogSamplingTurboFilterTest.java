@@ -0,0 +1,65 @@
+package com.example.bankcards.config.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogSamplingTurboFilterTest {
+    private final LoggerContext context = new LoggerContext();
+    private final LogSamplingTurboFilter filter = new LogSamplingTurboFilter();
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        filter.setMaxPerInterval(2);
+        filter.setSampleRate(3);
+        filter.setIntervalMs(60000);
+        filter.start();
+        context.addTurboFilter(filter);
+        appender.setContext(context);
+        appender.start();
+        logger = context.getLogger("test");
+        logger.setLevel(Level.DEBUG);
+        logger.addAppender(appender);
+    }
+
+    @Test
+    void decide_OverLimit_PassesEverySampleRateEvent() {
+        for (int i = 0; i < 11; i++) {
+            logger.error("Ошибка {}", i);
+        }
+        // Первые два без ограничений, затем 5-е, 8-е и 11-е
+        assertEquals(5, appender.list.size());
+        assertEquals("Ошибка 10", appender.list.get(4).getFormattedMessage());
+        assertTrue(logger.isErrorEnabled());
+    }
+
+    @Test
+    void decide_BelowWarn_NotCounted() {
+        for (int i = 0; i < 10; i++) {
+            logger.info("Сообщение {}", i);
+        }
+        logger.warn("Предупреждение");
+        logger.warn("Предупреждение");
+        assertEquals(12, appender.list.size());
+    }
+
+    @Test
+    void decide_NextInterval_ReportsSuppressed() throws InterruptedException {
+        filter.setIntervalMs(200);
+        for (int i = 0; i < 4; i++) {
+            logger.error("Ошибка {}", i);
+        }
+        Thread.sleep(250);
+        logger.error("Ошибка после паузы");
+        assertTrue(appender.list.stream().anyMatch(event -> event.getFormattedMessage().startsWith("Подавлено")));
+        assertEquals("Ошибка после паузы", appender.list.get(appender.list.size() - 1).getFormattedMessage());
+    }
+}
@@ -2,6 +2,7 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.card.CardRequest;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.Money;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.Test;
@@ -45,7 +46,7 @@ class AdminCardControllerTest {
         CardRequest cardRequest = new CardRequest();
         cardRequest.setOwnerName("Test Owner");
         cardRequest.setExpirationDate(YearMonth.parse("2025-12"));
-        cardRequest.setBalance(500.0);
+        cardRequest.setBalance(Money.parse("500.00"));
         cardRequest.setUserId(1L);
         MvcResult result = mockMvc.perform(post("/api/admin/cards")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -69,6 +70,43 @@ class AdminCardControllerTest {
         assertTrue(cardRepository.existsById(cardId), "Созданная карта должна существовать в БД");
     }
 
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void issueCards() throws Exception {
+        long initialCardCount = cardRepository.count();
+        String requestJson = """
+                [
+                    {"ownerName": "BULK ONE", "expirationDate": "2027-12", "balance": 100.0, "userId": 1},
+                    {"ownerName": "BULK TWO", "expirationDate": "2027-12", "balance": 0, "userId": 2}
+                ]
+                """;
+        mockMvc.perform(post("/api/admin/cards/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestJson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").isNumber())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.total").value(2))
+                .andExpect(jsonPath("$.issued").value(2));
+        assertEquals(initialCardCount + 2, cardRepository.count(), "Количество карт должно увеличиться на 2");
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void issueCardsCsv_UnknownUser_NotFound() throws Exception {
+        long initialCardCount = cardRepository.count();
+        String csv = """
+                userId,ownerName,expirationDate,balance
+                1,CSV OWNER,2027-12,10.50
+                999,CSV OWNER,2027-12,
+                """;
+        mockMvc.perform(post("/api/admin/cards/bulk")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isNotFound());
+        assertEquals(initialCardCount, cardRepository.count(), "Карты не должны выпускаться при ошибке проверки");
+    }
+
     @Test
     @WithMockUser(roles = "ADMIN")
     void getAllCards() throws Exception {
@@ -136,7 +174,7 @@ class AdminCardControllerTest {
         CardRequest cardRequest = new CardRequest();
         cardRequest.setOwnerName("Card to delete");
         cardRequest.setExpirationDate(YearMonth.parse("2025-12"));
-        cardRequest.setBalance(100.0);
+        cardRequest.setBalance(Money.parse("100.00"));
         cardRequest.setUserId(1L);
         MvcResult result = mockMvc.perform(post("/api/admin/cards")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -0,0 +1,91 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.dto.card.KeyRotationResponse;
+import com.example.bankcards.service.EncryptionService;
+import com.example.bankcards.service.KeyRotationService;
+import com.example.bankcards.service.impl.KeyRotationServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestPropertySource(properties = {"spring.jpa.properties.hibernate.default_schema=test",
+        "encryption.rotation.chunk-size=2", "encryption.rotation.parallelism=2"})
+@Sql(scripts = "classpath:db/migration/sql/001-initial-schema-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/002-initial-data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/clear-schema-test.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class AdminKeyRotationControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private KeyRotationService keyRotationService;
+    @Autowired
+    private KeyRotationServiceImpl keyRotationServiceImpl;
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void rotation_ReencryptsLegacyCardNumbers() throws Exception {
+        String body = mockMvc.perform(post("/api/admin/key-rotations"))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString();
+        Long rotationId = objectMapper.readValue(body, KeyRotationResponse.class).getId();
+        KeyRotationResponse rotation = keyRotationService.getRotation(rotationId);
+        for (int i = 0; i < 100 && rotation.getStatus() == KeyRotationResponse.Status.RUNNING; i++) {
+            Thread.sleep(100);
+            rotation = keyRotationService.getRotation(rotationId);
+        }
+        assertEquals(KeyRotationResponse.Status.COMPLETED, rotation.getStatus());
+        assertEquals(5, rotation.getReencrypted());
+        assertEquals(0L, rotation.getRemaining());
+        Map<String, Object> card = jdbcTemplate.queryForMap(
+                "SELECT encrypted_card_number, card_number_hash, card_number_last4 FROM cards WHERE id = 1");
+        String encrypted = (String) card.get("encrypted_card_number");
+        assertTrue(encrypted.startsWith(encryptionService.currentKeyPrefix()));
+        assertEquals("1231111111111111", encryptionService.decrypt(encrypted));
+        assertEquals(encryptionService.hash("1231111111111111"), card.get("card_number_hash"));
+        assertEquals("1111", card.get("card_number_last4"));
+    }
+
+    @Test
+    void backfillHashes_LegacyCards_HashAndLast4Filled() {
+        assertEquals(5, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cards WHERE card_number_hash IS NULL", Integer.class));
+        assertEquals(0L, keyRotationServiceImpl.backfillHashes());
+        Map<String, Object> card = jdbcTemplate.queryForMap(
+                "SELECT encrypted_card_number, card_number_hash, card_number_last4 FROM cards WHERE id = 2");
+        // Заполняется только хэш и последние цифры, перешифрование остаётся ротации
+        assertEquals("encrypted_2345555555554444", card.get("encrypted_card_number"));
+        assertEquals(encryptionService.hash("2345555555554444"), card.get("card_number_hash"));
+        assertEquals("4444", card.get("card_number_last4"));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void getRotation_Unknown_ReturnsNotFound() throws Exception {
+        mockMvc.perform(get("/api/admin/key-rotations/999"))
+                .andExpect(status().isNotFound());
+    }
+}
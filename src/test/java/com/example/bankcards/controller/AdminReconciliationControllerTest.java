@@ -0,0 +1,69 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.dto.reconciliation.ReconciliationRunResponse;
+import com.example.bankcards.service.ReconciliationService;
+import com.example.bankcards.util.Money;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestPropertySource(properties = {"spring.jpa.properties.hibernate.default_schema=test",
+        "reconciliation.range-size=2", "reconciliation.duty-cycle=1"})
+@Sql(scripts = "classpath:db/migration/sql/001-initial-schema-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/002-initial-data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/clear-schema-test.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class AdminReconciliationControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ReconciliationService reconciliationService;
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void reconciliation_ReportsCardsWhoseBalanceDoesNotMatchTransfers() throws Exception {
+        // Перевод записан, а балансы карт 1 и 2 не изменены
+        jdbcTemplate.update("INSERT INTO transactions (from_card_id, to_card_id, amount, status) VALUES (1, 2, 300, 'SUCCESS')");
+        String body = mockMvc.perform(post("/api/admin/reconciliations"))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString();
+        Long runId = objectMapper.readValue(body, ReconciliationRunResponse.class).getId();
+        ReconciliationRunResponse run = reconciliationService.getRun(runId, 10);
+        for (int i = 0; i < 100 && run.getStatus() == ReconciliationRunResponse.Status.RUNNING; i++) {
+            Thread.sleep(100);
+            run = reconciliationService.getRun(runId, 10);
+        }
+        assertEquals(ReconciliationRunResponse.Status.COMPLETED, run.getStatus());
+        assertEquals(5, run.getCardsChecked());
+        assertEquals(2, run.getDiscrepancyCount());
+        assertEquals(1L, run.getDiscrepancies().get(0).getCardId());
+        assertEquals(Money.ofMinor(99700), run.getDiscrepancies().get(0).getExpectedBalance());
+        assertEquals(Money.ofMinor(100000), run.getDiscrepancies().get(0).getActualBalance());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void getRun_Unknown_ReturnsNotFound() throws Exception {
+        mockMvc.perform(get("/api/admin/reconciliations/999"))
+                .andExpect(status().isNotFound());
+    }
+}
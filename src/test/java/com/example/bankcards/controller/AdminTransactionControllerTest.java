@@ -0,0 +1,61 @@
+package com.example.bankcards.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestPropertySource(properties = {"spring.jpa.properties.hibernate.default_schema=test"})
+@Sql(scripts = "classpath:db/migration/sql/001-initial-schema-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/002-initial-data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/clear-schema-test.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class AdminTransactionControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void exportTransactions_StreamsCsvInTimestampOrder() throws Exception {
+        jdbcTemplate.update("INSERT INTO transactions (from_card_id, to_card_id, amount, timestamp, status) " +
+                "VALUES (1, 2, 10050, '2025-01-02 10:00:00', 'SUCCESS'), (2, 1, 500, '2025-01-01 09:00:00', 'SUCCESS'), " +
+                "(1, 2, 700, '2025-02-01 00:00:00', 'SUCCESS')");
+        MvcResult result = mockMvc.perform(get("/api/admin/transactions/export")
+                        .param("from", "2025-01-01T00:00:00")
+                        .param("to", "2025-02-01T00:00:00"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(3, lines.length, "Заголовок и две транзакции из периода");
+        assertEquals("id,from_card_id,to_card_id,amount,timestamp,status,failure_reason", lines[0]);
+        assertEquals("2,1,5.00,2025-01-01T09:00,SUCCESS,", lines[1].substring(lines[1].indexOf(',') + 1));
+        assertEquals("1,2,100.50,2025-01-02T10:00,SUCCESS,", lines[2].substring(lines[2].indexOf(',') + 1));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void exportTransactions_UnknownFormat_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/admin/transactions/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.card.CardResponse;
+import com.example.bankcards.dto.transaction.BatchTransferRequest;
 import com.example.bankcards.dto.transaction.TransactionRequest;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transaction;
@@ -10,6 +11,9 @@ import com.example.bankcards.repository.TransactionRepository;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.service.CardService;
 import com.example.bankcards.service.TransactionService;
+import com.example.bankcards.util.JwtUtil;
+import com.example.bankcards.util.Money;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,6 +30,7 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.YearMonth;
 import java.util.Arrays;
@@ -39,6 +44,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -65,6 +71,8 @@ class UserCardControllerTest {
     private UserRepository userRepository;
     @Autowired
     private ObjectMapper objectMapper;
+    @Autowired
+    private JwtUtil jwtUtil;
 
     @Test
     @WithMockUser(username = "user")
@@ -75,14 +83,14 @@ class UserCardControllerTest {
         card1.setMaskedCardNumber("**** **** **** 1111");
         card1.setOwnerName("Ivan Ivanov");
         card1.setExpirationDate(YearMonth.of(2026, 12));
-        card1.setBalance(1000.0);
+        card1.setBalance(Money.parse("1000.00"));
         card1.setStatus(ACTIVE);
         CardResponse card2 = new CardResponse();
         card2.setId(2L);
         card2.setMaskedCardNumber("**** **** **** 4444");
         card2.setOwnerName("Anna Petrova");
         card2.setExpirationDate(YearMonth.of(2025, 6));
-        card2.setBalance(2000.0);
+        card2.setBalance(Money.parse("2000.00"));
         card2.setStatus(ACTIVE);
         List<CardResponse> cards = Arrays.asList(card1, card2);
         Pageable pageable = PageRequest.of(0, 10);
@@ -105,6 +113,21 @@ class UserCardControllerTest {
         verify(userRepository, times(1)).findByUsername("user");
     }
 
+    @Test
+    void getUserCards_BearerTokenWithUserId_NoUserQuery() throws Exception {
+        String token = jwtUtil.generateToken(new User(1L, "user", "password", new HashSet<>()));
+        Pageable pageable = PageRequest.of(0, 10);
+        when(cardService.getUserCards(eq(1L), any(Pageable.class))).thenReturn(new PageImpl<>(List.of(), pageable, 0));
+        mockMvc.perform(get("/api/user/cards")
+                        .header("Authorization", "Bearer " + token)
+                        .param("page", "0")
+                        .param("size", "10"))
+                .andExpect(status().isOk());
+        // ID пользователя взят из claim uid: ни фильтр, ни CurrentUserService не читают users
+        verify(cardService, times(1)).getUserCards(eq(1L), any(Pageable.class));
+        verifyNoInteractions(userRepository);
+    }
+
     @Test
     @WithMockUser(username = "user")
     void getCardById_ShouldReturnCard() throws Exception {
@@ -114,7 +137,7 @@ class UserCardControllerTest {
         card.setMaskedCardNumber("**** **** **** 1111");
         card.setOwnerName("Ivan Ivanov");
         card.setExpirationDate(YearMonth.of(2026, 12));
-        card.setBalance(1000.0);
+        card.setBalance(Money.parse("1000.00"));
         card.setStatus(ACTIVE);
         when(cardService.getCardById(1L)).thenReturn(card);
         mockMvc.perform(get("/api/user/cards/{id}/balance", 1L)
@@ -136,7 +159,7 @@ class UserCardControllerTest {
         card.setMaskedCardNumber("**** **** **** 1111");
         card.setOwnerName("Ivan Ivanov");
         card.setExpirationDate(YearMonth.of(2026, 12));
-        card.setBalance(1000.0);
+        card.setBalance(Money.parse("1000.00"));
         card.setStatus(BLOCKED);
         when(cardService.getCardById(1L)).thenReturn(card);
         mockMvc.perform(get("/api/user/cards/{id}/balance", 1L)
@@ -158,7 +181,7 @@ class UserCardControllerTest {
         card.setMaskedCardNumber("**** **** **** 2222");
         card.setOwnerName("Dmitry Kuznetsov");
         card.setExpirationDate(YearMonth.of(2026, 9));
-        card.setBalance(5000.0);
+        card.setBalance(Money.parse("5000.00"));
         card.setStatus(ACTIVE);
         List<CardResponse> cards = Arrays.asList(card);
         Pageable pageable = PageRequest.of(0, 10);
@@ -218,12 +241,12 @@ class UserCardControllerTest {
         userCards.forEach(card -> System.out.println("User Card ID: " + card.getId() + ", Balance: " + card.getBalance()));
         Card initialFromCard = userCards.get(0);
         Card initialToCard = userCards.get(1);
-        double initialFromBalance = initialFromCard.getBalance();
-        double initialToBalance = initialToCard.getBalance();
+        long initialFromBalance = initialFromCard.getBalance();
+        long initialToBalance = initialToCard.getBalance();
         TransactionRequest request = new TransactionRequest();
         request.setFromCardId(initialFromCard.getId());
         request.setToCardId(initialToCard.getId());
-        request.setAmount(100.0);
+        request.setAmount(Money.parse("100.00"));
         mockMvc.perform(post("/api/user/transactions/transfer")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
@@ -237,18 +260,113 @@ class UserCardControllerTest {
                 .orElseThrow(() -> new AssertionError("Карта отправителя не найдена после перевода"));
         Card updatedToCard = cardRepository.findById(initialToCard.getId())
                 .orElseThrow(() -> new AssertionError("Карта получателя не найдена после перевода"));
-        assertEquals(initialFromBalance - 100.0, updatedFromCard.getBalance(), 0.001, "Баланс карты отправителя не уменьшился на 100.0");
-        assertEquals(initialToBalance + 100.0, updatedToCard.getBalance(), 0.001, "Баланс карты получателя не увеличился на 100.0");
+        assertEquals(initialFromBalance - 10000L, updatedFromCard.getBalance(), "Баланс карты отправителя не уменьшился на 100.0");
+        assertEquals(initialToBalance + 10000L, updatedToCard.getBalance(), "Баланс карты получателя не увеличился на 100.0");
         List<Transaction> transactions = transactionRepository.findAll();
         assertEquals(1, transactions.size(), "Транзакция не сохранена в test.transactions");
         Transaction savedTransaction = transactions.get(0);
         assertEquals(initialFromCard.getId(), savedTransaction.getFromCard().getId());
         assertEquals(initialToCard.getId(), savedTransaction.getToCard().getId());
-        assertEquals(100.0, savedTransaction.getAmount());
+        assertEquals(10000L, savedTransaction.getAmount());
         assertEquals("SUCCESS", savedTransaction.getStatus().name());
         System.out.println("=== Проверка состояния базы данных после теста ===");
         List<Card> allCardsAfter = cardRepository.findAll();
         System.out.println("Найдено карт в test.cards: " + allCardsAfter.size());
         allCardsAfter.forEach(card -> System.out.println("Card ID: " + card.getId() + ", User ID: " + card.getUser().getId() + ", Balance: " + card.getBalance()));
     }
-}
\ No newline at end of file
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void transferBatch_Atomic_FailedLegRollsBackWholeBatch() throws Exception {
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(new User(1L, "user", "password", new HashSet<>())));
+        long fromBalance = cardRepository.findById(1L).orElseThrow().getBalance();
+        long toBalance = cardRepository.findById(2L).orElseThrow().getBalance();
+        BatchTransferRequest request = new BatchTransferRequest();
+        request.setTransfers(List.of(transferRequest(1L, 2L, "5.00"), transferRequest(2L, 3L, "100000.00")));
+        mockMvc.perform(post("/api/user/transactions/transfer/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+        assertEquals(fromBalance, cardRepository.findById(1L).orElseThrow().getBalance());
+        assertEquals(toBalance, cardRepository.findById(2L).orElseThrow().getBalance());
+        assertEquals(0, transactionRepository.count());
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void transferBatch_BestEffort_ReturnsStatusPerLeg() throws Exception {
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(new User(1L, "user", "password", new HashSet<>())));
+        long fromBalance = cardRepository.findById(1L).orElseThrow().getBalance();
+        long toBalance = cardRepository.findById(2L).orElseThrow().getBalance();
+        BatchTransferRequest request = new BatchTransferRequest();
+        request.setMode(BatchTransferRequest.Mode.BEST_EFFORT);
+        // Вторая операция — с чужой карты 4, третья — снова по карте 1: блокировка общая на весь пакет
+        request.setTransfers(List.of(transferRequest(1L, 2L, "5.00"), transferRequest(4L, 1L, "1.00"),
+                transferRequest(1L, 2L, "2.50")));
+        mockMvc.perform(post("/api/user/transactions/transfer/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$[0].status").value("SUCCESS"))
+                .andExpect(jsonPath("$[1].status").value("FAILED"))
+                .andExpect(jsonPath("$[1].message").value("Вы не можете использовать эту карту для перевода"))
+                .andExpect(jsonPath("$[2].status").value("SUCCESS"));
+        assertEquals(fromBalance - 750L, cardRepository.findById(1L).orElseThrow().getBalance());
+        assertEquals(toBalance + 750L, cardRepository.findById(2L).orElseThrow().getBalance());
+        assertEquals(2, transactionRepository.count());
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void submitTransfer_PendingThenCompletedByWorker() throws Exception {
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(new User(1L, "user", "password", new HashSet<>())));
+        long fromBalance = cardRepository.findById(1L).orElseThrow().getBalance();
+        long toBalance = cardRepository.findById(2L).orElseThrow().getBalance();
+        String body = mockMvc.perform(post("/api/user/transactions/transfer/async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(transferRequest(1L, 2L, "5.00"))))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status").value("PENDING"))
+                .andReturn().getResponse().getContentAsString();
+        long id = objectMapper.readTree(body).get("id").asLong();
+        JsonNode completed = awaitTransaction(id);
+        assertEquals("SUCCESS", completed.get("status").asText());
+        assertEquals(fromBalance - 500L, cardRepository.findById(1L).orElseThrow().getBalance());
+        assertEquals(toBalance + 500L, cardRepository.findById(2L).orElseThrow().getBalance());
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void submitTransfer_InsufficientFunds_FailedWithReason() throws Exception {
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(new User(1L, "user", "password", new HashSet<>())));
+        long fromBalance = cardRepository.findById(1L).orElseThrow().getBalance();
+        // Достаточность средств проверяет обработчик очереди, поэтому перевод принимается
+        String body = mockMvc.perform(post("/api/user/transactions/transfer/async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(transferRequest(1L, 2L, "100000.00"))))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString();
+        JsonNode completed = awaitTransaction(objectMapper.readTree(body).get("id").asLong());
+        assertEquals("FAILED", completed.get("status").asText());
+        assertEquals("Недостаточно средств на карте-отправителе", completed.get("message").asText());
+        assertEquals(fromBalance, cardRepository.findById(1L).orElseThrow().getBalance());
+    }
+
+    private JsonNode awaitTransaction(long id) throws Exception {
+        MvcResult pending = mockMvc.perform(get("/api/user/transactions/" + id).param("waitMs", "5000"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private TransactionRequest transferRequest(Long fromCardId, Long toCardId, String amount) {
+        TransactionRequest request = new TransactionRequest();
+        request.setFromCardId(fromCardId);
+        request.setToCardId(toCardId);
+        request.setAmount(Money.parse(amount));
+        return request;
+    }
+}
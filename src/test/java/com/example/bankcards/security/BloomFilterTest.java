@@ -0,0 +1,38 @@
+package com.example.bankcards.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+    @Test
+    void mightContain_AddedKeys_AlwaysTrue() {
+        BloomFilter filter = new BloomFilter(10_000, 0.001);
+        List<UUID> added = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            UUID key = UUID.randomUUID();
+            filter.put(key);
+            added.add(key);
+        }
+        added.forEach(key -> assertTrue(filter.mightContain(key)));
+    }
+
+    @Test
+    void mightContain_OtherKeys_RareFalsePositives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.001);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(UUID.randomUUID());
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(UUID.randomUUID())) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 500, "Ложных срабатываний: " + falsePositives);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.util.JwtUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class JwtVerifierTest {
+    private static final String SECRET = "myTestSecretKeyForJWTGenerationWithMinimum256BitsSizeRequiredForHS256Algorithm";
+    private static final String OTHER_SECRET = "anotherSecretKeyForJWTGenerationWithMinimum256BitsSizeRequiredForHS256Algorithm";
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final User user = new User(1L, "user", "password", new HashSet<>());
+
+    @Test
+    void verify_SameTokenTwice_SecondFromCache() {
+        JwtUtil jwtUtil = spy(new JwtUtil(SECRET, 60000L));
+        JwtVerifier verifier = new JwtVerifier(jwtUtil, meterRegistry, 100);
+        String token = jwtUtil.generateToken(user);
+        Optional<VerifiedToken> first = verifier.verify(token);
+        Optional<VerifiedToken> second = verifier.verify(token);
+        assertTrue(first.isPresent());
+        assertSame(first.get(), second.orElseThrow());
+        assertEquals(1L, second.get().userId());
+        assertEquals("user", second.get().username());
+        verify(jwtUtil, times(1)).parseClaims(anyString());
+        assertEquals(1.0, meterRegistry.get("bank.jwt.cache").tag("result", "hit").counter().count());
+        assertEquals(1.0, meterRegistry.get("bank.jwt.cache").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void verify_CacheDisabled_ParsesEveryTime() {
+        JwtUtil jwtUtil = spy(new JwtUtil(SECRET, 60000L));
+        JwtVerifier verifier = new JwtVerifier(jwtUtil, meterRegistry, 0);
+        String token = jwtUtil.generateToken(user);
+        assertTrue(verifier.verify(token).isPresent());
+        assertTrue(verifier.verify(token).isPresent());
+        verify(jwtUtil, times(2)).parseClaims(anyString());
+    }
+
+    @Test
+    void verify_TokenExpired_NotServedFromCache() throws InterruptedException {
+        JwtUtil jwtUtil = spy(new JwtUtil(SECRET, 3000L));
+        JwtVerifier verifier = new JwtVerifier(jwtUtil, meterRegistry, 100);
+        String token = jwtUtil.generateToken(user);
+        // Срок в claim exp округляется вниз до секунды: при TTL в 3 с токен гарантированно жив дольше 2 с,
+        // чего хватает первой проверке даже с холодной загрузкой классов парсера
+        assertTrue(verifier.verify(token).isPresent());
+        Thread.sleep(3500);
+        assertTrue(verifier.verify(token).isEmpty());
+        verify(jwtUtil, times(2)).parseClaims(anyString());
+        assertEquals(1.0, meterRegistry.get("bank.jwt.rejected").counter().count());
+    }
+
+    @Test
+    void verify_ForeignSignature_RejectedAndNotCached() {
+        JwtUtil jwtUtil = spy(new JwtUtil(SECRET, 60000L));
+        JwtVerifier verifier = new JwtVerifier(jwtUtil, meterRegistry, 100);
+        String forged = new JwtUtil(OTHER_SECRET, 60000L).generateToken(user);
+        assertTrue(verifier.verify(forged).isEmpty());
+        assertTrue(verifier.verify(forged).isEmpty());
+        verify(jwtUtil, times(2)).parseClaims(anyString());
+        assertEquals(2.0, meterRegistry.get("bank.jwt.rejected").counter().count());
+    }
+
+    @Test
+    void verify_TamperedPayload_Rejected() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 60000L);
+        JwtVerifier verifier = new JwtVerifier(jwtUtil, meterRegistry, 100);
+        String token = jwtUtil.generateToken(user);
+        assertTrue(verifier.verify(token).isPresent());
+        String[] parts = token.split("\\.");
+        String tampered = parts[0] + "." + parts[1].substring(0, parts[1].length() - 2) + "AA." + parts[2];
+        assertTrue(verifier.verify(tampered).isEmpty());
+        assertTrue(verifier.verify("not-a-token").isEmpty());
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PooledPasswordEncoderTest {
+    private PooledPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        encoder.shutdown();
+    }
+
+    @Test
+    void encodeAndMatches_Success() {
+        encoder = new PooledPasswordEncoder(4, 1, 4, 5000, new SimpleMeterRegistry());
+        String hash = encoder.encode("password");
+        assertTrue(encoder.matches("password", hash));
+        assertFalse(encoder.matches("wrong", hash));
+        assertFalse(encoder.upgradeEncoding(hash));
+    }
+
+    @Test
+    void upgradeEncoding_DifferentCost_ReturnsTrue() {
+        encoder = new PooledPasswordEncoder(5, 1, 4, 5000, new SimpleMeterRegistry());
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("password")));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("password")));
+        assertFalse(encoder.upgradeEncoding("plain"));
+    }
+
+    @Test
+    void encode_WaitExceeded_ThrowsException() {
+        encoder = new PooledPasswordEncoder(12, 1, 1, 1, new SimpleMeterRegistry());
+        assertThrows(PasswordHashingBusyException.class, () -> encoder.encode("password"));
+    }
+}
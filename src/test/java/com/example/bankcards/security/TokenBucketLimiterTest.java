@@ -0,0 +1,82 @@
+package com.example.bankcards.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketLimiterTest {
+    private final AtomicLong now = new AtomicLong();
+    private final TokenBucketLimiter limiter = new TokenBucketLimiter(3, Duration.ofSeconds(30), 4, 1000, now::get);
+
+    @Test
+    void tryAcquire_OverCapacity_ReturnsWait() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("user"));
+        }
+        long wait = limiter.tryAcquire("user");
+        assertTrue(wait > 0 && wait <= TimeUnit.SECONDS.toNanos(10));
+        assertEquals(0, limiter.tryAcquire("other"));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(0, limiter.tryAcquire("user"));
+    }
+
+    @Test
+    void sweep_RefilledBucket_Removed() {
+        limiter.tryAcquire("user");
+        limiter.tryAcquire("other");
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        assertEquals(0, limiter.sweep());
+        assertEquals(2, limiter.size());
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(2, limiter.sweep());
+        assertEquals(0, limiter.size());
+    }
+
+    @Test
+    void reset_RestoresCapacity() {
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("user");
+        }
+        assertTrue(limiter.tryAcquire("user") > 0);
+        limiter.reset("user");
+        assertEquals(0, limiter.tryAcquire("user"));
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    void tryAcquire_StripesFull_EvictsLeastRecentKeysAndKeepsLimiting() {
+        // Две полосы по два ключа
+        TokenBucketLimiter small = new TokenBucketLimiter(3, Duration.ofSeconds(30), 2, 4, now::get);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, small.tryAcquire("victim"));
+        }
+        assertTrue(small.tryAcquire("victim") > 0);
+        // Поток новых ключей вытесняет давно не использованные ведра, а не отключает ограничение
+        for (int key = 0; key < 50; key++) {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(0, small.tryAcquire("attacker-" + key));
+            }
+            assertTrue(small.tryAcquire("attacker-" + key) > 0);
+            assertTrue(small.tryAcquire("victim") > 0);
+            assertTrue(small.size() <= 4);
+        }
+    }
+
+    @Test
+    void tryAcquire_StripesFullOfRefilledBuckets_NewKeysStillLimited() {
+        TokenBucketLimiter small = new TokenBucketLimiter(3, Duration.ofSeconds(30), 2, 4, now::get);
+        for (int key = 0; key < 20; key++) {
+            small.tryAcquire("old-" + key);
+        }
+        now.addAndGet(TimeUnit.SECONDS.toNanos(15));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, small.tryAcquire("late"));
+        }
+        assertTrue(small.tryAcquire("late") > 0);
+        assertTrue(small.size() <= 4);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.card.CardIssuanceJobResponse;
+import com.example.bankcards.dto.card.CardRequest;
+import com.example.bankcards.service.impl.engine.BalanceEngine;
+import com.example.bankcards.util.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {"spring.jpa.properties.hibernate.default_schema=test",
+        "transfer.async.enabled=false", "card-issuance.stale-after-ms=3600000"})
+@Sql(scripts = "classpath:db/migration/sql/001-initial-schema-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/002-initial-data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/clear-schema-test.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class CardIssuanceServiceTest {
+    private static final String INSERT_RUNNING_JOB_SQL =
+            "INSERT INTO card_issuance_jobs (status, total, started_at) " +
+                    "VALUES ('RUNNING', 10, LOCALTIMESTAMP - make_interval(mins => ?)) RETURNING id";
+    @Autowired
+    private CardIssuanceService cardIssuanceService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @MockBean
+    private BalanceEngine balanceEngine;
+
+    @Test
+    void issue_RunningJobOlderThanStaleAfter_MarkedFailed() {
+        Long staleId = jdbcTemplate.queryForObject(INSERT_RUNNING_JOB_SQL, Long.class, 120);
+        Long activeId = jdbcTemplate.queryForObject(INSERT_RUNNING_JOB_SQL, Long.class, 5);
+        cardIssuanceService.issue(requests(1));
+        CardIssuanceJobResponse stale = cardIssuanceService.getJob(staleId);
+        assertEquals(CardIssuanceJobResponse.Status.FAILED, stale.getStatus());
+        assertEquals("Выпуск прерван", stale.getError());
+        assertNotNull(stale.getFinishedAt());
+        assertEquals(CardIssuanceJobResponse.Status.RUNNING, cardIssuanceService.getJob(activeId).getStatus());
+    }
+
+    @Test
+    void issue_EngineRejectsCard_FailureRecordedOnJob() {
+        doNothing().doThrow(new IllegalStateException("движок остановлен")).doNothing()
+                .when(balanceEngine).upsertCard(anyLong(), anyLong(), any(), anyLong());
+        CardIssuanceJobResponse job = cardIssuanceService.issue(requests(3));
+        // Карты закоммичены, поэтому задание завершено, а сбой движка виден в нём
+        assertEquals(CardIssuanceJobResponse.Status.COMPLETED, job.getStatus());
+        assertEquals(3, job.getIssued());
+        assertEquals(1, job.getEngineFailed());
+        assertTrue(job.getError().contains("движок остановлен"), job.getError());
+        // Сбой на одной карте не оставляет без движка остальные карты порции
+        verify(balanceEngine, times(3)).upsertCard(anyLong(), anyLong(), any(), anyLong());
+        assertEquals(8, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cards", Integer.class));
+    }
+
+    @Test
+    void issue_EngineAcceptsAll_NoError() {
+        CardIssuanceJobResponse job = cardIssuanceService.issue(requests(2));
+        assertEquals(CardIssuanceJobResponse.Status.COMPLETED, job.getStatus());
+        assertEquals(0, job.getEngineFailed());
+        assertNull(job.getError());
+        verify(balanceEngine, times(2)).upsertCard(anyLong(), anyLong(), any(), anyLong());
+    }
+
+    private static List<CardRequest> requests(int count) {
+        return IntStream.range(0, count).mapToObj(i -> {
+            CardRequest request = new CardRequest();
+            request.setUserId(1L);
+            request.setOwnerName("BULK OWNER");
+            request.setExpirationDate(YearMonth.now().plusYears(2));
+            request.setBalance(Money.ofMinor(1000));
+            return request;
+        }).toList();
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.InvalidCardOperationException;
+import com.example.bankcards.service.impl.CardNumberPool;
+import com.example.bankcards.service.impl.EncryptionServiceImpl;
+import com.example.bankcards.util.CardUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+class CardNumberPoolTest {
+    private static final String KEY = "PMEZhGHraNvecfCZ34ig/nTRlELWZKa1RlY+kgGV+/A=";
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CardNumberPool pool;
+
+    @SuppressWarnings("unchecked")
+    CardNumberPoolTest() {
+        when(jdbcTemplate.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class))).thenReturn(List.of());
+        pool = new CardNumberPool(jdbcTemplate, new EncryptionServiceImpl(List.of("1:" + KEY), 1, KEY),
+                meterRegistry, List.of("3985", "220077"), 100, 20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.stop();
+    }
+
+    @Test
+    void next_LuhnValidUniqueNumbersWithBin() {
+        pool.fill();
+        Set<String> numbers = new HashSet<>();
+        for (int i = 0; i < 500; i++) {
+            String number = pool.next();
+            assertEquals(16, number.length());
+            assertTrue(number.startsWith("3985"));
+            assertTrue(CardUtils.isLuhnValid(number), number);
+            numbers.add(number);
+        }
+        assertEquals(500, numbers.size());
+        assertTrue(pool.next("220077").startsWith("220077"));
+    }
+
+    @Test
+    void next_InsideTransaction_ReservedUntilCompletion() throws InterruptedException {
+        pool.fill();
+        awaitPoolSize(100);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            pool.next();
+            pool.nextBatch(3);
+            // Номера ещё не закоммичены в cards и не должны попасть в пул повторно
+            assertEquals(4.0, gauge("bank.cards.number.pool.reserved"));
+            assertEquals(99.0, gauge("bank.cards.number.pool.size"));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(0.0, gauge("bank.cards.number.pool.reserved"));
+    }
+
+    @Test
+    void next_WithoutTransaction_NotReserved() throws InterruptedException {
+        pool.fill();
+        awaitPoolSize(100);
+        pool.next();
+        assertEquals(0.0, gauge("bank.cards.number.pool.reserved"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void nextBatch_LegacyUnhashedCards_CheckedUntilNoneLeft() throws InterruptedException {
+        // До первого пополнения неизвестно, остались ли карты без хэша, и кандидаты сверяются с encrypted_<номер>
+        pool.nextBatch(3);
+        verify(jdbcTemplate).query(contains("encrypted_card_number = ANY"), any(PreparedStatementSetter.class),
+                any(RowMapper.class));
+        pool.fill();
+        awaitPoolSize(100);
+        clearInvocations(jdbcTemplate);
+        pool.nextBatch(3);
+        verify(jdbcTemplate, never()).query(contains("encrypted_card_number = ANY"), any(PreparedStatementSetter.class),
+                any(RowMapper.class));
+    }
+
+    @Test
+    void next_UnknownBin_ThrowsException() {
+        assertThrows(InvalidCardOperationException.class, () -> pool.next("1234"));
+    }
+
+    @Test
+    void isLuhnValid_KnownNumbers() {
+        assertTrue(CardUtils.isLuhnValid("79927398713"));
+        assertFalse(CardUtils.isLuhnValid("79927398710"));
+        assertFalse(CardUtils.isLuhnValid("7992739871a"));
+    }
+
+    private void awaitPoolSize(double size) throws InterruptedException {
+        for (int i = 0; i < 100 && gauge("bank.cards.number.pool.size") < size; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(size, gauge("bank.cards.number.pool.size"));
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tag("bin", "3985").gauge().value();
+    }
+}
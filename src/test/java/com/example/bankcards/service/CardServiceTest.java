@@ -3,14 +3,18 @@ package com.example.bankcards.service;
 import com.example.bankcards.dto.card.CardRequest;
 import com.example.bankcards.dto.card.CardResponse;
 import com.example.bankcards.dto.card.CardUpdateRequest;
+import com.example.bankcards.dto.event.OutboxEventType;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.CardNotFoundException;
-import com.example.bankcards.exception.CardNumberAlreadyExistsException;
 import com.example.bankcards.exception.InvalidCardOperationException;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.exception.TransferOutcomeUnknownException;
 import com.example.bankcards.exception.UserNotFoundException;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.impl.engine.BalanceEngine;
+import com.example.bankcards.util.Money;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,6 +25,7 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.security.test.context.support.WithMockUser;
 
+import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.util.List;
 import java.util.Optional;
@@ -38,6 +43,12 @@ class CardServiceTest {
     private UserRepository userRepository;
     @MockBean
     private EncryptionService encryptionService;
+    @MockBean
+    private CardNumberAllocator cardNumberAllocator;
+    @MockBean
+    private OutboxService outboxService;
+    @MockBean
+    private BalanceEngine balanceEngine;
     private CardRequest cardRequest;
     private CardUpdateRequest cardUpdateRequest;
     private Card mockCard;
@@ -52,7 +63,7 @@ class CardServiceTest {
         cardRequest.setUserId(1L);
         cardRequest.setOwnerName("Test User");
         cardRequest.setExpirationDate(YearMonth.of(2026, 12));
-        cardRequest.setBalance(1000.0);
+        cardRequest.setBalance(Money.parse("1000.00"));
         cardUpdateRequest = new CardUpdateRequest();
         cardUpdateRequest.setOwnerName("Updated User");
         cardUpdateRequest.setExpirationDate(YearMonth.of(2027, 12));
@@ -61,11 +72,12 @@ class CardServiceTest {
         mockCard.setUser(mockUser);
         mockCard.setOwnerName("Ivan Ivanov");
         mockCard.setEncryptedCardNumber("encrypted_1231111111111111");
-        mockCard.setBalance(1000.0);
+        mockCard.setBalance(100000L);
         mockCard.setStatus(Card.Status.ACTIVE);
         mockCard.setExpirationDate(YearMonth.of(2026, 12));
         when(userRepository.findById(1L)).thenReturn(Optional.of(mockUser));
         when(encryptionService.encrypt(anyString())).thenReturn("encrypted_9991111111111111");
+        when(cardNumberAllocator.next()).thenReturn("3985111111111116");
     }
 
     @Test
@@ -77,7 +89,7 @@ class CardServiceTest {
         assertNotNull(response.getId());
         assertEquals("Ivan Ivanov", response.getOwnerName());
         assertEquals(Card.Status.ACTIVE, response.getStatus());
-        assertEquals(1000.0, response.getBalance());
+        assertEquals(Money.parse("1000.00"), response.getBalance());
         assertEquals(1L, response.getUserId());
         verify(encryptionService, times(1)).encrypt(anyString());
         verify(cardRepository, times(1)).save(any(Card.class));
@@ -86,7 +98,7 @@ class CardServiceTest {
     @Test
     @WithMockUser(username = "user")
     void createCard_NegativeBalance_ThrowsException() {
-        cardRequest.setBalance(-100.0);
+        cardRequest.setBalance(Money.parse("-100.00"));
         assertThrows(InvalidCardOperationException.class, () -> cardService.createCard(cardRequest));
         verify(userRepository, never()).findById(anyLong());
     }
@@ -102,12 +114,12 @@ class CardServiceTest {
 
     @Test
     @WithMockUser(username = "user")
-    void createCard_CardNumberExists_ThrowsException() {
-        when(encryptionService.encrypt(anyString())).thenReturn("encrypted_1231111111111111");
-        when(cardRepository.existsByEncryptedCardNumber("encrypted_1231111111111111")).thenReturn(true);
-        assertThrows(CardNumberAlreadyExistsException.class, () -> cardService.createCard(cardRequest));
-        verify(encryptionService, times(1)).encrypt(anyString());
-        verify(cardRepository, times(1)).existsByEncryptedCardNumber("encrypted_1231111111111111");
+    void createCard_PooledNumber_NoExistenceQuery() {
+        when(cardRepository.save(any(Card.class))).thenReturn(mockCard);
+        cardService.createCard(cardRequest);
+        verify(cardNumberAllocator, times(1)).next();
+        verify(encryptionService, times(1)).encrypt("3985111111111116");
+        verify(cardRepository, never()).existsByEncryptedCardNumber(anyString());
     }
 
     @Test
@@ -118,7 +130,7 @@ class CardServiceTest {
         CardResponse response = cardService.getCardById(1L);
         assertEquals(1L, response.getId());
         assertEquals("Ivan Ivanov", response.getOwnerName());
-        assertEquals(1000.0, response.getBalance());
+        assertEquals(Money.parse("1000.00"), response.getBalance());
         verify(cardRepository, times(1)).findById(1L);
         verify(userRepository, times(1)).findByUsername("user");
     }
@@ -131,6 +143,30 @@ class CardServiceTest {
         verify(cardRepository, times(1)).findById(999L);
     }
 
+    @Test
+    @WithMockUser(username = "user")
+    void getCardBalanceAsOf_WithoutLedger_ThrowsException() {
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(mockCard));
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(mockUser));
+        assertThrows(InvalidCardOperationException.class,
+                () -> cardService.getCardBalanceAsOf(1L, LocalDateTime.of(2025, 1, 1, 0, 0)));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void splitCardBalance_InvalidBucketCount_ThrowsException() {
+        assertThrows(InvalidCardOperationException.class, () -> cardService.splitCardBalance(1L, 1));
+        verify(cardRepository, never()).findByIdForUpdate(anyLong());
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void mergeCardBalance_NotSplit_ThrowsException() {
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(mockCard));
+        assertThrows(InvalidCardOperationException.class, () -> cardService.mergeCardBalance(1L));
+        verify(cardRepository, never()).save(any(Card.class));
+    }
+
     @Test
     @WithMockUser(username = "user")
     void getUserCards_Success() {
@@ -170,6 +206,7 @@ class CardServiceTest {
         when(cardRepository.save(any(Card.class))).thenReturn(mockCard);
         CardResponse response = cardService.blockCard(1L);
         assertEquals(Card.Status.BLOCKED, response.getStatus());
+        verify(outboxService, times(1)).append(OutboxEventType.CARD_BLOCKED, 1L, response);
         verify(cardRepository, times(1)).findById(1L);
         verify(cardRepository, times(1)).save(any(Card.class));
     }
@@ -194,4 +231,41 @@ class CardServiceTest {
         verify(cardRepository, times(1)).existsById(1L);
         verify(cardRepository, times(1)).deleteById(1L);
     }
-}
\ No newline at end of file
+
+    @Test
+    @WithMockUser(username = "user")
+    void blockCard_EngineRejectsUpdate_RetriedThenMarkedOutOfSync() {
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(mockCard));
+        when(cardRepository.save(any(Card.class))).thenReturn(mockCard);
+        doThrow(new TransferConflictException("Движок балансов не смог выполнить операцию"))
+                .when(balanceEngine).upsertCard(anyLong(), anyLong(), any(), anyLong());
+        cardService.blockCard(1L);
+        // Движок так и не узнал о блокировке: он перестаёт принимать переводы, а не проводит их с заблокированной карты
+        verify(balanceEngine, times(3)).upsertCard(1L, 1L, Card.Status.BLOCKED, 100000L);
+        verify(balanceEngine).markOutOfSync(eq(1L), any(TransferConflictException.class));
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    void blockCard_EngineAcceptsOnRetry_NotMarkedOutOfSync() {
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(mockCard));
+        when(cardRepository.save(any(Card.class))).thenReturn(mockCard);
+        doThrow(new TransferConflictException("Движок балансов не смог выполнить операцию")).doNothing()
+                .when(balanceEngine).upsertCard(anyLong(), anyLong(), any(), anyLong());
+        cardService.blockCard(1L);
+        verify(balanceEngine, times(2)).upsertCard(1L, 1L, Card.Status.BLOCKED, 100000L);
+        verify(balanceEngine, never()).markOutOfSync(anyLong(), any());
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    void deleteCard_EngineAckTimeout_NotRetried() {
+        when(cardRepository.existsById(1L)).thenReturn(true);
+        doThrow(new TransferOutcomeUnknownException("Движок балансов не подтвердил операцию", null, null, null))
+                .when(balanceEngine).removeCard(1L);
+        cardService.deleteCard(1L);
+        // Неподтверждённая команда уже в буфере движка и будет применена
+        verify(balanceEngine, times(1)).removeCard(1L);
+        verify(balanceEngine, never()).markOutOfSync(anyLong(), any());
+    }
+}
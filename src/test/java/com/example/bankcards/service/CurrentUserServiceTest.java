@@ -0,0 +1,62 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.AuthenticationException;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.AuthenticatedUser;
+import com.example.bankcards.security.VerifiedToken;
+import com.example.bankcards.service.impl.auth.CurrentUserServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CurrentUserServiceTest {
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final CurrentUserServiceImpl currentUserService = new CurrentUserServiceImpl(userRepository);
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void getCurrentUserId_PrincipalFromTokenClaims_NoUserLookup() {
+        VerifiedToken token = new VerifiedToken("jti", 7L, "user", List.of("ROLE_USER", "ROLE_ADMIN"),
+                Instant.now(), Instant.now().plusSeconds(60));
+        authenticate(AuthenticatedUser.from(token));
+        assertEquals(7L, currentUserService.getCurrentUserId());
+        assertTrue(currentUserService.isAdmin());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void getCurrentUserId_PrincipalWithoutId_LoadedByUsername() {
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(new User(1L, "user", "password", new HashSet<>())));
+        authenticate(org.springframework.security.core.userdetails.User.withUsername("user")
+                .password("password").roles("USER").build());
+        assertEquals(1L, currentUserService.getCurrentUserId());
+        assertFalse(currentUserService.isAdmin());
+        verify(userRepository).findByUsername("user");
+    }
+
+    @Test
+    void getCurrentUserId_NotAuthenticated_Throws() {
+        assertThrows(AuthenticationException.class, currentUserService::getCurrentUserId);
+        verifyNoInteractions(userRepository);
+    }
+
+    private static void authenticate(UserDetails principal) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+}
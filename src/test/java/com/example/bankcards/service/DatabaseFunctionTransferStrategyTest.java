@@ -0,0 +1,90 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.InvalidCardOperationException;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.service.impl.transfer.DatabaseFunctionTransferStrategy;
+import com.example.bankcards.service.impl.transfer.TransferMetrics;
+import com.example.bankcards.util.Money;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class DatabaseFunctionTransferStrategyTest {
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DatabaseFunctionTransferStrategy strategy =
+            new DatabaseFunctionTransferStrategy(jdbcTemplate, new TransferMetrics(meterRegistry));
+    private TransactionRequest request;
+
+    @BeforeEach
+    void setUp() {
+        request = new TransactionRequest();
+        request.setFromCardId(1L);
+        request.setToCardId(2L);
+        request.setAmount(Money.parse("100.50"));
+    }
+
+    @Test
+    void transfer_Success_OneCallWithMinorUnits() throws Exception {
+        LocalDateTime timestamp = LocalDateTime.of(2025, 1, 10, 12, 0);
+        returnsRow("SUCCESS", 42L, timestamp);
+        TransactionResponse response = strategy.transfer(7L, request);
+        assertEquals(42L, response.getId());
+        assertEquals(timestamp, response.getTimestamp());
+        assertEquals(Money.parse("100.50"), response.getAmount());
+        assertEquals("SUCCESS", response.getStatus());
+        verify(jdbcTemplate, times(1)).queryForObject(anyString(), rowMapper(), eq(7L), eq(1L), eq(2L), eq(10050L));
+    }
+
+    @Test
+    void transfer_ResultCodes_MappedToExceptions() throws Exception {
+        returnsRow("INSUFFICIENT_FUNDS", null, null);
+        assertThrows(InsufficientFundsException.class, () -> strategy.transfer(7L, request));
+        returnsRow("NOT_CARD_OWNER", null, null);
+        assertThrows(InvalidCardOperationException.class, () -> strategy.transfer(7L, request));
+        returnsRow("TO_CARD_NOT_FOUND", null, null);
+        CardNotFoundException e = assertThrows(CardNotFoundException.class, () -> strategy.transfer(7L, request));
+        assertTrue(e.getMessage().contains("получатель"));
+    }
+
+    @Test
+    void transfer_LockNotAcquired_ThrowsConflict() {
+        when(jdbcTemplate.queryForObject(anyString(), rowMapper(), any(Object[].class)))
+                .thenThrow(new CannotAcquireLockException("lock timeout"));
+        assertThrows(TransferConflictException.class, () -> strategy.transfer(7L, request));
+        assertEquals(1, meterRegistry.counter("bank.transfer.conflicts", "strategy", DatabaseFunctionTransferStrategy.NAME).count());
+    }
+
+    // Функция возвращает одну строку: ответ собирается маппером из неё
+    private void returnsRow(String resultCode, Long transactionId, LocalDateTime timestamp) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("o_result_code")).thenReturn(resultCode);
+        when(rs.getObject("o_transaction_id", Long.class)).thenReturn(transactionId);
+        when(rs.getObject("o_timestamp", LocalDateTime.class)).thenReturn(timestamp);
+        when(jdbcTemplate.queryForObject(anyString(), rowMapper(), any(Object[].class)))
+                .thenAnswer(invocation -> ((RowMapper<?>) invocation.getArgument(1)).mapRow(rs, 0));
+    }
+
+    // Типизированный матчер вместо any(RowMapper.class), чтобы не было непроверенного преобразования
+    private static RowMapper<Object> rowMapper() {
+        return ArgumentMatchers.any();
+    }
+}
@@ -2,20 +2,65 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.service.impl.EncryptionServiceImpl;
 import org.junit.jupiter.api.Test;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.context.SpringBootTest;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest
 class EncryptionServiceTest {
-    @Autowired
-    private EncryptionServiceImpl encryptionService;
+    private static final String KEY_V1 = "PMEZhGHraNvecfCZ34ig/nTRlELWZKa1RlY+kgGV+/A=";
+    private static final String KEY_V2 = "gVZyx7xJvq1kvzLXrxH5ZmXRnOtQWgEWg0GTKl4Jtxk=";
+    private static final String HASH_KEY = "BKKjKwt65JAbPZZz9AqYCSyeWGLsKiD3IuNnpmX93nk=";
+    private final EncryptionServiceImpl encryptionService =
+            new EncryptionServiceImpl(List.of("1:" + KEY_V1), 1, HASH_KEY);
 
     @Test
     void encrypt_Success() {
-        String data = "testData";
-        String result = encryptionService.encrypt(data);
-        assertEquals("encrypted_testData", result);
+        String data = "3985111111111116";
+        String first = encryptionService.encrypt(data);
+        String second = encryptionService.encrypt(data);
+        assertTrue(first.startsWith("v1:"));
+        assertFalse(first.contains(data));
+        assertNotEquals(first, second, "Каждое шифрование должно использовать новый IV");
+        assertEquals(data, encryptionService.decrypt(first));
+        assertEquals(data, encryptionService.decrypt(second));
+    }
+
+    @Test
+    void decrypt_LegacyValue() {
+        assertEquals("1231111111111111", encryptionService.decrypt("encrypted_1231111111111111"));
+    }
+
+    @Test
+    void decrypt_PreviousKeyVersion() {
+        String encrypted = encryptionService.encrypt("3985111111111116");
+        EncryptionServiceImpl rotated = new EncryptionServiceImpl(List.of("1:" + KEY_V1, "2:" + KEY_V2), 2, HASH_KEY);
+        assertEquals("3985111111111116", rotated.decrypt(encrypted));
+        assertTrue(rotated.encrypt("3985111111111116").startsWith(rotated.currentKeyPrefix()));
+        assertEquals("v2:", rotated.currentKeyPrefix());
+        assertEquals(encryptionService.hash("3985111111111116"), rotated.hash("3985111111111116"));
+    }
+
+    @Test
+    void decrypt_TamperedValue_ThrowsException() {
+        String encrypted = encryptionService.encrypt("3985111111111116");
+        String tampered = "v2:" + encrypted.substring(3);
+        EncryptionServiceImpl rotated = new EncryptionServiceImpl(List.of("1:" + KEY_V1, "2:" + KEY_V1), 2, HASH_KEY);
+        assertThrows(IllegalStateException.class, () -> rotated.decrypt(tampered));
+        assertThrows(IllegalStateException.class, () -> encryptionService.decrypt(tampered));
+    }
+
+    @Test
+    void encryptAll_RoundTrip() {
+        List<String> numbers = List.of("3985111111111116", "3985222222222224", "3985333333333332");
+        List<String> encrypted = encryptionService.encryptAll(numbers);
+        assertEquals(numbers.size(), encrypted.size());
+        assertEquals(numbers, encryptionService.decryptAll(encrypted));
+    }
+
+    @Test
+    void constructor_MissingCurrentKey_ThrowsException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new EncryptionServiceImpl(List.of("1:" + KEY_V1), 2, HASH_KEY));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,133 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.service.impl.bucket.BalanceBucketStore;
+import com.example.bankcards.service.impl.bucket.HotCardTransferExecutor;
+import com.example.bankcards.service.impl.transfer.BatchTransferExecutor;
+import com.example.bankcards.service.transfer.TransferLeg;
+import com.example.bankcards.util.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {"spring.jpa.properties.hibernate.default_schema=test",
+        "transfer.async.enabled=false", "hot-card.refresh-interval-ms=3600000"})
+@Sql(scripts = "classpath:db/migration/sql/001-initial-schema-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/002-initial-data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/clear-schema-test.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class HotCardTransferExecutorTest {
+    private static final Long USER_ID = 1L;
+    private static final Long HOT_CARD_ID = 2L;
+    // Сумма балансов всех карт тестовых данных
+    private static final long TOTAL = 1250000L;
+    @Autowired
+    private CardService cardService;
+    @Autowired
+    private HotCardTransferExecutor hotCardTransferExecutor;
+    @Autowired
+    private BatchTransferExecutor batchTransferExecutor;
+    @Autowired
+    private BalanceBucketStore bucketStore;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        // 200000 раскладываются по 50000 в четыре корзины, основной баланс обнуляется
+        cardService.splitCardBalance(HOT_CARD_ID, 4);
+        assertTrue(bucketStore.isHot(HOT_CARD_ID));
+    }
+
+    @Test
+    void transfer_NoSingleBucketCovers_DebitsAcrossBuckets() {
+        TransactionResponse response = hotCardTransferExecutor.transfer(USER_ID, request(HOT_CARD_ID, 3L, 120000));
+        assertEquals("SUCCESS", response.getStatus());
+        assertEquals(0L, cardBalance(HOT_CARD_ID));
+        assertEquals(80000L, bucketStore.sum(HOT_CARD_ID));
+        assertEquals(List.of(0L, 0L, 30000L, 50000L), bucketBalances());
+        assertEquals(270000L, cardBalance(3L));
+        assertThrows(InsufficientFundsException.class,
+                () -> hotCardTransferExecutor.transfer(USER_ID, request(HOT_CARD_ID, 3L, 80001)));
+        assertEquals(80000L, bucketStore.sum(HOT_CARD_ID));
+        assertEquals(TOTAL, totalBalance());
+    }
+
+    @Test
+    void batch_BaseBalanceShort_RefillsFromBuckets() {
+        List<TransactionResponse> responses = batchTransferExecutor.execute(List.of(
+                new TransferLeg(USER_ID, request(HOT_CARD_ID, 1L, 70000)),
+                new TransferLeg(USER_ID, request(HOT_CARD_ID, 3L, 60000))), true);
+        assertEquals(2, responses.size());
+        // Недостающее каждой операции переносится из корзин, основной баланс после списаний пуст
+        assertEquals(0L, cardBalance(HOT_CARD_ID));
+        assertEquals(70000L, bucketStore.sum(HOT_CARD_ID));
+        assertEquals(170000L, cardBalance(1L));
+        assertEquals(210000L, cardBalance(3L));
+        assertEquals(TOTAL, totalBalance());
+    }
+
+    @Test
+    void batch_BucketsShort_LegRejectedAndNothingMoved() {
+        List<TransactionResponse> responses = batchTransferExecutor.execute(List.of(
+                new TransferLeg(USER_ID, request(HOT_CARD_ID, 1L, 200001)),
+                new TransferLeg(USER_ID, request(HOT_CARD_ID, 1L, 1000))), false);
+        assertEquals("FAILED", responses.get(0).getStatus());
+        assertEquals("SUCCESS", responses.get(1).getStatus());
+        assertEquals(199000L, cardBalance(HOT_CARD_ID) + bucketStore.sum(HOT_CARD_ID));
+        assertEquals(TOTAL, totalBalance());
+    }
+
+    @Test
+    void merge_AfterMixedTransfers_ConservesBalance() {
+        for (int i = 0; i < 10; i++) {
+            hotCardTransferExecutor.transfer(USER_ID, request(1L, HOT_CARD_ID, 1000));
+        }
+        hotCardTransferExecutor.transfer(USER_ID, request(HOT_CARD_ID, 3L, 40000));
+        hotCardTransferExecutor.transfer(USER_ID, request(HOT_CARD_ID, 3L, 90000));
+        batchTransferExecutor.execute(List.of(new TransferLeg(USER_ID, request(HOT_CARD_ID, 1L, 5000))), true);
+        long expected = 200000L + 10 * 1000 - 40000 - 90000 - 5000;
+        assertEquals(expected, cardBalance(HOT_CARD_ID) + bucketStore.sum(HOT_CARD_ID));
+        cardService.mergeCardBalance(HOT_CARD_ID);
+        assertEquals(expected, cardBalance(HOT_CARD_ID));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM card_balance_buckets WHERE card_id = ?", Integer.class, HOT_CARD_ID));
+        assertFalse(bucketStore.isHot(HOT_CARD_ID));
+        assertEquals(TOTAL, totalBalance());
+    }
+
+    private static TransactionRequest request(Long fromCardId, Long toCardId, long amount) {
+        TransactionRequest request = new TransactionRequest();
+        request.setFromCardId(fromCardId);
+        request.setToCardId(toCardId);
+        request.setAmount(Money.ofMinor(amount));
+        return request;
+    }
+
+    private long cardBalance(Long cardId) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM cards WHERE id = ?", Long.class, cardId);
+    }
+
+    private List<Long> bucketBalances() {
+        return jdbcTemplate.queryForList(
+                "SELECT balance FROM card_balance_buckets WHERE card_id = ? ORDER BY balance", Long.class, HOT_CARD_ID);
+    }
+
+    private long totalBalance() {
+        return jdbcTemplate.queryForObject(
+                "SELECT (SELECT SUM(balance) FROM cards) + (SELECT COALESCE(SUM(balance), 0) FROM card_balance_buckets)",
+                Long.class);
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.exception.IdempotencyKeyConflictException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.TransferOutcomeUnknownException;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.example.bankcards.util.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+class IdempotencyServiceTest {
+    @Autowired
+    private IdempotencyService idempotencyService;
+    @MockBean
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+    private TransactionRequest request;
+    private TransactionResponse response;
+
+    @BeforeEach
+    void setUp() {
+        request = new TransactionRequest();
+        request.setFromCardId(1L);
+        request.setToCardId(2L);
+        request.setAmount(Money.parse("100.00"));
+        response = new TransactionResponse();
+        response.setId(42L);
+        response.setStatus("SUCCESS");
+        when(idempotencyKeyRepository.reserve(anyLong(), anyString(), anyString(), any(), any(), any(), any())).thenReturn(1);
+        when(idempotencyKeyRepository.complete(anyLong(), anyString(), any(), anyString())).thenReturn(1);
+    }
+
+    @Test
+    void execute_RepeatedKey_ServedWithoutSecondTransfer() {
+        AtomicInteger calls = new AtomicInteger();
+        TransactionResponse first = idempotencyService.execute(1L, "key-repeat", request, () -> {
+            calls.incrementAndGet();
+            return response;
+        });
+        TransactionResponse second = idempotencyService.execute(1L, "key-repeat", request, () -> {
+            calls.incrementAndGet();
+            return response;
+        });
+        assertEquals(1, calls.get());
+        assertEquals(first.getId(), second.getId());
+        verify(idempotencyKeyRepository, times(1)).reserve(eq(1L), eq("key-repeat"), anyString(), any(), any(), any(), any());
+        verify(idempotencyKeyRepository, times(1)).complete(eq(1L), eq("key-repeat"), any(), anyString());
+    }
+
+    @Test
+    void execute_SameKeyDifferentRequest_ThrowsException() {
+        idempotencyService.execute(1L, "key-mismatch", request, () -> response);
+        TransactionRequest other = new TransactionRequest();
+        other.setFromCardId(1L);
+        other.setToCardId(2L);
+        other.setAmount(Money.parse("200.00"));
+        assertThrows(IdempotencyKeyConflictException.class,
+                () -> idempotencyService.execute(1L, "key-mismatch", other, () -> response));
+    }
+
+    @Test
+    void execute_FailedTransfer_ReleasesKey() {
+        assertThrows(InsufficientFundsException.class, () -> idempotencyService.execute(1L, "key-failed", request, () -> {
+            throw new InsufficientFundsException("Недостаточно средств на карте-отправителе");
+        }));
+        verify(idempotencyKeyRepository, times(1)).release(eq(1L), eq("key-failed"), any());
+        verify(idempotencyKeyRepository, never()).complete(anyLong(), eq("key-failed"), any(), anyString());
+    }
+
+    @Test
+    void execute_ResponseStoredBeforeTransferCommits() {
+        AtomicBoolean completedBeforeCommit = new AtomicBoolean();
+        idempotencyService.execute(1L, "key-atomic", request, () -> {
+            // Перевод идёт в транзакции сервиса: ответ должен быть записан до её коммита
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    completedBeforeCommit.set(mockingDetails(idempotencyKeyRepository).getInvocations().stream()
+                            .anyMatch(invocation -> invocation.getMethod().getName().equals("complete")));
+                }
+            });
+            return response;
+        });
+        assertTrue(completedBeforeCommit.get());
+    }
+
+    @Test
+    void execute_OutcomeUnknown_KeepsKeyAndStoresLateResponse() {
+        CompletableFuture<TransactionResponse> outcome = new CompletableFuture<>();
+        assertThrows(TransferOutcomeUnknownException.class, () -> idempotencyService.execute(1L, "key-unknown", request, () -> {
+            throw new TransferOutcomeUnknownException("Перевод не завершён", null, outcome, new TimeoutException());
+        }));
+        verify(idempotencyKeyRepository, never()).release(anyLong(), eq("key-unknown"), any());
+        outcome.complete(response);
+        verify(idempotencyKeyRepository, timeout(1000)).complete(eq(1L), eq("key-unknown"), any(), anyString());
+        TransactionResponse replayed = idempotencyService.execute(1L, "key-unknown", request, () -> {
+            throw new AssertionError("Перевод не должен выполняться повторно");
+        });
+        assertEquals(42L, replayed.getId());
+    }
+
+    @Test
+    void execute_OutcomeUnknownThenFailed_ReleasesKey() {
+        CompletableFuture<TransactionResponse> outcome = new CompletableFuture<>();
+        assertThrows(TransferOutcomeUnknownException.class, () -> idempotencyService.execute(1L, "key-late-failure", request, () -> {
+            throw new TransferOutcomeUnknownException("Перевод не завершён", null, outcome, new TimeoutException());
+        }));
+        outcome.completeExceptionally(new InsufficientFundsException("Недостаточно средств на карте-отправителе"));
+        verify(idempotencyKeyRepository, timeout(1000)).release(eq(1L), eq("key-late-failure"), any());
+        verify(idempotencyKeyRepository, never()).complete(anyLong(), eq("key-late-failure"), any(), anyString());
+    }
+
+    @Test
+    void execute_ReservationHeldForProcessingLeaseOnly() {
+        LocalDateTime before = LocalDateTime.now();
+        idempotencyService.execute(1L, "key-lease", request, () -> response);
+        ArgumentCaptor<LocalDateTime> lockedUntil = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> expiresAt = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(idempotencyKeyRepository).reserve(eq(1L), eq("key-lease"), anyString(), any(), expiresAt.capture(),
+                any(), lockedUntil.capture());
+        // Аренда короче срока хранения ключа: упавший до сохранения ответа запрос не блокирует повтор на сутки
+        assertTrue(lockedUntil.getValue().isBefore(before.plusMinutes(5)), "аренда: " + lockedUntil.getValue());
+        assertTrue(expiresAt.getValue().isAfter(before.plusHours(1)), "срок хранения: " + expiresAt.getValue());
+    }
+
+    @Test
+    void execute_StaleReservation_TakenOverByRetry() {
+        IdempotencyKey stale = new IdempotencyKey(1L, "key-stale", hashOf(request), null,
+                LocalDateTime.now().minusMinutes(10), LocalDateTime.now().plusHours(23), UUID.randomUUID(),
+                LocalDateTime.now().minusMinutes(9));
+        when(idempotencyKeyRepository.reserve(eq(1L), eq("key-stale"), anyString(), any(), any(), any(), any()))
+                .thenReturn(0, 1);
+        when(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(1L, "key-stale")).thenReturn(Optional.of(stale));
+        AtomicInteger calls = new AtomicInteger();
+        TransactionResponse result = idempotencyService.execute(1L, "key-stale", request, () -> {
+            calls.incrementAndGet();
+            return response;
+        });
+        assertEquals(1, calls.get());
+        assertEquals(42L, result.getId());
+        verify(idempotencyKeyRepository, times(2)).reserve(eq(1L), eq("key-stale"), anyString(), any(), any(), any(), any());
+    }
+
+    @Test
+    void execute_ActiveReservation_Conflict() {
+        IdempotencyKey active = new IdempotencyKey(1L, "key-active", hashOf(request), null,
+                LocalDateTime.now(), LocalDateTime.now().plusHours(24), UUID.randomUUID(),
+                LocalDateTime.now().plusMinutes(1));
+        when(idempotencyKeyRepository.reserve(eq(1L), eq("key-active"), anyString(), any(), any(), any(), any()))
+                .thenReturn(0);
+        when(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(1L, "key-active")).thenReturn(Optional.of(active));
+        assertThrows(IdempotencyKeyConflictException.class, () -> idempotencyService.execute(1L, "key-active", request, () -> {
+            throw new AssertionError("Перевод не должен выполняться, пока резерв под арендой");
+        }));
+    }
+
+    @Test
+    void execute_ReservationLostBeforeCommit_TransferRolledBack() {
+        when(idempotencyKeyRepository.complete(eq(1L), eq("key-lost"), any(), anyString())).thenReturn(0);
+        AtomicBoolean rolledBack = new AtomicBoolean();
+        assertThrows(IdempotencyKeyConflictException.class, () -> idempotencyService.execute(1L, "key-lost", request, () -> {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    rolledBack.set(status == STATUS_ROLLED_BACK);
+                }
+            });
+            return response;
+        }));
+        // Резерв перехвачен повтором: перевод откатывается, а чужой резерв не удаляется
+        assertTrue(rolledBack.get());
+        ArgumentCaptor<UUID> reserved = ArgumentCaptor.forClass(UUID.class);
+        verify(idempotencyKeyRepository).reserve(eq(1L), eq("key-lost"), anyString(), any(), any(), reserved.capture(), any());
+        verify(idempotencyKeyRepository).release(1L, "key-lost", reserved.getValue());
+    }
+
+    @Test
+    void execute_OutcomeUnknown_LeaseExtendedToExpiry() {
+        CompletableFuture<TransactionResponse> outcome = new CompletableFuture<>();
+        LocalDateTime before = LocalDateTime.now();
+        assertThrows(TransferOutcomeUnknownException.class, () -> idempotencyService.execute(1L, "key-queued", request, () -> {
+            throw new TransferOutcomeUnknownException("Перевод не завершён", null, outcome, new TimeoutException());
+        }));
+        ArgumentCaptor<LocalDateTime> lockedUntil = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(idempotencyKeyRepository).extendLease(eq(1L), eq("key-queued"), any(), lockedUntil.capture());
+        // Перевод ещё в очереди: повтор не должен перехватить резерв по истечении аренды
+        assertTrue(lockedUntil.getValue().isAfter(before.plusHours(1)), "аренда: " + lockedUntil.getValue());
+    }
+
+    @Test
+    void executeCommitted_ResponseStoredByActionWithoutOuterTransaction() {
+        AtomicBoolean outerTransaction = new AtomicBoolean(true);
+        TransactionResponse result = idempotencyService.executeCommitted(1L, "key-committed", request, onCommit -> {
+            // Перевод коммитит стратегия: пока запрос ждёт, своей транзакции и соединения у него нет
+            outerTransaction.set(TransactionSynchronizationManager.isActualTransactionActive());
+            verify(idempotencyKeyRepository, never()).complete(anyLong(), eq("key-committed"), any(), anyString());
+            onCommit.accept(response);
+            return response;
+        });
+        assertFalse(outerTransaction.get());
+        assertEquals(42L, result.getId());
+        verify(idempotencyKeyRepository).complete(eq(1L), eq("key-committed"), any(), anyString());
+    }
+
+    private String hashOf(TransactionRequest transfer) {
+        // Хэш запроса берём из резерва, сделанного сервисом для того же запроса
+        String probeKey = "key-probe-" + UUID.randomUUID();
+        idempotencyService.execute(1L, probeKey, transfer, () -> response);
+        ArgumentCaptor<String> hash = ArgumentCaptor.forClass(String.class);
+        verify(idempotencyKeyRepository).reserve(eq(1L), eq(probeKey), hash.capture(), any(), any(), any(), any());
+        return hash.getValue();
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.card.CardResponse;
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.service.impl.ledger.LedgerCheckpointer;
+import com.example.bankcards.service.transfer.TransferLeg;
+import com.example.bankcards.util.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {"spring.jpa.properties.hibernate.default_schema=test",
+        "transfer.strategy=ledger", "ledger.checkpoint-interval-ms=3600000"})
+@Sql(scripts = "classpath:db/migration/sql/001-initial-schema-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/002-initial-data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/clear-schema-test.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class LedgerServiceTest {
+    private static final String LATEST_CHECKPOINT_SQL =
+            "SELECT balance FROM balance_checkpoints WHERE card_id = ? ORDER BY horizon DESC LIMIT 1";
+    private static final String CHECKPOINT_PLUS_ENTRIES_SQL =
+            "SELECT cp.balance + COALESCE((SELECT SUM(e.amount) FROM ledger_entries e " +
+                    "WHERE e.card_id = cp.card_id AND e.txid >= cp.horizon), 0) " +
+                    "FROM balance_checkpoints cp WHERE cp.card_id = ? ORDER BY cp.horizon DESC LIMIT 1";
+    @Autowired
+    private LedgerService ledgerService;
+    @Autowired
+    private LedgerCheckpointer checkpointer;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private CardService cardService;
+
+    @Test
+    void reconcile_CardsWithoutHistory_SeededFromCardBalances() {
+        assertEquals(0, count("SELECT COUNT(*) FROM balance_checkpoints"));
+        checkpointer.reconcile();
+        // Балансы карт из тестовых данных записаны корректирующими проводками и свёрнуты в точки
+        assertEquals(5, count("SELECT COUNT(*) FROM ledger_entries WHERE transaction_id IS NULL"));
+        assertEquals(100000L, jdbcTemplate.queryForObject(LATEST_CHECKPOINT_SQL, Long.class, 1L));
+        assertEquals(100000L, ledgerService.getBalance(1L));
+        assertEquals(200000L, ledgerService.getBalance(2L));
+        // Повторный запуск не находит расхождений
+        checkpointer.reconcile();
+        assertEquals(5, count("SELECT COUNT(*) FROM ledger_entries WHERE transaction_id IS NULL"));
+    }
+
+    @Test
+    void reconcile_BalanceChangedOutsideLedger_AddsAdjustment() {
+        checkpointer.reconcile();
+        jdbcTemplate.update("UPDATE cards SET balance = balance + 500 WHERE id = 3");
+        checkpointer.reconcile();
+        assertEquals(List.of(150000L, 500L), jdbcTemplate.queryForList(
+                "SELECT amount FROM ledger_entries WHERE card_id = 3 ORDER BY id", Long.class));
+        assertEquals(150500L, ledgerService.getBalance(3L));
+    }
+
+    @Test
+    void getBalance_AcrossCheckpoint_IsCheckpointPlusEntries() {
+        checkpointer.reconcile();
+        transfer(1L, 2L, 300);
+        // До следующей точки перевод виден только в журнале, cards.balance ещё прежний
+        assertEquals(99700L, ledgerService.getBalance(1L));
+        assertEquals(100000L, cardBalance(1L));
+        assertEquals(100000L, jdbcTemplate.queryForObject(LATEST_CHECKPOINT_SQL, Long.class, 1L));
+        checkpointer.checkpoint();
+        assertEquals(99700L, jdbcTemplate.queryForObject(LATEST_CHECKPOINT_SQL, Long.class, 1L));
+        assertEquals(99700L, cardBalance(1L));
+        assertEquals(200300L, cardBalance(2L));
+        transfer(1L, 2L, 200);
+        assertEquals(99500L, ledgerService.getBalance(1L));
+        assertEquals(99500L, jdbcTemplate.queryForObject(CHECKPOINT_PLUS_ENTRIES_SQL, Long.class, 1L));
+        assertEquals(200500L, ledgerService.getBalance(2L));
+    }
+
+    @Test
+    void getBalances_SeveralCards_MatchPerCardBalances() {
+        checkpointer.reconcile();
+        transfer(1L, 2L, 300);
+        // Карта 99 без проводок получает нулевой баланс, а не пропадает из результата
+        assertEquals(Map.of(1L, 99700L, 2L, 200300L, 3L, 150000L, 99L, 0L),
+                ledgerService.getBalances(List.of(1L, 2L, 3L, 99L)));
+    }
+
+    @Test
+    void getUserCards_BeforeCheckpoint_BalancesFromLedger() {
+        checkpointer.reconcile();
+        transfer(1L, 2L, 300);
+        assertEquals(100000L, cardBalance(1L));
+        Map<Long, Money> balances = cardService.getUserCards(1L, PageRequest.of(0, 10)).stream()
+                .collect(Collectors.toMap(CardResponse::getId, CardResponse::getBalance));
+        // Список показывает те же балансы, что и карточка карты, хотя cards.balance ещё не обновлён
+        assertEquals(Money.ofMinor(99700L), balances.get(1L));
+        assertEquals(Money.ofMinor(200300L), balances.get(2L));
+        assertEquals(Money.ofMinor(150000L), balances.get(3L));
+        Map<Long, Money> all = cardService.getAllCards().stream()
+                .collect(Collectors.toMap(CardResponse::getId, CardResponse::getBalance));
+        assertEquals(Money.ofMinor(99700L), all.get(1L));
+        assertEquals(Money.ofMinor(500000L), all.get(4L));
+    }
+
+    @Test
+    void getBalanceAsOf_BetweenCheckpoints_CountsOnlyEarlierEntries() throws InterruptedException {
+        checkpointer.reconcile();
+        LocalDateTime beforeTransfers = now();
+        Thread.sleep(20);
+        transfer(1L, 2L, 300);
+        Thread.sleep(20);
+        LocalDateTime afterFirst = now();
+        Thread.sleep(20);
+        transfer(1L, 2L, 200);
+        checkpointer.checkpoint();
+        transfer(1L, 3L, 100);
+        assertEquals(100000L, ledgerService.getBalanceAsOf(1L, beforeTransfers));
+        assertEquals(99700L, ledgerService.getBalanceAsOf(1L, afterFirst));
+        assertEquals(200300L, ledgerService.getBalanceAsOf(2L, afterFirst));
+        // После последней точки: точка плюс проводки, записанные после неё
+        assertEquals(99400L, ledgerService.getBalanceAsOf(1L, now()));
+        assertEquals(ledgerService.getBalance(1L), ledgerService.getBalanceAsOf(1L, now()));
+    }
+
+    @Test
+    void transfer_ConcurrentDebits_AdvisoryLockPreventsOverdraft() throws Exception {
+        checkpointer.reconcile();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 20; i++) {
+                Callable<Boolean> debit = () -> {
+                    try {
+                        transfer(2L, 1L, 15000);
+                        return true;
+                    } catch (InsufficientFundsException e) {
+                        return false;
+                    }
+                };
+                results.add(executor.submit(debit));
+            }
+            int succeeded = 0;
+            for (Future<Boolean> result : results) {
+                succeeded += result.get() ? 1 : 0;
+            }
+            // 200000 покрывают ровно 13 списаний по 15000
+            assertEquals(13, succeeded);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(5000L, ledgerService.getBalance(2L));
+        assertEquals(100000L + 13 * 15000L, ledgerService.getBalance(1L));
+        assertEquals(13, count("SELECT COUNT(*) FROM transactions WHERE from_card_id = 2"));
+        checkpointer.checkpoint();
+        assertEquals(5000L, cardBalance(2L));
+    }
+
+    private void transfer(Long fromCardId, Long toCardId, long amount) {
+        TransactionRequest request = new TransactionRequest();
+        request.setFromCardId(fromCardId);
+        request.setToCardId(toCardId);
+        request.setAmount(Money.ofMinor(amount));
+        ledgerService.transfer(List.of(new TransferLeg(1L, request)), true);
+    }
+
+    private LocalDateTime now() {
+        return jdbcTemplate.queryForObject("SELECT LOCALTIMESTAMP", LocalDateTime.class);
+    }
+
+    private long cardBalance(Long cardId) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM cards WHERE id = ?", Long.class, cardId);
+    }
+
+    private int count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Integer.class);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.Money;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = {
+        "transfer.strategy=optimistic",
+        "transfer.optimistic.max-attempts=3",
+        "transfer.optimistic.initial-backoff-ms=0"
+})
+class OptimisticTransferStrategyTest {
+    @Autowired
+    private TransactionService transactionService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @MockBean
+    private CardRepository cardRepository;
+    @MockBean
+    private TransactionRepository transactionRepository;
+    @MockBean
+    private UserRepository userRepository;
+    private TransactionRequest request;
+    private Card fromCard;
+    private Card toCard;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("user");
+        request = new TransactionRequest();
+        request.setFromCardId(1L);
+        request.setToCardId(2L);
+        request.setAmount(Money.parse("100.00"));
+        fromCard = new Card();
+        fromCard.setId(1L);
+        fromCard.setBalance(100000L);
+        fromCard.setStatus(Card.Status.ACTIVE);
+        fromCard.setUser(user);
+        toCard = new Card();
+        toCard.setId(2L);
+        toCard.setBalance(50000L);
+        toCard.setStatus(Card.Status.ACTIVE);
+        toCard.setUser(user);
+        Transaction transaction = new Transaction();
+        transaction.setId(10L);
+        transaction.setFromCard(fromCard);
+        transaction.setToCard(toCard);
+        transaction.setAmount(10000L);
+        transaction.setStatus(Transaction.Status.SUCCESS);
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(user));
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(transactionRepository.save(any(Transaction.class))).thenReturn(transaction);
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    void transfer_RetriesAfterVersionConflict() {
+        double retriesBefore = meterRegistry.counter("bank.transfer.retries", "strategy", "optimistic").count();
+        when(cardRepository.save(any(Card.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Card.class, 1L))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        TransactionResponse response = transactionService.transfer(request);
+        assertEquals(10L, response.getId());
+        verify(cardRepository, times(2)).findById(1L);
+        assertEquals(retriesBefore + 1, meterRegistry.counter("bank.transfer.retries", "strategy", "optimistic").count());
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    void transfer_ConflictAfterMaxAttempts_ThrowsException() {
+        when(cardRepository.save(any(Card.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Card.class, 1L));
+        assertThrows(TransferConflictException.class, () -> transactionService.transfer(request));
+        verify(cardRepository, times(3)).findById(1L);
+        verify(transactionRepository, never()).save(any(Transaction.class));
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.event.OutboxEvent;
+import com.example.bankcards.dto.event.OutboxEventType;
+import com.example.bankcards.service.impl.outbox.OutboxRelay;
+import com.example.bankcards.service.outbox.OutboxListener;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {"spring.jpa.properties.hibernate.default_schema=test",
+        "transfer.async.enabled=false", "outbox.poll-interval-ms=3600000", "outbox.batch-size=2",
+        "outbox.max-attempts=3", "outbox.retry-backoff-ms=60000"})
+@Sql(scripts = "classpath:db/migration/sql/001-initial-schema-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/002-initial-data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/clear-schema-test.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class OutboxRelayTest {
+    private static final String INSERT_EVENT_SQL =
+            "INSERT INTO outbox (aggregate_type, aggregate_id, event_type, payload) VALUES ('CARD', ?, 'CARD_UPDATED', '{}') RETURNING id";
+    @Autowired
+    private OutboxRelay outboxRelay;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @MockBean
+    private OutboxListener listener;
+
+    @BeforeEach
+    void setUp() {
+        when(listener.supports(any())).thenReturn(true);
+    }
+
+    @Test
+    void relay_DeliversAllEventsInBatchesAndDeletesThem() {
+        for (long cardId = 1; cardId <= 5; cardId++) {
+            insertEvent(cardId);
+        }
+        outboxRelay.relay();
+        ArgumentCaptor<OutboxEvent> events = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(listener, times(5)).onEvent(events.capture());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), events.getAllValues().stream().map(OutboxEvent::getAggregateId).toList());
+        assertEquals(0, outboxSize());
+    }
+
+    @Test
+    void relay_RowLockedByAnotherInstance_SkippedNotAwaited() throws Exception {
+        long lockedId = insertEvent(1L);
+        insertEvent(2L);
+        insertEvent(3L);
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                // Другой экземпляр уже забрал это событие и ещё не завершил транзакцию
+                statement.execute("SELECT id FROM outbox WHERE id = " + lockedId + " FOR UPDATE");
+                outboxRelay.relay();
+            } finally {
+                connection.rollback();
+            }
+        }
+        ArgumentCaptor<OutboxEvent> events = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(listener, times(2)).onEvent(events.capture());
+        assertEquals(List.of(2L, 3L), events.getAllValues().stream().map(OutboxEvent::getAggregateId).toList());
+        assertEquals(List.of(lockedId), jdbcTemplate.queryForList("SELECT id FROM outbox", Long.class));
+    }
+
+    @Test
+    void relay_ListenerFails_RetriedAfterBackoff() {
+        long id = insertEvent(1L);
+        doThrow(new IllegalStateException("подписчик недоступен")).doNothing().when(listener).onEvent(any());
+        outboxRelay.relay();
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT attempts FROM outbox WHERE id = ?", Integer.class, id));
+        assertEquals(Boolean.TRUE, jdbcTemplate.queryForObject(
+                "SELECT available_at > LOCALTIMESTAMP + INTERVAL '50 seconds' FROM outbox WHERE id = ?", Boolean.class, id));
+        // До истечения паузы событие не выбирается
+        outboxRelay.relay();
+        verify(listener, times(1)).onEvent(any());
+        jdbcTemplate.update("UPDATE outbox SET available_at = LOCALTIMESTAMP WHERE id = ?", id);
+        outboxRelay.relay();
+        ArgumentCaptor<OutboxEvent> events = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(listener, times(2)).onEvent(events.capture());
+        assertEquals(1, events.getValue().getAttempts());
+        assertEquals(0, outboxSize());
+    }
+
+    @Test
+    void relay_MaxAttemptsReached_EventDropped() {
+        long id = insertEvent(1L);
+        jdbcTemplate.update("UPDATE outbox SET attempts = 2 WHERE id = ?", id);
+        doThrow(new IllegalStateException("подписчик недоступен")).when(listener).onEvent(any());
+        outboxRelay.relay();
+        verify(listener, times(1)).onEvent(any());
+        assertEquals(0, outboxSize());
+    }
+
+    @Test
+    void trigger_TransferRowsWriteEvents() throws Exception {
+        jdbcTemplate.update("INSERT INTO transactions (from_card_id, to_card_id, amount, status) VALUES (1, 2, 300, 'SUCCESS')");
+        Long pendingId = jdbcTemplate.queryForObject(
+                "INSERT INTO transactions (from_card_id, to_card_id, amount, status) VALUES (1, 3, 50, 'PENDING') RETURNING id",
+                Long.class);
+        // Постановка в очередь события не даёт, завершение — даёт
+        assertEquals(1, outboxSize());
+        jdbcTemplate.update("UPDATE transactions SET status = 'FAILED', failure_reason = 'Недостаточно средств' WHERE id = ?",
+                pendingId);
+        assertEquals(2, outboxSize());
+        outboxRelay.relay();
+        ArgumentCaptor<OutboxEvent> events = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(listener, times(2)).onEvent(events.capture());
+        OutboxEvent completed = events.getAllValues().get(0);
+        assertEquals(OutboxEventType.TRANSFER_COMPLETED, completed.getEventType());
+        assertEquals(OutboxEventType.TRANSFER, completed.getAggregateType());
+        JsonNode payload = objectMapper.readTree(completed.getPayload());
+        assertEquals(3.00, payload.get("amount").asDouble());
+        assertEquals(1L, payload.get("fromCardId").asLong());
+        OutboxEvent failed = events.getAllValues().get(1);
+        assertEquals(OutboxEventType.TRANSFER_FAILED, failed.getEventType());
+        assertEquals(pendingId, failed.getAggregateId());
+        assertEquals("Недостаточно средств", objectMapper.readTree(failed.getPayload()).get("message").asText());
+    }
+
+    private long insertEvent(Long cardId) {
+        return jdbcTemplate.queryForObject(INSERT_EVENT_SQL, Long.class, cardId);
+    }
+
+    private int outboxSize() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox", Integer.class);
+    }
+}
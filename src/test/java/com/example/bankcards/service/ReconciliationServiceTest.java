@@ -0,0 +1,138 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.reconciliation.ReconciliationDiscrepancy;
+import com.example.bankcards.dto.reconciliation.ReconciliationRunResponse;
+import com.example.bankcards.exception.ReconciliationConflictException;
+import com.example.bankcards.util.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {"spring.jpa.properties.hibernate.default_schema=test",
+        "transfer.async.enabled=false", "reconciliation.range-size=2", "reconciliation.duty-cycle=1.0",
+        "reconciliation.stale-after-ms=3600000"})
+@Sql(scripts = "classpath:db/migration/sql/001-initial-schema-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/002-initial-data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/clear-schema-test.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class ReconciliationServiceTest {
+    private static final String INSERT_TRANSFER_SQL =
+            "INSERT INTO transactions (from_card_id, to_card_id, amount, status) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_RUNNING_RUN_SQL =
+            "INSERT INTO reconciliation_runs (status, started_at) " +
+                    "VALUES ('RUNNING', LOCALTIMESTAMP - make_interval(mins => ?)) RETURNING id";
+    @Autowired
+    private ReconciliationService reconciliationService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void startRun_ConsistentBalances_AllRangesCheckedWithoutDiscrepancies() throws InterruptedException {
+        // Перевод между картами из разных диапазонов: списание и зачисление сверяются в своих диапазонах
+        transfer(2, 4, 25000, "SUCCESS");
+        jdbcTemplate.update(INSERT_TRANSFER_SQL, 1, 5, 99999, "FAILED");
+        ReconciliationRunResponse run = awaitFinished(reconciliationService.startRun().getId());
+        assertEquals(ReconciliationRunResponse.Status.COMPLETED, run.getStatus());
+        // [1, 6) при range-size 2 делится на [1, 3), [3, 4) и [4, 6)
+        assertEquals(3, run.getRanges());
+        assertEquals(5, run.getCardsChecked());
+        assertEquals(0, run.getDiscrepancyCount());
+        assertNotNull(run.getFinishedAt());
+        assertEquals(0, countDiscrepancies(run.getId()));
+    }
+
+    @Test
+    void startRun_BalanceDrift_DiscrepancyWrittenToRunReport() throws InterruptedException {
+        transfer(1, 3, 10000, "SUCCESS");
+        jdbcTemplate.update("UPDATE cards SET balance = balance + 700 WHERE id = 3");
+        ReconciliationRunResponse run = awaitFinished(reconciliationService.startRun().getId());
+        assertEquals(ReconciliationRunResponse.Status.COMPLETED, run.getStatus());
+        assertEquals(1, run.getDiscrepancyCount());
+        assertEquals(List.of(new ReconciliationDiscrepancy(3L, Money.ofMinor(160000), Money.ofMinor(160700))),
+                run.getDiscrepancies());
+        assertEquals(List.of(3L), jdbcTemplate.queryForList(
+                "SELECT card_id FROM reconciliation_discrepancies WHERE run_id = ?", Long.class, run.getId()));
+    }
+
+    @Test
+    void startRun_BalanceSplitIntoBuckets_ActualIncludesBuckets() throws InterruptedException {
+        moveToBuckets(2, 30000, 20000);
+        ReconciliationRunResponse consistent = awaitFinished(reconciliationService.startRun().getId());
+        assertEquals(ReconciliationRunResponse.Status.COMPLETED, consistent.getStatus());
+        assertEquals(0, consistent.getDiscrepancyCount());
+        // Потерянная часть корзины — расхождение, и actual считается вместе с оставшимися корзинами
+        jdbcTemplate.update("DELETE FROM card_balance_buckets WHERE card_id = 2 AND bucket = 1");
+        ReconciliationRunResponse broken = awaitFinished(reconciliationService.startRun().getId());
+        assertEquals(1, broken.getDiscrepancyCount());
+        assertEquals(List.of(new ReconciliationDiscrepancy(2L, Money.ofMinor(200000), Money.ofMinor(180000))),
+                broken.getDiscrepancies());
+        assertEquals(0, countDiscrepancies(consistent.getId()));
+    }
+
+    @Test
+    void startRun_RunAlreadyRunning_Conflict() {
+        Long activeId = jdbcTemplate.queryForObject(INSERT_RUNNING_RUN_SQL, Long.class, 5);
+        assertThrows(ReconciliationConflictException.class, () -> reconciliationService.startRun());
+        assertEquals(ReconciliationRunResponse.Status.RUNNING, reconciliationService.getRun(activeId, 0).getStatus());
+        // Вторую выполняющуюся сверку отвергает частичный уникальный индекс, а не проверка в коде
+        assertThrows(DuplicateKeyException.class,
+                () -> jdbcTemplate.queryForObject(INSERT_RUNNING_RUN_SQL, Long.class, 0));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM reconciliation_runs WHERE status = 'RUNNING'", Integer.class));
+    }
+
+    @Test
+    void startRun_RunningRunOlderThanStaleAfter_MarkedFailedAndNewRunStarted() throws InterruptedException {
+        Long staleId = jdbcTemplate.queryForObject(INSERT_RUNNING_RUN_SQL, Long.class, 120);
+        ReconciliationRunResponse run = awaitFinished(reconciliationService.startRun().getId());
+        assertEquals(ReconciliationRunResponse.Status.COMPLETED, run.getStatus());
+        ReconciliationRunResponse stale = reconciliationService.getRun(staleId, 0);
+        assertEquals(ReconciliationRunResponse.Status.FAILED, stale.getStatus());
+        assertEquals("Сверка прервана", stale.getError());
+        assertNotNull(stale.getFinishedAt());
+    }
+
+    private void transfer(long fromCardId, long toCardId, long amount, String status) {
+        jdbcTemplate.update(INSERT_TRANSFER_SQL, fromCardId, toCardId, amount, status);
+        jdbcTemplate.update("UPDATE cards SET balance = balance - ? WHERE id = ?", amount, fromCardId);
+        jdbcTemplate.update("UPDATE cards SET balance = balance + ? WHERE id = ?", amount, toCardId);
+    }
+
+    private void moveToBuckets(long cardId, long... amounts) {
+        long total = 0;
+        for (int bucket = 0; bucket < amounts.length; bucket++) {
+            jdbcTemplate.update("INSERT INTO card_balance_buckets (card_id, bucket, balance) VALUES (?, ?, ?)",
+                    cardId, bucket, amounts[bucket]);
+            total += amounts[bucket];
+        }
+        jdbcTemplate.update("UPDATE cards SET balance = balance - ?, balance_buckets = ? WHERE id = ?",
+                total, amounts.length, cardId);
+    }
+
+    private int countDiscrepancies(Long runId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM reconciliation_discrepancies WHERE run_id = ?", Integer.class, runId);
+    }
+
+    private ReconciliationRunResponse awaitFinished(Long runId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        ReconciliationRunResponse run = reconciliationService.getRun(runId, 10);
+        while (run.getStatus() == ReconciliationRunResponse.Status.RUNNING && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+            run = reconciliationService.getRun(runId, 10);
+        }
+        assertNotEquals(ReconciliationRunResponse.Status.RUNNING, run.getStatus(), "Сверка не завершилась");
+        return run;
+    }
+}
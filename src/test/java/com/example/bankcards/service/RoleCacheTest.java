@@ -0,0 +1,57 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.repository.RoleRepository;
+import com.example.bankcards.service.impl.auth.RoleCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RoleCacheTest {
+    private final RoleRepository roleRepository = mock(RoleRepository.class);
+    private final RoleCache roleCache = new RoleCache(roleRepository);
+
+    @Test
+    void preload_AllRoles_ServedWithoutQueries() {
+        Role user = role(Role.RoleType.USER);
+        Role admin = role(Role.RoleType.ADMIN);
+        when(roleRepository.findAll()).thenReturn(List.of(user, admin));
+        roleCache.preload();
+        assertSame(user, roleCache.get(Role.RoleType.USER));
+        assertSame(admin, roleCache.get(Role.RoleType.ADMIN));
+        verify(roleRepository, times(1)).findAll();
+        verify(roleRepository, never()).findByName(any());
+    }
+
+    @Test
+    void get_RoleMissingAtStartup_LoadedOnceByName() {
+        Role admin = role(Role.RoleType.ADMIN);
+        when(roleRepository.findAll()).thenReturn(List.of(role(Role.RoleType.USER)));
+        when(roleRepository.findByName(Role.RoleType.ADMIN)).thenReturn(Optional.of(admin));
+        roleCache.preload();
+        assertSame(admin, roleCache.get(Role.RoleType.ADMIN));
+        assertSame(admin, roleCache.get(Role.RoleType.ADMIN));
+        assertEquals(Role.RoleType.USER, roleCache.get(Role.RoleType.USER).getName());
+        verify(roleRepository, times(1)).findByName(Role.RoleType.ADMIN);
+    }
+
+    @Test
+    void get_RoleNotInDatabase_Throws() {
+        when(roleRepository.findAll()).thenReturn(List.of());
+        when(roleRepository.findByName(Role.RoleType.ADMIN)).thenReturn(Optional.empty());
+        roleCache.preload();
+        assertThrows(IllegalStateException.class, () -> roleCache.get(Role.RoleType.ADMIN));
+    }
+
+    private static Role role(Role.RoleType type) {
+        Role role = new Role();
+        role.setId(type.ordinal() + 1);
+        role.setName(type);
+        return role;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.security.VerifiedToken;
+import com.example.bankcards.service.impl.auth.TokenRevocationServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {"spring.jpa.properties.hibernate.default_schema=test",
+        "transfer.async.enabled=false", "jwt.revocation.refresh-interval-ms=3600000",
+        "jwt.revocation.purge-interval-ms=3600000", "jwt.revocation.refresh-overlap-ms=60000"})
+@Sql(scripts = "classpath:db/migration/sql/001-initial-schema-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/002-initial-data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "classpath:db/migration/sql/clear-schema-test.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class TokenRevocationServiceTest {
+    private static final String INSERT_SQL =
+            "INSERT INTO revoked_tokens (jti, user_id, expires_at, revoked_at) " +
+                    "VALUES (?, 1, LOCALTIMESTAMP + INTERVAL '1 hour', LOCALTIMESTAMP - make_interval(secs => ?))";
+    @Autowired
+    private TokenRevocationServiceImpl revocationService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void rebuild_ExistingRevocations_LoadedIntoFilter() {
+        UUID revoked = insertRevoked(3600);
+        revocationService.init();
+        double negativesBefore = negatives();
+        assertTrue(revocationService.isRevoked(token(revoked, Duration.ofHours(1))));
+        assertFalse(revocationService.isRevoked(token(UUID.randomUUID(), Duration.ofHours(1))));
+        assertEquals(negativesBefore + 1, negatives());
+    }
+
+    @Test
+    void refresh_RevocationCommittedLateWithEarlierTimestamp_PickedUpWithinOverlap() {
+        revocationService.init();
+        // Отзыв на другом экземпляре: revoked_at взят в начале его транзакции, коммит пришёл позже построения фильтра
+        UUID late = insertRevoked(30);
+        assertFalse(revocationService.isRevoked(token(late, Duration.ofHours(1))));
+        revocationService.refresh();
+        assertTrue(revocationService.isRevoked(token(late, Duration.ofHours(1))));
+    }
+
+    @Test
+    void refresh_RevocationOlderThanOverlap_NotReread() {
+        revocationService.init();
+        UUID stale = insertRevoked(600);
+        revocationService.refresh();
+        // Отметка взята по часам БД, поэтому окно не зависит от расхождения часов JVM
+        assertFalse(revocationService.isRevoked(token(stale, Duration.ofHours(1))));
+        // Полное перестроение читает таблицу целиком
+        revocationService.init();
+        assertTrue(revocationService.isRevoked(token(stale, Duration.ofHours(1))));
+    }
+
+    @Test
+    void revoke_ExpiresAtStoredInDatabaseClock() {
+        UUID jti = UUID.randomUUID();
+        revocationService.revoke(token(jti, Duration.ofHours(1)));
+        LocalDateTime expiresAt = jdbcTemplate.queryForObject(
+                "SELECT expires_at FROM revoked_tokens WHERE jti = ?", LocalDateTime.class, jti);
+        LocalDateTime databaseNow = jdbcTemplate.queryForObject("SELECT LOCALTIMESTAMP", LocalDateTime.class);
+        long minutes = Duration.between(databaseNow, expiresAt).toMinutes();
+        assertTrue(minutes >= 58 && minutes <= 60, "expires_at расходится с часами БД: " + expiresAt);
+    }
+
+    @Test
+    void purgeExpired_OnlyExpiredRemovedAndFilterRebuilt() {
+        UUID expired = UUID.randomUUID();
+        UUID active = UUID.randomUUID();
+        revocationService.revoke(token(expired, Duration.ofSeconds(-5)));
+        revocationService.revoke(token(active, Duration.ofHours(1)));
+        assertEquals(1, revocationService.purgeExpired());
+        assertEquals(List.of(active), jdbcTemplate.queryForList("SELECT jti FROM revoked_tokens", UUID.class));
+        assertTrue(revocationService.isRevoked(token(active, Duration.ofHours(1))));
+    }
+
+    private UUID insertRevoked(int secondsAgo) {
+        UUID jti = UUID.randomUUID();
+        jdbcTemplate.update(INSERT_SQL, jti, secondsAgo);
+        return jti;
+    }
+
+    private double negatives() {
+        return meterRegistry.get("bank.jwt.revocation.checks").tag("result", "negative").counter().count();
+    }
+
+    private static VerifiedToken token(UUID jti, Duration ttl) {
+        Instant now = Instant.now();
+        return new VerifiedToken(jti.toString(), 1L, "user", List.of("ROLE_USER"), now, now.plus(ttl));
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.transaction.TransactionHistoryResponse;
 import com.example.bankcards.dto.transaction.TransactionRequest;
 import com.example.bankcards.dto.transaction.TransactionResponse;
 import com.example.bankcards.entity.Card;
@@ -11,13 +12,17 @@ import com.example.bankcards.exception.SameCardTransferException;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.TransactionRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.Money;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.test.context.support.WithMockUser;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -51,21 +56,21 @@ class TransactionServiceTest {
         request = new TransactionRequest();
         request.setFromCardId(1L);
         request.setToCardId(4L);
-        request.setAmount(100.0);
+        request.setAmount(Money.parse("100.00"));
         fromCard = new Card();
         fromCard.setId(1L);
-        fromCard.setBalance(1000.0);
+        fromCard.setBalance(100000L);
         fromCard.setUser(fromUser);
         toCard = new Card();
         toCard.setId(4L);
-        toCard.setBalance(5000.0);
+        toCard.setBalance(500000L);
         toCard.setUser(toUser);
         mockTransaction = new Transaction();
         mockTransaction.setId(1L);
-        mockTransaction.setAmount(100.0);
+        mockTransaction.setAmount(10000L);
         mockTransaction.setStatus(Transaction.Status.SUCCESS);
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(4L)).thenReturn(Optional.of(toCard));
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdForUpdate(4L)).thenReturn(Optional.of(toCard));
         when(userRepository.findByUsername("user")).thenReturn(Optional.of(fromUser));
         when(transactionRepository.save(any(Transaction.class))).thenReturn(mockTransaction);
     }
@@ -79,10 +84,10 @@ class TransactionServiceTest {
         mockTransaction.setToCard(toCard);
         TransactionResponse response = transactionService.transfer(request);
         assertNotNull(response.getId());
-        assertEquals(100.0, response.getAmount());
+        assertEquals(Money.parse("100.00"), response.getAmount());
         assertEquals(Transaction.Status.SUCCESS.name(), response.getStatus());
-        verify(cardRepository, times(1)).findById(1L);
-        verify(cardRepository, times(1)).findById(4L);
+        verify(cardRepository, times(1)).findByIdForUpdate(1L);
+        verify(cardRepository, times(1)).findByIdForUpdate(4L);
         verify(userRepository, times(1)).findByUsername("user");
         verify(transactionRepository, times(1)).save(any(Transaction.class));
     }
@@ -91,9 +96,9 @@ class TransactionServiceTest {
     @WithMockUser(username = "user")
     void transfer_FromCardNotFound_ThrowsException() {
         request.setFromCardId(999L);
-        when(cardRepository.findById(999L)).thenReturn(Optional.empty());
+        when(cardRepository.findByIdForUpdate(999L)).thenReturn(Optional.empty());
         assertThrows(CardNotFoundException.class, () -> transactionService.transfer(request));
-        verify(cardRepository, times(1)).findById(999L);
+        verify(cardRepository, times(1)).findByIdForUpdate(999L);
         verify(userRepository, times(1)).findByUsername("user");
     }
 
@@ -101,22 +106,57 @@ class TransactionServiceTest {
     @WithMockUser(username = "user")
     void transfer_SameCard_ThrowsException() {
         request.setToCardId(1L);
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(fromCard));
         assertThrows(SameCardTransferException.class, () -> transactionService.transfer(request));
-        verify(cardRepository, times(2)).findById(1L);
+        verify(cardRepository, times(1)).findByIdForUpdate(1L);
         verify(userRepository, times(1)).findByUsername("user");
     }
 
     @Test
     @WithMockUser(username = "user")
     void transfer_InsufficientFunds_ThrowsException() {
-        request.setAmount(10000.0);
+        request.setAmount(Money.parse("10000.00"));
         fromCard.setStatus(Card.Status.ACTIVE);
         toCard.setStatus(Card.Status.ACTIVE);
         when(userRepository.findByUsername("user")).thenReturn(Optional.of(fromUser));
         assertThrows(InsufficientFundsException.class, () -> transactionService.transfer(request));
-        verify(cardRepository, times(1)).findById(1L);
-        verify(cardRepository, times(1)).findById(4L);
+        verify(cardRepository, times(1)).findByIdForUpdate(1L);
+        verify(cardRepository, times(1)).findByIdForUpdate(4L);
         verify(userRepository, times(1)).findByUsername("user");
     }
-}
\ No newline at end of file
+
+    @Test
+    @WithMockUser(username = "user")
+    void getCardHistory_ReturnsCursorForNextPage() {
+        when(cardRepository.findOwnerIdById(1L)).thenReturn(Optional.of(1L));
+        LocalDateTime now = LocalDateTime.of(2025, 1, 10, 12, 0);
+        List<TransactionResponse> rows = List.of(historyRow(3L, now), historyRow(2L, now), historyRow(1L, now.minusMinutes(1)));
+        when(transactionRepository.findCardHistory(1L, null, null, 3)).thenReturn(rows);
+        TransactionHistoryResponse firstPage = transactionService.getCardHistory(1L, null, 2);
+        assertEquals(2, firstPage.getItems().size());
+        assertNotNull(firstPage.getNextCursor());
+        when(transactionRepository.findCardHistory(1L, now, 2L, 3)).thenReturn(List.of(rows.get(2)));
+        TransactionHistoryResponse lastPage = transactionService.getCardHistory(1L, firstPage.getNextCursor(), 2);
+        assertEquals(1, lastPage.getItems().size());
+        assertNull(lastPage.getNextCursor());
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    void getCardHistory_ForeignCard_ThrowsAccessDenied() {
+        when(cardRepository.findOwnerIdById(4L)).thenReturn(Optional.of(2L));
+        assertThrows(AccessDeniedException.class, () -> transactionService.getCardHistory(4L, null, 50));
+        verify(transactionRepository, never()).findCardHistory(any(), any(), any(), anyInt());
+    }
+
+    private TransactionResponse historyRow(Long id, LocalDateTime timestamp) {
+        TransactionResponse row = new TransactionResponse();
+        row.setId(id);
+        row.setFromCardId(1L);
+        row.setToCardId(4L);
+        row.setAmount(Money.parse("10.00"));
+        row.setTimestamp(timestamp);
+        row.setStatus(Transaction.Status.SUCCESS.name());
+        return row;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.AuthenticatedUser;
+import com.example.bankcards.service.impl.auth.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserDetailsServiceTest {
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserDetailsServiceImpl userDetailsService =
+            new UserDetailsServiceImpl(userRepository, new SimpleMeterRegistry(), 100, 300);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void loadUserByUsername_SecondCall_FromCache() {
+        stubUser("password", Role.RoleType.USER);
+        UserDetails first = userDetailsService.loadUserByUsername("user");
+        UserDetails second = userDetailsService.loadUserByUsername("user");
+        assertSame(first, second);
+        assertEquals(1L, ((AuthenticatedUser) second).getId());
+        verify(userRepository, times(1)).findByUsername("user");
+    }
+
+    @Test
+    void evictUser_AfterRoleChange_ReloadsNewRoles() {
+        stubUser("password", Role.RoleType.USER);
+        assertEquals(List.of("ROLE_USER"), authorities(userDetailsService.loadUserByUsername("user")));
+        stubUser("password", Role.RoleType.ADMIN);
+        // Без сброса кэш продолжает отдавать прежние роли
+        assertEquals(List.of("ROLE_USER"), authorities(userDetailsService.loadUserByUsername("user")));
+        userDetailsService.evictUser(1L);
+        assertEquals(List.of("ROLE_ADMIN"), authorities(userDetailsService.loadUserByUsername("user")));
+        verify(userRepository, times(2)).findByUsername("user");
+    }
+
+    @Test
+    void updatePassword_EvictsCachedHash() {
+        stubUser("oldHash", Role.RoleType.USER);
+        UserDetails cached = userDetailsService.loadUserByUsername("user");
+        UserDetails updated = userDetailsService.updatePassword(cached, "newHash");
+        assertEquals("newHash", updated.getPassword());
+        verify(userRepository).updatePassword(1L, "newHash");
+        stubUser("newHash", Role.RoleType.USER);
+        assertEquals("newHash", userDetailsService.loadUserByUsername("user").getPassword());
+        verify(userRepository, times(2)).findByUsername("user");
+    }
+
+    @Test
+    void evictUser_InTransaction_EvictsAgainAfterCompletion() {
+        stubUser("password", Role.RoleType.USER);
+        userDetailsService.loadUserByUsername("user");
+        TransactionSynchronizationManager.initSynchronization();
+        userDetailsService.evictUser(1L);
+        // Параллельный запрос до коммита читает из БД ещё старые роли и кладёт их в кэш
+        assertEquals(List.of("ROLE_USER"), authorities(userDetailsService.loadUserByUsername("user")));
+        stubUser("password", Role.RoleType.ADMIN);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        assertEquals(1, synchronizations.size());
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        assertEquals(List.of("ROLE_ADMIN"), authorities(userDetailsService.loadUserByUsername("user")));
+        verify(userRepository, times(3)).findByUsername("user");
+    }
+
+    @Test
+    void evictUser_UsernameChanged_OldEntryRemovedById() {
+        stubUser("password", Role.RoleType.USER);
+        userDetailsService.loadUserByUsername("user");
+        // Сброс чужого ID не трогает запись
+        userDetailsService.evictUser(2L);
+        userDetailsService.loadUserByUsername("user");
+        verify(userRepository, times(1)).findByUsername("user");
+        // Пользователя переименовали: запись под старым именем находится по ID
+        when(userRepository.findByUsername("user")).thenReturn(Optional.empty());
+        userDetailsService.evictUser(1L);
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("user"));
+    }
+
+    private void stubUser(String password, Role.RoleType roleType) {
+        Role role = new Role();
+        role.setId(roleType.ordinal() + 1);
+        role.setName(roleType);
+        User user = new User(1L, "user", password, new HashSet<>(Set.of(role)));
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(user));
+    }
+
+    private static List<String> authorities(UserDetails user) {
+        return user.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.bankcards.service.impl.engine;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.service.transfer.TransferLeg;
+import com.example.bankcards.util.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BalanceEngineTest {
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    @TempDir
+    Path directory;
+    private BalanceEngine engine;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(jdbcTemplate.queryForObject(contains("engine_projection_offset"), eq(Long.class))).thenReturn(0L);
+        when(jdbcTemplate.queryForObject(contains("seqincrement"), eq(Long.class), any())).thenReturn(1000L);
+        when(jdbcTemplate.queryForList(contains("nextval"), eq(Long.class), any(), any()))
+                .thenReturn(LongStream.range(0, 100).map(i -> 1 + i * 1000).boxed().toList());
+        ResultSet first = card(1, 1, 1_000_000);
+        ResultSet second = card(2, 2, 0);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(first);
+            handler.processRow(second);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT id, user_id, status, balance FROM cards"), any(RowCallbackHandler.class));
+        // Сегмент журнала в 1 МБ, подтверждение ждём не дольше 2 секунд
+        engine = new BalanceEngine(jdbcTemplate, mock(PlatformTransactionManager.class), meterRegistry,
+                directory.toString(), 1024, 16, 1, 1_000_000, 100, 1000, 2000, 1000, 1024, 16);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        engine.stop();
+    }
+
+    @Test
+    void transfer_RecordTooLargeForJournal_OnlyThatCommandRejected() throws Exception {
+        engine.start();
+        // 40 000 переводов дают запись журнала больше сегмента
+        List<TransferLeg> legs = IntStream.range(0, 40_000)
+                .mapToObj(i -> new TransferLeg(1L, request(1L, 2L, 1)))
+                .toList();
+        assertThrows(TransferConflictException.class, () -> engine.transfer(legs, false));
+        assertEquals(1_000_000, engine.findBalance(1).getAsLong());
+        // Поток движка жив и принимает следующие команды
+        TransactionResponse response = engine.transfer(1L, request(1L, 2L, 500));
+        assertEquals("SUCCESS", response.getStatus());
+        assertEquals(999_500, engine.findBalance(1).getAsLong());
+        assertEquals(500, engine.findBalance(2).getAsLong());
+    }
+
+    @Test
+    void markOutOfSync_StopsAcceptingAndCountsFailure() throws Exception {
+        engine.start();
+        engine.markOutOfSync(1L, new TransferConflictException("Движок балансов не смог выполнить операцию"));
+        assertThrows(TransferConflictException.class, () -> engine.transfer(1L, request(1L, 2L, 500)));
+        assertEquals(1, meterRegistry.get("bank.engine.card.sync.failures").counter().count());
+        assertEquals(1_000_000, engine.findBalance(1).getAsLong());
+    }
+
+    private static ResultSet card(long id, long ownerId, long balance) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenReturn(id);
+        when(rs.getLong("user_id")).thenReturn(ownerId);
+        when(rs.getString("status")).thenReturn("ACTIVE");
+        when(rs.getLong("balance")).thenReturn(balance);
+        return rs;
+    }
+
+    private static TransactionRequest request(Long fromCardId, Long toCardId, long amount) {
+        TransactionRequest request = new TransactionRequest();
+        request.setFromCardId(fromCardId);
+        request.setToCardId(toCardId);
+        request.setAmount(Money.ofMinor(amount));
+        return request;
+    }
+}
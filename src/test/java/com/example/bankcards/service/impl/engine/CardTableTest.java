@@ -0,0 +1,69 @@
+package com.example.bankcards.service.impl.engine;
+
+import com.example.bankcards.entity.Card;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardTableTest {
+    private static final long MISSING = Long.MIN_VALUE;
+    private static final byte ACTIVE = CardTable.encodeStatus(Card.Status.ACTIVE);
+
+    @Test
+    void put_GrowsBeyondExpectedSize_KeepsAllCards() {
+        CardTable table = new CardTable(2);
+        for (long cardId = 1; cardId <= 1000; cardId++) {
+            table.put(cardId, cardId % 7, ACTIVE, cardId * 100);
+        }
+        assertEquals(1000, table.size());
+        for (long cardId = 1; cardId <= 1000; cardId++) {
+            assertEquals(cardId * 100, table.readBalance(cardId, MISSING));
+            assertEquals(cardId % 7, table.readOwner(cardId, MISSING));
+        }
+        assertEquals(MISSING, table.readBalance(1001, MISSING));
+    }
+
+    @Test
+    void remove_LeavesProbeChainForOtherCards() {
+        CardTable table = new CardTable(16);
+        table.put(1, 1, ACTIVE, 100);
+        table.put(2, 1, ACTIVE, 200);
+        table.put(3, 2, ACTIVE, 300);
+        table.remove(2);
+        assertEquals(-1, table.slotOf(2));
+        assertEquals(MISSING, table.readBalance(2, MISSING));
+        assertEquals(300, table.readBalance(3, MISSING));
+        assertEquals(2, table.size());
+        // Повторная вставка удалённой карты занимает её прежний слот
+        table.put(2, 1, ACTIVE, 50);
+        assertEquals(50, table.readBalance(2, MISSING));
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    void slotAccessors_UpdateInPlace() {
+        CardTable table = new CardTable(16);
+        table.put(5, 1, ACTIVE, 1000);
+        int slot = table.slotOf(5);
+        table.setBalance(slot, 750);
+        table.updateCard(slot, 2, CardTable.encodeStatus(Card.Status.BLOCKED));
+        assertEquals(750, table.balance(slot));
+        assertEquals(2, table.owner(slot));
+        assertEquals(Card.Status.BLOCKED, CardTable.decodeStatus(table.status(slot)));
+        Map<Long, Long> balances = new HashMap<>();
+        table.forEach((cardId, ownerId, status, balance) -> balances.put(cardId, balance));
+        assertEquals(Map.of(5L, 750L), balances);
+    }
+
+    @Test
+    void statusCodes_RoundTrip() {
+        for (Card.Status status : Card.Status.values()) {
+            assertNotEquals(CardTable.ABSENT, CardTable.encodeStatus(status));
+            assertEquals(status, CardTable.decodeStatus(CardTable.encodeStatus(status)));
+        }
+        assertNull(CardTable.decodeStatus(CardTable.ABSENT));
+    }
+}
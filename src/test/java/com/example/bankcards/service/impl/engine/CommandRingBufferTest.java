@@ -0,0 +1,89 @@
+package com.example.bankcards.service.impl.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandRingBufferTest {
+    @Test
+    void constructor_SizeNotPowerOfTwo_Rejected() {
+        assertThrows(IllegalArgumentException.class, () -> new CommandRingBuffer(12));
+    }
+
+    @Test
+    void highestPublished_StopsAtFirstGap() {
+        CommandRingBuffer ring = new CommandRingBuffer(8);
+        long first = ring.claim();
+        long second = ring.claim();
+        long third = ring.claim();
+        ring.publish(first);
+        ring.publish(third);
+        assertEquals(first, ring.highestPublished(0, 8));
+        ring.publish(second);
+        assertEquals(third, ring.highestPublished(0, 8));
+        assertEquals(second, ring.highestPublished(0, 2));
+        ring.release(third);
+        assertEquals(8, ring.remainingCapacity());
+    }
+
+    @Test
+    void claim_WrapsAroundReusingSlots() {
+        CommandRingBuffer ring = new CommandRingBuffer(4);
+        for (long expected = 0; expected < 10; expected++) {
+            long sequence = ring.claim();
+            assertEquals(expected, sequence);
+            assertSame(ring.get(sequence), ring.get(sequence + 4));
+            ring.publish(sequence);
+            assertEquals(sequence, ring.highestPublished(sequence, 4));
+            ring.release(sequence);
+        }
+    }
+
+    @Test
+    void claim_ConcurrentProducers_ConsumerSeesEverySequenceOnce() throws InterruptedException {
+        CommandRingBuffer ring = new CommandRingBuffer(16);
+        int producers = 4;
+        int perProducer = 10_000;
+        Set<Long> consumed = ConcurrentHashMap.newKeySet();
+        Thread consumer = new Thread(() -> {
+            long next = 0;
+            while (next < (long) producers * perProducer) {
+                long last = ring.highestPublished(next, 16);
+                for (long sequence = next; sequence <= last; sequence++) {
+                    assertTrue(consumed.add(ring.get(sequence).cardId));
+                }
+                if (last >= next) {
+                    ring.release(last);
+                    next = last + 1;
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+        });
+        consumer.start();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    long sequence = ring.claim();
+                    ring.get(sequence).cardId = sequence;
+                    ring.publish(sequence);
+                }
+            });
+            threads.add(producer);
+            producer.start();
+        }
+        for (Thread producer : threads) {
+            producer.join();
+        }
+        consumer.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(consumer.isAlive());
+        assertEquals(producers * perProducer, consumed.size());
+    }
+}
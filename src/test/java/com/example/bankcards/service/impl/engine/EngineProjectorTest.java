@@ -0,0 +1,71 @@
+package com.example.bankcards.service.impl.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EngineProjectorTest {
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final EngineProjector projector = new EngineProjector(jdbcTemplate, transactionTemplate, 100, 100);
+
+    @SuppressWarnings("unchecked")
+    EngineProjectorTest() {
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(jdbcTemplate.queryForObject(contains("engine_projection_offset"), eq(Long.class))).thenReturn(5L);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        projector.stop();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void project_NetDeltaPerCardAndOffsetInOneTransaction() throws InterruptedException {
+        assertEquals(5, projector.loadOffset());
+        // Запись 5 уже спроецирована до рестарта и пропускается
+        projector.enqueue(JournalRecord.transfers(5, 1000L, new long[]{1}, new long[]{1}, new long[]{2}, new long[]{999}));
+        projector.enqueue(JournalRecord.transfers(6, 1000L, new long[]{2}, new long[]{1}, new long[]{2}, new long[]{100}));
+        projector.enqueue(JournalRecord.removeCard(7, 1000L, 9));
+        projector.enqueue(JournalRecord.transfers(8, 1000L, new long[]{3, 4}, new long[]{2, 1}, new long[]{3, 3},
+                new long[]{30, 20}));
+        projector.start();
+        verify(jdbcTemplate, timeout(2000)).update(contains("engine_projection_offset"), eq(8L));
+        ArgumentCaptor<List<Object[]>> balances = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE cards"), balances.capture());
+        assertEquals(3, balances.getValue().size());
+        assertArrayEquals(new Object[]{-120L, 1L}, balances.getValue().get(0));
+        assertArrayEquals(new Object[]{70L, 2L}, balances.getValue().get(1));
+        assertArrayEquals(new Object[]{50L, 3L}, balances.getValue().get(2));
+        ArgumentCaptor<List<Object[]>> transactions = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO transactions"), transactions.capture());
+        assertEquals(List.of(2L, 3L, 4L), transactions.getValue().stream().map(row -> row[0]).toList());
+        verify(transactionTemplate, times(1)).executeWithoutResult(any());
+        assertEquals(8, projector.getProjectedSequence());
+    }
+
+    @Test
+    void project_DatabaseFailure_RetriedUntilWritten() throws InterruptedException {
+        projector.loadOffset();
+        doThrow(new IllegalStateException("connection refused")).doNothing()
+                .when(transactionTemplate).executeWithoutResult(any());
+        projector.enqueue(JournalRecord.transfers(6, 1000L, new long[]{2}, new long[]{1}, new long[]{2}, new long[]{100}));
+        projector.start();
+        verify(transactionTemplate, timeout(3000).times(2)).executeWithoutResult(any());
+        assertEquals(6, projector.getProjectedSequence());
+    }
+}
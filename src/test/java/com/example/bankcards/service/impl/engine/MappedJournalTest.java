@@ -0,0 +1,138 @@
+package com.example.bankcards.service.impl.engine;
+
+import com.example.bankcards.entity.Card;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedJournalTest {
+    private static final int SEGMENT_SIZE = 4096;
+    @TempDir
+    Path directory;
+
+    @Test
+    void append_ReadBack_AllRecordTypes() throws IOException {
+        try (MappedJournal journal = new MappedJournal(directory, SEGMENT_SIZE)) {
+            journal.openSegment(1);
+            journal.append(JournalRecord.transfers(1, 1000L, new long[]{10, 11}, new long[]{1, 2},
+                    new long[]{2, 3}, new long[]{500, 250}));
+            journal.append(JournalRecord.upsertCard(2, 2000L, 7, 3, CardTable.encodeStatus(Card.Status.BLOCKED), 9900));
+            journal.append(JournalRecord.removeCard(3, 3000L, 7));
+            journal.force();
+        }
+        List<JournalRecord> records = MappedJournal.read(directory, 0);
+        assertEquals(3, records.size());
+        JournalRecord transfers = records.get(0);
+        assertEquals(JournalRecord.TRANSFERS, transfers.type);
+        assertEquals(1000L, transfers.timestamp);
+        assertArrayEquals(new long[]{10, 11}, transfers.transactionIds);
+        assertArrayEquals(new long[]{1, 2}, transfers.fromCardIds);
+        assertArrayEquals(new long[]{2, 3}, transfers.toCardIds);
+        assertArrayEquals(new long[]{500, 250}, transfers.amounts);
+        JournalRecord upsert = records.get(1);
+        assertEquals(JournalRecord.UPSERT_CARD, upsert.type);
+        assertEquals(7, upsert.cardId);
+        assertEquals(3, upsert.ownerId);
+        assertEquals(Card.Status.BLOCKED, CardTable.decodeStatus(upsert.status));
+        assertEquals(9900, upsert.balance);
+        assertEquals(JournalRecord.REMOVE_CARD, records.get(2).type);
+        assertEquals(7, records.get(2).cardId);
+        assertEquals(2, MappedJournal.read(directory, 1).size());
+    }
+
+    @Test
+    void read_CorruptedRecord_StopsBeforeIt() throws IOException {
+        writeTransfers(1, 3);
+        // Меняется байт в теле третьей записи: CRC не сходится, чтение сегмента останавливается
+        flipByte(segment(1), offsetOf(3) + Integer.BYTES + Long.BYTES + 2);
+        List<JournalRecord> records = MappedJournal.read(directory, 0);
+        assertEquals(2, records.size());
+        assertEquals(2, records.get(1).sequence);
+    }
+
+    @Test
+    void recover_TornTail_ContinuesInNewSegment() throws IOException {
+        writeTransfers(1, 2);
+        // Сбой посреди записи: длина третьей записи уже на месте, тело и CRC — нет
+        try (FileChannel channel = FileChannel.open(segment(1), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, record(3).size()), offsetOf(3));
+        }
+        List<JournalRecord> recovered = MappedJournal.read(directory, 0);
+        assertEquals(2, recovered.size());
+        // Как при восстановлении движка: новый сегмент начинается со следующего номера после последней целой записи
+        try (MappedJournal journal = new MappedJournal(directory, SEGMENT_SIZE)) {
+            journal.openSegment(recovered.get(recovered.size() - 1).sequence + 1);
+            journal.append(record(3));
+            journal.force();
+        }
+        List<JournalRecord> records = MappedJournal.read(directory, 0);
+        assertEquals(List.of(1L, 2L, 3L), records.stream().map(record -> record.sequence).toList());
+    }
+
+    @Test
+    void append_SegmentFull_RollsOverAndDeletesProjected() throws IOException {
+        int recordLength = Integer.BYTES + record(1).size() + Integer.BYTES;
+        try (MappedJournal journal = new MappedJournal(directory, recordLength * 2 + Integer.BYTES)) {
+            journal.openSegment(1);
+            for (long sequence = 1; sequence <= 5; sequence++) {
+                journal.append(record(sequence));
+            }
+            journal.force();
+            assertEquals(3, segmentCount());
+            assertEquals(5, MappedJournal.read(directory, 0).size());
+            journal.deleteSegmentsUpTo(2);
+            assertEquals(2, segmentCount());
+            assertEquals(List.of(3L, 4L, 5L), MappedJournal.read(directory, 0).stream().map(record -> record.sequence).toList());
+        }
+    }
+
+    private void writeTransfers(long from, long to) throws IOException {
+        try (MappedJournal journal = new MappedJournal(directory, SEGMENT_SIZE)) {
+            journal.openSegment(from);
+            for (long sequence = from; sequence <= to; sequence++) {
+                journal.append(record(sequence));
+            }
+            journal.force();
+        }
+    }
+
+    private static JournalRecord record(long sequence) {
+        return JournalRecord.transfers(sequence, sequence * 1000, new long[]{sequence}, new long[]{1}, new long[]{2},
+                new long[]{sequence * 100});
+    }
+
+    // Записи одного размера идут подряд с начала сегмента: [длина][тело][CRC]
+    private static int offsetOf(long sequence) {
+        return (int) (sequence - 1) * (Integer.BYTES + record(sequence).size() + Integer.BYTES);
+    }
+
+    private Path segment(long firstSequence) {
+        return directory.resolve(String.format("journal-%020d.log", firstSequence));
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static void flipByte(Path file, int position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, position);
+            value.put(0, (byte) (value.get(0) ^ 0xFF));
+            value.rewind();
+            channel.write(value, position);
+        }
+    }
+}
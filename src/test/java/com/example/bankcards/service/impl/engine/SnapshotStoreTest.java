@@ -0,0 +1,63 @@
+package com.example.bankcards.service.impl.engine;
+
+import com.example.bankcards.entity.Card;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotStoreTest {
+    private static final long MISSING = Long.MIN_VALUE;
+    @TempDir
+    Path directory;
+
+    @Test
+    void write_ThenLoad_RestoresTableAndSequence() throws IOException {
+        SnapshotStore store = new SnapshotStore(directory);
+        CardTable table = new CardTable(16);
+        table.put(1, 10, CardTable.encodeStatus(Card.Status.ACTIVE), 1000);
+        table.put(2, 20, CardTable.encodeStatus(Card.Status.BLOCKED), 0);
+        table.put(3, 10, CardTable.encodeStatus(Card.Status.ACTIVE), 300);
+        table.remove(3);
+        store.write(42, table);
+        CardTable restored = new CardTable(16);
+        assertEquals(42, store.load(restored));
+        assertEquals(2, restored.size());
+        assertEquals(1000, restored.readBalance(1, MISSING));
+        assertEquals(20, restored.readOwner(2, MISSING));
+        assertEquals(Card.Status.BLOCKED, CardTable.decodeStatus(restored.status(restored.slotOf(2))));
+        assertEquals(MISSING, restored.readBalance(3, MISSING));
+    }
+
+    @Test
+    void write_KeepsOnlyLatestSnapshot() throws IOException {
+        SnapshotStore store = new SnapshotStore(directory);
+        CardTable table = new CardTable(16);
+        table.put(1, 10, CardTable.encodeStatus(Card.Status.ACTIVE), 1000);
+        store.write(5, table);
+        table.setBalance(table.slotOf(1), 400);
+        store.write(9, table);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+        CardTable restored = new CardTable(16);
+        assertEquals(9, store.load(restored));
+        assertEquals(400, restored.readBalance(1, MISSING));
+    }
+
+    @Test
+    void load_NoSnapshot_ReturnsMinusOne() throws IOException {
+        assertEquals(-1, new SnapshotStore(directory.resolve("absent")).load(new CardTable(16)));
+    }
+
+    @Test
+    void load_ForeignFile_Rejected() throws IOException {
+        Files.write(directory.resolve(String.format("snapshot-%020d.bin", 1)), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> new SnapshotStore(directory).load(new CardTable(16)));
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.bankcards.service.impl.transfer;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.service.impl.bucket.BalanceBucketStore;
+import com.example.bankcards.service.impl.engine.BalanceEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AsyncTransferProcessorTest {
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final CardRepository cardRepository = mock(CardRepository.class);
+    private final BalanceBucketStore bucketStore = mock(BalanceBucketStore.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final TransferCompletionNotifier completionNotifier = new TransferCompletionNotifier();
+    private Map<Long, Card> cards;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        User owner = new User();
+        owner.setId(1L);
+        cards = Map.of(1L, card(1L, owner), 2L, card(2L, owner), 3L, card(3L, owner));
+        when(cardRepository.findAllByIdInForUpdate(any())).thenAnswer(invocation -> List.copyOf(cards.values()));
+        // Каждая транзакция БД читает свежие строки, как после отката
+        when(transactionRepository.findAllById(any())).thenAnswer(invocation -> {
+            Iterable<Long> ids = invocation.getArgument(0);
+            return StreamSupport.stream(ids.spliterator(), false)
+                    .map(id -> pending(id, id == 2L ? 3L : 1L, 2L))
+                    .toList();
+        });
+    }
+
+    @Test
+    void drainBatch_RowWithUnexpectedError_OnlyThatRowFailed() {
+        when(transactionRepository.lockPendingIds(anyInt())).thenReturn(List.of(1L, 2L));
+        when(transactionRepository.lockPendingId(1L)).thenReturn(List.of(1L));
+        when(transactionRepository.lockPendingId(2L)).thenReturn(List.of(2L));
+        when(transactionRepository.markFailed(eq(2L), anyString())).thenReturn(1);
+        doThrow(new IllegalStateException("корзины карты недоступны"))
+                .when(bucketStore).refill(same(cards.get(3L)), anyLong());
+        CompletableFuture<Void> good = completionNotifier.register(1L);
+        CompletableFuture<Void> bad = completionNotifier.register(2L);
+        assertEquals(2, processor(provider(BalanceEngine.class, null)).drainBatch());
+        // Общий пакет откатился, после чего перевод 1 выполнен отдельно, а перевод 2 помечен FAILED
+        verify(transactionManager, atLeastOnce()).rollback(any());
+        verify(transactionRepository).markFailed(eq(2L), anyString());
+        verify(transactionRepository, never()).markFailed(eq(1L), anyString());
+        assertTrue(good.isDone());
+        assertTrue(bad.isDone());
+    }
+
+    @Test
+    void drainBatch_RowAlreadyTakenByAnotherWorker_Skipped() {
+        when(transactionRepository.lockPendingIds(anyInt())).thenReturn(List.of(2L));
+        when(transactionRepository.lockPendingId(2L)).thenReturn(List.of());
+        doThrow(new IllegalStateException("корзины карты недоступны"))
+                .when(bucketStore).refill(same(cards.get(3L)), anyLong());
+        assertEquals(0, processor(provider(BalanceEngine.class, null)).drainBatch());
+        verify(transactionRepository, never()).markFailed(anyLong(), anyString());
+    }
+
+    @Test
+    void start_BalanceEngineAvailable_NotStarted() throws InterruptedException {
+        AsyncTransferProcessor processor = processor(provider(BalanceEngine.class, mock(BalanceEngine.class)));
+        processor.start();
+        try {
+            // Балансы ведёт движок: обработчик не должен менять cards.balance в обход него
+            verify(transactionRepository, after(200).never()).lockPendingIds(anyInt());
+        } finally {
+            processor.stop();
+        }
+    }
+
+    private AsyncTransferProcessor processor(ObjectProvider<BalanceEngine> engine) {
+        return new AsyncTransferProcessor(transactionRepository, cardRepository, bucketStore, transactionManager,
+                completionNotifier, new TransferMetrics(new SimpleMeterRegistry()),
+                provider(LedgerService.class, null), engine, true, 1, 100, 50);
+    }
+
+    private static <T> ObjectProvider<T> provider(Class<T> type, T bean) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        if (bean != null) {
+            beanFactory.addBean(type.getSimpleName(), bean);
+        }
+        return beanFactory.getBeanProvider(type);
+    }
+
+    private static Card card(Long id, User owner) {
+        Card card = new Card();
+        card.setId(id);
+        card.setUser(owner);
+        card.setStatus(Card.Status.ACTIVE);
+        card.setBalance(100_000);
+        return card;
+    }
+
+    private Transaction pending(Long id, Long fromCardId, Long toCardId) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setFromCard(cards.get(fromCardId));
+        transaction.setToCard(cards.get(toCardId));
+        transaction.setAmount(1_000);
+        transaction.setStatus(Transaction.Status.PENDING);
+        return transaction;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.bankcards.service.impl.transfer;
+
+import com.example.bankcards.dto.transaction.TransactionRequest;
+import com.example.bankcards.dto.transaction.TransactionResponse;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.exception.TransferOutcomeUnknownException;
+import com.example.bankcards.service.transfer.TransferLeg;
+import com.example.bankcards.service.transfer.TransferOutcome;
+import com.example.bankcards.util.Money;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class PartitionedTransferStrategyTest {
+    private final BatchTransferExecutor batchTransferExecutor = mock(BatchTransferExecutor.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    // Первый пакет ждёт, пока тест не выстроит очередь за ним
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<List<Long>> batches = new CopyOnWriteArrayList<>();
+    private final Map<Long, String> threads = new ConcurrentHashMap<>();
+    private final List<TransferLeg> legs = new CopyOnWriteArrayList<>();
+    private PartitionedTransferStrategy strategy;
+
+    @BeforeEach
+    void setUp() {
+        when(batchTransferExecutor.executeIndependent(anyList())).thenAnswer(invocation -> {
+            List<TransferLeg> batch = invocation.getArgument(0);
+            entered.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            List<Long> sequence = new ArrayList<>();
+            List<TransferOutcome> outcomes = new ArrayList<>();
+            for (TransferLeg leg : batch) {
+                long seq = leg.getRequest().getAmount().getMinorUnits();
+                sequence.add(seq);
+                threads.put(seq, Thread.currentThread().getName());
+                legs.add(leg);
+                outcomes.add(new TransferOutcome(response(seq), null));
+            }
+            batches.add(sequence);
+            return outcomes;
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        if (strategy != null) {
+            strategy.stop();
+        }
+        callers.shutdownNow();
+    }
+
+    @Test
+    void transfer_SameDebitCard_OnePartitionInSubmissionOrder() throws Exception {
+        start(4, 100, 256, 5000);
+        List<CompletableFuture<TransactionResponse>> results = new ArrayList<>();
+        results.add(submit(7L, 100L, 1));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        for (long seq = 2; seq <= 6; seq++) {
+            // Получатели разные, но все переводы списывают с карты 7
+            results.add(submit(7L, 100L + seq, seq));
+            awaitQueued(seq - 1);
+        }
+        release.countDown();
+        for (CompletableFuture<TransactionResponse> result : results) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(1, threads.values().stream().distinct().count(), threads.toString());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), batches.stream().flatMap(List::stream).toList());
+    }
+
+    @Test
+    void transfer_QueuedBehindBusyPartition_CoalescedUpToMaxBatchSize() throws Exception {
+        start(1, 100, 2, 5000);
+        List<CompletableFuture<TransactionResponse>> results = new ArrayList<>();
+        results.add(submit(1L, 2L, 1));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        for (long seq = 2; seq <= 4; seq++) {
+            results.add(submit(1L, 2L, seq));
+            awaitQueued(seq - 1);
+        }
+        release.countDown();
+        for (CompletableFuture<TransactionResponse> result : results) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+        // Очередь, накопившаяся за занятой партицией, уходит пакетами не больше max-batch-size
+        assertEquals(List.of(List.of(1L), List.of(2L, 3L), List.of(4L)), batches);
+        assertEquals(3, meterRegistry.get("bank.transfer.partition.batch.size").summary().count());
+    }
+
+    @Test
+    void transfer_PartitionQueueFull_RejectedWithConflict() throws Exception {
+        start(1, 1, 256, 5000);
+        CompletableFuture<TransactionResponse> running = submit(1L, 2L, 1);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<TransactionResponse> queued = submit(1L, 2L, 2);
+        awaitQueued(1);
+        assertThrows(TransferConflictException.class, () -> strategy.transfer(1L, request(1L, 2L, 3)));
+        release.countDown();
+        assertEquals(1001L, running.get(5, TimeUnit.SECONDS).getId());
+        assertEquals(1002L, queued.get(5, TimeUnit.SECONDS).getId());
+        assertFalse(threads.containsKey(3L));
+    }
+
+    @Test
+    void transfer_NotCompletedInTime_OutcomeUnknownThenLateResult() throws Exception {
+        start(1, 100, 256, 100);
+        TransferOutcomeUnknownException e = assertThrows(TransferOutcomeUnknownException.class,
+                () -> strategy.transfer(1L, request(1L, 2L, 1)));
+        // Перевод остался в партиции: исход приходит позже, а не теряется
+        assertNotNull(e.getOutcome());
+        assertFalse(e.getOutcome().isDone());
+        release.countDown();
+        assertEquals(1001L, e.getOutcome().get(5, TimeUnit.SECONDS).getId());
+    }
+
+    @Test
+    void transfer_WithOnCommit_CallbackCarriedIntoPartitionTransaction() {
+        start(2, 100, 256, 5000);
+        release.countDown();
+        Consumer<TransactionResponse> onCommit = response -> {
+        };
+        assertTrue(strategy.commitsOwnTransaction());
+        assertEquals(1001L, strategy.transfer(1L, request(1L, 2L, 1), onCommit).getId());
+        assertSame(onCommit, legs.get(0).getOnCommit());
+    }
+
+    private void start(int partitions, int queueCapacity, int maxBatchSize, long timeoutMs) {
+        strategy = new PartitionedTransferStrategy(batchTransferExecutor, meterRegistry,
+                new TransferMetrics(meterRegistry), partitions, queueCapacity, maxBatchSize, timeoutMs);
+        strategy.start();
+    }
+
+    private CompletableFuture<TransactionResponse> submit(Long fromCardId, Long toCardId, long seq) {
+        return CompletableFuture.supplyAsync(() -> strategy.transfer(1L, request(fromCardId, toCardId, seq)), callers);
+    }
+
+    private void awaitQueued(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queued() < expected) {
+            assertTrue(System.nanoTime() < deadline, "в очереди " + queued() + " вместо " + expected);
+            Thread.sleep(5);
+        }
+    }
+
+    private double queued() {
+        return meterRegistry.get("bank.transfer.partition.queue.depth").gauges().stream()
+                .mapToDouble(Gauge::value)
+                .sum();
+    }
+
+    // Сумма перевода служит его порядковым номером в тесте
+    private static TransactionRequest request(Long fromCardId, Long toCardId, long seq) {
+        TransactionRequest request = new TransactionRequest();
+        request.setFromCardId(fromCardId);
+        request.setToCardId(toCardId);
+        request.setAmount(Money.ofMinor(seq));
+        return request;
+    }
+
+    private static TransactionResponse response(long seq) {
+        TransactionResponse response = new TransactionResponse();
+        response.setId(1000L + seq);
+        response.setStatus("SUCCESS");
+        return response;
+    }
+}
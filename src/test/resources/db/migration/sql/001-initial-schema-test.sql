@@ -24,18 +24,27 @@ CREATE TABLE IF NOT EXISTS test.cards
     owner_name            VARCHAR(50)      NOT NULL,
     expiration_date       DATE             NOT NULL,
     status                VARCHAR(20)      NOT NULL,
-    balance               DOUBLE PRECISION NOT NULL DEFAULT 0.0,
-    user_id               BIGINT           NOT NULL REFERENCES test.users (id)
+    balance               BIGINT           NOT NULL DEFAULT 0,
+    user_id               BIGINT           NOT NULL REFERENCES test.users (id),
+    version               BIGINT           NOT NULL DEFAULT 0,
+    balance_buckets       INTEGER          NOT NULL DEFAULT 0,
+    opening_balance       BIGINT           NOT NULL DEFAULT 0,
+    card_number_hash      VARCHAR(64) UNIQUE,
+    card_number_last4     VARCHAR(4)
 );
 CREATE TABLE IF NOT EXISTS test.transactions
 (
-    id           BIGSERIAL PRIMARY KEY,
-    from_card_id BIGINT           NOT NULL REFERENCES test.cards (id) ON DELETE CASCADE,
-    to_card_id   BIGINT           NOT NULL REFERENCES test.cards (id) ON DELETE CASCADE,
-    amount       DOUBLE PRECISION NOT NULL,
-    timestamp    TIMESTAMP        NOT NULL DEFAULT CURRENT_TIMESTAMP,
-    status       VARCHAR(20)      NOT NULL
+    id             BIGSERIAL PRIMARY KEY,
+    from_card_id   BIGINT           NOT NULL REFERENCES test.cards (id) ON DELETE CASCADE,
+    to_card_id     BIGINT           NOT NULL REFERENCES test.cards (id) ON DELETE CASCADE,
+    amount         BIGINT           NOT NULL,
+    timestamp      TIMESTAMP        NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    status         VARCHAR(20)      NOT NULL,
+    failure_reason VARCHAR(255)
 );
+CREATE INDEX IF NOT EXISTS idx_transactions_from_card_history ON test.transactions (from_card_id, timestamp DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_transactions_to_card_history ON test.transactions (to_card_id, timestamp DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_transactions_timestamp ON test.transactions (timestamp, id);
 INSERT INTO test.roles (name)
 VALUES ('USER');
 INSERT INTO test.roles (name)
@@ -55,4 +64,139 @@ SELECT u.id, r.id
 FROM test.users u,
      test.roles r
 WHERE u.username = 'admin'
-  AND r.name = 'ADMIN';
\ No newline at end of file
+  AND r.name = 'ADMIN';
+CREATE TABLE IF NOT EXISTS test.idempotency_keys
+(
+    user_id         BIGINT       NOT NULL REFERENCES test.users (id) ON DELETE CASCADE,
+    idempotency_key VARCHAR(100) NOT NULL,
+    request_hash    VARCHAR(64)  NOT NULL,
+    response        TEXT,
+    created_at      TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at      TIMESTAMP    NOT NULL,
+    reservation_id  UUID,
+    locked_until    TIMESTAMP    NOT NULL,
+    PRIMARY KEY (user_id, idempotency_key)
+);
+CREATE TABLE IF NOT EXISTS test.engine_projection_offset
+(
+    id            SMALLINT PRIMARY KEY,
+    last_sequence BIGINT NOT NULL
+);
+INSERT INTO test.engine_projection_offset (id, last_sequence)
+VALUES (1, 0);
+CREATE TABLE IF NOT EXISTS test.ledger_entries
+(
+    id             BIGSERIAL PRIMARY KEY,
+    card_id        BIGINT    NOT NULL,
+    transaction_id BIGINT,
+    amount         BIGINT    NOT NULL,
+    created_at     TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    txid           BIGINT    NOT NULL DEFAULT pg_current_xact_id()::TEXT::BIGINT
+);
+CREATE INDEX IF NOT EXISTS idx_ledger_entries_card_txid ON test.ledger_entries (card_id, txid);
+CREATE INDEX IF NOT EXISTS idx_ledger_entries_txid ON test.ledger_entries (txid);
+CREATE TABLE IF NOT EXISTS test.balance_checkpoints
+(
+    card_id    BIGINT    NOT NULL,
+    horizon    BIGINT    NOT NULL,
+    balance    BIGINT    NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (card_id, horizon)
+);
+CREATE INDEX IF NOT EXISTS idx_balance_checkpoints_card_created ON test.balance_checkpoints (card_id, created_at);
+CREATE TABLE IF NOT EXISTS test.ledger_checkpoint_offset
+(
+    id      SMALLINT PRIMARY KEY,
+    horizon BIGINT NOT NULL
+);
+INSERT INTO test.ledger_checkpoint_offset (id, horizon)
+VALUES (1, 0);
+CREATE TABLE IF NOT EXISTS test.card_balance_buckets
+(
+    card_id BIGINT  NOT NULL REFERENCES test.cards (id) ON DELETE CASCADE,
+    bucket  INTEGER NOT NULL,
+    balance BIGINT  NOT NULL CHECK (balance >= 0),
+    PRIMARY KEY (card_id, bucket)
+);
+CREATE TABLE IF NOT EXISTS test.outbox
+(
+    id             BIGSERIAL PRIMARY KEY,
+    aggregate_type VARCHAR(20) NOT NULL,
+    aggregate_id   BIGINT      NOT NULL,
+    event_type     VARCHAR(50) NOT NULL,
+    payload        TEXT        NOT NULL,
+    created_at     TIMESTAMP   NOT NULL DEFAULT LOCALTIMESTAMP,
+    attempts       INTEGER     NOT NULL DEFAULT 0,
+    available_at   TIMESTAMP   NOT NULL DEFAULT LOCALTIMESTAMP
+);
+CREATE INDEX IF NOT EXISTS idx_outbox_available ON test.outbox (available_at, id);
+CREATE OR REPLACE FUNCTION test.outbox_transfer_event() RETURNS TRIGGER LANGUAGE plpgsql AS '
+BEGIN
+    IF NEW.status = ''PENDING'' OR (TG_OP = ''UPDATE'' AND OLD.status = NEW.status) THEN
+        RETURN NEW;
+    END IF;
+    INSERT INTO test.outbox (aggregate_type, aggregate_id, event_type, payload)
+    VALUES (''TRANSFER'', NEW.id,
+            CASE WHEN NEW.status = ''SUCCESS'' THEN ''TRANSFER_COMPLETED'' ELSE ''TRANSFER_FAILED'' END,
+            json_build_object(''id'', NEW.id, ''fromCardId'', NEW.from_card_id, ''toCardId'', NEW.to_card_id,
+                              ''amount'', round(NEW.amount / 100.0, 2), ''timestamp'', NEW."timestamp",
+                              ''status'', NEW.status, ''message'', NEW.failure_reason)::TEXT);
+    RETURN NEW;
+END;
+';
+CREATE TRIGGER transactions_outbox
+    AFTER INSERT OR UPDATE OF status
+    ON test.transactions
+    FOR EACH ROW
+EXECUTE FUNCTION test.outbox_transfer_event();
+CREATE TABLE IF NOT EXISTS test.reconciliation_runs
+(
+    id            BIGSERIAL PRIMARY KEY,
+    status        VARCHAR(20) NOT NULL,
+    started_at    TIMESTAMP   NOT NULL DEFAULT LOCALTIMESTAMP,
+    finished_at   TIMESTAMP,
+    ranges        INTEGER     NOT NULL DEFAULT 0,
+    cards_checked BIGINT      NOT NULL DEFAULT 0,
+    discrepancies BIGINT      NOT NULL DEFAULT 0,
+    error         VARCHAR(255)
+);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_reconciliation_runs_running ON test.reconciliation_runs ((TRUE)) WHERE status = 'RUNNING';
+CREATE TABLE IF NOT EXISTS test.reconciliation_discrepancies
+(
+    run_id           BIGINT NOT NULL REFERENCES test.reconciliation_runs (id) ON DELETE CASCADE,
+    card_id          BIGINT NOT NULL,
+    expected_balance BIGINT NOT NULL,
+    actual_balance   BIGINT NOT NULL,
+    PRIMARY KEY (run_id, card_id)
+);
+CREATE TABLE IF NOT EXISTS test.revoked_tokens
+(
+    jti        UUID PRIMARY KEY,
+    user_id    BIGINT    NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    revoked_at TIMESTAMP NOT NULL DEFAULT LOCALTIMESTAMP
+);
+CREATE TABLE IF NOT EXISTS test.card_issuance_jobs
+(
+    id          BIGSERIAL PRIMARY KEY,
+    status      VARCHAR(20) NOT NULL,
+    started_at  TIMESTAMP   NOT NULL DEFAULT LOCALTIMESTAMP,
+    finished_at TIMESTAMP,
+    total         INTEGER     NOT NULL,
+    issued        INTEGER     NOT NULL DEFAULT 0,
+    engine_failed INTEGER     NOT NULL DEFAULT 0,
+    error         VARCHAR(255)
+);
+CREATE TABLE IF NOT EXISTS test.card_key_rotations
+(
+    id          BIGSERIAL PRIMARY KEY,
+    status      VARCHAR(20) NOT NULL,
+    key_prefix  VARCHAR(16) NOT NULL,
+    started_at  TIMESTAMP   NOT NULL DEFAULT LOCALTIMESTAMP,
+    finished_at TIMESTAMP,
+    chunks      INTEGER     NOT NULL DEFAULT 0,
+    reencrypted BIGINT      NOT NULL DEFAULT 0,
+    remaining   BIGINT,
+    error       VARCHAR(255)
+);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_card_key_rotations_running ON test.card_key_rotations ((TRUE)) WHERE status = 'RUNNING';
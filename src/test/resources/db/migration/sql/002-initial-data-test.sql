@@ -3,33 +3,38 @@ VALUES ('encrypted_1231111111111111',
         'Ivan Ivanov',
         '2026-12-31'::DATE,
         'ACTIVE',
-        1000.0,
+        100000,
         1);
 INSERT INTO test.cards (encrypted_card_number, owner_name, expiration_date, status, balance, user_id)
 VALUES ('encrypted_2345555555554444',
         'Anna Petrova',
         '2025-06-30'::DATE,
         'ACTIVE',
-        2000.0,
+        200000,
         1);
 INSERT INTO test.cards (encrypted_card_number, owner_name, expiration_date, status, balance, user_id)
 VALUES ('encrypted_3452822463100057',
         'Mikhail Sidorov',
         '2027-03-31'::DATE,
         'ACTIVE',
-        1500.0,
+        150000,
         1);
 INSERT INTO test.cards (encrypted_card_number, owner_name, expiration_date, status, balance, user_id)
 VALUES ('encrypted_4561111111112222',
         'Dmitry Kuznetsov',
         '2026-09-30'::DATE,
         'ACTIVE',
-        5000.0,
+        500000,
         2);
 INSERT INTO test.cards (encrypted_card_number, owner_name, expiration_date, status, balance, user_id)
 VALUES ('encrypted_5675555555553333',
         'Elena Smirnova',
         '2025-12-31'::DATE,
         'ACTIVE',
-        3000.0,
-        2);
\ No newline at end of file
+        300000,
+        2);
+UPDATE test.cards
+SET opening_balance = balance;
+ALTER SEQUENCE test.users_id_seq INCREMENT BY 50;
+ALTER SEQUENCE test.cards_id_seq INCREMENT BY 50;
+ALTER SEQUENCE test.transactions_id_seq INCREMENT BY 50;